@@ -16,7 +16,19 @@ uniform vec4 u_diffuseColor;
 uniform vec4 u_emissiveColor;
 #endif
 
-#if numDirLights > 0
+#ifdef alphaTestFlag
+uniform float u_alphaTest;
+#endif
+
+#ifdef depthPass
+// Spreads the depth across all 4 channels, since depth textures aren't available everywhere.
+vec4 packDepth(float depth){
+    vec4 enc = fract(depth * vec4(1.0, 255.0, 65025.0, 16581375.0));
+    return enc - enc.yzww * vec4(1.0 / 255.0, 1.0 / 255.0, 1.0 / 255.0, 0.0);
+}
+#endif
+
+#if numDirLights > 0 || defined(ambLightsFlag) || defined(clusteredFlag)
 #define lightingFlag
 #endif
 
@@ -24,6 +36,81 @@ uniform vec4 u_emissiveColor;
 varying vec4 v_lightDiffuse;
 #endif
 
+#ifdef shadowFlag
+uniform sampler2D u_shadowMap;
+uniform vec4 u_cascades[numCascades];
+uniform float u_shadowBias;
+
+varying vec4 v_lightPos;
+varying vec4 v_shadowLight;
+
+float unpackDepth(vec4 enc){
+    return dot(enc, vec4(1.0, 1.0 / 255.0, 1.0 / 65025.0, 1.0 / 16581375.0));
+}
+
+// Selects the nearest cascade covering the fragment's view depth, laid out side by side in the atlas.
+float shadow(){
+    for(int i = 0; i < numCascades; i++){
+        vec4 cascade = u_cascades[i];
+        if(v_lightPos.w <= cascade.w){
+            vec2 uv = (v_lightPos.xy - cascade.xy) * cascade.z * 0.5 + 0.5;
+            uv.x = (uv.x + float(i)) / float(numCascades);
+            return v_lightPos.z - u_shadowBias > unpackDepth(texture2D(u_shadowMap, uv)) ? 0.0 : 1.0;
+        }
+    }
+    return 1.0;
+}
+#endif
+
+#ifdef clusteredFlag
+uniform sampler2D u_clusterGrid;
+uniform sampler2D u_clusterIndices;
+uniform sampler2D u_clusterLights;
+uniform vec3 u_clusterSize;
+uniform vec2 u_clusterDepth;
+uniform vec3 u_clusterHeights;
+uniform vec4 u_viewport;
+
+varying vec3 v_normal;
+varying vec3 v_position;
+varying float v_viewZ;
+
+vec4 clusterFetch(sampler2D tex, float index, float height){
+    return texture2D(tex, vec2(
+        (mod(index, clusterTexWidth) + 0.5) / clusterTexWidth,
+        (floor(index / clusterTexWidth) + 0.5) / height
+    ));
+}
+
+vec4 clusterDiffuse(){
+    vec2 tile = clamp(floor((gl_FragCoord.xy - u_viewport.xy) / u_viewport.zw * u_clusterSize.xy), vec2(0.0), u_clusterSize.xy - 1.0);
+    float slice = clamp(floor(log(max(v_viewZ, u_clusterDepth.x) / u_clusterDepth.x) / u_clusterDepth.y * u_clusterSize.z), 0.0, u_clusterSize.z - 1.0);
+    vec4 cluster = clusterFetch(u_clusterGrid, tile.x + tile.y * u_clusterSize.x + slice * u_clusterSize.x * u_clusterSize.y, u_clusterHeights.x);
+
+    vec3 normal = normalize(v_normal);
+    vec4 result = vec4(0.0);
+    for(int i = 0; i < maxClusterLights; i++){
+        if(float(i) >= cluster.y) break;
+
+        float light = clusterFetch(u_clusterIndices, cluster.x + float(i), u_clusterHeights.y).r * 4.0;
+        vec4 posRange = clusterFetch(u_clusterLights, light, u_clusterHeights.z);
+        vec4 color = clusterFetch(u_clusterLights, light + 1.0, u_clusterHeights.z);
+        vec4 dirOuter = clusterFetch(u_clusterLights, light + 2.0, u_clusterHeights.z);
+        float inner = clusterFetch(u_clusterLights, light + 3.0, u_clusterHeights.z).x;
+
+        vec3 toLight = posRange.xyz - v_position;
+        float dist = length(toLight);
+        vec3 dir = toLight / max(dist, 0.0001);
+
+        float atten = clamp(1.0 - dist / posRange.w, 0.0, 1.0);
+        float spot = smoothstep(dirOuter.w, inner, dot(-dir, dirOuter.xyz));
+        result += color * color.a * clamp(dot(normal, dir), 0.0, 1.0) * atten * atten * spot;
+    }
+
+    return result;
+}
+#endif
+
 void main(){
     #if defined(diffuseTextureFlag) && defined(diffuseColorFlag)
     vec4 color = texture2D(u_diffuseTexture, v_diffuseUV) * u_diffuseColor;
@@ -35,6 +122,13 @@ void main(){
     vec4 color = vec4(1.0);
     #endif
 
+    #ifdef alphaTestFlag
+    if(color.a < u_alphaTest) discard;
+    #endif
+
+    #ifdef depthPass
+    gl_FragColor = packDepth(gl_FragCoord.z);
+    #else
     color *= color.a;
 
     #if defined(emissiveTextureFlag) && defined(emissiveColorFlag)
@@ -49,9 +143,19 @@ void main(){
 
     emit *= emit.a;
 
+    #ifdef lightingFlag
+    vec4 light = v_lightDiffuse;
+    #ifdef shadowFlag
+    light -= v_shadowLight * (1.0 - shadow());
+    #endif
+    #endif
+
     #if !defined(lightingFlag)
     gl_FragColor = color + emit;
+    #elif defined(clusteredFlag)
+    gl_FragColor = (color * (light + clusterDiffuse())) + emit;
     #else
-    gl_FragColor = (color * v_lightDiffuse) + emit;
+    gl_FragColor = (color * light) + emit;
+    #endif
     #endif
 }
@@ -4,7 +4,6 @@ attribute vec4 a_normal;
 uniform mat4 u_normalMatrix;
 varying vec3 v_normal;
 
-uniform int u_renderType;
 uniform mat4 u_proj;
 uniform mat4 u_trans;
 
@@ -16,6 +15,67 @@ uniform vec2 u_scl;
 attribute vec2 a_texCoord0;
 #endif
 
+#ifdef compressedFlag
+uniform vec3 u_posOffset;
+uniform vec3 u_posScale;
+uniform vec4 u_uvDecode;
+
+vec3 octDecode(vec2 e){
+    vec3 n = vec3(e, 1.0 - abs(e.x) - abs(e.y));
+    float t = max(-n.z, 0.0);
+    n.x += n.x >= 0.0 ? -t : t;
+    n.y += n.y >= 0.0 ? -t : t;
+    return normalize(n);
+}
+#endif
+
+#ifdef numWeights
+#ifdef vatFlag
+uniform sampler2D u_vat;
+uniform vec2 u_vatSize;
+uniform vec3 u_vatFrame;
+
+// Blends the row of the two poses' palettes, stored as one texel per row.
+vec4 boneRow(int i){
+    float u = (float(i) + 0.5) * u_vatSize.x;
+    vec4 from = texture2D(u_vat, vec2(u, (u_vatFrame.x + 0.5) * u_vatSize.y));
+    vec4 to = texture2D(u_vat, vec2(u, (u_vatFrame.y + 0.5) * u_vatSize.y));
+    return mix(from, to, u_vatFrame.z);
+}
+#else
+uniform vec4 u_bones[maxBones * 3];
+
+vec4 boneRow(int i){
+    return u_bones[i];
+}
+#endif
+
+attribute vec2 a_boneWeight0;
+#if numWeights > 1
+attribute vec2 a_boneWeight1;
+#endif
+#if numWeights > 2
+attribute vec2 a_boneWeight2;
+#endif
+#if numWeights > 3
+attribute vec2 a_boneWeight3;
+#endif
+
+// Accumulates the weighted rows of a bone's affine matrix.
+void skin(inout vec4 r0, inout vec4 r1, inout vec4 r2, vec2 boneWeight){
+    int i = int(boneWeight.x + 0.5) * 3;
+    #ifdef compressedFlag
+    float weight = boneWeight.y / 65535.0;
+    #else
+    float weight = boneWeight.y;
+    #endif
+
+    r0 += boneRow(i) * weight;
+    r1 += boneRow(i + 1) * weight;
+    r2 += boneRow(i + 2) * weight;
+}
+#endif
+
 #ifdef diffuseTextureFlag
 uniform vec4 u_diffuseUV;
 varying vec2 v_diffuseUV;
@@ -26,10 +86,25 @@ uniform vec4 u_emissiveUV;
 varying vec2 v_emissiveUV;
 #endif
 
-#if numDirLights > 0 || defined(ambLightsFlag)
+#if numDirLights > 0 || defined(ambLightsFlag) || defined(clusteredFlag)
 #define lightingFlag
 #endif
 
+#ifdef shadowFlag
+uniform mat4 u_shadowView;
+uniform vec3 u_shadowCamDir;
+
+// The light space position of the vertex, with its view depth in w, and the diffuse of the shadowed light.
+varying vec4 v_lightPos;
+varying vec4 v_shadowLight;
+#endif
+
+#ifdef clusteredFlag
+uniform mat4 u_view;
+varying vec3 v_position;
+varying float v_viewZ;
+#endif
+
 #ifdef lightingFlag
 varying vec4 v_lightDiffuse;
 
@@ -38,42 +113,84 @@ uniform vec4 u_ambLights;
 #endif
 
 #if numDirLights > 0
-struct DirLights{
-    vec4 color;
-    vec3 dir;
-};
 uniform int u_dirLightsSize;
-uniform DirLights u_dirLights[numDirLights];
+uniform vec4 u_dirLightsColor[numDirLights];
+uniform vec3 u_dirLightsDir[numDirLights];
 #endif
 #endif
 
 void main(){
+    #ifdef compressedFlag
+    vec4 position = vec4(u_posOffset + a_position.xyz * u_posScale, 1.0);
+    vec4 normal = vec4(octDecode(a_normal.xy), 0.0);
+    #else
+    vec4 position = a_position;
+    vec4 normal = a_normal;
+    #endif
+
+    #ifdef numWeights
+    vec4 r0 = vec4(0.0), r1 = vec4(0.0), r2 = vec4(0.0);
+    skin(r0, r1, r2, a_boneWeight0);
+    #if numWeights > 1
+    skin(r0, r1, r2, a_boneWeight1);
+    #endif
+    #if numWeights > 2
+    skin(r0, r1, r2, a_boneWeight2);
+    #endif
+    #if numWeights > 3
+    skin(r0, r1, r2, a_boneWeight3);
+    #endif
+
+    position = vec4(dot(r0, position), dot(r1, position), dot(r2, position), 1.0);
+    normal = vec4(dot(r0.xyz, normal.xyz), dot(r1.xyz, normal.xyz), dot(r2.xyz, normal.xyz), 0.0);
+    #endif
+
+    #if defined(diffuseTextureFlag) || defined(emissiveTextureFlag)
+    #ifdef compressedFlag
+    vec2 texCoord = u_uvDecode.xy + a_texCoord0 * u_uvDecode.zw;
+    #else
+    vec2 texCoord = a_texCoord0;
+    #endif
+    #endif
+
     #ifdef diffuseTextureFlag
-    v_diffuseUV = u_diffuseUV.xy + a_texCoord0 * u_diffuseUV.zw;
+    v_diffuseUV = u_diffuseUV.xy + texCoord * u_diffuseUV.zw;
     #endif
 
     #ifdef emissiveTextureFlag
-    v_emissiveUV = u_emissiveUV.xy + a_texCoord0 * u_emissiveUV.zw;
+    v_emissiveUV = u_emissiveUV.xy + texCoord * u_emissiveUV.zw;
     #endif
 
-    if(u_renderType == 0){
-        gl_Position = u_proj * u_trans * a_position;
-    }else if(u_renderType == 1){
-        mat4 view = u_trans;
-        vec4 translation = vec4(view[3][0], view[3][1], view[3][2], 0.0);
+    #if renderType == 1
+    mat4 view = u_trans;
+    vec4 translation = vec4(view[3][0], view[3][1], view[3][2], 0.0);
+
+    view[3][0] = u_camPos.x;
+    view[3][1] = u_camPos.y;
+
+    vec2 diff = u_camPos.xy - translation.xy;
+    vec4 pos = u_proj * view * position;
+    pos.xy *= u_scl;
 
-        view[3][0] = u_camPos.x;
-        view[3][1] = u_camPos.y;
+    pos -= vec4(diff * pos.z * 2.0415 / u_res, 0.0, 0.0);
+    gl_Position = pos;
+    #else
+    gl_Position = u_proj * u_trans * position;
+    #endif
 
-        vec2 diff = u_camPos.xy - translation.xy;
-        vec4 pos = u_proj * view * a_position;
-        pos.xy *= u_scl;
+    v_normal = normalize(u_normalMatrix * normal).xyz;
 
-        pos -= vec4(diff * pos.z * 2.0415 / u_res, 0.0, 0.0);
-        gl_Position = pos;
-    };
+    #ifdef clusteredFlag
+    vec4 world = u_trans * position;
+    v_position = world.xyz;
+    v_viewZ = -(u_view * world).z;
+    #endif
 
-    v_normal = normalize(u_normalMatrix * a_normal).xyz;
+    #ifdef shadowFlag
+    vec4 shadowWorld = u_trans * position;
+    v_lightPos = vec4((u_shadowView * shadowWorld).xyz, dot(shadowWorld.xyz - u_camPos, u_shadowCamDir));
+    v_shadowLight = vec4(0.0);
+    #endif
 
     #ifdef lightingFlag
     #ifdef ambLightsFlag
@@ -84,11 +201,16 @@ void main(){
 
     #if numDirLights > 0
     for(int i = 0; i < u_dirLightsSize; i++){
-        DirLights dirLight = u_dirLights[i];
-        float NdotL = clamp(dot(v_normal, -dirLight.dir), 0.0, 1.0);
-        vec4 value = dirLight.color * dirLight.color.a * NdotL;
+        vec4 color = u_dirLightsColor[i];
+        float NdotL = clamp(dot(v_normal, -u_dirLightsDir[i]), 0.0, 1.0);
+        vec4 value = color * color.a * NdotL;
 
         v_lightDiffuse += value;
+
+        // Only the first directional light casts shadows.
+        #ifdef shadowFlag
+        if(i == 0) v_shadowLight = value;
+        #endif
     }
     #endif
     #endif
@@ -0,0 +1,506 @@
+package model;
+
+import arc.math.geom.*;
+import arc.struct.*;
+import arc.util.*;
+import model.part.*;
+import model.part.Anim.*;
+
+/**
+ * A {@link ModelInstance} animation state machine. {@link State}s hold resolved {@link Anim}s along with their playback
+ * settings, and are played on {@link Layer}s which crossfade between their previous and current states. Layers are
+ * blended in order; every layer only affects the nodes its states animate, so upper layers may override parts of the
+ * pose below them.
+ * <p>
+ * States and layers are set up once; {@link #update(float)} then does no lookups by ID and no allocation. Unlike
+ * {@link Anims}, keyframes are interpolated.
+ */
+public class AnimController{
+    /** The amount of floats per node in a pose; translation, rotation, and scaling. */
+    public static final int stride = 10;
+
+    /** The target model instance to be animated. */
+    public final ModelInstance model;
+    /** The layers of this controller, blended in order. */
+    public final Seq<Layer> layers = new Seq<>(2);
+    /** If not null, sampled poses are looked up in and stored to this cache, which may be shared between controllers. */
+    public @Nullable PoseCache cache;
+
+    /** The nodes animated by any state, each with {@link #stride} floats of translation, rotation, and scaling. */
+    private final Seq<Node> nodes = new Seq<>();
+    private final ObjectIntMap<Node> slots = new ObjectIntMap<>();
+    private final ObjectMap<String, State> states = new ObjectMap<>();
+    private float[] rest = {}, pose = {}, from = {}, to = {};
+    private final Vec3 tmpTrns = new Vec3(), tmpScl = new Vec3();
+    private final Quat tmpRot = new Quat();
+
+    /** Constructs an animation controller targeting the specified {@link ModelInstance}, with one layer. */
+    public AnimController(ModelInstance model){
+        this.model = model;
+        layer();
+    }
+
+    /** Adds a layer to be blended over the previous ones. @return The added layer. */
+    public Layer layer(){
+        var layer = new Layer();
+        layers.add(layer);
+        return layer;
+    }
+
+    /** @return The layer at the given index. */
+    public Layer layer(int index){
+        return layers.get(index);
+    }
+
+    /**
+     * Gets or creates a state playing the instance's {@link Anim} with the specified ID. Should only be called during
+     * set-up; keep the returned reference instead of looking it up every frame.
+     */
+    public State state(String id){
+        var state = states.get(id);
+        if(state == null){
+            var anim = model.anim(id);
+            if(anim == null) throw new IllegalArgumentException("Animation with ID '" + id + "' not found.");
+
+            states.put(id, state = new State(anim));
+        }
+        return state;
+    }
+
+    private int slot(Node node){
+        int slot = slots.get(node, -1);
+        if(slot == -1){
+            slot = nodes.size;
+            nodes.add(node);
+            slots.put(node, slot);
+
+            int size = nodes.size * stride;
+            rest = grow(rest, size);
+            pose = grow(pose, size);
+            from = grow(from, size);
+            to = grow(to, size);
+
+            int o = slot * stride;
+            var r = node.rotation;
+            set(rest, o, node.translation.x, node.translation.y, node.translation.z, r.x, r.y, r.z, r.w, node.scaling.x, node.scaling.y, node.scaling.z);
+        }
+        return slot;
+    }
+
+    private static float[] grow(float[] array, int size){
+        if(array.length >= size) return array;
+
+        var out = new float[Math.max(size, array.length * 2)];
+        System.arraycopy(array, 0, out, 0, array.length);
+        return out;
+    }
+
+    private static void set(float[] pose, int o, float tx, float ty, float tz, float rx, float ry, float rz, float rw, float sx, float sy, float sz){
+        pose[o] = tx;
+        pose[o + 1] = ty;
+        pose[o + 2] = tz;
+        pose[o + 3] = rx;
+        pose[o + 4] = ry;
+        pose[o + 5] = rz;
+        pose[o + 6] = rw;
+        pose[o + 7] = sx;
+        pose[o + 8] = sy;
+        pose[o + 9] = sz;
+    }
+
+    /**
+     * Advances every layer, fires crossed events, and applies the blended pose to the animated nodes' local transforms,
+     * recalculating the instance's transforms afterwards.
+     * @param delta The elapsed time, in the same unit as {@link Anim#duration}.
+     */
+    public void update(float delta){
+        for(var layer : layers) layer.advance(delta);
+        apply();
+    }
+
+    /** Applies the blended pose of every layer at their current times without advancing them. */
+    public void apply(){
+        int size = nodes.size * stride;
+        System.arraycopy(rest, 0, pose, 0, size);
+
+        for(var layer : layers){
+            if(layer.current == null || layer.weight <= 0f) continue;
+
+            // Nodes the layer's states don't animate keep the pose below the layer.
+            System.arraycopy(pose, 0, to, 0, size);
+            sample(layer.current, layer.current.time(layer.time), to);
+
+            if(layer.previous != null){
+                System.arraycopy(pose, 0, from, 0, size);
+                sample(layer.previous, layer.previous.time(layer.previousTime), from);
+                blend(from, to, layer.fade(), to, size);
+            }
+
+            blend(pose, to, layer.weight, pose, size);
+        }
+
+        var t = tmpTrns;
+        var s = tmpScl;
+        var r = tmpRot;
+        for(int i = 0; i < nodes.size; i++){
+            var node = nodes.get(i);
+            int o = i * stride;
+
+            node.animated = true;
+            node.localTrns.set(
+                t.set(pose[o], pose[o + 1], pose[o + 2]),
+                r.set(pose[o + 3], pose[o + 4], pose[o + 5], pose[o + 6]),
+                s.set(pose[o + 7], pose[o + 8], pose[o + 9])
+            );
+        }
+
+        model.calcTrns();
+    }
+
+    /** Stops every layer and restores the animated nodes' default transforms. */
+    public void reset(){
+        for(var layer : layers) layer.stop();
+        for(var node : nodes) node.animated = false;
+        model.calcTrns();
+    }
+
+    private void sample(State state, float time, float[] out){
+        if(cache != null){
+            cache.sample(state.anim, time, state.slots, out);
+        }else{
+            sample(state.anim, time, state.slots, out);
+        }
+    }
+
+    /**
+     * Samples the translation, rotation, and scaling of every node animation at the given time, {@link #stride} floats
+     * each. Channels without keyframes are left untouched.
+     * @param slots The pose slot of every node animation, or null to write them in order.
+     */
+    public static void sample(Anim anim, float time, @Nullable int[] slots, float[] out){
+        var anims = anim.anims;
+        for(int i = 0; i < anims.size; i++){
+            var nodeAnim = anims.get(i);
+            int o = (slots == null ? i : slots[i]) * stride;
+
+            sampleVec(nodeAnim.trns, time, out, o);
+            sampleQuat(nodeAnim.rot, time, out, o + 3);
+            sampleVec(nodeAnim.scl, time, out, o + 7);
+        }
+    }
+
+    /** Linearly blends two poses, normalizing interpolated rotations along their shortest arc. */
+    private static void blend(float[] a, float[] b, float alpha, float[] out, int size){
+        if(alpha >= 1f){
+            if(b != out) System.arraycopy(b, 0, out, 0, size);
+            return;
+        }
+
+        for(int o = 0; o < size; o += stride){
+            for(int k = 0; k < 3; k++){
+                out[o + k] = a[o + k] + (b[o + k] - a[o + k]) * alpha;
+                out[o + 7 + k] = a[o + 7 + k] + (b[o + 7 + k] - a[o + 7 + k]) * alpha;
+            }
+            nlerp(a, o + 3, b, o + 3, alpha, out, o + 3);
+        }
+    }
+
+    /**
+     * Writes the linearly interpolated value of the keyframes at the given time, holding the first and last values
+     * outside of their range. Leaves the output untouched if there are no keyframes.
+     */
+    public static void sampleVec(Seq<Keyframe<Vec3>> frames, float time, float[] out, int offset){
+        if(frames.isEmpty()) return;
+
+        int i = search(frames, time);
+        var a = frames.get(i).value;
+        if(i == frames.size - 1 || time <= frames.get(i).time){
+            out[offset] = a.x;
+            out[offset + 1] = a.y;
+            out[offset + 2] = a.z;
+            return;
+        }
+
+        var b = frames.get(i + 1).value;
+        float alpha = alpha(frames, i, time);
+        out[offset] = a.x + (b.x - a.x) * alpha;
+        out[offset + 1] = a.y + (b.y - a.y) * alpha;
+        out[offset + 2] = a.z + (b.z - a.z) * alpha;
+    }
+
+    /** {@link #sampleVec(Seq, float, float[], int)}, but for rotations interpolated along their shortest arc. */
+    public static void sampleQuat(Seq<Keyframe<Quat>> frames, float time, float[] out, int offset){
+        if(frames.isEmpty()) return;
+
+        int i = search(frames, time);
+        var a = frames.get(i).value;
+        if(i == frames.size - 1 || time <= frames.get(i).time){
+            out[offset] = a.x;
+            out[offset + 1] = a.y;
+            out[offset + 2] = a.z;
+            out[offset + 3] = a.w;
+            return;
+        }
+
+        var b = frames.get(i + 1).value;
+        float alpha = alpha(frames, i, time);
+
+        float dot = a.x * b.x + a.y * b.y + a.z * b.z + a.w * b.w, sign = dot < 0f ? -1f : 1f;
+        float
+            x = a.x + (b.x * sign - a.x) * alpha,
+            y = a.y + (b.y * sign - a.y) * alpha,
+            z = a.z + (b.z * sign - a.z) * alpha,
+            w = a.w + (b.w * sign - a.w) * alpha;
+        normalize(x, y, z, w, out, offset);
+    }
+
+    private static void nlerp(float[] a, int ao, float[] b, int bo, float alpha, float[] out, int offset){
+        float dot = a[ao] * b[bo] + a[ao + 1] * b[bo + 1] + a[ao + 2] * b[bo + 2] + a[ao + 3] * b[bo + 3], sign = dot < 0f ? -1f : 1f;
+        float
+            x = a[ao] + (b[bo] * sign - a[ao]) * alpha,
+            y = a[ao + 1] + (b[bo + 1] * sign - a[ao + 1]) * alpha,
+            z = a[ao + 2] + (b[bo + 2] * sign - a[ao + 2]) * alpha,
+            w = a[ao + 3] + (b[bo + 3] * sign - a[ao + 3]) * alpha;
+        normalize(x, y, z, w, out, offset);
+    }
+
+    private static void normalize(float x, float y, float z, float w, float[] out, int offset){
+        float len = (float)Math.sqrt(x * x + y * y + z * z + w * w);
+        if(len == 0f){
+            x = y = z = 0f;
+            w = len = 1f;
+        }
+
+        out[offset] = x / len;
+        out[offset + 1] = y / len;
+        out[offset + 2] = z / len;
+        out[offset + 3] = w / len;
+    }
+
+    /** @return The index of the last keyframe at or before the given time, or 0 if the time precedes all of them. */
+    private static int search(Seq<? extends Keyframe<?>> frames, float time){
+        int min = 0, max = frames.size - 1;
+        while(min < max){
+            int mid = (min + max + 1) / 2;
+            if(frames.get(mid).time <= time){
+                min = mid;
+            }else{
+                max = mid - 1;
+            }
+        }
+        return min;
+    }
+
+    private static float alpha(Seq<? extends Keyframe<?>> frames, int i, float time){
+        float start = frames.get(i).time, end = frames.get(i + 1).time;
+        return end > start ? (time - start) / (end - start) : 1f;
+    }
+
+    /** Defines how a state's time maps onto its animation once it passes the animation's duration. */
+    public enum LoopMode{
+        /** Holds the last keyframe. */
+        once,
+        /** Wraps around to the start. */
+        loop,
+        /** Alternates between playing forwards and backwards. */
+        pingPong
+    }
+
+    /** A resolved {@link Anim} with its playback settings and events. */
+    public class State{
+        /** The played animation. */
+        public final Anim anim;
+        /** The speed multiplier of this state's playback. */
+        public float speed = 1f;
+        /** How this state's time maps onto its animation. */
+        public LoopMode mode = LoopMode.loop;
+        /** The crossfade duration used when a layer switches to this state, unless a transition specifies otherwise. */
+        public float fade;
+        /** If not null, the state played once this state has finished; only applies to {@link LoopMode#once}. */
+        public @Nullable State next;
+
+        final int[] slots;
+        final FloatSeq eventTimes = new FloatSeq();
+        final Seq<Runnable> events = new Seq<>();
+        final ObjectFloatMap<State> transitions = new ObjectFloatMap<>();
+
+        State(Anim anim){
+            this.anim = anim;
+
+            slots = new int[anim.anims.size];
+            for(int i = 0; i < slots.length; i++) slots[i] = slot(anim.anims.get(i).node);
+        }
+
+        /** Sets the crossfade duration used when a layer switches from this state to the given state. @return This state. */
+        public State transition(State to, float fade){
+            transitions.put(to, fade);
+            return this;
+        }
+
+        /**
+         * Registers a callback fired whenever a layer's playback crosses the given time of this state's animation, in
+         * either direction, including reverse playback with a negative speed. Events crossed in one update are fired in
+         * the order they are crossed. @return This state.
+         */
+        public State event(float time, Runnable callback){
+            // Kept sorted by time, so crossed events are fired in order either way.
+            int index = 0;
+            while(index < eventTimes.size && eventTimes.get(index) <= time) index++;
+
+            eventTimes.insert(index, time);
+            events.insert(index, callback);
+            return this;
+        }
+
+        /** @return The duration of this state's animation. */
+        public float duration(){
+            return anim.duration;
+        }
+
+        /** @return The time within the animation at the given playback time, according to {@link #mode}. */
+        public float time(float time){
+            float duration = anim.duration;
+            if(duration <= 0f) return 0f;
+
+            return switch(mode){
+                case once -> Math.min(Math.max(time, 0f), duration);
+                case loop -> ((time % duration) + duration) % duration;
+                case pingPong -> {
+                    float t = ((time % (duration * 2f)) + duration * 2f) % (duration * 2f);
+                    yield t > duration ? duration * 2f - t : t;
+                }
+            };
+        }
+
+        /** @return Whether playback at the given time has reached the end of a {@link LoopMode#once} animation. */
+        public boolean finished(float time){
+            return mode == LoopMode.once && time >= anim.duration;
+        }
+
+        void fire(float start, float end){
+            if(eventTimes.isEmpty() || end == start) return;
+
+            // Events at the time playback leaves are skipped, except when playback just began forwards.
+            boolean forward = end > start;
+            float duration = anim.duration;
+            if(mode == LoopMode.once || duration <= 0f){
+                float from = Math.min(Math.max(start, 0f), duration), to = Math.min(Math.max(end, 0f), duration);
+                fireRange(from, to, forward && start == 0f);
+                return;
+            }
+
+            // Only the two cycles nearest to the end are fired if a single update spans more than that.
+            int lower = (int)Math.floor(Math.min(start, end) / duration);
+            int upper = (int)Math.floor(Math.max(start, end) / duration);
+            if(forward){
+                lower = Math.max(lower, upper - 1);
+            }else{
+                upper = Math.min(upper, lower + 1);
+            }
+
+            for(int i = 0; i <= upper - lower; i++){
+                int cycle = forward ? lower + i : upper - i;
+                float base = cycle * duration;
+                float from = Math.min(Math.max(start, base), base + duration) - base;
+                float to = Math.min(Math.max(end, base), base + duration) - base;
+
+                // Looping wraps between distinct times, so entering a cycle crosses its first events; ping-pong turns
+                // around at a single time, which was already fired when arriving at it.
+                boolean entered = forward ? start < base : start > base + duration;
+                boolean inclusive = (forward && start == 0f) || (mode == LoopMode.loop && entered);
+                if(mode == LoopMode.pingPong && (cycle & 1) == 1){
+                    fireRange(duration - from, duration - to, inclusive);
+                }else{
+                    fireRange(from, to, inclusive);
+                }
+            }
+        }
+
+        /**
+         * Fires the events crossed moving from one time to another, in the order they are crossed: those within
+         * (from, to], or [from, to] if inclusive, and likewise when moving backwards.
+         */
+        private void fireRange(float from, float to, boolean inclusive){
+            var times = eventTimes.items;
+            if(from <= to){
+                for(int i = 0; i < eventTimes.size; i++){
+                    float t = times[i];
+                    if((t > from || (inclusive && t == from)) && t <= to) events.get(i).run();
+                }
+            }else{
+                for(int i = eventTimes.size - 1; i >= 0; i--){
+                    float t = times[i];
+                    if((t < from || (inclusive && t == from)) && t >= to) events.get(i).run();
+                }
+            }
+        }
+    }
+
+    /** Plays a state, crossfading from the previously played one. */
+    public class Layer{
+        /** The blend weight of this layer over the layers below it, in [0, 1]. */
+        public float weight = 1f;
+        /** The speed multiplier of this layer's playback, applied over its states' own speeds. */
+        public float speed = 1f;
+
+        /** The currently played state, or null if none. */
+        public @Nullable State current;
+        /** The playback time of {@link #current}. May be set directly to seek. */
+        public float time;
+        /** The state being faded out, or null if none. */
+        public @Nullable State previous;
+        /** The playback time of {@link #previous}. */
+        public float previousTime;
+
+        float fadeTime, fadeDuration;
+
+        /** Switches to the state, crossfading with the transition from the current state or the state's own fade duration. */
+        public void play(State state){
+            float fade = state.fade;
+            if(current != null) fade = current.transitions.get(state, fade);
+            play(state, fade);
+        }
+
+        /** Switches to the state from its start, crossfading from the current state over the given duration. */
+        public void play(State state, float fade){
+            if(current != null && fade > 0f){
+                previous = current;
+                previousTime = time;
+                fadeTime = 0f;
+                fadeDuration = fade;
+            }else{
+                previous = null;
+            }
+
+            current = state;
+            time = 0f;
+        }
+
+        /** Stops playback, immediately clearing both states. */
+        public void stop(){
+            current = previous = null;
+            time = previousTime = 0f;
+        }
+
+        /** @return The blend factor from {@link #previous} to {@link #current}, in [0, 1]. */
+        public float fade(){
+            return previous == null || fadeDuration <= 0f ? 1f : Math.min(fadeTime / fadeDuration, 1f);
+        }
+
+        void advance(float delta){
+            if(previous != null){
+                previousTime += delta * speed * previous.speed;
+                fadeTime += delta;
+                if(fadeTime >= fadeDuration) previous = null;
+            }
+
+            if(current == null) return;
+
+            float last = time;
+            time += delta * speed * current.speed;
+            current.fire(last, time);
+
+            if(current.next != null && current.finished(time)) play(current.next);
+        }
+    }
+}
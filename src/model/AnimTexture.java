@@ -0,0 +1,220 @@
+package model;
+
+import arc.*;
+import arc.graphics.*;
+import arc.graphics.gl.*;
+import arc.math.geom.*;
+import arc.struct.*;
+import arc.util.*;
+import model.AnimController.*;
+import model.part.*;
+import model.part.Node.*;
+
+/**
+ * A vertex animation texture; every {@link Anim} of a {@link Model} sampled at a fixed rate and baked into the bone
+ * palettes of one of its skinned {@link NodePart}s, stored as a float texture. Each row is one sampled pose, and each
+ * bone takes three texels holding the rows of its affine matrix, in the layout of
+ * {@link Skin#palette(Mat3D, float[], int)}.
+ * <p>
+ * {@link Skin}s playing a baked {@link Clip} skip their palette entirely; the model shader fetches and blends the two
+ * closest poses in the vertex stage, so animated instances cost no more CPU time than static ones. Baking is done on
+ * construction through an {@link AnimController} and is pure CPU work, while the texture is uploaded on the first
+ * {@link #bind(int)}. Requires floating point textures and vertex texture fetches, as reported by {@link #supported()}.
+ */
+public class AnimTexture implements Disposable{
+    /** The texture unit this texture is bound to. */
+    public static final int unit = TexUnits.vat;
+
+    private static final int rgba32f = 0x8814, maxVertexTextureUnits = 0x8B4C;
+    private static int support = -1;
+
+    /** The rate at which the animations are sampled, in poses per second. */
+    public final float fps;
+    /** The ID of the skinned part's node. */
+    public final String nodeId;
+    /** The index of the skinned part in its node's {@link Node#parts}. */
+    public final int partIndex;
+    /** The amount of bones per pose. */
+    public final int numBones;
+    /** The baked clips, ordered by their rows. */
+    public final Seq<Clip> clips = new Seq<>();
+    /** The size of the texture in texels. */
+    public final int width, height;
+    /** The baked poses, four floats per texel. */
+    public final float[] data;
+
+    private int handle;
+
+    /**
+     * Bakes all animations of the model into the palettes of the given skinned part.
+     * @param nodeId    The ID of the skinned part's node.
+     * @param partIndex The index of the skinned part in its node's {@link Node#parts}.
+     * @param fps       The rate at which the animations are sampled, in poses per second.
+     */
+    public AnimTexture(Model model, String nodeId, int partIndex, float fps){
+        if(fps <= 0f) throw new IllegalArgumentException("Sampling rate must be positive.");
+
+        this.fps = fps;
+        this.nodeId = nodeId;
+        this.partIndex = partIndex;
+
+        var instance = new ModelInstance(model);
+        var skin = skin(instance);
+        var node = instance.node(nodeId);
+        numBones = skin.bones.length;
+
+        // Sorted so that the layout doesn't depend on hashing order.
+        var anims = new Seq<Anim>();
+        instance.anims(anims::add);
+        anims.sort((a, b) -> a.id.compareTo(b.id));
+
+        int rows = 0;
+        for(var anim : anims){
+            int frames = anim.duration > 0f ? Math.max(Math.round(anim.duration * fps), 1) + 1 : 1;
+            var clip = new Clip(anim.id, rows, frames, anim.duration);
+            clips.add(clip);
+            rows += clip.frames;
+        }
+
+        width = numBones * 3;
+        height = Math.max(rows, 1);
+        data = new float[width * height * 4];
+
+        var control = new AnimController(instance);
+        var layer = control.layer(0);
+        for(var clip : clips){
+            var state = control.state(clip.id);
+            state.mode = LoopMode.once;
+            layer.play(state, 0f);
+
+            for(int f = 0; f < clip.frames; f++){
+                layer.time = clip.frames == 1 ? 0f : clip.duration * f / (clip.frames - 1);
+                control.apply();
+                skin.palette(node.worldTrns, data, (clip.start + f) * width * 4);
+            }
+        }
+    }
+
+    /** @return Whether float textures and vertex texture fetches are available. */
+    public static boolean supported(){
+        if(support == -1){
+            boolean floats = Core.graphics.isGL30Available() || Core.graphics.supportsExtension("GL_OES_texture_float");
+            support = floats && Gl.getInt(maxVertexTextureUnits) > 0 ? 1 : 0;
+        }
+        return support == 1;
+    }
+
+    /**
+     * @return The skin of this texture's part in the given instance of the baked model.
+     * @throws IllegalArgumentException If the part doesn't exist or isn't skinned.
+     */
+    public Skin skin(ModelInstance instance){
+        var node = instance.node(nodeId);
+        if(node == null) throw new IllegalArgumentException("Node with ID '" + nodeId + "' not found.");
+        if(partIndex < 0 || partIndex >= node.parts.size) throw new IllegalArgumentException("Node '" + nodeId + "' has no part " + partIndex + ".");
+
+        var skin = node.parts.get(partIndex).skin;
+        if(skin == null) throw new IllegalArgumentException("Part " + partIndex + " of node '" + nodeId + "' isn't skinned.");
+        return skin;
+    }
+
+    /**
+     * Makes the instance's part play the given clip of this texture.
+     * @return The instance's skin, whose {@link Skin#time} advances the clip.
+     */
+    public Skin play(ModelInstance instance, String clip){
+        var skin = skin(instance);
+        skin.texture = this;
+        skin.clip = clip(clip);
+        skin.time = 0f;
+        return skin;
+    }
+
+    /** @return The clip with the specified ID. */
+    public Clip clip(String id){
+        var clip = clips.find(c -> c.id.equals(id));
+        if(clip == null) throw new IllegalArgumentException("Clip with ID '" + id + "' not found.");
+        return clip;
+    }
+
+    /**
+     * Computes the two poses to be blended at the given time of a clip.
+     * @param loop Whether the time wraps around the clip's duration instead of being clamped.
+     * @param out  Receives the rows of the two poses as X and Y, and the blend factor between them as Z.
+     */
+    public static Vec3 frame(Clip clip, float time, boolean loop, Vec3 out){
+        if(clip.frames == 1 || clip.duration <= 0f) return out.set(clip.start, clip.start, 0f);
+
+        float t = loop ? ((time % clip.duration) + clip.duration) % clip.duration : Math.max(Math.min(time, clip.duration), 0f);
+        float f = t / clip.duration * (clip.frames - 1);
+
+        int first = Math.min((int)f, clip.frames - 2);
+        return out.set(clip.start + first, clip.start + first + 1, f - first);
+    }
+
+    /** Binds this texture to the given unit, uploading it first if needed. */
+    public void bind(int unit){
+        Gl.activeTexture(Gl.texture0 + unit);
+        if(handle == 0){
+            var buffer = Buffers.newFloatBuffer(data.length);
+            buffer.put(data);
+            buffer.flip();
+
+            handle = Gl.genTexture();
+            Gl.bindTexture(Gl.texture2D, handle);
+            Gl.texParameteri(Gl.texture2D, Gl.textureMinFilter, Gl.nearest);
+            Gl.texParameteri(Gl.texture2D, Gl.textureMagFilter, Gl.nearest);
+            Gl.texParameteri(Gl.texture2D, Gl.textureWrapS, Gl.clampToEdge);
+            Gl.texParameteri(Gl.texture2D, Gl.textureWrapT, Gl.clampToEdge);
+            Gl.texImage2D(Gl.texture2D, 0, Core.graphics.isGL30Available() ? rgba32f : Gl.rgba, width, height, 0, Gl.rgba, Gl.floatV, buffer);
+        }else{
+            Gl.bindTexture(Gl.texture2D, handle);
+        }
+        Gl.activeTexture(Gl.texture0);
+    }
+
+    /**
+     * Binds this texture and uploads the pose of the given frame, as computed by
+     * {@link #frame(Clip, float, boolean, Vec3)}.
+     */
+    public void apply(Shader shader, Vec3 frame){
+        bind(unit);
+        shader.setUniformi("u_vat", unit);
+        shader.setUniformf("u_vatSize", 1f / width, 1f / height);
+        shader.setUniformf("u_vatFrame", frame);
+        if(RenderStats.enabled){
+            RenderStats.frame.textureBinds++;
+            RenderStats.frame.uniformUploads += 3;
+        }
+    }
+
+    /** Forgets the texture handle, e.g. after the GL context was lost, so it's uploaded again on the next bind. */
+    public void invalidate(){
+        handle = 0;
+    }
+
+    @Override
+    public void dispose(){
+        if(handle != 0) Gl.deleteTexture(handle);
+        handle = 0;
+    }
+
+    /** A baked animation, occupying a contiguous range of rows. */
+    public static class Clip{
+        /** The ID of the baked {@link Anim}. */
+        public final String id;
+        /** The row of the first pose. */
+        public final int start;
+        /** The amount of poses, the last one being sampled exactly at the end of the animation. */
+        public final int frames;
+        /** The duration of the animation. */
+        public final float duration;
+
+        public Clip(String id, int start, int frames, float duration){
+            this.id = id;
+            this.start = start;
+            this.frames = frames;
+            this.duration = duration;
+        }
+    }
+}
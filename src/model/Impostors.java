@@ -0,0 +1,365 @@
+package model;
+
+import arc.graphics.*;
+import arc.graphics.g2d.*;
+import arc.graphics.g3d.*;
+import arc.graphics.gl.*;
+import arc.math.*;
+import arc.math.geom.*;
+import arc.struct.*;
+import arc.util.*;
+import arc.util.pooling.*;
+import model.Model.*;
+import model.ModelShader.*;
+import model.attribute.*;
+
+/**
+ * Pre-renders {@link Model}s into atlas pages from several angles around their up axis, and draws distant
+ * {@link ModelInstance}s as batched quads of those renders instead of their meshes.
+ * <p>
+ * Impostors are meant for the top-down views of {@link RenderType#hybrid2D}, where the model's world XY plane is the 2D
+ * plane and +Z points towards the viewer. Frames are rendered looking down from {@link #elevation} degrees above the XY
+ * plane, and the frame closest to an instance's rotation around Z is selected, with the remainder applied as quad
+ * rotation.
+ */
+public class Impostors implements Disposable{
+    /**
+     * The blending impostors are drawn with. Frames are rendered onto a transparent page, so their colors are already
+     * multiplied by their alpha.
+     */
+    public static final Blending premultiplied = new Blending(Gl.one, Gl.oneMinusSrcAlpha);
+
+    /** The amount of frames rendered around the up axis of every model. */
+    public final int yaws;
+    /** The layout of the frames in the atlas pages. */
+    public final Layout layout;
+    /** The elevation of the frames' camera above the model's XY plane in degrees; 90 means straight top-down. */
+    public float elevation = 90f;
+    /** Instances whose bounding sphere covers less than this fraction of the screen height are drawn as impostors. */
+    public float screenSize = 0.05f;
+
+    /** The atlas pages, available after {@link #bake(Environment)}. */
+    public final Seq<FrameBuffer> pages = new Seq<>();
+
+    private final ObjectMap<Model, Impostor> impostors = new ObjectMap<>();
+    private final Seq<Impostor> ordered = new Seq<>();
+    private final Seq<ModelInstance> far = new Seq<>();
+    private final Vec3 tmp = new Vec3();
+
+    /**
+     * @param yaws     The amount of frames rendered around the up axis of every model.
+     * @param cellSize The size of every frame in pixels.
+     * @param pageSize The size of every atlas page in pixels.
+     */
+    public Impostors(int yaws, int cellSize, int pageSize){
+        this.yaws = yaws;
+        layout = new Layout(cellSize, pageSize);
+    }
+
+    /** Registers a model to be pre-rendered, bounded by the spheres of its node parts. */
+    public Impostor add(Model model){
+        var instance = new ModelInstance(model);
+        instance.calcTrns();
+
+        var bounds = new BoundingBox();
+        bounds.inf();
+        instance.nodes(root -> root.each(node -> {
+            for(var part : node.parts){
+                var mesh = part.mesh;
+                tmp.set(mesh.center).mul(node.worldTrns);
+
+                float r = mesh.radius * node.worldTrns.getScaleX();
+                bounds.ext(tmp.x - r, tmp.y - r, tmp.z - r);
+                bounds.ext(tmp.x + r, tmp.y + r, tmp.z + r);
+            }
+        }));
+
+        var center = bounds.getCenter(new Vec3());
+        float radius = bounds.isValid() ? bounds.getDimensions(tmp).len() / 2f : 0f;
+        return add(model, center, radius);
+    }
+
+    /** Registers a model to be pre-rendered with the given local bounding sphere. */
+    public Impostor add(Model model, Vec3 center, float radius){
+        var impostor = new Impostor(model, center, radius, ordered.size * yaws);
+        impostors.put(model, impostor);
+        ordered.add(impostor);
+        return impostor;
+    }
+
+    /** @return The impostor of the model, or null if it isn't registered. */
+    public @Nullable Impostor get(Model model){
+        return impostors.get(model);
+    }
+
+    /** @return The amount of frames of all registered models. */
+    public int frames(){
+        return ordered.size * yaws;
+    }
+
+    /**
+     * Renders every registered model into the atlas pages, disposing previous pages.
+     * @param env The environment the models are lit with. May be null.
+     */
+    public void bake(@Nullable Environment env){
+        pages.each(FrameBuffer::dispose);
+        pages.clear();
+
+        int numPages = layout.pages(frames());
+        for(int i = 0; i < numPages; i++) pages.add(new FrameBuffer(Pixmap.Format.rgba8888, layout.pageSize, layout.pageSize, true));
+
+        var prevType = ModelShader.type;
+        ModelShader.type = RenderType.def;
+
+        var cam = new Camera3D();
+        cam.perspective = false;
+
+        var pool = Pools.get(ModelView.class, ModelView::new);
+        var buffer = new TrnsBuffer();
+        var views = new Seq<ModelView>();
+
+        for(int p = 0; p < numPages; p++){
+            var page = pages.get(p);
+            page.begin(Color.clear);
+
+            Gl.enable(Gl.depthTest);
+            Gl.enable(Gl.scissorTest);
+            Gl.depthMask(true);
+            Gl.depthFunc(Gl.lequal);
+
+            for(var impostor : ordered){
+                var instance = new ModelInstance(impostor.model);
+                instance.calcTrns();
+
+                for(int f = 0; f < yaws; f++){
+                    int cell = impostor.first + f;
+                    if(layout.page(cell) != p) continue;
+
+                    int x = layout.x(cell), y = layout.y(cell);
+                    Gl.viewport(x, y, layout.cellSize, layout.cellSize);
+                    Gl.scissor(x, y, layout.cellSize, layout.cellSize);
+                    Gl.clearColor(0f, 0f, 0f, 0f);
+                    Gl.clear(Gl.colorBufferBit | Gl.depthBufferBit);
+
+                    setCamera(cam, impostor, f);
+                    instance.views(pool, buffer, views);
+                    render(views, cam, env);
+
+                    pool.freeAll(views);
+                    views.clear();
+                    buffer.clear();
+                }
+            }
+
+            Gl.disable(Gl.scissorTest);
+            Gl.disable(Gl.depthTest);
+            page.end();
+        }
+
+        ModelShader.type = prevType;
+
+        var uv = new float[4];
+        for(var impostor : ordered){
+            for(int f = 0; f < yaws; f++){
+                int cell = impostor.first + f;
+
+                var region = new TextureRegion(pages.get(layout.page(cell)).getTexture());
+                layout.uv(cell, uv);
+                region.set(uv[0], uv[1], uv[2], uv[3]);
+                impostor.frames[f] = region;
+            }
+        }
+    }
+
+    private void setCamera(Camera3D cam, Impostor impostor, int frame){
+        float
+            yaw = frame * 360f / yaws,
+            cosEl = Mathf.cosDeg(elevation), sinEl = Mathf.sinDeg(elevation),
+            cosYaw = Mathf.cosDeg(yaw), sinYaw = Mathf.sinDeg(yaw),
+            radius = Math.max(impostor.radius, 0.0001f);
+
+        // The direction towards the camera, and the screen's up vector, which is orthogonal to it.
+        tmp.set(cosEl * cosYaw, cosEl * sinYaw, sinEl);
+        cam.position.set(impostor.center).add(tmp.x * radius * 2f, tmp.y * radius * 2f, tmp.z * radius * 2f);
+        cam.direction.set(tmp).scl(-1f);
+        cam.up.set(-sinEl * cosYaw, -sinEl * sinYaw, cosEl);
+
+        cam.near = radius * 0.5f;
+        cam.far = radius * 4f;
+        cam.resize(radius * 2f, radius * 2f);
+        cam.update();
+    }
+
+    private static void render(Seq<ModelView> views, Camera3D cam, @Nullable Environment env){
+        ModelShader prev = null;
+        for(var view : views){
+            view.env = env;
+
+            var shader = ModelShader.get(view);
+            if(shader != prev){
+                shader.bind();
+                prev = shader;
+            }
+
+            shader.model = view;
+            shader.cam = cam;
+            shader.apply();
+            view.mesh.render(shader, true);
+        }
+    }
+
+    /**
+     * Partitions the instances into ones that should be drawn as impostors and ones that should be rendered normally.
+     * Instance transforms must be up-to-date.
+     * @param far  The array to be filled with the instances to be drawn as impostors.
+     * @param near The array to be filled with the instances to be rendered normally.
+     */
+    public void select(Iterable<ModelInstance> instances, Camera3D cam, Seq<ModelInstance> far, Seq<ModelInstance> near){
+        for(var instance : instances){
+            var impostor = impostors.get(instance.model);
+            if(impostor != null && Model.screenSize(cam, instance.trns, impostor.center, impostor.radius) < screenSize){
+                far.add(instance);
+            }else{
+                near.add(instance);
+            }
+        }
+    }
+
+    /**
+     * Draws the instances that are far enough as impostor quads with the current {@link Draw} projection, sorted by
+     * atlas page so that they batch into as few draw calls as possible. Must be called after {@link #bake(Environment)}.
+     * Quads are drawn with {@link #premultiplied} blending, after which {@link Draw} is reset to normal blending.
+     * @param near The array to be filled with the instances that should be rendered normally.
+     * @return The amount of instances drawn as impostors.
+     */
+    public int draw(Iterable<ModelInstance> instances, Camera3D cam, Seq<ModelInstance> near){
+        far.clear();
+        select(instances, cam, far, near);
+
+        far.sort(i -> layout.page(impostors.get(i.model).first));
+        Draw.blend(premultiplied);
+        for(var instance : far){
+            var impostor = impostors.get(instance.model);
+            var trns = instance.trns;
+
+            float rotation = rotation(trns);
+            int frame = frame(rotation, yaws);
+
+            tmp.set(impostor.center).mul(trns);
+            float size = impostor.radius * 2f * trns.getScaleX();
+            Draw.rect(impostor.frames[frame], tmp.x, tmp.y, size, size, residual(rotation, frame, yaws));
+        }
+
+        Draw.blend();
+
+        int count = far.size;
+        far.clear();
+        return count;
+    }
+
+    /** @return The rotation of the transform around the Z axis in degrees. */
+    public static float rotation(Mat3D trns){
+        return (float)Math.toDegrees(Math.atan2(trns.val[1], trns.val[0]));
+    }
+
+    /**
+     * @return The frame angle whose rendered up vector matches a top-down screen's up vector, given the instance's
+     * rotation.
+     */
+    public static float frameAngle(float rotation){
+        return ((-rotation - 90f) % 360f + 360f) % 360f;
+    }
+
+    /** @return The frame closest to the given instance rotation around the Z axis, in degrees. */
+    public static int frame(float rotation, int yaws){
+        return Math.round(frameAngle(rotation) / (360f / yaws)) % yaws;
+    }
+
+    /** @return The quad rotation making up for the difference between the instance's rotation and its frame's angle. */
+    public static float residual(float rotation, int frame, int yaws){
+        float diff = frame * 360f / yaws - frameAngle(rotation);
+        return ((diff + 180f) % 360f + 360f) % 360f - 180f;
+    }
+
+    @Override
+    public void dispose(){
+        pages.each(FrameBuffer::dispose);
+        pages.clear();
+    }
+
+    /** A registered model with its local bounding sphere and rendered frames. */
+    public class Impostor{
+        /** The pre-rendered model. */
+        public final Model model;
+        /** The local center of the model's bounding sphere. */
+        public final Vec3 center;
+        /** The local radius of the model's bounding sphere. */
+        public final float radius;
+        /** The cell of the first frame of this impostor. */
+        public final int first;
+        /** The rendered frames, available after {@link #bake(Environment)}. */
+        public final TextureRegion[] frames;
+
+        Impostor(Model model, Vec3 center, float radius, int first){
+            this.model = model;
+            this.center = new Vec3(center);
+            this.radius = radius;
+            this.first = first;
+            frames = new TextureRegion[yaws];
+        }
+    }
+
+    /** Lays out square cells in rows of square pages, filling every page before starting another one. */
+    public static class Layout{
+        /** The size of every cell in pixels. */
+        public final int cellSize;
+        /** The size of every page in pixels. */
+        public final int pageSize;
+        /** The amount of cells per row and per page. */
+        public final int perRow, perPage;
+
+        public Layout(int cellSize, int pageSize){
+            if(cellSize <= 0 || cellSize > pageSize) throw new IllegalArgumentException("Cell size must be within (0, " + pageSize + "].");
+
+            this.cellSize = cellSize;
+            this.pageSize = pageSize;
+            perRow = pageSize / cellSize;
+            perPage = perRow * perRow;
+        }
+
+        /** @return The page of the given cell. */
+        public int page(int cell){
+            return cell / perPage;
+        }
+
+        /** @return The horizontal pixel position of the given cell within its page. */
+        public int x(int cell){
+            return (cell % perPage) % perRow * cellSize;
+        }
+
+        /** @return The vertical pixel position of the given cell within its page. */
+        public int y(int cell){
+            return (cell % perPage) / perRow * cellSize;
+        }
+
+        /**
+         * Writes the texture coordinates of the given cell's frame within its page, as U, V, U2, and V2. The V axis of
+         * frame buffer textures follows GL window Y, so the cell's pixel position maps to V directly, and V is then
+         * flipped so that the frame is upright as a texture region.
+         * @return The given array.
+         */
+        public float[] uv(int cell, float[] out){
+            float size = (float)cellSize / pageSize, u = (float)x(cell) / pageSize, v = (float)y(cell) / pageSize;
+            out[0] = u;
+            out[1] = v + size;
+            out[2] = u + size;
+            out[3] = v;
+            return out;
+        }
+
+        /** @return The amount of pages needed to hold the given amount of cells. */
+        public int pages(int cells){
+            return (cells + perPage - 1) / perPage;
+        }
+    }
+}
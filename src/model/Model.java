@@ -2,12 +2,14 @@ package model;
 
 import arc.func.*;
 import arc.graphics.*;
+import arc.graphics.g3d.*;
 import arc.graphics.gl.*;
 import arc.math.geom.*;
 import arc.struct.*;
 import arc.util.*;
 import arc.util.pooling.Pool.*;
 import arc.util.serialization.*;
+import model.AnimTexture.*;
 import model.attribute.*;
 import model.attribute.Attribute.*;
 import model.attribute.Attribute.ColAttr.*;
@@ -21,9 +23,49 @@ import model.part.Node.*;
 public class Model implements Disposable{
     /** The model ID. */
     public String id = "";
+    /**
+     * The directory the texture file names of loaded materials are resolved against into {@link TexAttr#path}, ending
+     * with a slash unless empty. Set by {@link ModelLoader} to the model file's directory.
+     */
+    public String directory = "";
+
+    /** Load option; whether loaded materials are {@link Materials#intern(Material) interned} and shared across models. */
+    public boolean internMaterials = true;
+    /** Load option; whether mesh vertices are stored in the compressed layout of {@link VertexCodec}, halving their size. */
+    public boolean compressVertices = false;
+    /**
+     * Load option; if not null, reorders mesh triangles for vertex cache locality and vertices for fetch locality.
+     * Its statistics accumulate the ACMR of every loaded mesh.
+     */
+    public @Nullable MeshOptimizer optimizer;
+    /** Load option; the amount of simplified levels of detail generated for every triangle list part. */
+    public int lods = 0;
+    /** Load option; the triangle count of every level of detail relative to the previous one. */
+    public float lodRatio = 0.5f;
+    /**
+     * Load option; whether triangle list parts keep a {@link MeshBvh} of their triangles on the CPU, for
+     * {@link Picker picking}.
+     */
+    public boolean pickable = false;
+    /** Load option; whether the geometry of every uploaded mesh is kept in a {@link GeometryStore} after loading. */
+    public boolean retainGeometry = false;
+    /**
+     * Load option; if not null, the triangle list parts it accepts keep a copy of their triangles on the CPU as
+     * {@link MeshPart#occluder occluders}, taken from their full detail triangles.
+     */
+    public @Nullable Boolf<MeshPart> occluders;
+
+    /** The maximum amount of vertices a mesh may have to be addressable by 16-bit indices. */
+    public static final int maxShortVertices = 0x10000;
 
     /** All the {@link Mesh}s that this model contains. */
     public final Seq<Mesh> meshes = new Seq<>(2);
+    /** The index buffers of {@link #meshes}, in the narrowest index type that fits each. */
+    public final Seq<IndexBuffer> indexBuffers = new Seq<>(2);
+    /** The retained geometry of {@link #meshes} if this model was loaded with {@link #retainGeometry}, or null. */
+    public @Nullable GeometryStore geometry;
+    /** The file names of the textures this model was loaded with as asset dependencies, filled in by {@link ModelLoader}. */
+    public final Seq<String> textures = new Seq<>(2);
 
     /** All the {@link MeshPart}s that this model contains, mapped with their IDs. */
     protected final ObjectMap<String, MeshPart> meshParts = new ObjectMap<>(6);
@@ -31,6 +73,8 @@ public class Model implements Disposable{
     protected final ObjectMap<String, Node> nodes = new ObjectMap<>(6);
     /** All the {@link Material}s that this model contains, mapped with their IDs. */
     protected final ObjectMap<String, Material> materials = new ObjectMap<>(6);
+    /** The {@link Materials#intern(Material) interned} materials this model holds a reference to, released on disposal. */
+    protected final Seq<Material> interned = new Seq<>();
     /** All the {@link Anim}s that this model contains, mapped with their IDs. */
     protected final ObjectMap<String, Anim> animations = new ObjectMap<>(6);
 
@@ -39,6 +83,7 @@ public class Model implements Disposable{
         dispose();
 
         id = json.require("id").asString();
+        if(retainGeometry) geometry = new GeometryStore();
         loadMeshes(json.require("meshes"));
         loadMaterials(json.require("materials"));
         loadNodes(json.require("nodes"));
@@ -47,58 +92,235 @@ public class Model implements Disposable{
 
     protected void loadMeshes(JsonValue json){
         for(var data = json.child; data != null; data = data.next){
-            var attr = Seq.of(VertexAttribute.class);
-            int texUnit = 0;
-
-            for(var attrData : data.require("attributes").asStringArray()){
-                attrData = attrData.toLowerCase();
-                if(attrData.equals("position")){
-                    attr.add(VertexAttribute.position3);
-                }else if(attrData.equals("normal")){
-                    attr.add(VertexAttribute.normal);
-                }else if(attrData.startsWith("texcoord")){
-                    attr.add(new VertexAttribute(2, Shader.texcoordAttribute + texUnit++));
-                }else{
-                    throw new IllegalArgumentException("Unsupported vertex attribute: '" + attrData + "'");
+            var mesh = readMesh(data);
+            for(var part : mesh.parts) mesh.bounds(part);
+
+            if(lods > 0) generateLods(mesh);
+            if(optimizer != null) optimize(mesh);
+            if(pickable) buildBvhs(mesh);
+            if(occluders != null) buildOccluders(mesh);
+
+            var coarse = coarseLods(mesh);
+            if(mesh.numVertices() > maxShortVertices && !IndexBuffer.supportsUint()){
+                for(var chunk : mesh.split(maxShortVertices)) upload(chunk);
+                for(var part : mesh.parts){
+                    var chunks = part.chunks;
+                    if(chunks.length > 1){
+                        part.mesh = chunks[0].mesh;
+                        part.codec = chunks[0].codec;
+                        part.weights = chunks[0].weights;
+                    }
+                }
+
+                // Parts that fit a single chunk are replaced by their only piece.
+                for(var part : mesh.parts){
+                    if(part.lods != null){
+                        for(int i = 0; i < part.lods.length; i++){
+                            var lod = part.lods[i];
+                            if(lod.chunks.length == 1) part.lods[i] = lod.chunks[0];
+                        }
+                    }
+
+                    if(part.chunks.length == 1){
+                        part.chunks[0].lods = part.lods;
+                        part.chunks[0].bvh = part.bvh;
+                        part.chunks[0].occluder = part.occluder;
+                    }
+                    if(!coarse.contains(part)) meshPart(part.chunks.length == 1 ? part.chunks[0] : part);
                 }
+            }else{
+                upload(mesh);
+                for(var part : mesh.parts){
+                    if(!coarse.contains(part)) meshPart(part);
+                }
+            }
+        }
+    }
+
+    /** Reads a mesh's vertices, indices, and parts into its CPU-side intermediate. */
+    protected MeshData readMesh(JsonValue data){
+        var attr = Seq.of(VertexAttribute.class);
+        int texUnit = 0, weights = 0;
+
+        for(var attrData : data.require("attributes").asStringArray()){
+            attrData = attrData.toLowerCase();
+            if(attrData.equals("position")){
+                attr.add(VertexAttribute.position3);
+            }else if(attrData.equals("normal")){
+                attr.add(VertexAttribute.normal);
+            }else if(attrData.startsWith("texcoord")){
+                attr.add(new VertexAttribute(2, Shader.texcoordAttribute + texUnit++));
+            }else if(attrData.startsWith("blendweight")){
+                if(weights >= Skin.maxWeights) throw new IllegalArgumentException("At most " + Skin.maxWeights + " blend weights are supported.");
+                attr.add(new VertexAttribute(2, Skin.weightAttribute + weights++));
+            }else{
+                throw new IllegalArgumentException("Unsupported vertex attribute: '" + attrData + "'");
             }
+        }
+
+        var indices = new IntSeq();
+        var parts = new Seq<MeshPart>(2);
+        for(var partData = data.require("parts").child; partData != null; partData = partData.next){
+            var part = new MeshPart();
+            part.id = partData.require("id").asString();
+
+            var typeData = partData.require("type").asString().toLowerCase();
+            part.type = switch(typeData){
+                case "points" -> Gl.points;
+                case "lines" -> Gl.lines;
+                case "lineloop" -> Gl.lineLoop;
+                case "linestrip" -> Gl.lineStrip;
+                case "triangles" -> Gl.triangles;
+                case "trianglestrip" -> Gl.triangleStrip;
+                case "trianglefan" -> Gl.triangleFan;
+                default -> throw new IllegalArgumentException("Invalid primitive type: '" + typeData + "'");
+            };
+
+            part.offset = indices.size;
+            indices.addAll(partData.require("indices").asIntArray());
+            part.count = indices.size - part.offset;
+
+            parts.add(part);
+        }
+
+        var mesh = new MeshData(attr.toArray(), data.require("vertices").asFloatSeq(), indices.toArray());
+        mesh.parts.addAll(parts);
+        return mesh;
+    }
+
+    /**
+     * Generates {@link #lods} simplified levels of detail of the mesh's triangle list parts, appended to the mesh's
+     * indices as additional parts. Generation stops early once a level can't be simplified any further.
+     */
+    protected void generateLods(MeshData mesh){
+        var simplifier = new MeshSimplifier();
+        var indices = new IntSeq(mesh.indices);
+        int pos = mesh.positionOffset();
+
+        for(var part : mesh.parts.copy()){
+            if(part.type != Gl.triangles) continue;
+
+            var levels = new Seq<MeshPart>(MeshPart.class);
+            levels.add(part);
+
+            float target = part.count;
+            for(int i = 1; i <= lods; i++){
+                target *= lodRatio;
+
+                var prev = levels.peek();
+                var simplified = simplifier.simplify(mesh.vertices, mesh.stride, pos, indices.items, prev.offset, prev.count, (int)target / 3 * 3);
+                if(simplified.length >= prev.count * 0.95f) break;
+
+                var lod = new MeshPart();
+                lod.id = part.id + "$lod" + i;
+                lod.type = Gl.triangles;
+                lod.offset = indices.size;
+                lod.count = simplified.length;
+                lod.center.set(part.center);
+                lod.radius = part.radius;
+                indices.addAll(simplified);
+
+                levels.add(lod);
+                mesh.parts.add(lod);
+            }
+
+            if(levels.size > 1) part.lods = levels.toArray();
+        }
+
+        mesh.indices = indices.toArray();
+    }
 
-            var vertices = data.require("vertices").asFloatSeq();
-            var indices = new ShortSeq();
-
-            Seq<MeshPart> parts = new Seq<>(2);
-            for(var partData = data.require("parts").child; partData != null; partData = partData.next){
-                var part = new MeshPart();
-                part.id = partData.require("id").asString();
-
-                var typeData = partData.require("type").asString().toLowerCase();
-                part.type = switch(typeData){
-                    case "points" -> Gl.points;
-                    case "lines" -> Gl.lines;
-                    case "lineloop" -> Gl.lineLoop;
-                    case "linestrip" -> Gl.lineStrip;
-                    case "triangles" -> Gl.triangles;
-                    case "trianglestrip" -> Gl.triangleStrip;
-                    case "trianglefan" -> Gl.triangleFan;
-                    default -> throw new IllegalArgumentException("Invalid primitive type: '" + typeData + "'");
-                };
-
-                part.offset = indices.size;
-                indices.addAll(partData.require("indices").asShortArray());
-                part.count = indices.size - part.offset;
-
-                parts.add(part);
+    /**
+     * @return The coarser levels of detail of the mesh's parts. These are only reachable through {@link MeshPart#lods}
+     * and are never registered as parts of their own.
+     */
+    protected static ObjectSet<MeshPart> coarseLods(MeshData mesh){
+        var coarse = new ObjectSet<MeshPart>();
+        for(var part : mesh.parts){
+            if(part.lods != null){
+                for(int i = 1; i < part.lods.length; i++) coarse.add(part.lods[i]);
             }
+        }
+        return coarse;
+    }
+
+    /** Runs {@link #optimizer} on the mesh's triangle lists, and then on its vertices. */
+    protected void optimize(MeshData mesh){
+        int numVertices = mesh.numVertices();
+        for(var part : mesh.parts){
+            if(part.type == Gl.triangles) optimizer.optimize(mesh.indices, part.offset, part.count, numVertices);
+        }
+        optimizer.reorderVertices(mesh.vertices, mesh.stride, mesh.indices, mesh.indices.length);
+    }
 
-            var mesh = new Mesh(true, vertices.length / attr.sum(a -> a.components), indices.size, attr.toArray());
-            mesh.setVertices(vertices);
-            mesh.setIndices(indices.toArray());
+    /**
+     * Builds the {@link MeshPart#bvh} of the mesh's triangle list parts. Coarser levels of detail don't get their own,
+     * since picks should hit what the part looks like up close.
+     */
+    protected void buildBvhs(MeshData mesh){
+        var coarse = coarseLods(mesh);
+
+        int pos = mesh.positionOffset();
+        for(var part : mesh.parts){
+            if(part.type == Gl.triangles && !coarse.contains(part)){
+                part.bvh = new MeshBvh(mesh.vertices, mesh.stride, pos, mesh.indices, part.offset, part.count);
+            }
+        }
+    }
 
-            meshes.add(mesh);
-            for(var part : parts){
-                part.mesh = mesh;
-                meshPart(part);
+    /**
+     * Copies the triangles of the mesh's triangle list parts accepted by {@link #occluders}. Always taken at full
+     * detail, since simplified levels may bulge past the original surface and hide parts that are actually visible.
+     */
+    protected void buildOccluders(MeshData mesh){
+        var coarse = coarseLods(mesh);
+
+        int pos = mesh.positionOffset();
+        for(var part : mesh.parts){
+            if(part.type != Gl.triangles || coarse.contains(part) || !occluders.get(part)) continue;
+
+            var triangles = new float[part.count / 3 * 9];
+            for(int i = 0; i < triangles.length / 3; i++){
+                int v = mesh.indices[part.offset + i] * mesh.stride + pos;
+                triangles[i * 3] = mesh.vertices[v];
+                triangles[i * 3 + 1] = mesh.vertices[v + 1];
+                triangles[i * 3 + 2] = mesh.vertices[v + 2];
             }
+            part.occluder = triangles;
+        }
+    }
+
+    /** Uploads the mesh's vertices and indices, binding its parts to them. */
+    protected void upload(MeshData data){
+        int numVertices = data.numVertices();
+
+        Mesh mesh;
+        VertexCodec codec = null;
+        if(compressVertices){
+            codec = new VertexCodec().set(data.vertices, data.attributes);
+
+            mesh = new Mesh(true, numVertices, 0, codec.attributes);
+            mesh.setVertices(VertexCodec.pack(codec.encode(data.vertices)));
+        }else{
+            mesh = new Mesh(true, numVertices, 0, data.attributes);
+            mesh.setVertices(data.vertices);
+        }
+
+        var indices = new IndexBuffer(data.indices, 0, data.indices.length, numVertices > maxShortVertices);
+
+        int weights = 0;
+        for(var attr : data.attributes){
+            if(attr.alias.startsWith(Skin.weightAttribute)) weights++;
+        }
+
+        meshes.add(mesh);
+        indexBuffers.add(indices);
+        if(geometry != null) geometry.add(data, mesh, codec, indices);
+        for(var part : data.parts){
+            part.mesh = mesh;
+            part.weights = weights;
+            part.codec = codec;
+            part.indices = indices;
         }
     }
 
@@ -125,38 +347,99 @@ public class Model implements Disposable{
 
                     if(alias == null) throw new IllegalArgumentException("Unsupported texture type: '" + usage + "'");
 
-                    mat.set(new TexAttr(alias, texData.require("filename").asString()));
+                    var filename = texData.require("filename").asString();
+                    var tex = new TexAttr(alias, filename);
+                    tex.path = directory + filename;
+                    mat.set(tex);
                 }
             }
 
-            material(mat);
+            // An interned material may carry the ID of whichever model interned it first; this model keeps its own.
+            if(internMaterials){
+                var shared = Materials.intern(mat);
+                interned.add(shared);
+                material(mat.id, shared);
+            }else{
+                material(mat.id, mat);
+            }
         }
     }
 
     protected void loadNodes(JsonValue json){
-        for(var data = json.child; data != null; data = data.next){
-            var node = new Node();
-            node.id = data.require("id").asString();
+        // Bones may refer to any node, so skins are only resolved once the whole tree has been read.
+        var skins = new Seq<Runnable>();
+        for(var data = json.child; data != null; data = data.next) node(readNode(data, null, skins));
+
+        skins.each(Runnable::run);
+    }
 
-            var trns = data.get("translation");
-            if(trns != null) readVec(node.translation, trns);
+    /** Reads a node and its children, deferring the resolution of its parts' bones to the given array. */
+    protected Node readNode(JsonValue data, @Nullable Node parent, Seq<Runnable> skins){
+        var node = new Node();
+        node.id = data.require("id").asString();
+        node.parent = parent;
 
-            var rot = data.get("rotation");
-            if(rot != null) readQuat(node.rotation, rot);
+        var trns = data.get("translation");
+        if(trns != null) readVec(node.translation, trns);
 
-            var scl = data.get("scale");
-            if(scl != null) readVec(node.scaling, scl);
+        var rot = data.get("rotation");
+        if(rot != null) readQuat(node.rotation, rot);
 
-            for(var partData = data.require("parts").child; partData != null; partData = partData.next){
+        var scl = data.get("scale");
+        if(scl != null) readVec(node.scaling, scl);
+
+        var partsData = data.get("parts");
+        if(partsData != null){
+            for(var partData = partsData.child; partData != null; partData = partData.next){
                 var part = new NodePart(node);
                 part.mesh = meshPart(partData.require("meshpartid").asString());
-                part.material = material(partData.require("materialid").asString());
+                part.materialId = partData.require("materialid").asString();
+                part.material = material(part.materialId);
+
+                var bonesData = partData.get("bones");
+                if(bonesData != null && bonesData.size > 0){
+                    var ids = new String[bonesData.size];
+                    var invBindTrns = new Mat3D[bonesData.size];
+
+                    int i = 0;
+                    for(var boneData = bonesData.child; boneData != null; boneData = boneData.next, i++){
+                        ids[i] = boneData.require("node").asString();
+
+                        var boneTrns = boneData.get("translation");
+                        var boneRot = boneData.get("rotation");
+                        var boneScl = boneData.get("scale");
+                        invBindTrns[i] = new Mat3D().set(
+                            boneTrns == null ? new Vec3() : readVec(new Vec3(), boneTrns),
+                            boneRot == null ? new Quat() : readQuat(new Quat(), boneRot),
+                            boneScl == null ? new Vec3(1f, 1f, 1f) : readVec(new Vec3(), boneScl)
+                        ).inv();
+                    }
+
+                    skins.add(() -> {
+                        var bones = new Node[ids.length];
+                        for(int b = 0; b < ids.length; b++){
+                            bones[b] = node(ids[b]);
+                            if(bones[b] == null) throw new IllegalArgumentException("Bone node with ID '" + ids[b] + "' not found.");
+                        }
+
+                        part.skin = new Skin(bones, invBindTrns);
+                    });
+                }
 
                 node.parts.add(part);
             }
+        }
 
-            node(node);
+        var childrenData = data.get("children");
+        if(childrenData != null){
+            for(var childData = childrenData.child; childData != null; childData = childData.next){
+                var child = readNode(childData, node, skins);
+                if(node.children.containsKey(child.id)) throw new IllegalArgumentException("Node with id '" + child.id + "' already exists.");
+                node.children.put(child.id, child);
+            }
         }
+
+        return node;
     }
 
     protected void loadAnimations(JsonValue json){
@@ -221,9 +504,37 @@ public class Model implements Disposable{
     public void dispose(){
         meshes.each(Disposable::dispose);
         meshes.clear();
+        indexBuffers.each(Disposable::dispose);
+        indexBuffers.clear();
+        if(geometry != null) geometry.dispose();
+        geometry = null;
         meshParts.clear();
         nodes.clear();
         materials.clear();
+        interned.each(Materials::release);
+        interned.clear();
+    }
+
+    /**
+     * Restores this model's GPU buffers after the GL context was lost. Index buffers are uploaded again on their next
+     * bind; meshes are re-uploaded from the {@link #geometry} if it was retained, and are otherwise left to the backend.
+     */
+    public void invalidate(){
+        indexBuffers.each(IndexBuffer::invalidate);
+        if(geometry != null) geometry.restore();
+    }
+
+    /** Writes this model's memory usage to the given report. */
+    public Memory memory(Memory out){
+        out.reset();
+        for(var mesh : meshes) out.vertices += (long)mesh.getMaxVertices() * mesh.vertexSize;
+        for(var indices : indexBuffers) out.indices += indices.size();
+        if(geometry != null) out.retained = geometry.size();
+        for(var part : meshParts.values()){
+            if(part.bvh != null) out.bvh += part.bvh.size();
+            if(part.occluder != null) out.occluders += part.occluder.length * 4L;
+        }
+        return out;
     }
 
     /** Should be called after this model has been loaded. */
@@ -241,8 +552,16 @@ public class Model implements Disposable{
 
     /** Adds a {@link Material} to this model. Will throw an exception if a material with the same ID is already contained. */
     public void material(Material mat){
-        if(materials.containsKey(mat.id)) throw new IllegalArgumentException("Material with id '" + mat.id + "' already exists.");
-        materials.put(mat.id, mat);
+        material(mat.id, mat);
+    }
+
+    /**
+     * Adds a {@link Material} to this model with the specified ID, which may differ from {@link Material#id} if the
+     * material is shared. Will throw an exception if a material with the same ID is already contained.
+     */
+    public void material(String id, Material mat){
+        if(materials.containsKey(id)) throw new IllegalArgumentException("Material with id '" + id + "' already exists.");
+        materials.put(id, mat);
     }
 
     /** Adds a {@link Node} to this model. Will throw an exception if a node with the same ID is already contained. */
@@ -262,7 +581,10 @@ public class Model implements Disposable{
         return meshParts.get(id);
     }
 
-    /** @return The {@link Material} with the specified ID, or null if there are none. */
+    /**
+     * @return The {@link Material} with the specified ID in this model, or null if there are none. Its {@link Material#id}
+     * may differ if it's shared with other models or other IDs through interning.
+     */
     public Material material(String id){
         return materials.get(id);
     }
@@ -302,33 +624,162 @@ public class Model implements Disposable{
         for(var part : animations.values()) cons.get(part);
     }
 
-    /** A packed renderable view of a {@link Model} used in {@link ModelShader} to specify renderings. */
+    /**
+     * @param trns   The world transform of the bounding sphere.
+     * @param center The local center of the bounding sphere.
+     * @param radius The local radius of the bounding sphere.
+     * @return The fraction of the camera's viewport height covered by the transformed bounding sphere, or positive
+     * infinity if the camera is inside of it.
+     */
+    public static float screenSize(Camera3D cam, Mat3D trns, Vec3 center, float radius){
+        var val = trns.val;
+        float
+            cx = center.x, cy = center.y, cz = center.z,
+            x = val[0] * cx + val[4] * cy + val[8] * cz + val[12],
+            y = val[1] * cx + val[5] * cy + val[9] * cz + val[13],
+            z = val[2] * cx + val[6] * cy + val[10] * cz + val[14],
+            scl = (float)Math.sqrt(Math.max(
+                val[0] * val[0] + val[1] * val[1] + val[2] * val[2], Math.max(
+                val[4] * val[4] + val[5] * val[5] + val[6] * val[6],
+                val[8] * val[8] + val[9] * val[9] + val[10] * val[10]
+            )));
+
+        float r = radius * scl;
+        if(!cam.perspective) return cam.height <= 0f ? Float.POSITIVE_INFINITY : 2f * r / cam.height;
+
+        float dst = cam.position.dst(x, y, z);
+        if(dst <= r) return Float.POSITIVE_INFINITY;
+
+        return r / (dst * (float)Math.tan(Math.toRadians(cam.fov / 2f)));
+    }
+
+    /**
+     * A packed renderable view of a {@link Model} used in {@link ModelShader} to specify renderings. Views don't hold
+     * their own transforms; they refer to an index in a shared {@link TrnsBuffer} instead.
+     */
     public static class ModelView implements Poolable{
-        /** The transform matrix of this view. */
-        public final Mat3D trns = new Mat3D();
+        /** The buffer containing this view's transforms. */
+        public TrnsBuffer buffer;
+        /** The index of this view's world and normal transforms in {@link #buffer}. */
+        public int trns = -1;
         /** The {@link MeshPart} of this model to be rendered by the shader. */
         public MeshPart mesh;
         /** The {@link Material} of this view. */
         public Material material;
+        /** The per-instance attribute overrides of this view, merged with {@link #material} when applied. May be null. */
+        public @Nullable Material overrides;
         /** The {@link Environment} of this view. */
         public Environment env;
+        /** The offset of this view's bone palette in {@link TrnsBuffer#bones}, or -1 if it isn't skinned. */
+        public int bones = -1;
+        /** The amount of bones in this view's palette. */
+        public int numBones;
+        /** The baked animation texture this view's palette is read from instead, or null if it's packed by the CPU. */
+        public @Nullable AnimTexture vat;
+        /**
+         * The rows and blend factor of the {@link #vat} poses, as computed by
+         * {@link AnimTexture#frame(Clip, float, boolean, Vec3)}.
+         */
+        public final Vec3 vatFrame = new Vec3();
 
         @Override
         public void reset(){
-            trns.idt();
+            buffer = null;
+            trns = -1;
             mesh = null;
             material = null;
+            overrides = null;
+            bones = -1;
+            numBones = 0;
+            vat = null;
         }
 
         /**
-         * Sets this view's properties to match the given {@link NodePart}.
+         * Sets this view's properties to match the given {@link NodePart}, with its transforms at the given index.
          * @return This instance, for convenience.
          */
-        public ModelView set(NodePart part){
-            trns.set(part.node.worldTrns);
-            mesh = part.mesh;
+        public ModelView set(NodePart part, TrnsBuffer buffer, int trns){
+            this.buffer = buffer;
+            this.trns = trns;
+            mesh = part.lodMesh();
             material = part.material;
+            overrides = part.overrides;
+
+            var skin = part.skin;
+            if(skin != null && mesh.weights > 0){
+                numBones = skin.bones.length;
+                if(skin.texture != null && skin.clip != null){
+                    vat = skin.texture;
+                    bones = -1;
+                    AnimTexture.frame(skin.clip, skin.time, skin.loop, vatFrame);
+                }else{
+                    vat = null;
+                    bones = buffer.add(skin, part.node);
+                }
+            }else{
+                bones = -1;
+                numBones = 0;
+                vat = null;
+            }
             return this;
         }
+
+        /**
+         * Computes the world bounding sphere of this view's mesh from its transforms.
+         * @param out Receives the world center.
+         * @return The world radius.
+         */
+        public float sphere(Vec3 out){
+            var val = buffer.trns;
+            var c = mesh.center;
+            int t = trns * 16;
+            float scl2 = Math.max(
+                val[t] * val[t] + val[t + 1] * val[t + 1] + val[t + 2] * val[t + 2], Math.max(
+                val[t + 4] * val[t + 4] + val[t + 5] * val[t + 5] + val[t + 6] * val[t + 6],
+                val[t + 8] * val[t + 8] + val[t + 9] * val[t + 9] + val[t + 10] * val[t + 10]
+            ));
+
+            out.set(
+                val[t] * c.x + val[t + 4] * c.y + val[t + 8] * c.z + val[t + 12],
+                val[t + 1] * c.x + val[t + 5] * c.y + val[t + 9] * c.z + val[t + 13],
+                val[t + 2] * c.x + val[t + 6] * c.y + val[t + 10] * c.z + val[t + 14]
+            );
+            return mesh.radius * (float)Math.sqrt(scl2);
+        }
+    }
+
+    /** The memory usage of a model in bytes, as reported by {@link #memory(Memory)}. */
+    public static class Memory{
+        /** The size of the uploaded vertices. */
+        public long vertices;
+        /** The size of the uploaded indices. */
+        public long indices;
+        /** The size of the off-heap {@link GeometryStore retained geometry}. */
+        public long retained;
+        /** The size of the CPU-side {@link MeshBvh picking hierarchies}. */
+        public long bvh;
+        /** The size of the CPU-side {@link MeshPart#occluder occluder} triangles. */
+        public long occluders;
+
+        /** @return The size of the GPU buffers. */
+        public long gpu(){
+            return vertices + indices;
+        }
+
+        /** @return The size of the CPU-side copies. */
+        public long cpu(){
+            return retained + bvh + occluders;
+        }
+
+        /** Resets every size to 0. */
+        public void reset(){
+            vertices = indices = retained = bvh = occluders = 0;
+        }
+
+        @Override
+        public String toString(){
+            return "GPU: " + gpu() / 1024 + " KiB (vertices " + vertices / 1024 + ", indices " + indices / 1024 + "), CPU: " +
+                cpu() / 1024 + " KiB (retained " + retained / 1024 + ", BVH " + bvh / 1024 + ", occluders " + occluders / 1024 + ")";
+        }
     }
 }
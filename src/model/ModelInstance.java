@@ -1,16 +1,19 @@
 package model;
 
 import arc.func.*;
+import arc.graphics.g3d.*;
 import arc.math.geom.*;
 import arc.struct.*;
+import arc.util.*;
 import arc.util.pooling.*;
 import model.Model.*;
 import model.attribute.*;
 import model.part.*;
 
 /**
- * Defines instances of the {@link Model} asset that are seen in the world. Model instances copy their model's nodes and
- * materials, and has its own transformation matrix.
+ * Defines instances of the {@link Model} asset that are seen in the world. Model instances copy their model's nodes,
+ * share its materials, and has its own transformation matrix. Per-instance material changes are made through
+ * {@link #override(String) override blocks} layered over the shared materials.
  */
 public class ModelInstance{
     /** The {@link Model} that this instance is bound to. */
@@ -18,8 +21,11 @@ public class ModelInstance{
     /** The model instance's transformation matrix. */
     public final Mat3D trns = new Mat3D();
 
-    /** All the copied {@link Material}s that this instance contains, mapped with their IDs. */
-    protected final ObjectMap<String, Material> materials = new ObjectMap<>(2);
+    /**
+     * All the per-instance override blocks that this instance contains, mapped with the IDs of the materials they
+     * override.
+     */
+    protected final ObjectMap<String, Material> overrides = new ObjectMap<>(2);
     /** All the copied {@link Node}s that this instance contains, mapped with their IDs. */
     protected final ObjectMap<String, Node> nodes = new ObjectMap<>(2);
     /** All the copied {@link Anim}s that this model contains, mapped with their IDs. */
@@ -28,20 +34,17 @@ public class ModelInstance{
     /** Creates a model instance with the specified {@link Model}. */
     public ModelInstance(Model model){
         this.model = model;
-        for(var entry : model.materials) materials.put(entry.key, entry.value.copy());
+
         for(var entry : model.nodes) nodes.put(entry.key, entry.value.copy());
-        for(var entry : model.animations) animations.put(entry.key, entry.value.copy(from -> node(from.parent, from.id)));
-        nodes(this::remapNodes);
-    }
 
-    private void remapNodes(Node parent){
-        for(var node : parent.children.values()){
-            for(var part : node.parts){
-                part.material = material(part.material.id);
+        // Copied node parts and animations still refer to the model's nodes; map them to this instance's copies.
+        Func<Node, Node> mapper = from -> node(from.id);
+        nodes(node -> node.each(n -> {
+            for(var part : n.parts){
+                if(part.skin != null) part.skin = part.skin.copy(mapper);
             }
-
-            if(!node.children.isEmpty()) remapNodes(node);
-        }
+        }));
+        for(var entry : model.animations) animations.put(entry.key, entry.value.copy(mapper));
     }
 
     /** Calculates the transforms of this model's {@link Node}s. */
@@ -51,15 +54,69 @@ public class ModelInstance{
 
     /**
      * Retrieves all necessary {@link ModelView}s to be drawn and adds them to the given array.
+     * @param buffer The buffer that the views' transforms are written to.
+     * @param array The array to be filled with the pooled {@link ModelView}s.
+     */
+    public void views(Pool<ModelView> pool, TrnsBuffer buffer, Seq<ModelView> array){
+        views(pool, buffer, array, null);
+    }
+
+    /**
+     * Retrieves all necessary {@link ModelView}s to be drawn and adds them to the given array, selecting the level of
+     * detail of every part from its projected screen size.
+     * @param buffer The buffer that the views' transforms are written to.
      * @param array The array to be filled with the pooled {@link ModelView}s.
+     * @param cam The camera the levels of detail are selected against. If null, the current levels are kept.
      */
-    public void views(Pool<ModelView> pool, Seq<ModelView> array){
-        for(var node : nodes.values()) node.views(pool, array);
+    public void views(Pool<ModelView> pool, TrnsBuffer buffer, Seq<ModelView> array, @Nullable Camera3D cam){
+        views(pool, buffer, array, cam, null);
     }
 
-    /** @return The {@link Material} with the specified ID, or null if there are none. */
+    /**
+     * Retrieves all necessary {@link ModelView}s to be drawn and adds them to the given array, skipping parts hidden
+     * by the occluders rasterized into the given buffer for the current frame.
+     * @param buffer    The buffer that the views' transforms are written to.
+     * @param array     The array to be filled with the pooled {@link ModelView}s.
+     * @param cam       The camera the levels of detail are selected against. If null, the current levels are kept.
+     * @param occlusion The rasterized occluders that parts are tested against. If null, no part is skipped.
+     */
+    public void views(Pool<ModelView> pool, TrnsBuffer buffer, Seq<ModelView> array, @Nullable Camera3D cam, @Nullable OcclusionBuffer occlusion){
+        for(var node : nodes.values()) node.views(pool, buffer, array, cam, occlusion);
+    }
+
+    /**
+     * @return The shared {@link Material} with the specified ID, or null if there are none. Don't modify it; use
+     * {@link #override(String)}.
+     */
     public Material material(String id){
-        return materials.get(id);
+        return model.material(id);
+    }
+
+    /**
+     * Gets or creates the override block of the {@link Material} with the specified ID. Attributes set to the block
+     * replace the material's attributes with the same alias for this instance only, and are merged at upload time.
+     * Shaders are only re-selected if the block adds an attribute the material doesn't have. Only parts bound with this
+     * ID are affected, even if other IDs share the same interned material.
+     * @return The override block, or null if there is no material with the specified ID.
+     */
+    public Material override(String id){
+        var base = model.material(id);
+        if(base == null) return null;
+
+        var block = overrides.get(id);
+        if(block == null){
+            var created = block = new Material();
+            created.id = id;
+            overrides.put(id, created);
+
+            nodes(node -> node.each(n -> {
+                for(var part : n.parts){
+                    if(part.materialId != null ? part.materialId.equals(id) : part.material == base) part.overrides = created;
+                }
+            }));
+        }
+
+        return block;
     }
 
     /** @return The recursively searched {@link Node} with the specified ID, or null if there are none. */
@@ -77,9 +134,14 @@ public class ModelInstance{
         return animations.get(id);
     }
 
-    /** Applies the consumer to all {@link Material}s this model contains. */
+    /** Applies the consumer to all shared {@link Material}s this model contains. */
     public void materials(Cons<Material> cons){
-        for(var part : materials.values()) cons.get(part);
+        model.materials(cons);
+    }
+
+    /** Applies the consumer to all override blocks this instance contains. */
+    public void overrides(Cons<Material> cons){
+        for(var block : overrides.values()) cons.get(block);
     }
 
     /** Applies the consumer to all {@link Node}s this model contains. */
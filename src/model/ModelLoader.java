@@ -1,19 +1,38 @@
 package model;
 
+import arc.*;
 import arc.assets.*;
 import arc.assets.loaders.*;
+import arc.assets.loaders.TextureLoader.*;
 import arc.files.*;
+import arc.graphics.*;
 import arc.struct.*;
 import arc.util.*;
 import arc.util.serialization.*;
 import model.ModelLoader.*;
+import model.attribute.Attribute.*;
 
-/** An {@link AssetLoader} for loading {@link Model} instances. Models that are to be loaded can be bound in {@link ModelParameters}. */
+/**
+ * An {@link AssetLoader} for loading {@link Model} instances. Models that are to be loaded can be bound in {@link ModelParameters}.
+ * <p>
+ * Textures referenced by the model's materials that aren't found in {@link Core#atlas} are reported as {@link Texture}
+ * dependencies, relative to the model file. The {@link AssetManager} then decodes their pixmaps in the background and
+ * reference-counts them across every model sharing them, unloading a texture once the last model referencing it is
+ * unloaded.
+ * <p>
+ * Texture files are identified by their {@link TexAttr#path path} relative to the model file, which is also part of the
+ * identity of {@link Model#internMaterials interned} materials. A material shared between models therefore only binds
+ * texture files every one of those models depends on.
+ */
 @SuppressWarnings("rawtypes")
-public class ModelLoader extends SynchronousAssetLoader<Model, ModelParameters>{
+public class ModelLoader extends AsynchronousAssetLoader<Model, ModelParameters>{
     /** The JSON reader of this asset loader, either textual or binary. */
     public final BaseJsonReader reader;
 
+    private @Nullable String fileName;
+    private @Nullable JsonValue json;
+    private final Seq<String> textures = new Seq<>();
+
     /** Constructs a model loader using a {@link FileHandleResolver} and a JSON reader. */
     public ModelLoader(FileHandleResolver resolver, BaseJsonReader reader){
         super(resolver);
@@ -21,22 +40,74 @@ public class ModelLoader extends SynchronousAssetLoader<Model, ModelParameters>{
     }
 
     @Override
-    public Model load(AssetManager assetManager, String fileName, Fi file, ModelParameters parameter){
-        var target = parameter != null && parameter.model != null ? parameter.model : new Model();
-        target.load(reader.parse(file));
+    public Seq<AssetDescriptor> getDependencies(String fileName, Fi file, ModelParameters parameter){
+        this.fileName = fileName;
+        json = reader.parse(file);
+        textures.clear();
 
-        return target;
+        if(parameter != null && !parameter.loadTextures) return null;
+
+        int slash = fileName.lastIndexOf('/');
+        var dir = slash == -1 ? "" : fileName.substring(0, slash + 1);
+        var params = parameter == null ? null : parameter.textureParameter;
+
+        var deps = new Seq<AssetDescriptor>();
+        for(var mat = json.require("materials").child; mat != null; mat = mat.next){
+            var texs = mat.get("textures");
+            if(texs == null || !texs.isArray()) continue;
+
+            for(var tex = texs.child; tex != null; tex = tex.next){
+                var filename = tex.require("filename").asString();
+                var path = dir + filename;
+                if(textures.contains(path) || (Core.atlas != null && Core.atlas.has(TexAttr.normalize(filename)))) continue;
+
+                textures.add(path);
+                deps.add(new AssetDescriptor<>(path, Texture.class, params));
+            }
+        }
+
+        return deps.isEmpty() ? null : deps;
     }
 
     @Override
-    public Seq<AssetDescriptor> getDependencies(String fileName, Fi file, ModelParameters parameter){
-        return null;
+    public void loadAsync(AssetManager manager, String fileName, Fi file, ModelParameters parameter){
+        // Parsing is done in getDependencies(), which runs on the loading thread too.
+        if(json == null || !fileName.equals(this.fileName)) getDependencies(fileName, file, parameter);
+    }
+
+    @Override
+    public Model loadSync(AssetManager manager, String fileName, Fi file, ModelParameters parameter){
+        if(json == null || !fileName.equals(this.fileName)) getDependencies(fileName, file, parameter);
+
+        int slash = fileName.lastIndexOf('/');
+        var target = parameter != null && parameter.model != null ? parameter.model : new Model();
+        target.directory = slash == -1 ? "" : fileName.substring(0, slash + 1);
+        target.load(json);
+
+        target.textures.set(textures);
+        target.materials(mat -> mat.each(a -> {
+            if(a instanceof TexAttr t && t.value == null && t.path != null && textures.contains(t.path)){
+                t.value = manager.get(t.path, Texture.class);
+            }
+        }));
+
+        json = null;
+        this.fileName = null;
+        textures.clear();
+        return target;
     }
 
     /** An {@link AssetLoaderParameters} specifically to bind loaded {@link Model}. */
     public static class ModelParameters extends AssetLoaderParameters<Model>{
         /** The model instance to be loaded to. If null, a new model will be instantiated. */
         public @Nullable Model model;
+        /** Whether textures not found in {@link Core#atlas} should be loaded as dependencies. */
+        public boolean loadTextures = true;
+        /** The parameters of the loaded texture dependencies. May be null. */
+        public @Nullable TextureParameter textureParameter;
+
+        /** Constructs a model parameter without a model to be bound. */
+        public ModelParameters(){}
 
         /** Constructs a model parameter, given model might be null. */
         public ModelParameters(Model model){
@@ -0,0 +1,180 @@
+package model;
+
+import arc.*;
+import arc.func.*;
+import arc.graphics.*;
+import arc.graphics.Texture.*;
+import arc.graphics.g2d.*;
+import arc.struct.*;
+import arc.util.*;
+import model.attribute.*;
+import model.attribute.Attribute.*;
+
+import java.util.*;
+
+/**
+ * A load-time texture consolidation stage. Packs the textures referenced by the {@link TexAttr}s of every added
+ * {@link Model} into shared atlas pages and remaps the attributes onto them, so that materials differing only by their
+ * textures end up sampling the same few pages. The packing outcome is described by {@link #report}.
+ * <p>
+ * Textures are identified by their {@link TexAttr#path}, so equally named textures of models in different directories
+ * are packed separately. Attributes not loaded from a file are identified by their {@link TexAttr#name} instead.
+ * <p>
+ * Since texture coordinates are remapped into atlas regions, the packed textures must not rely on texture wrapping,
+ * i.e. their UV mappings must lie within [0..1]. The original texture and UV mapping of every remapped attribute is
+ * kept, so packing again remaps from those rather than from the previous atlas.
+ */
+public class ModelPacker implements Disposable{
+    /**
+     * Resolves a texture to its pixmap, given its {@link TexAttr#path} if loaded from a file or its {@link TexAttr#name}
+     * with a {@code .png} extension otherwise. Defaults to an internal file.
+     */
+    public Func<String, Pixmap> pixmaps = file -> new Pixmap(Core.files.internal(file));
+    /** The width and height of every atlas page. */
+    public int pageSize = 2048;
+    /** The padding between packed textures. */
+    public int padding = 2;
+    /** The filters of the generated atlas pages. */
+    public TextureFilter minFilter = TextureFilter.linear, magFilter = TextureFilter.linear;
+
+    /** The report of the last {@link #pack()}. */
+    public final Report report = new Report();
+    /** The atlas generated by the last {@link #pack()}, or null if not yet packed. */
+    public @Nullable TextureAtlas atlas;
+
+    private final Seq<Model> models = new Seq<>();
+    private @Nullable PixmapPacker packer;
+    /** The state of every attribute examined by {@link #pack()} before it was first remapped, keyed by identity. */
+    private final IdentityHashMap<TexAttr, TexAttr> originals = new IdentityHashMap<>();
+
+    /** Adds a model whose textures are to be packed. @return This instance, for convenience. */
+    public ModelPacker add(Model model){
+        models.add(model);
+        return this;
+    }
+
+    /**
+     * Packs the textures of all added models, remaps their {@link TexAttr}s onto the resulting atlas, and fills in the
+     * {@link #report}. Textures already found in {@link Core#atlas} are left as they are. Attributes remapped by a
+     * previous call are first restored to their original texture and UV mapping.
+     * @return The generated atlas, owned by this packer.
+     */
+    public TextureAtlas pack(){
+        dispose();
+
+        var materials = new ObjectSet<Material>();
+        var files = new ObjectSet<String>();
+        for(var model : models) model.materials(materials::add);
+
+        var before = new ObjectSet<String>();
+        for(var mat : materials){
+            mat.each(a -> {
+                if(a instanceof TexAttr t){
+                    var original = originals.get(t);
+                    if(original == null){
+                        originals.put(t, t.copy());
+                    }else{
+                        t.set(original.value, original.name, original.u, original.v, original.u2, original.v2);
+                    }
+
+                    var file = file(t);
+                    if(file != null && (Core.atlas == null || !Core.atlas.has(t.name))) files.add(file);
+                }
+            });
+            before.add(textureSet(mat));
+        }
+
+        packer = new PixmapPacker(pageSize, pageSize, padding, true);
+
+        long area = 0;
+        for(var file : files){
+            var pixmap = pixmaps.get(file);
+            area += (long)pixmap.getWidth() * pixmap.getHeight();
+
+            packer.pack(file, pixmap);
+            pixmap.dispose();
+        }
+
+        atlas = packer.generateTextureAtlas(minFilter, magFilter, false);
+
+        var after = new ObjectSet<String>();
+        for(var mat : materials){
+            mat.each(a -> {
+                if(a instanceof TexAttr t){
+                    var file = file(t);
+                    if(file != null && files.contains(file)) t.remap(atlas.find(file));
+                }
+            });
+            after.add(textureSet(mat));
+        }
+
+        report.materials = materials.size;
+        report.textures = files.size;
+        report.pages = atlas.getTextures().size;
+        report.textureSetsBefore = before.size;
+        report.textureSetsAfter = after.size;
+        report.occupancy = report.pages == 0 ? 0f : area / (float)((long)report.pages * pageSize * pageSize);
+        return atlas;
+    }
+
+    /** @return The file the attribute's texture is packed from and keyed by in the atlas, or null if it has none. */
+    private static @Nullable String file(TexAttr t){
+        return t.path != null ? t.path : t.name != null ? t.name + ".png" : null;
+    }
+
+    /** @return A key identifying the combination of textures the material binds, by texture identity or name. */
+    private static String textureSet(Material mat){
+        var builder = new StringBuilder();
+        mat.each(a -> {
+            if(a instanceof TexAttr t){
+                builder.append(t.alias.name()).append('=');
+                if(t.value != null){
+                    builder.append('#').append(System.identityHashCode(t.value));
+                }else{
+                    builder.append(t.name);
+                }
+                builder.append(';');
+            }
+        });
+
+        return builder.toString();
+    }
+
+    @Override
+    public void dispose(){
+        if(atlas != null){
+            atlas.dispose();
+            atlas = null;
+        }
+
+        if(packer != null){
+            packer.dispose();
+            packer = null;
+        }
+    }
+
+    /** Describes the outcome of a {@link #pack()}. */
+    public static class Report{
+        /** The amount of distinct materials examined. */
+        public int materials;
+        /** The amount of distinct source textures packed. */
+        public int textures;
+        /** The amount of atlas pages the textures were packed into. */
+        public int pages;
+        /**
+         * The amount of distinct texture combinations among the materials before and after packing; materials sharing a
+         * combination sample the same textures. This measures how far packing makes materials batchable together, not
+         * texture binds, since {@link TexAttr}s are bound again on every draw regardless.
+         */
+        public int textureSetsBefore, textureSetsAfter;
+        /** The ratio of packed texture area to the total area of all pages. */
+        public float occupancy;
+
+        @Override
+        public String toString(){
+            return
+                "Packed " + textures + " textures of " + materials + " materials into " + pages + " pages (" +
+                Strings.fixed(occupancy * 100f, 1) + "% occupancy); texture sets: " + textureSetsBefore + " -> " + textureSetsAfter;
+        }
+    }
+}
@@ -5,26 +5,47 @@ import arc.files.*;
 import arc.func.*;
 import arc.graphics.g3d.*;
 import arc.graphics.gl.*;
-import arc.math.geom.*;
 import arc.struct.*;
 import arc.util.*;
 import model.Model.*;
 import model.attribute.*;
+import model.attribute.Attribute.ColAttr.*;
+import model.attribute.Attribute.FAttr.*;
+import model.attribute.Attribute.TexAttr.*;
+import model.part.*;
 
 /**
  * A shader to dynamically render model node parts. These shaders are constructed with the combined attribute mask
- * typically returned by {@link Material#mask()}.
+ * typically returned by {@link Material#mask()}, and are cached by their full {@link ShaderKey permutation}.
+ * <p>
+ * Views are rendered in the current {@link #pass}. {@link Pass#depth Depth} passes only keep the attributes that affect
+ * coverage, so every opaque material shares a single position-only permutation per vertex layout.
  */
 public class ModelShader extends Shader{
     public static RenderType type = RenderType.def;
+    /** The pass that {@link #get(ModelView)} selects shaders for. */
+    public static Pass pass = Pass.color;
     public static Func<String, Fi> provider = Core.files::internal;
+    /**
+     * The maximum amount of compiled shaders to be cached. Least recently used shaders are disposed past this limit,
+     * except those used within the current {@link #beginFrame() frame}, for which the cache may grow past it.
+     */
+    public static int maxShaders = 32;
 
     private static String defVert, defFrag;
-    private static final LongMap<ModelShader> shaders = new LongMap<>();
-    private static final Mat3D tmp = new Mat3D();
+    private static final ObjectMap<ShaderKey, ModelShader> shaders = new ObjectMap<>();
+    private static final ShaderKey tmpKey = new ShaderKey();
 
-    private final long mask;
-    private final int numDirLights;
+    private static long usage, hits, misses, evictions;
+    /** The {@link #usage} when the current frame began, or -1 if frames aren't tracked. */
+    private static long frameStart = -1;
+
+    /** The permutation key that this shader was compiled with. */
+    public final ShaderKey key;
+    private long lastUsed;
+
+    private @Nullable Environment lastEnv;
+    private int lastEnvVersion;
 
     /** The renderable model view that this shader should use in {@link #apply()}. */
     public ModelView model;
@@ -41,63 +62,269 @@ public class ModelShader extends Shader{
     public static ModelShader get(ModelView view){
         if(defVert == null || defFrag == null) throw new IllegalStateException("Call init() first.");
 
-        var env = view.env;
-        long mask = view.material.mask();
+        if(RenderStats.enabled) RenderStats.frame.shaderGets++;
 
-        var shader = shaders.get(mask);
-        if(shader == null || !shader.valid(view, env)){
-            if(shader != null) shader.dispose();
-            shaders.put(mask, shader = new ModelShader(
-                prefix(view), mask,
-                env == null ? 0 : env.numDirLights()
-            ));
+        var shader = shaders.get(tmpKey.set(view, type, pass));
+        if(shader == null){
+            misses++;
+            if(RenderStats.enabled) RenderStats.frame.shaderCompiles++;
+            while(shaders.size >= maxShaders && evict());
+
+            var key = new ShaderKey().set(tmpKey);
+            shaders.put(key, shader = new ModelShader(prefix(view, key), key));
+        }else{
+            hits++;
         }
 
+        shader.lastUsed = ++usage;
         return shader;
     }
 
-    private static String prefix(ModelView view){
+    /** @return Whether a shader could be evicted; shaders used within the current frame are never. */
+    private static boolean evict(){
+        ModelShader oldest = null;
+        for(var shader : shaders.values()){
+            if(frameStart != -1 && shader.lastUsed > frameStart) continue;
+            if(oldest == null || shader.lastUsed < oldest.lastUsed) oldest = shader;
+        }
+
+        if(oldest != null){
+            evictions++;
+            oldest.dispose();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Marks the start of a frame. Renderers that hold shaders across several {@link #get(ModelView)} calls, such as a
+     * {@link MultiView} gathering views before rendering them, call this before gathering; shaders returned since are
+     * then kept alive until the next frame begins. Until this is first called, shaders are evicted purely by usage.
+     */
+    public static void beginFrame(){
+        frameStart = usage;
+    }
+
+    private static String prefix(ModelView view, ShaderKey key){
         var builder = new StringBuilder();
-        view.material.each(attr -> attr.preprocess(builder));
-        view.env.each(attr -> attr.preprocess(builder));
+        builder.append("#define renderType ").append(key.type.ordinal()).append('\n');
+        if(key.pass == Pass.depth) builder.append("#define depthPass\n");
+        if(view.mesh.codec != null) builder.append("#define compressedFlag\n");
+        if(view.numBones > 0){
+            builder.append("#define numWeights ").append(view.mesh.weights).append('\n');
+            builder.append("#define maxBones ").append(Skin.maxBones).append('\n');
+            if(view.vat != null) builder.append("#define vatFlag\n");
+        }
+
+        view.material.each(view.overrides, attr -> {
+            if((attr.alias.id() & key.mask) != 0) attr.preprocess(builder);
+        });
+        if(key.pass == Pass.color && view.env != null) view.env.each(attr -> attr.preprocess(builder));
 
         return builder.append('\n').toString();
     }
 
-    private ModelShader(String prefix, long mask, int numDirLights){
+    /** @return The amount of {@link #get(ModelView)} calls that reused a cached shader. */
+    public static long cacheHits(){
+        return hits;
+    }
+
+    /** @return The amount of {@link #get(ModelView)} calls that had to compile a new shader. */
+    public static long cacheMisses(){
+        return misses;
+    }
+
+    /** @return The amount of cached shaders that got disposed due to exceeding {@link #maxShaders}. */
+    public static long cacheEvictions(){
+        return evictions;
+    }
+
+    /** @return The amount of currently cached shaders. */
+    public static int cacheSize(){
+        return shaders.size;
+    }
+
+    private ModelShader(String prefix, ShaderKey key){
         super(prefix + defVert, prefix + defFrag);
-        this.mask = mask;
-        this.numDirLights = numDirLights;
+        this.key = key;
     }
 
-    public boolean valid(ModelView view, @Nullable Environment env){
-        return
-            mask == view.material.mask() &&
-            (env == null || numDirLights == env.numDirLights());
+    @Override
+    public void bind(){
+        super.bind();
+        if(RenderStats.enabled) RenderStats.frame.shaderBinds++;
     }
 
     @Override
     public void dispose(){
         super.dispose();
-        if(shaders.get(mask) == this) shaders.remove(mask);
+        if(shaders.get(key) == this) shaders.remove(key);
     }
 
     @Override
     public void apply(){
-        setUniformi("u_renderType", type.ordinal());
+        applyCamera(Core.graphics.getWidth(), Core.graphics.getHeight());
+        applyModel();
+    }
+
+    /** Uploads the uniforms of {@link #cam}, viewed through a viewport of the given size at the window's origin. */
+    public void applyCamera(float width, float height){
+        applyCamera(0f, 0f, width, height);
+    }
+
+    /**
+     * Uploads the uniforms of {@link #cam}, viewed through the given viewport rectangle in window pixels. These persist
+     * within the shader program, so they only need to be uploaded once per shader and camera, e.g. by a {@link MultiView}.
+     */
+    public void applyCamera(float x, float y, float width, float height){
         setUniformMatrix4("u_proj", cam.combined.val);
-        setUniformMatrix4("u_trans", model.trns.val);
         setUniformf("u_camPos", cam.position);
-        setUniformf("u_res", Core.graphics.getWidth(), Core.graphics.getHeight());
-        setUniformf("u_scl", cam.width / Core.graphics.getWidth(), cam.height / Core.graphics.getHeight());
-        setUniformMatrix4("u_normalMatrix", tmp.set(model.trns).toNormalMatrix().val);
+        setUniformf("u_res", width, height);
+        setUniformf("u_viewport", x, y, width, height);
+        setUniformf("u_scl", cam.width / width, cam.height / height);
+        if(RenderStats.enabled) RenderStats.frame.uniformUploads += 5;
+    }
 
-        model.material.each(attr -> attr.apply(this));
-        model.env.each(attr -> attr.apply(this));
+    /** Uploads the uniforms of {@link #model}, assuming those of the camera are already uploaded. */
+    public void applyModel(){
+        int trns = model.trns * 16;
+
+        setUniformMatrix4fv("u_trans", model.buffer.trns, trns, 16);
+        setUniformMatrix4fv("u_normalMatrix", model.buffer.normals, trns, 16);
+        if(RenderStats.enabled) RenderStats.frame.uniformUploads += 2;
+
+        if(model.mesh.codec != null){
+            model.mesh.codec.apply(this);
+            if(RenderStats.enabled) RenderStats.frame.uniformUploads += 3;
+        }
+
+        // The whole palette is uploaded in a single call, unless it's read from a baked texture.
+        if(model.vat != null){
+            model.vat.apply(this, model.vatFrame);
+        }else if(model.bones >= 0){
+            setUniform4fv("u_bones", model.buffer.bones, model.bones, model.numBones * Skin.boneSize);
+            if(RenderStats.enabled) RenderStats.frame.uniformUploads++;
+        }
+
+        // Depth passes only keep the attributes in their key's reduced mask.
+        long mask = key.mask;
+        model.material.each(model.overrides, attr -> {
+            if((attr.alias.id() & mask) != 0) attr.apply(this);
+        });
+
+        // Uniforms persist within a shader program, so environments only need to be uploaded when they change. Texture
+        // bindings don't, since anything may bind other textures to the same units in between.
+        var env = model.env;
+        if(key.pass == Pass.color && env != null){
+            boolean changed = env != lastEnv || env.version() != lastEnvVersion;
+            lastEnv = env;
+            lastEnvVersion = env.version();
+            env.each(attr -> {
+                if(changed || attr.bindsTextures()) attr.apply(this);
+            });
+        }
     }
 
     public enum RenderType{
         def,
         hybrid2D
     }
+
+    public enum Pass{
+        /** Renders views fully lit and textured. */
+        color,
+        /**
+         * Only renders views' depth, packed into the color channels for targets without depth textures. Lights are
+         * ignored, and materials only keep their {@link FAlias#alphaTest alpha test} and what it reads.
+         */
+        depth;
+
+        /**
+         * @param mask The combined mask of a view's material and overrides.
+         * @return The part of the mask that this pass' shaders depend on.
+         */
+        public long mask(long mask){
+            if(this == color) return mask;
+            if((mask & FAlias.alphaTest.id) == 0) return 0;
+            return mask & (FAlias.alphaTest.id | TexAlias.diffuse.id | ColAlias.diffuse.id);
+        }
+    }
+
+    /**
+     * Identifies a shader permutation; everything that changes the shader's pre-processors must be contained here.
+     * Two views with equal keys are guaranteed to be renderable by the same shader.
+     */
+    public static class ShaderKey{
+        /** The {@link Material#mask()} of the view's material, combined with its overrides' mask. */
+        public long mask;
+        /** The {@link Material#mask()} of the view's environment, or 0 if it has none. */
+        public long envMask;
+        /** The amount of directional lights in the view's environment. */
+        public int numDirLights;
+        /** Whether the view's mesh has compressed vertices. */
+        public boolean compressed;
+        /** The amount of blend weights of the view's mesh if it's skinned, or 0 otherwise. */
+        public int weights;
+        /** Whether the view's palette is read from a baked {@link AnimTexture}. */
+        public boolean vat;
+        /** The render type of the view. */
+        public RenderType type = RenderType.def;
+        /** The pass the view is rendered in. */
+        public Pass pass = Pass.color;
+
+        /** Sets this key to match the given view and render type in the {@link Pass#color color} pass. */
+        public ShaderKey set(ModelView view, RenderType type){
+            return set(view, type, Pass.color);
+        }
+
+        /** Sets this key to match the given view, render type, and pass. */
+        public ShaderKey set(ModelView view, RenderType type, Pass pass){
+            var env = pass == Pass.color ? view.env : null;
+
+            mask = pass.mask(view.material.mask() | (view.overrides == null ? 0 : view.overrides.mask()));
+            envMask = env == null ? 0 : env.mask();
+            numDirLights = env == null ? 0 : env.numDirLights();
+            compressed = view.mesh.codec != null;
+            weights = view.numBones > 0 ? view.mesh.weights : 0;
+            vat = view.vat != null;
+            this.type = type;
+            this.pass = pass;
+            return this;
+        }
+
+        /** Copies the other key's properties. */
+        public ShaderKey set(ShaderKey other){
+            mask = other.mask;
+            envMask = other.envMask;
+            numDirLights = other.numDirLights;
+            compressed = other.compressed;
+            weights = other.weights;
+            vat = other.vat;
+            type = other.type;
+            pass = other.pass;
+            return this;
+        }
+
+        @Override
+        public boolean equals(Object o){
+            if(this == o) return true;
+            if(!(o instanceof ShaderKey key)) return false;
+            return
+                mask == key.mask && envMask == key.envMask &&
+                numDirLights == key.numDirLights && compressed == key.compressed && weights == key.weights && vat == key.vat && type == key.type && pass == key.pass;
+        }
+
+        @Override
+        public int hashCode(){
+            int result = Long.hashCode(mask);
+            result = 31 * result + Long.hashCode(envMask);
+            result = 31 * result + numDirLights;
+            result = 31 * result + (compressed ? 1 : 0);
+            result = 31 * result + weights;
+            result = 31 * result + (vat ? 1 : 0);
+            result = 31 * result + type.ordinal();
+            result = 31 * result + pass.ordinal();
+            return result;
+        }
+    }
 }
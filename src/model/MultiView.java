@@ -0,0 +1,205 @@
+package model;
+
+import arc.graphics.*;
+import arc.graphics.g3d.*;
+import arc.math.geom.*;
+import arc.struct.*;
+import arc.util.*;
+import arc.util.pooling.*;
+import model.Model.*;
+import model.attribute.*;
+
+import java.util.*;
+
+/**
+ * Renders the same set of {@link ModelInstance}s to several viewports, e.g. for split-screen, minimaps, or reflection
+ * passes, from a single gathering. {@link #gather(ModelInstance, Environment)} resolves every view's transforms, bone
+ * palette, world bounding sphere, and {@link ModelShader} once; {@link #render()} then only culls and sorts those shared
+ * packets per {@link Viewport}, and uploads each camera's uniforms once per shader instead of once per draw, so that
+ * additional viewports cost little more than their draw calls.
+ * <p>
+ * Levels of detail are selected once against the camera given to {@link #begin(Camera3D)}, typically the main one.
+ * Likewise, the light clusters and shadow cascades of the gathered environments are only fitted to the camera they were
+ * last {@link Environment#cluster(Camera3D) clustered} and {@link Environment#shadow(Camera3D, Seq) shadowed} with, so
+ * other viewports get wrong point lights and shadows unless they're {@link Viewport#relight relit}.
+ */
+public class MultiView{
+    /** The viewports rendered by {@link #render()}, in order. */
+    public final Seq<Viewport> viewports = new Seq<>();
+
+    /** The transforms of the gathered views. */
+    public final TrnsBuffer buffer = new TrnsBuffer();
+    /** The gathered views. */
+    public final Seq<ModelView> views = new Seq<>(ModelView.class);
+
+    private final Pool<ModelView> pool = new Pool<>(){
+        @Override
+        protected ModelView newObject(){
+            return new ModelView();
+        }
+    };
+
+    /** The world bounding spheres of {@link #views}, 4 floats each. */
+    private float[] spheres = new float[64];
+    private ModelShader[] shaders = new ModelShader[16];
+    private int[] shaderOrders = new int[16];
+    private final ObjectIntMap<ModelShader> orders = new ObjectIntMap<>();
+
+    /** The distinct environments of the gathered views. */
+    private final Seq<Environment> environments = new Seq<>();
+    private long[] keys = new long[16];
+    private @Nullable Camera3D lodCam;
+    private final Vec3 tmp = new Vec3();
+
+    /** Adds a viewport covering the given rectangle of the screen in pixels. */
+    public Viewport add(Camera3D cam, int x, int y, int width, int height){
+        var viewport = new Viewport(cam, x, y, width, height);
+        viewports.add(viewport);
+        return viewport;
+    }
+
+    /**
+     * Begins a new gathering, freeing the previous views.
+     * @param lodCam The camera levels of detail are selected against. If null, the current levels are kept.
+     */
+    public void begin(@Nullable Camera3D lodCam){
+        // Gathered views hold their shaders until rendered, so they must not be evicted by later gathers.
+        ModelShader.beginFrame();
+        this.lodCam = lodCam;
+        pool.freeAll(views);
+        views.clear();
+        buffer.clear();
+        orders.clear();
+        environments.clear();
+    }
+
+    /** Gathers the views of the instance, whose node transforms must be up-to-date. */
+    public void gather(ModelInstance instance, @Nullable Environment env){
+        if(env != null && !environments.contains(env, true)) environments.add(env);
+
+        int start = views.size;
+        instance.views(pool, buffer, views, lodCam);
+
+        int size = views.size;
+        if(spheres.length < size * 4) spheres = Arrays.copyOf(spheres, Math.max(spheres.length * 2, size * 4));
+        if(shaders.length < size){
+            int cap = Math.max(shaders.length * 2, size);
+            shaders = Arrays.copyOf(shaders, cap);
+            shaderOrders = Arrays.copyOf(shaderOrders, cap);
+            keys = new long[cap];
+        }
+
+        var items = views.items;
+        for(int i = start; i < size; i++){
+            var view = items[i];
+            view.env = env;
+
+            var shader = shaders[i] = ModelShader.get(view);
+            int order = orders.get(shader, -1);
+            if(order == -1) orders.put(shader, order = orders.size);
+            shaderOrders[i] = order;
+
+            int o = i * 4;
+            spheres[o + 3] = view.sphere(tmp);
+            spheres[o] = tmp.x;
+            spheres[o + 1] = tmp.y;
+            spheres[o + 2] = tmp.z;
+        }
+    }
+
+    /**
+     * Renders the gathered views to every viewport in order. Cameras must be updated beforehand; their viewport size
+     * is left untouched. The GL viewport is left at the last viewport's rectangle.
+     */
+    public void render(){
+        for(var viewport : viewports) render(viewport);
+    }
+
+    /** Culls, sorts, and renders the gathered views to the viewport. */
+    public void render(Viewport viewport){
+        var cam = viewport.cam;
+        int count = cull(viewport);
+
+        if(viewport.relight){
+            for(var env : environments){
+                env.cluster(cam);
+                env.shadow(cam, views);
+            }
+        }
+
+        Gl.viewport(viewport.x, viewport.y, viewport.width, viewport.height);
+
+        var items = views.items;
+        ModelShader prev = null;
+        for(int i = 0; i < count; i++){
+            int index = (int)keys[i];
+            var view = items[index];
+            var shader = shaders[index];
+
+            // Views are sorted by shader, so every shader is bound and given the camera once per viewport.
+            if(shader != prev){
+                shader.bind();
+                shader.cam = cam;
+                shader.applyCamera(viewport.x, viewport.y, viewport.width, viewport.height);
+                prev = shader;
+            }
+
+            shader.model = view;
+            shader.applyModel();
+            view.mesh.render(shader, true);
+        }
+    }
+
+    /**
+     * Writes the sort keys of the views visible to the viewport's camera to {@link #keys}, sorted by shader and then
+     * front to back, with the view index in their lower 32 bits.
+     * @return The amount of visible views.
+     */
+    int cull(Viewport viewport){
+        var cam = viewport.cam;
+        var frustum = cam.frustum;
+        var pos = cam.position;
+        float far = Math.max(cam.far, 0.0001f);
+
+        int count = 0, size = views.size;
+        for(int i = 0; i < size; i++){
+            int o = i * 4;
+            float r = spheres[o + 3];
+            if(viewport.cull && !frustum.sphereInFrustum(tmp.set(spheres[o], spheres[o + 1], spheres[o + 2]), r)) continue;
+
+            float dst = Math.max(pos.dst(spheres[o], spheres[o + 1], spheres[o + 2]) - r, 0f);
+            long depth = Math.min((long)(dst / far * 0xffff), 0xffff);
+
+            keys[count++] = (long)shaderOrders[i] << 48 | depth << 32 | i;
+        }
+
+        Arrays.sort(keys, 0, count);
+        viewport.visible = count;
+        return count;
+    }
+
+    /** A camera rendering to a rectangle of the screen. */
+    public static class Viewport{
+        /** The camera of this viewport. */
+        public final Camera3D cam;
+        /** The rectangle of this viewport in pixels. */
+        public int x, y, width, height;
+        /** Whether views outside of the camera's frustum are skipped. */
+        public boolean cull = true;
+        /**
+         * Whether the light clusters and shadow maps of the gathered environments are refitted to this viewport's camera
+         * before rendering it. Costs a clustering and a shadow pass per viewport, so it's off by default.
+         */
+        public boolean relight;
+        /** The amount of views that were visible in the last render. */
+        public int visible;
+
+        public Viewport(Camera3D cam, int x, int y, int width, int height){
+            this.cam = cam;
+            this.x = x;
+            this.y = y;
+            this.width = width;
+            this.height = height;
+        }
+    }
+}
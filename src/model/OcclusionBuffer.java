@@ -0,0 +1,352 @@
+package model;
+
+import arc.graphics.g3d.*;
+import arc.math.geom.*;
+import arc.struct.*;
+import arc.util.*;
+import model.part.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * A coarse software depth buffer for occlusion culling on the CPU. Every frame, after {@link #begin(Camera3D)}, the
+ * {@link MeshPart#occluder occluders} of the scene are submitted, clipped, and binned into screen tiles, then
+ * {@link #rasterize() rasterized}; bounding spheres are {@link #visible(float, float, float, float) tested} against the
+ * result, so that parts hidden behind occluders aren't gathered as views at all.
+ * <p>
+ * Depths are normalized device Z in a flat array of rows. Every tile is rasterized independently, optionally in
+ * parallel on an {@link #executor}, with edge functions evaluated per pixel along contiguous rows so that the inner
+ * loop carries no dependencies between pixels. Nothing here touches the GPU, so the buffer can be validated headless.
+ */
+public class OcclusionBuffer{
+    /** The width and height of a tile in pixels. */
+    public static final int tileSize = 32;
+
+    /** The size of the buffer in pixels. */
+    public final int width, height;
+    /** The amount of tiles along each axis. */
+    public final int tilesX, tilesY;
+    /** The depth of every pixel in rows from the bottom of the screen, or positive infinity where nothing was rasterized. */
+    public final float[] depths;
+    /** If not null, tiles are rasterized in parallel on this executor, one task per row of tiles. */
+    public @Nullable ExecutorService executor;
+    /** The amount of occluder triangles binned since {@link #begin(Camera3D)}, after clipping. */
+    public int numTriangles;
+
+    /** The farthest depth of every tile, so that spheres behind a whole tile skip its pixels. */
+    private final float[] tileMax;
+    /** The triangles overlapping every tile. */
+    private final IntSeq[] bins;
+    private final ArrayList<Callable<Object>> rows = new ArrayList<>();
+
+    /** The edge functions and depth plane of every triangle, 12 floats each as (x, y, constant) coefficients. */
+    private float[] setup = new float[12 * 64];
+    /** The pixel bounds of every triangle, 4 ints each as minimum X and Y then maximum X and Y, inclusive. */
+    private int[] rects = new int[4 * 64];
+
+    private final float[] combined = new float[16], mvp = new float[16];
+    private final float[] polygon = new float[4 * 4], clipped = new float[4 * 4];
+    private final Vec3 dir = new Vec3(), tmp = new Vec3();
+
+    public OcclusionBuffer(int width, int height){
+        if(width < 1 || height < 1) throw new IllegalArgumentException("The buffer must be at least 1x1.");
+
+        this.width = width;
+        this.height = height;
+        tilesX = (width + tileSize - 1) / tileSize;
+        tilesY = (height + tileSize - 1) / tileSize;
+        depths = new float[width * height];
+        tileMax = new float[tilesX * tilesY];
+
+        bins = new IntSeq[tilesX * tilesY];
+        for(int i = 0; i < bins.length; i++) bins[i] = new IntSeq();
+
+        for(int ty = 0; ty < tilesY; ty++){
+            int row = ty;
+            rows.add(() -> {
+                for(int tx = 0; tx < tilesX; tx++) rasterize(tx, row);
+                return null;
+            });
+        }
+    }
+
+    /** Clears the buffer and begins submitting occluders seen through the camera, which must be updated beforehand. */
+    public void begin(Camera3D cam){
+        System.arraycopy(cam.combined.val, 0, combined, 0, 16);
+        dir.set(cam.direction).nor();
+
+        numTriangles = 0;
+        for(var bin : bins) bin.clear();
+        Arrays.fill(depths, Float.POSITIVE_INFINITY);
+        Arrays.fill(tileMax, Float.POSITIVE_INFINITY);
+    }
+
+    /** Submits the occluders of the instance's unskinned parts. Its node transforms must be up-to-date. */
+    public void occluders(ModelInstance instance){
+        instance.nodes(root -> root.each(node -> {
+            for(var part : node.parts){
+                if(part.skin == null && part.mesh.occluder != null) occluder(part.mesh.occluder, node.worldTrns);
+            }
+        }));
+    }
+
+    /**
+     * Submits occluder triangles, clipping them against the near plane.
+     * @param triangles The local positions of the triangles, 9 floats each.
+     * @param trns      The transform from local to world space.
+     */
+    public void occluder(float[] triangles, Mat3D trns){
+        var m = trns.val;
+        for(int col = 0; col < 4; col++){
+            for(int row = 0; row < 4; row++){
+                mvp[col * 4 + row] =
+                    combined[row] * m[col * 4] + combined[4 + row] * m[col * 4 + 1] +
+                    combined[8 + row] * m[col * 4 + 2] + combined[12 + row] * m[col * 4 + 3];
+            }
+        }
+
+        for(int t = 0; t + 9 <= triangles.length; t += 9){
+            for(int k = 0; k < 3; k++){
+                float x = triangles[t + k * 3], y = triangles[t + k * 3 + 1], z = triangles[t + k * 3 + 2];
+                int o = k * 4;
+                polygon[o] = mvp[0] * x + mvp[4] * y + mvp[8] * z + mvp[12];
+                polygon[o + 1] = mvp[1] * x + mvp[5] * y + mvp[9] * z + mvp[13];
+                polygon[o + 2] = mvp[2] * x + mvp[6] * y + mvp[10] * z + mvp[14];
+                polygon[o + 3] = mvp[3] * x + mvp[7] * y + mvp[11] * z + mvp[15];
+            }
+
+            int count = clipNear();
+            for(int k = 2; k < count; k++) bin(0, (k - 1) * 4, k * 4);
+        }
+    }
+
+    /**
+     * Clips the triangle in {@link #polygon} against the near plane, where {@code z + w >= 0}, into {@link #clipped}.
+     * @return The amount of vertices left, at most 4.
+     */
+    private int clipNear(){
+        int count = 0;
+        for(int k = 0; k < 3; k++){
+            int a = k * 4, b = (k + 1) % 3 * 4;
+            float da = polygon[a + 2] + polygon[a + 3], db = polygon[b + 2] + polygon[b + 3];
+
+            if(da >= 0f){
+                System.arraycopy(polygon, a, clipped, count++ * 4, 4);
+            }
+            if((da >= 0f) != (db >= 0f)){
+                // Interpolating from the inside vertex gives triangles sharing a clipped edge the exact same point,
+                // so that no pixels fall through the crack between them.
+                int in = da >= 0f ? a : b, out = da >= 0f ? b : a;
+                float din = da >= 0f ? da : db, dout = da >= 0f ? db : da, f = din / (din - dout);
+                int o = count++ * 4;
+                for(int c = 0; c < 4; c++) clipped[o + c] = polygon[in + c] + (polygon[out + c] - polygon[in + c]) * f;
+            }
+        }
+        return count;
+    }
+
+    /** Projects the clipped triangle with the given vertex offsets, sets it up, and adds it to the tiles it overlaps. */
+    private void bin(int a, int b, int c){
+        float
+            x0 = screenX(a), y0 = screenY(a), z0 = clipped[a + 2] / clipped[a + 3],
+            x1 = screenX(b), y1 = screenY(b), z1 = clipped[b + 2] / clipped[b + 3],
+            x2 = screenX(c), y2 = screenY(c), z2 = clipped[c + 2] / clipped[c + 3];
+
+        float area = (x1 - x0) * (y2 - y0) - (x2 - x0) * (y1 - y0);
+        if(Math.abs(area) < 1e-8f) return;
+
+        // Pixels are sampled at their centers.
+        int
+            minX = Math.max((int)Math.ceil(Math.min(x0, Math.min(x1, x2)) - 0.5f), 0),
+            minY = Math.max((int)Math.ceil(Math.min(y0, Math.min(y1, y2)) - 0.5f), 0),
+            maxX = Math.min((int)Math.floor(Math.max(x0, Math.max(x1, x2)) - 0.5f), width - 1),
+            maxY = Math.min((int)Math.floor(Math.max(y0, Math.max(y1, y2)) - 0.5f), height - 1);
+        if(minX > maxX || minY > maxY) return;
+
+        int index = numTriangles++;
+        if(setup.length < numTriangles * 12){
+            setup = Arrays.copyOf(setup, setup.length * 2);
+            rects = Arrays.copyOf(rects, rects.length * 2);
+        }
+
+        // Edge functions are positive inside regardless of winding, so occluders are two-sided.
+        float sign = area > 0f ? 1f : -1f;
+        int o = index * 12;
+        edge(o, x0, y0, x1, y1, sign);
+        edge(o + 3, x1, y1, x2, y2, sign);
+        edge(o + 6, x2, y2, x0, y0, sign);
+
+        float
+            dzdx = ((z1 - z0) * (y2 - y0) - (z2 - z0) * (y1 - y0)) / area,
+            dzdy = ((x1 - x0) * (z2 - z0) - (x2 - x0) * (z1 - z0)) / area;
+        setup[o + 9] = dzdx;
+        setup[o + 10] = dzdy;
+        setup[o + 11] = z0 - dzdx * x0 - dzdy * y0;
+
+        int r = index * 4;
+        rects[r] = minX;
+        rects[r + 1] = minY;
+        rects[r + 2] = maxX;
+        rects[r + 3] = maxY;
+
+        for(int ty = minY / tileSize; ty <= maxY / tileSize; ty++){
+            for(int tx = minX / tileSize; tx <= maxX / tileSize; tx++) bins[ty * tilesX + tx].add(index);
+        }
+    }
+
+    private void edge(int o, float x0, float y0, float x1, float y1, float sign){
+        setup[o] = (y0 - y1) * sign;
+        setup[o + 1] = (x1 - x0) * sign;
+        setup[o + 2] = (x0 * y1 - x1 * y0) * sign;
+    }
+
+    private float screenX(int o){
+        return (clipped[o] / clipped[o + 3] * 0.5f + 0.5f) * width;
+    }
+
+    private float screenY(int o){
+        return (clipped[o + 1] / clipped[o + 3] * 0.5f + 0.5f) * height;
+    }
+
+    /** Rasterizes every binned triangle into {@link #depths}, in parallel if there is an {@link #executor}. */
+    public void rasterize(){
+        if(executor == null || tilesY == 1){
+            for(int ty = 0; ty < tilesY; ty++){
+                for(int tx = 0; tx < tilesX; tx++) rasterize(tx, ty);
+            }
+            return;
+        }
+
+        try{
+            for(var future : executor.invokeAll(rows)) future.get();
+        }catch(InterruptedException e){
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while rasterizing occluders.", e);
+        }catch(ExecutionException e){
+            throw new IllegalStateException("Failed to rasterize occluders.", e.getCause());
+        }
+    }
+
+    private void rasterize(int tx, int ty){
+        int
+            tile = ty * tilesX + tx,
+            tileMinX = tx * tileSize, tileMinY = ty * tileSize,
+            tileMaxX = Math.min(tileMinX + tileSize, width) - 1, tileMaxY = Math.min(tileMinY + tileSize, height) - 1;
+
+        var bin = bins[tile];
+        var s = setup;
+        var d = depths;
+        for(int i = 0; i < bin.size; i++){
+            int index = bin.items[i], o = index * 12, r = index * 4;
+            int
+                minX = Math.max(rects[r], tileMinX), minY = Math.max(rects[r + 1], tileMinY),
+                maxX = Math.min(rects[r + 2], tileMaxX), maxY = Math.min(rects[r + 3], tileMaxY);
+
+            float
+                a0 = s[o], a1 = s[o + 3], a2 = s[o + 6], az = s[o + 9];
+            for(int y = minY; y <= maxY; y++){
+                float py = y + 0.5f;
+                float
+                    c0 = s[o + 1] * py + s[o + 2], c1 = s[o + 4] * py + s[o + 5],
+                    c2 = s[o + 7] * py + s[o + 8], cz = s[o + 10] * py + s[o + 11];
+
+                int row = y * width;
+                for(int x = minX; x <= maxX; x++){
+                    float px = x + 0.5f;
+                    float
+                        e0 = a0 * px + c0, e1 = a1 * px + c1, e2 = a2 * px + c2,
+                        z = az * px + cz;
+
+                    int p = row + x;
+                    if(Math.min(e0, Math.min(e1, e2)) >= 0f && z < d[p]) d[p] = z;
+                }
+            }
+        }
+
+        float max = Float.NEGATIVE_INFINITY;
+        for(int y = tileMinY; y <= tileMaxY; y++){
+            int row = y * width;
+            for(int x = tileMinX; x <= tileMaxX; x++) max = Math.max(max, d[row + x]);
+        }
+        tileMax[tile] = max;
+    }
+
+    /** @return Whether the mesh's bounding sphere, transformed by the given world transform, isn't hidden by occluders. */
+    public boolean visible(MeshPart mesh, Mat3D trns){
+        var val = trns.val;
+        var c = mesh.center;
+        float scl2 = Math.max(
+            val[0] * val[0] + val[1] * val[1] + val[2] * val[2], Math.max(
+            val[4] * val[4] + val[5] * val[5] + val[6] * val[6],
+            val[8] * val[8] + val[9] * val[9] + val[10] * val[10]
+        ));
+
+        tmp.set(
+            val[0] * c.x + val[4] * c.y + val[8] * c.z + val[12],
+            val[1] * c.x + val[5] * c.y + val[9] * c.z + val[13],
+            val[2] * c.x + val[6] * c.y + val[10] * c.z + val[14]
+        );
+        return visible(tmp.x, tmp.y, tmp.z, mesh.radius * (float)Math.sqrt(scl2));
+    }
+
+    /**
+     * Tests the world bounding sphere against the rasterized occluders. Spheres crossing the near plane or outside of
+     * the screen are always considered visible; frustum culling is left to the caller.
+     * @return Whether any pixel covered by the sphere's screen bounds is farther than the sphere's nearest point.
+     */
+    public boolean visible(float x, float y, float z, float radius){
+        float[] m = combined;
+
+        // The sphere's nearest point along the view direction has its smallest depth, in both projections.
+        float
+            nx = x - dir.x * radius, ny = y - dir.y * radius, nz = z - dir.z * radius,
+            clipZ = m[2] * nx + m[6] * ny + m[10] * nz + m[14],
+            clipW = m[3] * nx + m[7] * ny + m[11] * nz + m[15];
+        if(clipZ + clipW < 0f || clipW <= 1e-6f) return true;
+        float depth = clipZ / clipW;
+
+        // The screen bounds of the sphere's bounding box contain those of the sphere.
+        float minX = Float.POSITIVE_INFINITY, minY = Float.POSITIVE_INFINITY, maxX = Float.NEGATIVE_INFINITY, maxY = Float.NEGATIVE_INFINITY;
+        for(int k = 0; k < 8; k++){
+            float
+                cx = (k & 1) == 0 ? x - radius : x + radius,
+                cy = (k & 2) == 0 ? y - radius : y + radius,
+                cz = (k & 4) == 0 ? z - radius : z + radius,
+                w = m[3] * cx + m[7] * cy + m[11] * cz + m[15];
+            if(w <= 1e-6f) return true;
+
+            float
+                sx = ((m[0] * cx + m[4] * cy + m[8] * cz + m[12]) / w * 0.5f + 0.5f) * width,
+                sy = ((m[1] * cx + m[5] * cy + m[9] * cz + m[13]) / w * 0.5f + 0.5f) * height;
+            minX = Math.min(minX, sx);
+            minY = Math.min(minY, sy);
+            maxX = Math.max(maxX, sx);
+            maxY = Math.max(maxY, sy);
+        }
+
+        if(maxX < 0f || maxY < 0f || minX >= width || minY >= height) return true;
+
+        int
+            x0 = Math.max((int)Math.floor(minX), 0), y0 = Math.max((int)Math.floor(minY), 0),
+            x1 = Math.min((int)Math.floor(maxX), width - 1), y1 = Math.min((int)Math.floor(maxY), height - 1);
+
+        for(int ty = y0 / tileSize; ty <= y1 / tileSize; ty++){
+            for(int tx = x0 / tileSize; tx <= x1 / tileSize; tx++){
+                if(depth >= tileMax[ty * tilesX + tx]) continue;
+
+                int
+                    minPX = Math.max(x0, tx * tileSize), maxPX = Math.min(x1, tx * tileSize + tileSize - 1),
+                    minPY = Math.max(y0, ty * tileSize), maxPY = Math.min(y1, ty * tileSize + tileSize - 1);
+                for(int py = minPY; py <= maxPY; py++){
+                    int row = py * width;
+                    for(int px = minPX; px <= maxPX; px++){
+                        if(depths[row + px] > depth) return true;
+                    }
+                }
+            }
+        }
+
+        return false;
+    }
+}
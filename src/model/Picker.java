@@ -0,0 +1,131 @@
+package model;
+
+import arc.math.geom.*;
+import model.part.*;
+import model.part.Node.*;
+
+/**
+ * Picks the nearest triangle that a world ray hits across {@link ModelInstance}s, through the {@link MeshBvh} of every
+ * part, which requires their models to be loaded {@link Model#pickable pickable}. Parts without one are skipped.
+ * <p>
+ * Every part is first tested against its world bounding sphere, and only then is the ray brought into its node's local
+ * space to query the hierarchy, so that rejected instances cost a handful of operations. Node transforms must be
+ * up-to-date. Skinned parts are picked in their bind pose.
+ */
+public class Picker{
+    private final Mat3D inv = new Mat3D();
+    private final MeshBvh.Hit result = new MeshBvh.Hit();
+
+    /**
+     * Picks the nearest triangle of the instances hit by the ray, nearer than {@link Hit#distance}.
+     * @return Whether a hit was found, in which case it is written to the given hit.
+     */
+    public boolean pick(Iterable<ModelInstance> instances, Ray ray, Hit hit){
+        boolean found = false;
+        for(var instance : instances) found |= pick(instance, ray, hit);
+        return found;
+    }
+
+    /**
+     * Picks the nearest triangle of the instance hit by the ray, nearer than {@link Hit#distance}.
+     * @return Whether a hit was found, in which case it is written to the given hit.
+     */
+    public boolean pick(ModelInstance instance, Ray ray, Hit hit){
+        boolean found = false;
+        for(var node : instance.nodes.values()) found |= pick(instance, node, ray, hit);
+        return found;
+    }
+
+    private boolean pick(ModelInstance instance, Node node, Ray ray, Hit hit){
+        boolean found = false;
+        for(var part : node.parts){
+            var bvh = part.mesh.bvh;
+            if(bvh != null && sphere(node.worldTrns, part.mesh, ray, hit.distance) && local(node.worldTrns, bvh, ray, hit.distance)){
+                hit.instance = instance;
+                hit.node = node;
+                hit.part = part;
+                hit.triangle = result.triangle;
+                hit.distance = result.distance;
+                found = true;
+            }
+        }
+
+        for(var child : node.children.values()) found |= pick(instance, child, ray, hit);
+        return found;
+    }
+
+    /** @return Whether the ray passes through the part's world bounding sphere nearer than the given distance. */
+    static boolean sphere(Mat3D trns, MeshPart mesh, Ray ray, float maxDist){
+        var val = trns.val;
+        var c = mesh.center;
+        float
+            x = val[0] * c.x + val[4] * c.y + val[8] * c.z + val[12] - ray.origin.x,
+            y = val[1] * c.x + val[5] * c.y + val[9] * c.z + val[13] - ray.origin.y,
+            z = val[2] * c.x + val[6] * c.y + val[10] * c.z + val[14] - ray.origin.z,
+            scl2 = Math.max(
+                val[0] * val[0] + val[1] * val[1] + val[2] * val[2], Math.max(
+                val[4] * val[4] + val[5] * val[5] + val[6] * val[6],
+                val[8] * val[8] + val[9] * val[9] + val[10] * val[10]
+            )),
+            r2 = mesh.radius * mesh.radius * scl2;
+
+        var d = ray.direction;
+        float
+            along = x * d.x + y * d.y + z * d.z,
+            dst2 = x * x + y * y + z * z - along * along;
+        if(dst2 > r2) return false;
+
+        float half = (float)Math.sqrt(r2 - dst2);
+        return along + half >= 0f && along - half < maxDist;
+    }
+
+    /**
+     * Queries the hierarchy with the ray in the node's local space, writing a hit nearer than the given distance to
+     * {@link #result}.
+     */
+    private boolean local(Mat3D trns, MeshBvh bvh, Ray ray, float maxDist){
+        var val = inv.set(trns).inv().val;
+        var o = ray.origin;
+        var d = ray.direction;
+
+        // The direction isn't renormalized, so that distances along it stay in world units.
+        return bvh.intersect(
+            val[0] * o.x + val[4] * o.y + val[8] * o.z + val[12],
+            val[1] * o.x + val[5] * o.y + val[9] * o.z + val[13],
+            val[2] * o.x + val[6] * o.y + val[10] * o.z + val[14],
+            val[0] * d.x + val[4] * d.y + val[8] * d.z,
+            val[1] * d.x + val[5] * d.y + val[9] * d.z,
+            val[2] * d.x + val[6] * d.y + val[10] * d.z,
+            maxDist, result
+        );
+    }
+
+    /** The nearest triangle hit by a pick. */
+    public static class Hit{
+        /** The instance that was hit, or null if nothing was. */
+        public ModelInstance instance;
+        /** The node of the hit part. */
+        public Node node;
+        /** The hit part. */
+        public NodePart part;
+        /** The index of the hit triangle within its {@link MeshPart}, as in {@link MeshBvh.Hit#triangle}. */
+        public int triangle = -1;
+        /** The distance along the ray to the hit. Only hits nearer than it are picked, so it must be reset between picks. */
+        public float distance = Float.POSITIVE_INFINITY;
+
+        /** Clears this hit, so that it accepts any distance. */
+        public Hit reset(){
+            instance = null;
+            node = null;
+            part = null;
+            triangle = -1;
+            distance = Float.POSITIVE_INFINITY;
+            return this;
+        }
+
+        /** @return The world position of the hit along the ray it was picked with. */
+        public Vec3 point(Ray ray, Vec3 out){
+            return out.set(ray.direction).scl(distance).add(ray.origin);
+        }
+    }
+}
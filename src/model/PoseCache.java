@@ -0,0 +1,153 @@
+package model;
+
+import arc.struct.*;
+import arc.util.*;
+import model.part.*;
+
+/**
+ * A bounded cache of sampled animation poses, keyed by their {@link Anim#source original animation}'s {@link Anim#uid}
+ * and time quantized to {@link #rate} steps per unit of time. Hits copy the cached translation, rotation, and scaling
+ * of every animated node instead of searching and interpolating keyframes; misses sample the animation once at the
+ * quantized time and store the result, evicting the least recently used pose past {@link #maxPoses}.
+ * <p>
+ * Since instances share their model's original animations, a single cache may be shared by every {@link AnimController}
+ * animating instances of the same models, so that units idling at the same few poses sample them only once. Cached
+ * sampling snaps time to the nearest step, which trades smoothness for hits; rates should match how finely the
+ * animations need to be resolved.
+ * <p>
+ * The cache holds no references to animations, so it never keeps disposed models' animations alive; their poses are
+ * simply evicted once no longer used.
+ */
+public class PoseCache{
+    /** The amount of quantization steps per unit of time. */
+    public final float rate;
+    /** The maximum amount of cached poses. */
+    public final int maxPoses;
+
+    private final LongMap<Pose> poses = new LongMap<>();
+    /** The sentinel of the recency list; its next pose is the most recently used, its previous the least. */
+    private final Pose head = new Pose();
+
+    private long hits, misses, evictions;
+
+    /**
+     * @param rate     The amount of quantization steps per unit of time.
+     * @param maxPoses The maximum amount of cached poses.
+     */
+    public PoseCache(float rate, int maxPoses){
+        if(rate <= 0f) throw new IllegalArgumentException("Rate must be positive.");
+        if(maxPoses <= 0) throw new IllegalArgumentException("At least one pose must be cacheable.");
+
+        this.rate = rate;
+        this.maxPoses = maxPoses;
+        head.next = head.prev = head;
+    }
+
+    /**
+     * Writes the pose of the animation at the given time, quantized to {@link #rate}, in the layout of
+     * {@link AnimController#sample(Anim, float, int[], float[])}.
+     */
+    public void sample(Anim anim, float time, @Nullable int[] slots, float[] out){
+        var source = anim.source;
+        int step = Math.round(time * rate);
+        long key = ((long)source.uid << 32) | (step & 0xffffffffL);
+
+        var pose = poses.get(key);
+        if(pose == null){
+            misses++;
+            pose = obtain(source.anims.size * AnimController.stride);
+            pose.key = key;
+            poses.put(key, pose);
+            AnimController.sample(source, step / rate, null, pose.values);
+        }else{
+            hits++;
+            unlink(pose);
+        }
+
+        // Move to the front of the recency list.
+        pose.next = head.next;
+        pose.prev = head;
+        head.next.prev = pose;
+        head.next = pose;
+
+        copy(anim, pose.values, slots, out);
+    }
+
+    private Pose obtain(int size){
+        Pose pose;
+        if(poses.size >= maxPoses){
+            evictions++;
+            pose = head.prev;
+            unlink(pose);
+            poses.remove(pose.key);
+        }else{
+            pose = new Pose();
+        }
+
+        if(pose.values == null || pose.values.length != size) pose.values = new float[size];
+        return pose;
+    }
+
+    private static void unlink(Pose pose){
+        pose.prev.next = pose.next;
+        pose.next.prev = pose.prev;
+    }
+
+    /** Copies the channels that the animation has keyframes for, leaving the others untouched as sampling does. */
+    private static void copy(Anim anim, float[] values, @Nullable int[] slots, float[] out){
+        var anims = anim.anims;
+        int stride = AnimController.stride;
+        for(int i = 0; i < anims.size; i++){
+            var nodeAnim = anims.get(i);
+            int src = i * stride, dst = (slots == null ? i : slots[i]) * stride;
+
+            if(nodeAnim.trns.any()) System.arraycopy(values, src, out, dst, 3);
+            if(nodeAnim.rot.any()) System.arraycopy(values, src + 3, out, dst + 3, 4);
+            if(nodeAnim.scl.any()) System.arraycopy(values, src + 7, out, dst + 7, 3);
+        }
+    }
+
+    /** Removes every cached pose, keeping the statistics. */
+    public void clear(){
+        poses.clear();
+        head.next = head.prev = head;
+    }
+
+    /** Resets the statistics. */
+    public void reset(){
+        hits = misses = evictions = 0;
+    }
+
+    /** @return The amount of currently cached poses. */
+    public int size(){
+        return poses.size;
+    }
+
+    /** @return The amount of samples served from the cache. */
+    public long hits(){
+        return hits;
+    }
+
+    /** @return The amount of samples that had to evaluate their animation. */
+    public long misses(){
+        return misses;
+    }
+
+    /** @return The amount of poses evicted due to exceeding {@link #maxPoses}. */
+    public long evictions(){
+        return evictions;
+    }
+
+    /** @return The fraction of samples served from the cache, or 0 if there were none. */
+    public float hitRate(){
+        long total = hits + misses;
+        return total == 0 ? 0f : (float)hits / total;
+    }
+
+    /** A cached pose, linked in the recency list. */
+    static class Pose{
+        long key;
+        float[] values;
+        Pose prev, next;
+    }
+}
@@ -0,0 +1,174 @@
+package model;
+
+import arc.graphics.g3d.*;
+import arc.struct.*;
+import arc.util.*;
+import arc.util.pooling.*;
+import model.Model.*;
+import model.attribute.*;
+
+/**
+ * A ring of render {@link Snapshot}s handed from an update thread to a render thread, so that the next frame's
+ * animations and transforms may be computed while the previous frame renders. Gathering views already copies every
+ * transform and bone palette into the snapshot's own {@link TrnsBuffer}, so a published snapshot no longer depends on
+ * its nodes, and nodes may be updated freely afterwards.
+ * <p>
+ * The update thread fills a snapshot from {@link #begin()} and then {@link #publish(Snapshot) publishes} it; the render
+ * thread {@link #acquire() acquires} the latest published snapshot and {@link #release(Snapshot) releases} it once
+ * drawn. Neither thread ever waits on the other: with two snapshots, a published one that wasn't acquired yet is
+ * overwritten by the next frame and {@link #dropped() dropped}, whereas a third snapshot lets the update thread run a
+ * frame ahead without dropping any. A snapshot is only ever touched by one thread at a time.
+ * <p>
+ * Environments are copied into each snapshot as well, {@link Environment#snapshot(Environment) sharing} only their
+ * GPU-side attributes, so lights may be modified by the update thread while a previous frame renders. The render thread
+ * must then {@link Environment#cluster(Camera3D) cluster} and {@link Environment#shadow(Camera3D, Seq) shadow} the
+ * snapshot's {@link Snapshot#environments} rather than the originals, which the render thread must never touch.
+ * <p>
+ * Views refer to materials and meshes instead of copying them, so modifying those concurrently to rendering still
+ * requires synchronization of its own.
+ */
+public class RenderSnapshots{
+    /** The snapshots in the ring. */
+    public final Snapshot[] snapshots;
+
+    private @Nullable Snapshot writing, ready, reading;
+    private long frame, dropped;
+
+    /** @param count The amount of snapshots, either 2 for double or 3 for triple buffering. */
+    public RenderSnapshots(int count){
+        if(count < 2) throw new IllegalArgumentException("At least two snapshots are required.");
+
+        snapshots = new Snapshot[count];
+        for(int i = 0; i < count; i++) snapshots[i] = new Snapshot();
+    }
+
+    /**
+     * Clears and returns a snapshot to be filled by the update thread. The previous snapshot from this method must have
+     * been {@link #publish(Snapshot) published} first.
+     */
+    public synchronized Snapshot begin(){
+        if(writing != null) throw new IllegalStateException("The previous snapshot hasn't been published.");
+
+        Snapshot next = null;
+        for(var snapshot : snapshots){
+            if(snapshot != reading && snapshot != ready){
+                next = snapshot;
+                break;
+            }
+        }
+
+        // Every other snapshot is either being rendered or waiting to be; overwrite the waiting one.
+        if(next == null){
+            next = ready;
+            ready = null;
+            dropped++;
+        }
+
+        writing = next;
+        next.clear();
+        return next;
+    }
+
+    /** Publishes the snapshot filled since {@link #begin()}, making it the one the next {@link #acquire()} returns. */
+    public synchronized void publish(Snapshot snapshot){
+        if(snapshot != writing) throw new IllegalArgumentException("Only the snapshot being written may be published.");
+
+        // A published snapshot that was never acquired is superseded.
+        if(ready != null) dropped++;
+
+        snapshot.frame = frame++;
+        ready = snapshot;
+        writing = null;
+    }
+
+    /**
+     * Acquires the latest published snapshot for rendering, releasing the previously acquired one if it wasn't
+     * already. If nothing was published since, the previously acquired snapshot is returned again.
+     * @return The snapshot to render, or null if none was published yet.
+     */
+    public synchronized @Nullable Snapshot acquire(){
+        if(ready != null){
+            reading = ready;
+            ready = null;
+        }
+        return reading;
+    }
+
+    /**
+     * Releases a snapshot acquired by {@link #acquire()} once it's rendered, allowing the update thread to reuse it.
+     * Releasing is optional if the render thread always acquires again, but lets a double-buffered ring avoid drops.
+     */
+    public synchronized void release(Snapshot snapshot){
+        if(snapshot == reading) reading = null;
+    }
+
+    /** @return The amount of published snapshots that were superseded before being acquired. */
+    public synchronized long dropped(){
+        return dropped;
+    }
+
+    /**
+     * The views of a single frame along with the transforms they refer to, each snapshot owning its own pool so that
+     * gathering and freeing never race across threads.
+     */
+    public static class Snapshot{
+        /** The transforms and bone palettes that {@link #views} refer to. */
+        public final TrnsBuffer buffer = new TrnsBuffer();
+        /** The gathered views. */
+        public final Seq<ModelView> views = new Seq<>(ModelView.class);
+        /** The pool {@link #views} are obtained from. */
+        public final Pool<ModelView> pool = new Pool<>(){
+            @Override
+            protected ModelView newObject(){
+                return new ModelView();
+            }
+        };
+
+        /** The copies of the environments {@link #views} refer to, to be clustered and shadowed by the render thread. */
+        public final Seq<Environment> environments = new Seq<>();
+        /** The sequence number of this snapshot's frame, assigned as it's published. */
+        public long frame = -1;
+
+        /** Environment copies kept across frames, keyed by their source environment. */
+        private final ObjectMap<Environment, Environment> copies = new ObjectMap<>();
+
+        /**
+         * Gathers the views of the instance into this snapshot. Its node transforms must be up-to-date.
+         * @param cam The camera the levels of detail are selected against. If null, the current levels are kept.
+         * @param env The environment of the views, which is copied into this snapshot. May be null.
+         */
+        public void add(ModelInstance instance, @Nullable Camera3D cam, @Nullable Environment env){
+            int start = views.size;
+            instance.views(pool, buffer, views, cam);
+
+            var copy = env == null ? null : environment(env);
+            var items = views.items;
+            for(int i = start, end = views.size; i < end; i++) items[i].env = copy;
+        }
+
+        /** @return This snapshot's copy of the environment, copying its current lights in the first call per frame. */
+        public Environment environment(Environment env){
+            var copy = copies.get(env);
+            if(copy == null) copies.put(env, copy = new Environment());
+
+            if(!environments.contains(copy, true)){
+                env.snapshot(copy);
+                environments.add(copy);
+            }
+            return copy;
+        }
+
+        /** Frees every view and clears the transforms. Environment copies unused in the cleared frame are dropped. */
+        public void clear(){
+            pool.freeAll(views);
+            views.clear();
+            buffer.clear();
+
+            var entries = copies.entries();
+            for(var entry : entries){
+                if(!environments.contains(entry.value, true)) entries.remove();
+            }
+            environments.clear();
+        }
+    }
+}
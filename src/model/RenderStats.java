@@ -0,0 +1,244 @@
+package model;
+
+import arc.*;
+import arc.math.*;
+import arc.util.*;
+import model.part.*;
+
+import java.nio.*;
+
+/**
+ * Opt-in statistics of the model renderer, counting views, shader and texture binds, uniform uploads, and draw calls
+ * per frame. Enabled with the {@code model.stats} system property; since {@link #enabled} is a constant, every counter
+ * increment guarded by it is folded away by the JIT when disabled.
+ * <p>
+ * Frames are delimited by {@link #begin()} and {@link #end()}. Counters of the frame being rendered are in
+ * {@link #frame}, those of the last completed frame in {@link #last}, and rolling averages are available through
+ * {@link #mean(Stat)}. Where the backend supports timer queries, the first frame installs a {@link QueryTimer} as the
+ * {@link #timer} unless one was set already.
+ */
+public class RenderStats{
+    /** Whether statistics are collected at all. */
+    public static final boolean enabled = Boolean.getBoolean("model.stats");
+    /** The amount of frames the rolling averages are computed over. */
+    public static final int window = 60;
+
+    /** The counters of the frame currently being rendered. */
+    public static final Counters frame = new Counters();
+    /** The counters of the last completed frame. */
+    public static final Counters last = new Counters();
+
+    /** An optional GPU timer, defaulting to a {@link QueryTimer} where the backend supports timer queries. */
+    public static @Nullable GpuTimer timer;
+    /** The latest available GPU time of a frame in milliseconds, or 0 if there is no {@link #timer}. */
+    public static float gpuTime;
+
+    private static final WindowedMean[] means = new WindowedMean[Stat.all.length];
+    private static final WindowedMean gpuMean = new WindowedMean(window);
+    private static boolean timerProbed;
+
+    static{
+        for(int i = 0; i < means.length; i++) means[i] = new WindowedMean(window);
+    }
+
+    /** Begins a frame, resetting {@link #frame}. */
+    public static void begin(){
+        if(!enabled) return;
+
+        frame.reset();
+        if(timer == null && !timerProbed){
+            timerProbed = true;
+            if(QueryTimer.supported()) timer = new QueryTimer();
+        }
+        if(timer != null) timer.begin();
+    }
+
+    /** Ends a frame, publishing {@link #frame} to {@link #last} and the rolling averages. */
+    public static void end(){
+        if(!enabled) return;
+
+        if(timer != null){
+            timer.end();
+            gpuTime = timer.elapsed();
+            gpuMean.add(gpuTime);
+        }
+
+        last.set(frame);
+        for(var stat : Stat.all) means[stat.ordinal()].add(frame.get(stat));
+    }
+
+    /** @return The rolling average of the given statistic over the last {@link #window} frames. */
+    public static float mean(Stat stat){
+        return means[stat.ordinal()].mean();
+    }
+
+    /** @return The rolling average of {@link #gpuTime} over the last {@link #window} frames. */
+    public static float meanGpuTime(){
+        return gpuMean.mean();
+    }
+
+    /** Per-frame renderer counters. */
+    public static class Counters{
+        /** Gathered {@link Model.ModelView}s. */
+        public int views;
+        /** {@link ModelShader#get(Model.ModelView)} calls, and how many of those compiled a new shader. */
+        public int shaderGets, shaderCompiles;
+        /** {@link ModelShader#bind()} calls. */
+        public int shaderBinds;
+        /** Textures bound by material and environment attributes. */
+        public int textureBinds;
+        /** Uniform upload calls made by {@link ModelShader#apply()} and the attributes it applies. */
+        public int uniformUploads;
+        /** {@link MeshPart#render(arc.graphics.gl.Shader, boolean)} calls and the total amount of indices they drew. */
+        public int drawCalls, indices;
+        /** Node parts skipped by an {@link OcclusionBuffer}. */
+        public int occluded;
+
+        /** @return The value of the given statistic. */
+        public int get(Stat stat){
+            return switch(stat){
+                case views -> views;
+                case shaderGets -> shaderGets;
+                case shaderCompiles -> shaderCompiles;
+                case shaderBinds -> shaderBinds;
+                case textureBinds -> textureBinds;
+                case uniformUploads -> uniformUploads;
+                case drawCalls -> drawCalls;
+                case indices -> indices;
+                case occluded -> occluded;
+            };
+        }
+
+        /** Copies the other counters. */
+        public void set(Counters other){
+            views = other.views;
+            shaderGets = other.shaderGets;
+            shaderCompiles = other.shaderCompiles;
+            shaderBinds = other.shaderBinds;
+            textureBinds = other.textureBinds;
+            uniformUploads = other.uniformUploads;
+            drawCalls = other.drawCalls;
+            indices = other.indices;
+            occluded = other.occluded;
+        }
+
+        /** Resets all counters to zero. */
+        public void reset(){
+            views = shaderGets = shaderCompiles = shaderBinds = textureBinds = uniformUploads = drawCalls = indices = occluded = 0;
+        }
+
+        @Override
+        public String toString(){
+            return
+                "views=" + views + ", shaderGets=" + shaderGets + ", shaderCompiles=" + shaderCompiles +
+                ", shaderBinds=" + shaderBinds + ", textureBinds=" + textureBinds + ", uniformUploads=" + uniformUploads +
+                ", drawCalls=" + drawCalls + ", indices=" + indices + ", occluded=" + occluded;
+        }
+    }
+
+    /** Every statistic kept in {@link Counters}. */
+    public enum Stat{
+        views,
+        shaderGets,
+        shaderCompiles,
+        shaderBinds,
+        textureBinds,
+        uniformUploads,
+        drawCalls,
+        indices,
+        occluded;
+
+        public static final Stat[] all = values();
+    }
+
+    /**
+     * A GPU frame timer. Timer query results are only available a few frames later, so implementations are expected to
+     * keep several queries in flight and report the latest finished one.
+     */
+    public interface GpuTimer{
+        /** Starts timing the current frame. */
+        void begin();
+
+        /** Stops timing the current frame. */
+        void end();
+
+        /** @return The GPU time of the latest finished frame in milliseconds. */
+        float elapsed();
+    }
+
+    /**
+     * A {@link GpuTimer} backed by GL30 {@code TIME_ELAPSED} queries, available on desktop GL through
+     * {@code ARB_timer_query} and on GLES 3 through {@code EXT_disjoint_timer_query}. Keeps a ring of queries in flight
+     * and reports the latest one whose result is available, so reading it never stalls the pipeline.
+     */
+    public static class QueryTimer implements GpuTimer, Disposable{
+        static final int timeElapsed = 0x88bf, queryResult = 0x8866, queryResultAvailable = 0x8867;
+
+        private final int[] queries = new int[4];
+        private final boolean[] pending = new boolean[queries.length];
+        private final IntBuffer result = Buffers.newIntBuffer(1);
+        private int current;
+        private boolean active;
+        private float elapsed;
+
+        /** Generates the queries; {@link #supported()} must hold. */
+        public QueryTimer(){
+            Core.gl30.glGenQueries(queries.length, queries, 0);
+        }
+
+        /** @return Whether the backend supports timer queries. Must be called on the GL thread. */
+        public static boolean supported(){
+            return
+                Core.gl30 != null && Core.graphics.isGL30Available() &&
+                (Core.graphics.supportsExtension("GL_ARB_timer_query") || Core.graphics.supportsExtension("GL_EXT_disjoint_timer_query"));
+        }
+
+        @Override
+        public void begin(){
+            poll();
+
+            // Every query is still in flight; leave this frame untimed rather than waiting on the oldest.
+            if(pending[current]) return;
+
+            Core.gl30.glBeginQuery(timeElapsed, queries[current]);
+            active = true;
+        }
+
+        @Override
+        public void end(){
+            if(!active) return;
+
+            Core.gl30.glEndQuery(timeElapsed);
+            pending[current] = true;
+            current = (current + 1) % queries.length;
+            active = false;
+        }
+
+        @Override
+        public float elapsed(){
+            poll();
+            return elapsed;
+        }
+
+        /** Reads the results of finished queries, oldest first, stopping at the first unfinished one. */
+        private void poll(){
+            for(int i = 0; i < queries.length; i++){
+                int index = (current + i) % queries.length;
+                if(!pending[index]) continue;
+
+                int query = queries[index];
+                Core.gl30.glGetQueryObjectuiv(query, queryResultAvailable, result);
+                if(result.get(0) == 0) break;
+
+                Core.gl30.glGetQueryObjectuiv(query, queryResult, result);
+                elapsed = (result.get(0) & 0xffffffffL) / 1000000f;
+                pending[index] = false;
+            }
+        }
+
+        @Override
+        public void dispose(){
+            Core.gl30.glDeleteQueries(queries.length, queries, 0);
+        }
+    }
+}
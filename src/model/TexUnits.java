@@ -0,0 +1,36 @@
+package model;
+
+import model.attribute.*;
+import model.attribute.Attribute.*;
+import model.attribute.Attribute.TexAttr.*;
+
+/**
+ * The texture units sampled by {@link ModelShader}s, allocated in one place so that no two samplers share a unit.
+ * GLES2 only guarantees 8 combined units, and every one of them is taken; a new sampler must take a unit from an
+ * existing one that is never active in the same permutation.
+ */
+public final class TexUnits{
+    /**
+     * The {@link ShadowsAttr shadow atlas}. Unit 0 is also where batches bind their textures, which is harmless since
+     * environments are bound again on every apply.
+     */
+    public static final int shadows = 0;
+    /** The first unit of the {@link TexAttr material textures}, one per {@link TexAlias}. */
+    public static final int textures = 1;
+    /** The first unit of the {@link ClustersAttr cluster textures}. */
+    public static final int clusters = textures + TexAlias.all.length;
+    /** The {@link AnimTexture baked palette}, sampled in the vertex shader. */
+    public static final int vat = clusters + ClustersAttr.numTextures;
+    /** The amount of units in use. */
+    public static final int count = vat + 1;
+
+    private TexUnits(){}
+
+    /**
+     * @return The unit of the material texture. Aliases are bound in descending units by their ordinal, so that the
+     * diffuse texture is bound last.
+     */
+    public static int texture(TexAlias alias){
+        return textures + TexAlias.all.length - 1 - alias.ordinal();
+    }
+}
@@ -0,0 +1,82 @@
+package model;
+
+import model.Model.*;
+import model.part.*;
+
+/**
+ * A shared, flat buffer of world and normal transforms that {@link ModelView}s refer to by index instead of holding
+ * their own matrices. Each {@link Node} is written once per gathering no matter how many parts it has, and its normal
+ * matrix comes from {@link Node#normalTrns()}'s cache instead of being recomputed per draw. Skinned parts additionally
+ * pack their bone palettes into {@link #bones}.
+ */
+public class TrnsBuffer{
+    /** The world transforms, 16 floats each. */
+    public float[] trns;
+    /** The normal transforms, 16 floats each, in the same order as {@link #trns}. */
+    public float[] normals;
+    /** The amount of transforms in this buffer. */
+    public int size;
+    /** The packed bone palettes of skinned parts, {@link Skin#boneSize} floats per bone. */
+    public float[] bones;
+    /** The amount of floats used in {@link #bones}. */
+    public int bonesSize;
+
+    /** Constructs a transform buffer with an initial capacity of 64 transforms. */
+    public TrnsBuffer(){
+        this(64);
+    }
+
+    /** Constructs a transform buffer with the specified initial capacity. */
+    public TrnsBuffer(int capacity){
+        trns = new float[capacity * 16];
+        normals = new float[capacity * 16];
+        bones = new float[0];
+    }
+
+    /** Copies the node's world and normal transforms into this buffer. @return The index of the added transforms. */
+    public int add(Node node){
+        return add(node.worldTrns.val, node.normalTrns().val);
+    }
+
+    /** Copies the given world and normal transforms into this buffer. @return The index of the added transforms. */
+    public int add(float[] world, float[] normal){
+        int offset = size * 16;
+        if(offset + 16 > trns.length){
+            int cap = Math.max(trns.length * 2, 16);
+
+            var newTrns = new float[cap];
+            var newNormals = new float[cap];
+            System.arraycopy(trns, 0, newTrns, 0, offset);
+            System.arraycopy(normals, 0, newNormals, 0, offset);
+            trns = newTrns;
+            normals = newNormals;
+        }
+
+        System.arraycopy(world, 0, trns, offset, 16);
+        System.arraycopy(normal, 0, normals, offset, 16);
+        return size++;
+    }
+
+    /**
+     * Packs the skin's bone palette relative to the node's world transform into {@link #bones}.
+     * @return The offset of the added palette in {@link #bones}.
+     */
+    public int add(Skin skin, Node node){
+        int offset = bonesSize, length = skin.bones.length * Skin.boneSize;
+        if(offset + length > bones.length){
+            var newBones = new float[Math.max(bones.length * 2, offset + length)];
+            System.arraycopy(bones, 0, newBones, 0, offset);
+            bones = newBones;
+        }
+
+        skin.palette(node.worldTrns, bones, offset);
+        bonesSize += length;
+        return offset;
+    }
+
+    /** Clears this buffer, invalidating all indices and offsets previously returned. */
+    public void clear(){
+        size = 0;
+        bonesSize = 0;
+    }
+}
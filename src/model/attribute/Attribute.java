@@ -8,12 +8,15 @@ import arc.graphics.gl.*;
 import arc.math.*;
 import arc.struct.*;
 import arc.util.*;
+import model.*;
 import model.attribute.Attribute.*;
 import model.attribute.Attribute.BlendAttr.*;
 import model.attribute.Attribute.ColAttr.*;
 import model.attribute.Attribute.FAttr.*;
 import model.attribute.Attribute.TexAttr.*;
 
+import java.util.*;
+
 /** Defines an attribute type to be used in a {@link Material}. These attributes have a pre-registered aliases. */
 public abstract class Attribute<T, A extends AttrAlias<T>>{
     private static final Seq<String> registered = new Seq<>();
@@ -37,12 +40,25 @@ public abstract class Attribute<T, A extends AttrAlias<T>>{
     /** Applies necessary uniforms of this attribute to the given shader. */
     public void apply(Shader shader){}
 
-    /** Registers an attribute by its alias. Returns a new identifier if unknown, and existing identifier otherwise. */
+    /**
+     * @return Whether {@link #apply(Shader)} binds textures. Texture bindings are global GL state rather than uniforms
+     * kept per program, so environment attributes that bind them are applied on every draw.
+     */
+    public boolean bindsTextures(){
+        return false;
+    }
+
+    /**
+     * Registers an attribute by its alias. Returns a new identifier if unknown, and existing identifier otherwise. The
+     * identifier is a single bit, so at most 64 aliases may be registered.
+     */
     public static long register(String alias){
         int i = registered.indexOf(alias::equals);
         if(i != -1){
-            return 1L << (i - 1);
+            return 1L << i;
         }else{
+            if(registered.size >= 64) throw new IllegalStateException("Too many attribute aliases registered; at most 64 are supported.");
+
             registered.add(alias);
             return 1L << (registered.size - 1);
         }
@@ -56,6 +72,11 @@ public abstract class Attribute<T, A extends AttrAlias<T>>{
         /** @return The mask of this attribute alias. */
         long id();
 
+        /** @return The index of this attribute alias' bit in its {@link #id()}, used as a direct storage slot. */
+        default int index(){
+            return Long.numberOfTrailingZeros(id());
+        }
+
         /** @return The uniform name of this attribute alias. */
         default String uniform(){
             return "u_" + name();
@@ -81,9 +102,20 @@ public abstract class Attribute<T, A extends AttrAlias<T>>{
             return new FAttr(alias, value);
         }
 
+        @Override
+        public boolean equals(Object o){
+            return this == o || o instanceof FAttr a && alias == a.alias && Float.compare(value, a.value) == 0;
+        }
+
+        @Override
+        public int hashCode(){
+            return 31 * alias.hashCode() + Float.floatToIntBits(value);
+        }
+
         @Override
         public void apply(Shader shader){
             shader.setUniformf(alias.uniform(), value);
+            if(RenderStats.enabled) RenderStats.frame.uniformUploads++;
         }
 
         /** Defines all supported attribute aliases for a {@link FAttr}. */
@@ -120,9 +152,20 @@ public abstract class Attribute<T, A extends AttrAlias<T>>{
             return new ColAttr(alias, value);
         }
 
+        @Override
+        public boolean equals(Object o){
+            return this == o || o instanceof ColAttr a && alias == a.alias && value.equals(a.value);
+        }
+
+        @Override
+        public int hashCode(){
+            return 31 * alias.hashCode() + value.hashCode();
+        }
+
         @Override
         public void apply(Shader shader){
             shader.setUniformf(alias.uniform(), value);
+            if(RenderStats.enabled) RenderStats.frame.uniformUploads++;
         }
 
         /** Defines all supported attribute aliases for a {@link ColAttr}. */
@@ -133,7 +176,7 @@ public abstract class Attribute<T, A extends AttrAlias<T>>{
 
             public static final ColAlias[] all = values();
 
-            public final long id = register(name());
+            public final long id = register(flag());
 
             @Override
             public long id(){
@@ -156,6 +199,12 @@ public abstract class Attribute<T, A extends AttrAlias<T>>{
     public static class TexAttr extends Attribute<TexAttr, TexAlias>{
         /** Texture name, used to optionally remap the texture value and UV mappings. */
         public String name;
+        /**
+         * The file this texture is loaded from, resolved against its model's directory, or null if it isn't loaded from
+         * a file. Part of this attribute's identity, so that materials from different directories that happen to use
+         * equally named textures aren't interned together.
+         */
+        public @Nullable String path;
         /** The bound texture, can be {@link #remap()}ed. */
         public Texture value;
         public float u = 0f;
@@ -190,18 +239,38 @@ public abstract class Attribute<T, A extends AttrAlias<T>>{
 
         public void set(@Nullable Texture value, @Nullable String name, float u, float v, float u2, float v2){
             this.value = value;
-            this.name = name == null ? null : !name.endsWith(".png") ? name : name.substring(0, name.length() - 4);
+            this.name = normalize(name);
             this.u = u;
             this.v = v;
             this.u2 = u2;
             this.v2 = v2;
         }
 
+        /** @return The texture name used to look up atlas regions, i.e. the file name without its {@code .png} extension. */
+        public static String normalize(@Nullable String name){
+            return name == null ? null : !name.endsWith(".png") ? name : name.substring(0, name.length() - 4);
+        }
+
         /** Remaps this texture to use {@link Core#atlas}' texture presumably after pixmap packing, if applicable. */
         public void remap(){
-            if(name == null) return;
+            remap(Core.atlas);
+        }
+
+        /**
+         * Remaps this texture to use the given atlas' texture, if it contains a region with this attribute's
+         * {@link #name}. The current UV mapping is mapped into the region, so it must lie within [0..1].
+         */
+        public void remap(TextureAtlas atlas){
+            if(name == null || atlas == null) return;
+
+            remap(atlas.find(name));
+        }
 
-            var tex = Core.atlas.find(name);
+        /**
+         * Remaps this texture to use the given region's texture, if it was found. The current UV mapping is mapped into
+         * the region, so it must lie within [0..1].
+         */
+        public void remap(@Nullable AtlasRegion tex){
             if(tex != null && tex.found() && tex.texture != value){
                 value = tex.texture;
 
@@ -214,7 +283,28 @@ public abstract class Attribute<T, A extends AttrAlias<T>>{
 
         @Override
         public TexAttr copy(){
-            return new TexAttr(alias, value, name, u, v, u2, v2);
+            var copy = new TexAttr(alias, value, name, u, v, u2, v2);
+            copy.path = path;
+            return copy;
+        }
+
+        @Override
+        public boolean equals(Object o){
+            return this == o || o instanceof TexAttr a &&
+                alias == a.alias && value == a.value && Objects.equals(name, a.name) && Objects.equals(path, a.path) &&
+                Float.compare(u, a.u) == 0 && Float.compare(v, a.v) == 0 &&
+                Float.compare(u2, a.u2) == 0 && Float.compare(v2, a.v2) == 0;
+        }
+
+        @Override
+        public int hashCode(){
+            int result = 31 * alias.hashCode() + Objects.hashCode(name);
+            result = 31 * result + Objects.hashCode(path);
+            result = 31 * result + System.identityHashCode(value);
+            result = 31 * result + Float.floatToIntBits(u);
+            result = 31 * result + Float.floatToIntBits(v);
+            result = 31 * result + Float.floatToIntBits(u2);
+            return 31 * result + Float.floatToIntBits(v2);
         }
 
         /**
@@ -223,11 +313,15 @@ public abstract class Attribute<T, A extends AttrAlias<T>>{
          */
         @Override
         public void apply(Shader shader){
-            int val = TexAlias.all.length - alias.ordinal();
+            int val = TexUnits.texture(alias);
 
             value.bind(val);
             shader.setUniformi(alias.uniform(), val);
             shader.setUniformf("u_" + alias.name() + "UV", u, v, u2 - u, v2 - v);
+            if(RenderStats.enabled){
+                RenderStats.frame.textureBinds++;
+                RenderStats.frame.uniformUploads += 2;
+            }
         }
 
         /** Defines all supported attribute aliases for a {@link TexAttr}. */
@@ -238,7 +332,7 @@ public abstract class Attribute<T, A extends AttrAlias<T>>{
 
             public static final TexAlias[] all = values();
 
-            public final long id = register(name());
+            public final long id = register(flag());
 
             @Override
             public long id(){
@@ -283,6 +377,16 @@ public abstract class Attribute<T, A extends AttrAlias<T>>{
             return new BlendAttr(src, dst);
         }
 
+        @Override
+        public boolean equals(Object o){
+            return this == o || o instanceof BlendAttr a && src == a.src && dst == a.dst;
+        }
+
+        @Override
+        public int hashCode(){
+            return 31 * src + dst;
+        }
+
         /** Defines all supported attribute aliases for a {@link BlendAttr}. */
         public enum BlendAlias implements AttrAlias<BlendAttr>{
             blended;
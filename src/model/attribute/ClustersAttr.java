@@ -0,0 +1,175 @@
+package model.attribute;
+
+import arc.graphics.*;
+import arc.graphics.g3d.*;
+import arc.graphics.gl.*;
+import arc.math.geom.*;
+import arc.struct.*;
+import arc.util.*;
+import model.*;
+import model.attribute.Attribute.*;
+import model.attribute.ClustersAttr.*;
+import model.attribute.LightsAttr.PointLightsAttr.*;
+import model.attribute.LightsAttr.SpotLightsAttr.*;
+
+import java.nio.*;
+
+/**
+ * An {@link Environment} attribute that bins the environment's {@link PointLights} and {@link SpotLights} with its
+ * {@link LightClusters} and uploads the result as float textures, sampled per-fragment by the model shader. Requires
+ * floating point texture support.
+ */
+public class ClustersAttr extends Attribute<ClustersAttr, ClustersAlias> implements Disposable{
+    /** The width of every cluster data texture; their heights grow as needed. */
+    public static final int texWidth = 256;
+    /** The maximum amount of lights per cluster supported by the shader, used as its loop bound. */
+    public static final int maxLights = 32;
+    /** The amount of cluster data textures, bound to consecutive units from {@link TexUnits#clusters}. */
+    public static final int numTextures = 3;
+
+    private static final int rgba32f = 0x8814;
+    private static final String[] samplers = {"u_clusterGrid", "u_clusterIndices", "u_clusterLights"};
+    private static final Seq<PointLights> noPoints = new Seq<>();
+    private static final Seq<SpotLights> noSpots = new Seq<>();
+
+    /** The CPU-side light assigner. */
+    public final LightClusters clusters;
+
+    private final Mat3D view = new Mat3D();
+    private final int[] textures = new int[numTextures];
+    private final float[] heights = new float[numTextures];
+    private FloatBuffer buffer;
+
+    public ClustersAttr(){
+        this(new LightClusters(16, 9, 24, maxLights));
+    }
+
+    public ClustersAttr(LightClusters clusters){
+        super(ClustersAlias.clusters);
+        if(clusters.maxLightsPerCluster > maxLights) throw new IllegalArgumentException("At most " + maxLights + " lights per cluster are supported.");
+
+        this.clusters = clusters;
+    }
+
+    /**
+     * Assigns the environment's lights to the clusters of the camera's view and uploads the cluster data. Should be
+     * called once per frame, after the camera has been updated.
+     */
+    public void update(Camera3D cam, Environment env){
+        view.set(cam.view);
+        clusters.assign(
+            cam.view, cam.projection, Math.abs(cam.near), Math.abs(cam.far),
+            env.has(PointLightsAlias.pointLights) ? env.get(PointLightsAlias.pointLights).values : noPoints,
+            env.has(SpotLightsAlias.spotLights) ? env.get(SpotLightsAlias.spotLights).values : noSpots
+        );
+
+        var grid = clusters.grid;
+        int numClusters = clusters.numClusters();
+        begin(numClusters);
+        for(int i = 0; i < numClusters; i++) buffer.put(grid[i * 2]).put(grid[i * 2 + 1]).put(0f).put(0f);
+        end(0, numClusters);
+
+        var indices = clusters.indices;
+        int numIndices = clusters.numIndices;
+        begin(numIndices);
+        for(int i = 0; i < numIndices; i++) buffer.put(indices[i]).put(0f).put(0f).put(0f);
+        end(1, numIndices);
+
+        int numTexels = clusters.numLights * LightClusters.lightStride / 4;
+        begin(numTexels);
+        buffer.put(clusters.lights, 0, numTexels * 4);
+        end(2, numTexels);
+    }
+
+    private void begin(int texels){
+        int size = texWidth * Math.max((texels + texWidth - 1) / texWidth, 1) * 4;
+        if(buffer == null || buffer.capacity() < size) buffer = Buffers.newFloatBuffer(size);
+
+        buffer.clear();
+    }
+
+    private void end(int index, int texels){
+        int height = Math.max((texels + texWidth - 1) / texWidth, 1);
+        while(buffer.position() < texWidth * height * 4) buffer.put(0f);
+        buffer.flip();
+
+        if(textures[index] == 0){
+            textures[index] = Gl.genTexture();
+            Gl.bindTexture(Gl.texture2D, textures[index]);
+            Gl.texParameteri(Gl.texture2D, Gl.textureMinFilter, Gl.nearest);
+            Gl.texParameteri(Gl.texture2D, Gl.textureMagFilter, Gl.nearest);
+            Gl.texParameteri(Gl.texture2D, Gl.textureWrapS, Gl.clampToEdge);
+            Gl.texParameteri(Gl.texture2D, Gl.textureWrapT, Gl.clampToEdge);
+        }else{
+            Gl.bindTexture(Gl.texture2D, textures[index]);
+        }
+
+        Gl.texImage2D(Gl.texture2D, 0, rgba32f, texWidth, height, 0, Gl.rgba, Gl.floatV, buffer);
+        heights[index] = height;
+    }
+
+    @Override
+    public StringBuilder preprocess(StringBuilder builder){
+        return builder
+            .append("#define ").append(alias.flag()).append('\n')
+            .append("#define maxClusterLights ").append(maxLights).append('\n')
+            .append("#define clusterTexWidth ").append(texWidth).append(".0\n");
+    }
+
+    @Override
+    public boolean bindsTextures(){
+        return true;
+    }
+
+    /** @inheritDoc Binds the cluster textures to the units from {@link TexUnits#clusters}. */
+    @Override
+    public void apply(Shader shader){
+        for(int i = 0; i < textures.length; i++){
+            int unit = TexUnits.clusters + i;
+
+            Gl.activeTexture(Gl.texture0 + unit);
+            Gl.bindTexture(Gl.texture2D, textures[i]);
+            shader.setUniformi(samplers[i], unit);
+        }
+        Gl.activeTexture(Gl.texture0);
+
+        shader.setUniformf("u_clusterSize", clusters.xSlices, clusters.ySlices, clusters.zSlices);
+        shader.setUniformf("u_clusterDepth", clusters.near, (float)Math.log(clusters.far / clusters.near));
+        shader.setUniformf("u_clusterHeights", heights[0], heights[1], heights[2]);
+        shader.setUniformMatrix4("u_view", view.val);
+        if(RenderStats.enabled){
+            RenderStats.frame.textureBinds += textures.length;
+            RenderStats.frame.uniformUploads += textures.length + 4;
+        }
+    }
+
+    @Override
+    public ClustersAttr copy(){
+        return new ClustersAttr(new LightClusters(clusters.xSlices, clusters.ySlices, clusters.zSlices, clusters.maxLightsPerCluster));
+    }
+
+    @Override
+    public void dispose(){
+        for(int i = 0; i < textures.length; i++){
+            if(textures[i] != 0) Gl.deleteTexture(textures[i]);
+            textures[i] = 0;
+        }
+    }
+
+    /** Defines all supported attribute aliases for a {@link ClustersAttr}. */
+    public enum ClustersAlias implements AttrAlias<ClustersAttr>{
+        clusters;
+
+        public final long id = register(name());
+
+        @Override
+        public long id(){
+            return id;
+        }
+
+        @Override
+        public String flag(){
+            return "clusteredFlag";
+        }
+    }
+}
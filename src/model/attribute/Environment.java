@@ -1,11 +1,37 @@
 package model.attribute;
 
+import arc.graphics.g3d.*;
+import arc.struct.*;
+import arc.util.*;
+import model.Model.*;
+import model.attribute.Attribute.*;
+import model.attribute.ClustersAttr.*;
 import model.attribute.LightsAttr.*;
 import model.attribute.LightsAttr.AmbLightsAttr.*;
 import model.attribute.LightsAttr.DirLightsAttr.*;
+import model.attribute.LightsAttr.PointLightsAttr.*;
+import model.attribute.LightsAttr.SpotLightsAttr.*;
+import model.attribute.ShadowsAttr.*;
+
+/**
+ * A type of {@link Material} that is used extensively for lighting. Light data is flattened into packed arrays whenever
+ * the environment {@link #changed() changes}, so modifying a light's properties directly must be followed by a call to
+ * {@link #changed()}.
+ * <p>
+ * {@link PointLights} and {@link SpotLights} are evaluated per-fragment through a {@link ClustersAttr}, which is added
+ * automatically along with them and must be {@link #cluster(Camera3D) clustered} every frame. Likewise, a
+ * {@link ShadowsAttr} must be {@link #shadow(Camera3D, Seq) rendered} every frame.
+ * <p>
+ * The environment owns its {@link Disposable} attributes, such as the GPU resources of those two; they are disposed
+ * when replaced, removed, or when the environment itself is {@link #dispose() disposed}. {@link #snapshot(Environment)
+ * Snapshots} share those attributes with their source and never dispose them.
+ */
+public class Environment extends Material implements Disposable{
+    private int version;
+    /** The environment and version this environment was last {@link #snapshot(Environment) copied} from, if any. */
+    private @Nullable Environment source;
+    private int sourceVersion;
 
-/** A type of {@link Material} that is used extensively for lighting. */
-public class Environment extends Material{
     /** Adds a light instance to this environment, automatically adding the necessary attribute if haven't set up. */
     public <T extends Lights<T>> void add(T light){
         if(light instanceof AmbLights l){
@@ -14,7 +40,17 @@ public class Environment extends Material{
         }else if(light instanceof DirLights l){
             if(!has(DirLightsAlias.dirLights)) set(new DirLightsAttr());
             get(DirLightsAlias.dirLights).values.add(l);
+        }else if(light instanceof PointLights l){
+            if(!has(PointLightsAlias.pointLights)) set(new PointLightsAttr());
+            if(!has(ClustersAlias.clusters)) set(new ClustersAttr());
+            get(PointLightsAlias.pointLights).values.add(l);
+        }else if(light instanceof SpotLights l){
+            if(!has(SpotLightsAlias.spotLights)) set(new SpotLightsAttr());
+            if(!has(ClustersAlias.clusters)) set(new ClustersAttr());
+            get(SpotLightsAlias.spotLights).values.add(l);
         }
+
+        changed();
     }
 
     /** Removes a light instance from this environment. */
@@ -25,7 +61,103 @@ public class Environment extends Material{
         }else if(light instanceof DirLights l){
             if(!has(DirLightsAlias.dirLights)) return;
             get(DirLightsAlias.dirLights).values.remove(l);
+        }else if(light instanceof PointLights l){
+            if(!has(PointLightsAlias.pointLights)) return;
+            get(PointLightsAlias.pointLights).values.remove(l);
+        }else if(light instanceof SpotLights l){
+            if(!has(SpotLightsAlias.spotLights)) return;
+            get(SpotLightsAlias.spotLights).values.remove(l);
         }
+
+        changed();
+    }
+
+    /** Sets an attribute, disposing the one it replaces if that is {@link Disposable}. */
+    @Override
+    public <T extends Attribute<T, ?>> T set(T attr){
+        var prev = super.set(attr);
+        if(source == null && prev != attr && prev instanceof Disposable d) d.dispose();
+        changed();
+        return prev;
+    }
+
+    /** Removes an attribute, disposing it if it is {@link Disposable}. */
+    @Override
+    public <T extends Attribute<T, V>, V extends AttrAlias<T>> T remove(V alias){
+        var prev = super.remove(alias);
+        if(source == null && prev instanceof Disposable d) d.dispose();
+        changed();
+        return prev;
+    }
+
+    /** Marks this environment's light data as changed, so that it gets re-packed and re-uploaded on the next use. */
+    public void changed(){
+        version++;
+        each(attr -> {
+            if(attr instanceof LightsAttr<?, ?, ?> l) l.changed();
+        });
+    }
+
+    /**
+     * Assigns this environment's point and spot lights to the camera's view clusters, if it has any. This doesn't mark
+     * the environment as {@link #changed() changed}, since the clusters are re-applied on every draw anyway.
+     */
+    public void cluster(Camera3D cam){
+        if(!has(ClustersAlias.clusters)) return;
+
+        get(ClustersAlias.clusters).update(cam, this);
+    }
+
+    /**
+     * Renders the shadow maps of this environment's first {@link DirLights} for the camera, if it has
+     * {@link ShadowsAttr shadows} and directional lights. The views must be gathered for the frame being rendered. Like
+     * {@link #cluster(Camera3D)}, this doesn't mark the environment as {@link #changed() changed}.
+     */
+    public void shadow(Camera3D cam, Seq<ModelView> views){
+        if(!has(ShadowsAlias.shadows) || !has(DirLightsAlias.dirLights)) return;
+
+        var lights = get(DirLightsAlias.dirLights).values;
+        if(lights.isEmpty()) return;
+
+        get(ShadowsAlias.shadows).update(cam, lights.first(), views);
+    }
+
+    /** @return The version of this environment, incremented every time it {@link #changed() changes}. */
+    public int version(){
+        return version;
+    }
+
+    /**
+     * Copies this environment's lights into the given environment, so that it may be read, e.g. by a render thread,
+     * while this one is modified. Every other attribute, such as the {@link ClustersAttr} and {@link ShadowsAttr}, is
+     * shared rather than copied; the copy then has to be {@link #cluster(Camera3D) clustered} and
+     * {@link #shadow(Camera3D, Seq) shadowed} instead of this environment. Nothing is copied if this environment
+     * hasn't {@link #changed() changed} since it was last copied into the same target.
+     * @return The given environment.
+     */
+    public Environment snapshot(Environment out){
+        if(out == this) throw new IllegalArgumentException("An environment can't be copied into itself.");
+        if(out.source == this && out.sourceVersion == version) return out;
+
+        out.source = this;
+        out.sourceVersion = version;
+        out.each(attr -> {
+            if(!has(attr.alias)) out.remove(attr.alias);
+        });
+        each(attr -> out.set(attr instanceof LightsAttr<?, ?, ?> l ? l.copy() : attr));
+        return out;
+    }
+
+    /**
+     * Disposes all {@link Disposable} attributes of this environment, unless it's a
+     * {@link #snapshot(Environment) snapshot}.
+     */
+    @Override
+    public void dispose(){
+        if(source != null) return;
+        each(attr -> {
+            if(attr instanceof Disposable d) d.dispose();
+        });
     }
 
     /** @return The amount of {@link DirLights} this environment has, for convenience. */
@@ -0,0 +1,221 @@
+package model.attribute;
+
+import arc.math.*;
+import arc.math.geom.*;
+import arc.struct.*;
+import model.attribute.LightsAttr.PointLightsAttr.*;
+import model.attribute.LightsAttr.SpotLightsAttr.*;
+
+/**
+ * A CPU-side clustered light assigner. The view frustum is divided into {@link #xSlices} by {@link #ySlices} screen
+ * tiles and {@link #zSlices} exponentially distributed depth slices, and every {@link PointLights} and
+ * {@link SpotLights} is binned into the clusters its range overlaps. Shaders then only evaluate the lights of the
+ * cluster each fragment falls in, so the shading cost scales with local light density instead of total light count.
+ * <p>
+ * This class doesn't touch any GL state; see {@link ClustersAttr} for the uploading side.
+ */
+public class LightClusters{
+    /**
+     * The amount of floats each light takes in {@link #lights}: position and range, color, direction and outer cone,
+     * inner cone.
+     */
+    public static final int lightStride = 16;
+
+    /** The amount of screen tiles in the X and Y axis, and depth slices in the Z axis. */
+    public final int xSlices, ySlices, zSlices;
+    /** The maximum amount of lights that can be assigned to a single cluster; excess lights are dropped. */
+    public final int maxLightsPerCluster;
+
+    /** The near and far plane distances used in the last {@link #assign(Mat3D, Mat3D, float, float, Seq, Seq)}. */
+    public float near, far;
+
+    /** Packed light data of {@link #numLights} lights, each {@link #lightStride} floats long. */
+    public float[] lights = {};
+    /** The amount of lights contained in {@link #lights}. */
+    public int numLights;
+
+    /** Per-cluster offset to {@link #indices} and light count, interleaved. Indexed by {@link #cluster(int, int, int)}. */
+    public final int[] grid;
+    /** Light indices of each cluster, referenced by {@link #grid}. */
+    public int[] indices = {};
+    /** The amount of indices contained in {@link #indices}. */
+    public int numIndices;
+
+    private int[] bounds = {};
+    private final float[] corner = new float[4];
+
+    /** Constructs a light clusters grid using a 16x9x24 grid with at most 32 lights per cluster. */
+    public LightClusters(){
+        this(16, 9, 24, 32);
+    }
+
+    public LightClusters(int xSlices, int ySlices, int zSlices, int maxLightsPerCluster){
+        this.xSlices = xSlices;
+        this.ySlices = ySlices;
+        this.zSlices = zSlices;
+        this.maxLightsPerCluster = maxLightsPerCluster;
+
+        grid = new int[xSlices * ySlices * zSlices * 2];
+    }
+
+    /** @return The total amount of clusters. */
+    public int numClusters(){
+        return xSlices * ySlices * zSlices;
+    }
+
+    /** @return The cluster index of the given tile and depth slice. */
+    public int cluster(int x, int y, int z){
+        return x + y * xSlices + z * xSlices * ySlices;
+    }
+
+    /** @return The depth slice of the given positive view-space depth. */
+    public int slice(float depth){
+        if(depth <= near) return 0;
+        return Mathf.clamp((int)(Math.log(depth / near) / Math.log(far / near) * zSlices), 0, zSlices - 1);
+    }
+
+    /**
+     * Packs and bins the given lights into the clusters of the given view.
+     * @param view The view (world-to-camera) matrix.
+     * @param proj The projection matrix.
+     * @param near The positive distance to the near plane.
+     * @param far The positive distance to the far plane.
+     */
+    public void assign(Mat3D view, Mat3D proj, float near, float far, Seq<PointLights> points, Seq<SpotLights> spots){
+        this.near = near;
+        this.far = far;
+
+        int total = points.size + spots.size;
+        if(lights.length < total * lightStride) lights = new float[total * lightStride];
+        if(bounds.length < total * 6) bounds = new int[total * 6];
+
+        numLights = 0;
+        for(int i = 0; i < points.size; i++){
+            var l = points.get(i);
+            pack(l.position, l.range, l.color.r, l.color.g, l.color.b, l.color.a, 0f, 0f, 0f, -2f, -1f);
+        }
+
+        for(int i = 0; i < spots.size; i++){
+            var l = spots.get(i);
+            pack(
+                l.position, l.range, l.color.r, l.color.g, l.color.b, l.color.a,
+                l.dir.x, l.dir.y, l.dir.z, Mathf.cosDeg(l.outer), Mathf.cosDeg(l.inner)
+            );
+        }
+
+        // First pass: compute each light's cluster bounds and count the lights per cluster.
+        var grid = this.grid;
+        for(int i = 0; i < grid.length; i++) grid[i] = 0;
+
+        for(int i = 0; i < numLights; i++){
+            if(!bounds(view.val, proj.val, i)) continue;
+
+            int b = i * 6;
+            for(int z = bounds[b + 4]; z <= bounds[b + 5]; z++){
+                for(int y = bounds[b + 2]; y <= bounds[b + 3]; y++){
+                    for(int x = bounds[b]; x <= bounds[b + 1]; x++){
+                        int c = cluster(x, y, z) * 2 + 1;
+                        if(grid[c] < maxLightsPerCluster) grid[c]++;
+                    }
+                }
+            }
+        }
+
+        // Prefix sum the counts into offsets, then reset the counts to be re-incremented while filling.
+        numIndices = 0;
+        for(int c = 0; c < grid.length; c += 2){
+            grid[c] = numIndices;
+            numIndices += grid[c + 1];
+            grid[c + 1] = 0;
+        }
+
+        if(indices.length < numIndices) indices = new int[numIndices];
+
+        // Second pass: fill in the light indices.
+        for(int i = 0; i < numLights; i++){
+            int b = i * 6;
+            if(bounds[b] > bounds[b + 1]) continue;
+
+            for(int z = bounds[b + 4]; z <= bounds[b + 5]; z++){
+                for(int y = bounds[b + 2]; y <= bounds[b + 3]; y++){
+                    for(int x = bounds[b]; x <= bounds[b + 1]; x++){
+                        int c = cluster(x, y, z) * 2;
+                        if(grid[c + 1] < maxLightsPerCluster) indices[grid[c] + grid[c + 1]++] = i;
+                    }
+                }
+            }
+        }
+    }
+
+    private void pack(Vec3 pos, float range, float r, float g, float b, float a, float dx, float dy, float dz, float outer, float inner){
+        var l = lights;
+        int i = numLights++ * lightStride;
+
+        l[i] = pos.x; l[i + 1] = pos.y; l[i + 2] = pos.z; l[i + 3] = range;
+        l[i + 4] = r; l[i + 5] = g; l[i + 6] = b; l[i + 7] = a;
+        l[i + 8] = dx; l[i + 9] = dy; l[i + 10] = dz; l[i + 11] = outer;
+        l[i + 12] = inner; l[i + 13] = 0f; l[i + 14] = 0f; l[i + 15] = 0f;
+    }
+
+    /**
+     * Computes the conservative cluster bounds of a light's range sphere. @return False if the light is outside the
+     * frustum.
+     */
+    private boolean bounds(float[] view, float[] proj, int light){
+        int i = light * lightStride, b = light * 6;
+        float
+            wx = lights[i], wy = lights[i + 1], wz = lights[i + 2], r = lights[i + 3],
+            x = view[Mat3D.M00] * wx + view[Mat3D.M01] * wy + view[Mat3D.M02] * wz + view[Mat3D.M03],
+            y = view[Mat3D.M10] * wx + view[Mat3D.M11] * wy + view[Mat3D.M12] * wz + view[Mat3D.M13],
+            depth = -(view[Mat3D.M20] * wx + view[Mat3D.M21] * wy + view[Mat3D.M22] * wz + view[Mat3D.M23]);
+
+        float d0 = depth - r, d1 = depth + r;
+        if(d1 < near || d0 > far){
+            bounds[b] = 1;
+            bounds[b + 1] = 0;
+            return false;
+        }
+
+        d0 = Math.max(d0, near);
+        d1 = Math.min(d1, far);
+
+        // Project the corners of the view-space box enclosing the sphere, which are all in front of the near plane.
+        float minX = Float.POSITIVE_INFINITY, minY = Float.POSITIVE_INFINITY, maxX = Float.NEGATIVE_INFINITY, maxY = Float.NEGATIVE_INFINITY;
+        for(int c = 0; c < 8; c++){
+            project(proj,
+                (c & 1) == 0 ? x - r : x + r,
+                (c & 2) == 0 ? y - r : y + r,
+                (c & 4) == 0 ? -d0 : -d1
+            );
+
+            minX = Math.min(minX, corner[0]);
+            maxX = Math.max(maxX, corner[0]);
+            minY = Math.min(minY, corner[1]);
+            maxY = Math.max(maxY, corner[1]);
+        }
+
+        if(maxX < -1f || minX > 1f || maxY < -1f || minY > 1f){
+            bounds[b] = 1;
+            bounds[b + 1] = 0;
+            return false;
+        }
+
+        bounds[b] = tile(minX, xSlices);
+        bounds[b + 1] = tile(maxX, xSlices);
+        bounds[b + 2] = tile(minY, ySlices);
+        bounds[b + 3] = tile(maxY, ySlices);
+        bounds[b + 4] = slice(d0);
+        bounds[b + 5] = slice(d1);
+        return true;
+    }
+
+    private void project(float[] proj, float x, float y, float z){
+        float w = proj[Mat3D.M30] * x + proj[Mat3D.M31] * y + proj[Mat3D.M32] * z + proj[Mat3D.M33];
+        corner[0] = (proj[Mat3D.M00] * x + proj[Mat3D.M01] * y + proj[Mat3D.M02] * z + proj[Mat3D.M03]) / w;
+        corner[1] = (proj[Mat3D.M10] * x + proj[Mat3D.M11] * y + proj[Mat3D.M12] * z + proj[Mat3D.M13]) / w;
+    }
+
+    private static int tile(float ndc, int slices){
+        return Mathf.clamp((int)((ndc * 0.5f + 0.5f) * slices), 0, slices - 1);
+    }
+}
@@ -5,25 +5,49 @@ import arc.graphics.gl.*;
 import arc.math.geom.*;
 import arc.struct.*;
 import arc.util.*;
+import model.*;
 import model.attribute.Attribute.*;
 import model.attribute.LightsAttr.*;
 import model.attribute.LightsAttr.AmbLightsAttr.*;
 import model.attribute.LightsAttr.DirLightsAttr.*;
+import model.attribute.LightsAttr.PointLightsAttr.*;
+import model.attribute.LightsAttr.SpotLightsAttr.*;
 
-/** An {@link Attribute} specified for lights. This attribute type defines a {@link Seq} of the generic lights. */
+/**
+ * An {@link Attribute} specified for lights. This attribute type defines a {@link Seq} of the generic lights, which are
+ * flattened into packed arrays only when {@link #changed() changed} and uploaded in as few uniform calls as possible.
+ */
 public abstract class LightsAttr<T extends Lights<T>, V extends LightsAttr<T, V, A>, A extends AttrAlias<V>> extends Attribute<V, A>{
-    /** All the lights that this attribute has. */
+    /** All the lights that this attribute has. Call {@link #changed()} after modifying. */
     public final Seq<T> values = new Seq<>();
 
+    /** The cached uniform name of this attribute's alias. */
+    protected final String uniform;
+    /** The cached uniform name of {@link #values}' size. */
+    protected final String sizeUniform;
+    /** Whether the packed light data is out of date and has to be re-{@link #pack()}ed. */
+    protected boolean dirty = true;
+
     @SafeVarargs
     protected LightsAttr(A alias, T... lights){
         super(alias);
         values.addAll(lights);
+
+        uniform = alias.uniform();
+        sizeUniform = uniform + "Size";
     }
 
     protected LightsAttr(A alias, Iterable<T> lights){
         super(alias);
         values.addAll(lights);
+
+        uniform = alias.uniform();
+        sizeUniform = uniform + "Size";
+    }
+
+    /** Marks the packed light data as out of date. Called by {@link Environment#changed()}. */
+    public void changed(){
+        dirty = true;
     }
 
     @Override
@@ -34,7 +58,21 @@ public abstract class LightsAttr<T extends Lights<T>, V extends LightsAttr<T, V,
 
     @Override
     public void apply(Shader shader){
-        shader.setUniformi(alias.uniform() + "Size", values.size);
+        if(dirty){
+            dirty = false;
+            pack();
+        }
+
+        upload(shader);
+    }
+
+    /** Flattens {@link #values} into the packed data to be uploaded in {@link #upload(Shader)}. */
+    protected void pack(){}
+
+    /** Uploads the packed light data to the given shader. */
+    protected void upload(Shader shader){
+        shader.setUniformi(sizeUniform, values.size);
+        if(RenderStats.enabled) RenderStats.frame.uniformUploads++;
     }
 
     /** The light type to be used in {@link #values}. Always has color; extend this class to implement other behaviors. */
@@ -48,6 +86,9 @@ public abstract class LightsAttr<T extends Lights<T>, V extends LightsAttr<T, V,
 
     /** Defines a {@link LightsAttr} type containing {@link AmbLights}. */
     public static class AmbLightsAttr extends LightsAttr<AmbLights, AmbLightsAttr, AmbLightsAlias>{
+        /** The averaged color of all the ambient lights. */
+        protected final Color packed = new Color();
+
         public AmbLightsAttr(AmbLights... lights){
             super(AmbLightsAlias.ambLights, lights);
         }
@@ -62,28 +103,33 @@ public abstract class LightsAttr<T extends Lights<T>, V extends LightsAttr<T, V,
         }
 
         @Override
-        public void apply(Shader shader){
+        protected void pack(){
+            packed.set(0f, 0f, 0f, 0f);
             if(values.isEmpty()) return;
 
-            Tmp.c1.set(0f, 0f, 0f, 0f);
             for(var l : values){
-                Tmp.c1.r += l.color.r;
-                Tmp.c1.g += l.color.g;
-                Tmp.c1.b += l.color.b;
-                Tmp.c1.a += l.color.a;
+                packed.r += l.color.r;
+                packed.g += l.color.g;
+                packed.b += l.color.b;
+                packed.a += l.color.a;
             }
 
-            Tmp.c1.r /= values.size;
-            Tmp.c1.g /= values.size;
-            Tmp.c1.b /= values.size;
-            Tmp.c1.a /= values.size;
+            packed.r /= values.size;
+            packed.g /= values.size;
+            packed.b /= values.size;
+            packed.a /= values.size;
+        }
 
-            shader.setUniformf(alias.uniform(), Tmp.c1);
+        @Override
+        protected void upload(Shader shader){
+            if(values.isEmpty()) return;
+            shader.setUniformf(uniform, packed);
+            if(RenderStats.enabled) RenderStats.frame.uniformUploads++;
         }
 
         @Override
         public AmbLightsAttr copy(){
-            return new AmbLightsAttr(values);
+            return new AmbLightsAttr(values.map(AmbLights::copy));
         }
 
         /** An ambient light. Affects all models globally, no matter what. */
@@ -128,6 +174,13 @@ public abstract class LightsAttr<T extends Lights<T>, V extends LightsAttr<T, V,
 
     /** Defines a {@link LightsAttr} type containing {@link DirLights}. */
     public static class DirLightsAttr extends LightsAttr<DirLights, DirLightsAttr, DirLightsAlias>{
+        /** The packed {@code vec4} colors of all the directional lights. */
+        protected float[] colors = {};
+        /** The packed {@code vec3} directions of all the directional lights. */
+        protected float[] dirs = {};
+
+        private final String colorUniform = uniform + "Color", dirUniform = uniform + "Dir";
+
         public DirLightsAttr(DirLights... lights){
             super(DirLightsAlias.dirLights, lights);
         }
@@ -137,19 +190,37 @@ public abstract class LightsAttr<T extends Lights<T>, V extends LightsAttr<T, V,
         }
 
         @Override
-        public void apply(Shader shader){
-            super.apply(shader);
+        protected void pack(){
+            int size = values.size;
+            if(colors.length < size * 4) colors = new float[size * 4];
+            if(dirs.length < size * 3) dirs = new float[size * 3];
 
-            var u = alias.uniform();
-            for(int i = 0; i < values.size; i++){
+            for(int i = 0; i < size; i++){
                 var l = values.get(i);
-                var index = u + "[" + i + "].";
 
-                shader.setUniformf(index + "color", l.color);
-                shader.setUniformf(index + "dir", l.dir);
+                int c = i * 4;
+                colors[c] = l.color.r;
+                colors[c + 1] = l.color.g;
+                colors[c + 2] = l.color.b;
+                colors[c + 3] = l.color.a;
+
+                int d = i * 3;
+                dirs[d] = l.dir.x;
+                dirs[d + 1] = l.dir.y;
+                dirs[d + 2] = l.dir.z;
             }
         }
 
+        @Override
+        protected void upload(Shader shader){
+            super.upload(shader);
+            if(values.isEmpty()) return;
+
+            shader.setUniform4fv(colorUniform, colors, 0, values.size * 4);
+            shader.setUniform3fv(dirUniform, dirs, 0, values.size * 3);
+            if(RenderStats.enabled) RenderStats.frame.uniformUploads += 2;
+        }
+
         @Override
         public DirLightsAttr copy(){
             return new DirLightsAttr(values.map(DirLights::copy));
@@ -198,4 +269,141 @@ public abstract class LightsAttr<T extends Lights<T>, V extends LightsAttr<T, V,
             }
         }
     }
+
+    /**
+     * Defines a {@link LightsAttr} type containing {@link PointLights}. Point lights aren't uploaded directly; they're
+     * binned by {@link LightClusters} and uploaded by the environment's {@link ClustersAttr}.
+     */
+    public static class PointLightsAttr extends LightsAttr<PointLights, PointLightsAttr, PointLightsAlias>{
+        public PointLightsAttr(PointLights... lights){
+            super(PointLightsAlias.pointLights, lights);
+        }
+
+        public PointLightsAttr(Iterable<PointLights> lights){
+            super(PointLightsAlias.pointLights, lights);
+        }
+
+        @Override
+        public StringBuilder preprocess(StringBuilder builder){
+            return builder.append("#define ").append(alias.flag()).append('\n');
+        }
+
+        @Override
+        protected void upload(Shader shader){}
+
+        @Override
+        public PointLightsAttr copy(){
+            return new PointLightsAttr(values.map(PointLights::copy));
+        }
+
+        /** A point light; emits light in all directions from its position, fading out until its range. */
+        public static class PointLights extends Lights<PointLights>{
+            /** The position of this light. */
+            public final Vec3 position = new Vec3();
+            /** The distance at which this light's intensity reaches zero. */
+            public float range = 1f;
+
+            public PointLights(){}
+
+            public PointLights(Color color, Vec3 position, float range){
+                set(color, position, range);
+            }
+
+            public PointLights set(Color color, Vec3 position, float range){
+                this.color.set(color);
+                this.position.set(position);
+                this.range = range;
+                return this;
+            }
+
+            @Override
+            public PointLights copy(){
+                return new PointLights(color, position, range);
+            }
+        }
+
+        /** Defines all supported attribute aliases for a {@link PointLightsAttr}. */
+        public enum PointLightsAlias implements AttrAlias<PointLightsAttr>{
+            pointLights;
+
+            public final long id = register(name());
+
+            @Override
+            public long id(){
+                return id;
+            }
+        }
+    }
+
+    /** Defines a {@link LightsAttr} type containing {@link SpotLights}. Uploaded the same way as {@link PointLightsAttr}. */
+    public static class SpotLightsAttr extends LightsAttr<SpotLights, SpotLightsAttr, SpotLightsAlias>{
+        public SpotLightsAttr(SpotLights... lights){
+            super(SpotLightsAlias.spotLights, lights);
+        }
+
+        public SpotLightsAttr(Iterable<SpotLights> lights){
+            super(SpotLightsAlias.spotLights, lights);
+        }
+
+        @Override
+        public StringBuilder preprocess(StringBuilder builder){
+            return builder.append("#define ").append(alias.flag()).append('\n');
+        }
+
+        @Override
+        protected void upload(Shader shader){}
+
+        @Override
+        public SpotLightsAttr copy(){
+            return new SpotLightsAttr(values.map(SpotLights::copy));
+        }
+
+        /** A spot light; a {@link PointLights} that only emits inside a cone around its direction. */
+        public static class SpotLights extends Lights<SpotLights>{
+            /** The position of this light. */
+            public final Vec3 position = new Vec3();
+            /** The direction of this light's cone. */
+            public final Vec3 dir = new Vec3(0f, 0f, -1f);
+            /** The distance at which this light's intensity reaches zero. */
+            public float range = 1f;
+            /**
+             * The half-angles of the cone in degrees; full intensity inside {@link #inner}, fading out until
+             * {@link #outer}.
+             */
+            public float inner = 20f, outer = 30f;
+
+            public SpotLights(){}
+
+            public SpotLights(Color color, Vec3 position, Vec3 dir, float range, float inner, float outer){
+                set(color, position, dir, range, inner, outer);
+            }
+
+            public SpotLights set(Color color, Vec3 position, Vec3 dir, float range, float inner, float outer){
+                this.color.set(color);
+                this.position.set(position);
+                this.dir.set(dir).nor();
+                this.range = range;
+                this.inner = inner;
+                this.outer = outer;
+                return this;
+            }
+
+            @Override
+            public SpotLights copy(){
+                return new SpotLights(color, position, dir, range, inner, outer);
+            }
+        }
+
+        /** Defines all supported attribute aliases for a {@link SpotLightsAttr}. */
+        public enum SpotLightsAlias implements AttrAlias<SpotLightsAttr>{
+            spotLights;
+
+            public final long id = register(name());
+
+            @Override
+            public long id(){
+                return id;
+            }
+        }
+    }
 }
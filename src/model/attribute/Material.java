@@ -1,21 +1,29 @@
 package model.attribute;
 
 import arc.func.*;
-import arc.struct.*;
+import arc.util.*;
 import model.*;
 import model.attribute.Attribute.*;
 
 /**
  * A material is a combined set of {@link Attribute}s that participate in a rendering of a {@link Model}. Typically,
  * a material is also used as a base definition for shaders, using pre-processors.
+ * <p>
+ * Attributes are stored densely, using their alias' {@link AttrAlias#index() registered index} as a direct slot, and
+ * iteration only visits the set bits of the {@link #mask()}.
  */
-@SuppressWarnings("unchecked")
+@SuppressWarnings({"unchecked", "rawtypes"})
 public class Material{
     /** The material ID. */
     public String id;
+    /**
+     * The stable integer ID assigned by {@link Materials#intern(Material)}, or -1 if this material isn't interned.
+     * Interned materials with equal IDs are the same instance, so they may be sorted and batched by this value.
+     */
+    public int uid = -1;
 
     private long mask;
-    private final LongMap<Attribute<?, ?>> attributes = new LongMap<>();
+    private final Attribute<?, ?>[] attributes = new Attribute[64];
 
     public Material(Attribute<?, ?>... attributes){
         set(attributes);
@@ -25,8 +33,9 @@ public class Material{
         id = from.id;
         mask = from.mask;
 
-        for(var e : from.attributes.entries()){
-            attributes.put(e.key, (Attribute<?, ?>)e.value.copy());
+        for(long m = mask; m != 0; m &= m - 1){
+            int i = Long.numberOfTrailingZeros(m);
+            attributes[i] = (Attribute<?, ?>)from.attributes[i].copy();
         }
     }
 
@@ -34,55 +43,70 @@ public class Material{
         return new Material(this);
     }
 
+    /** Gets an {@link Attribute} using its alias' {@link AttrAlias#index() index}, or null if there is none. */
+    public Attribute<?, ?> get(int index){
+        return attributes[index];
+    }
+
     /** Gets an {@link Attribute} using its attribute alias. */
     public <T extends Attribute<T, V>, V extends AttrAlias<T>> T get(V alias){
-        return (T)attributes.get(alias.id());
+        return (T)attributes[alias.index()];
     }
 
     /** Sets an {@link Attribute} to the material and returns the previously associated attribute, if any. */
     public <T extends Attribute<T, ?>> T set(T attr){
-        long id = attr.alias.id();
+        int i = attr.alias.index();
+        var prev = (T)attributes[i];
 
-        mask |= id;
-        return (T)attributes.put(id, attr);
+        mask |= attr.alias.id();
+        attributes[i] = attr;
+        return prev;
     }
 
     /** Sets multiple {@link Attribute}s at once. */
     public void set(Attribute<?, ?>... attributes){
         for(var attr : attributes){
-            set(attr);
+            set((Attribute)attr);
         }
     }
 
     /** Sets multiple {@link Attribute}s at once. */
     public void set(Iterable<? extends Attribute<?, ?>> attributes){
         for(var attr : attributes){
-            set(attr);
+            set((Attribute)attr);
         }
     }
 
     /** Removes an attribute using its alias. */
     public <T extends Attribute<T, V>, V extends AttrAlias<T>> T remove(V alias){
-        long id = alias.id();
+        int i = alias.index();
+        var prev = (T)attributes[i];
 
-        mask &= ~id;
-        return (T)attributes.remove(id);
+        mask &= ~alias.id();
+        attributes[i] = null;
+        return prev;
     }
 
     /** Removes multiple {@link Attribute}s using its alias at once. */
     public void remove(AttrAlias<?>... aliases){
         for(var alias : aliases){
-            remove(alias);
+            removeAny(alias);
         }
     }
 
     /** Removes multiple {@link Attribute}s using its alias at once. */
     public void remove(Iterable<? extends AttrAlias<?>>... aliases){
-        for(var alias : aliases){
-            remove(alias);
+        for(var group : aliases){
+            for(var alias : group){
+                removeAny(alias);
+            }
         }
     }
 
+    private <T extends Attribute<T, V>, V extends AttrAlias<T>> void removeAny(AttrAlias<?> alias){
+        remove((V)alias);
+    }
+
     /** @return Whether this material has an attribute with the specified alias. */
     public boolean has(AttrAlias<?> alias){
         return (mask & alias.id()) == alias.id();
@@ -90,9 +114,29 @@ public class Material{
 
     /** Applies a consumer to all {@link Attribute}s that this material has. */
     public void each(Cons<Attribute<?, ?>> cons){
-        for(int i = 0; i < 64; i++){
-            var attr = attributes.get(1L << i);
-            if(attr != null) cons.get(attr);
+        var attributes = this.attributes;
+        for(long m = mask; m != 0; m &= m - 1){
+            cons.get(attributes[Long.numberOfTrailingZeros(m)]);
+        }
+    }
+
+    /**
+     * Applies a consumer to all {@link Attribute}s of this material merged with the given overriding material, such as
+     * a per-instance property block. Attributes of the overriding material take precedence.
+     */
+    public void each(@Nullable Material overrides, Cons<Attribute<?, ?>> cons){
+        if(overrides == null){
+            each(cons);
+            return;
+        }
+
+        var attributes = this.attributes;
+        var over = overrides.attributes;
+        for(long m = mask | overrides.mask; m != 0; m &= m - 1){
+            int i = Long.numberOfTrailingZeros(m);
+
+            var attr = over[i];
+            cons.get(attr != null ? attr : attributes[i]);
         }
     }
 
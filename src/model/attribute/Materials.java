@@ -0,0 +1,151 @@
+package model.attribute;
+
+import arc.struct.*;
+import model.*;
+
+/**
+ * A global registry of interned {@link Material}s. Materials with identical attribute contents are deduplicated into
+ * one shared instance with a stable {@link Material#uid}, so that materials exported into many {@link Model}s are only
+ * kept once and can be compared by identity or integer ID.
+ * <p>
+ * Materials are matched by their contents at the time of interning; interned materials should be treated as immutable
+ * afterwards, apart from {@link Model#init()} resolving their textures. Every {@link #intern(Material)} holds a
+ * reference to the returned material that must be given back with {@link #release(Material)}, which drops the material
+ * from the registry once no references remain. All methods are synchronized, so models may be loaded concurrently.
+ */
+public class Materials{
+    private static final ObjectMap<Key, Material> interned = new ObjectMap<>();
+    /** Interned materials, their frozen lookup keys and reference counts, all indexed by {@link Material#uid}. */
+    private static final Seq<Material> all = new Seq<>();
+    private static final Seq<Key> keys = new Seq<>();
+    private static final IntSeq refs = new IntSeq();
+    /** Released {@link Material#uid}s, to be reused by newly interned materials. */
+    private static final IntSeq free = new IntSeq();
+    private static int size, deduplicated;
+
+    /**
+     * Interns the given material, acquiring a reference to the result.
+     * @return A previously interned material with identical attributes, or the given material itself if there is none.
+     */
+    public static synchronized Material intern(Material mat){
+        if(registered(mat)){
+            refs.incr(mat.uid, 1);
+            return mat;
+        }
+
+        var existing = interned.get(new Key(mat));
+        if(existing != null){
+            deduplicated++;
+            refs.incr(existing.uid, 1);
+            return existing;
+        }
+
+        // Keep a frozen copy as the key, so that later modifications to the material don't corrupt the lookup.
+        var key = new Key(new Material(mat));
+        if(free.isEmpty()){
+            mat.uid = all.size;
+            all.add(mat);
+            keys.add(key);
+            refs.add(1);
+        }else{
+            mat.uid = free.pop();
+            all.set(mat.uid, mat);
+            keys.set(mat.uid, key);
+            refs.set(mat.uid, 1);
+        }
+
+        interned.put(key, mat);
+        size++;
+        return mat;
+    }
+
+    /**
+     * Releases a reference acquired by {@link #intern(Material)}. Once no references remain, the material is dropped
+     * from the registry and its {@link Material#uid} is reset to -1. Does nothing if the material isn't interned.
+     */
+    public static synchronized void release(Material mat){
+        if(!registered(mat)) return;
+
+        int uid = mat.uid;
+        refs.incr(uid, -1);
+        if(refs.get(uid) > 0) return;
+
+        interned.remove(keys.get(uid));
+        all.set(uid, null);
+        keys.set(uid, null);
+        free.add(uid);
+
+        mat.uid = -1;
+        size--;
+    }
+
+    /** @return The amount of references held on the given material, or 0 if it isn't interned. */
+    public static synchronized int refs(Material mat){
+        return registered(mat) ? refs.get(mat.uid) : 0;
+    }
+
+    /** @return The interned material with the specified {@link Material#uid}, or null if there is none. */
+    public static synchronized Material get(int uid){
+        return uid >= 0 && uid < all.size ? all.get(uid) : null;
+    }
+
+    /** @return The amount of distinct interned materials. */
+    public static synchronized int size(){
+        return size;
+    }
+
+    /** @return The amount of {@link #intern(Material)} calls that were resolved to an existing material. */
+    public static synchronized int deduplicated(){
+        return deduplicated;
+    }
+
+    /** Clears the registry. Already interned materials keep their {@link Material#uid} but will no longer be shared. */
+    public static synchronized void clear(){
+        interned.clear();
+        all.clear();
+        keys.clear();
+        refs.clear();
+        free.clear();
+        size = deduplicated = 0;
+    }
+
+    /** @return Whether both materials have equal attributes. */
+    public static boolean same(Material a, Material b){
+        if(a.mask() != b.mask()) return false;
+        for(long m = a.mask(); m != 0; m &= m - 1){
+            int i = Long.numberOfTrailingZeros(m);
+            if(!a.get(i).equals(b.get(i))) return false;
+        }
+
+        return true;
+    }
+
+    private static boolean registered(Material mat){
+        return mat.uid >= 0 && mat.uid < all.size && all.get(mat.uid) == mat;
+    }
+
+    private static class Key{
+        final Material mat;
+        final int hash;
+
+        Key(Material mat){
+            this.mat = mat;
+
+            int hash = Long.hashCode(mat.mask());
+            for(long m = mat.mask(); m != 0; m &= m - 1){
+                hash = 31 * hash + mat.get(Long.numberOfTrailingZeros(m)).hashCode();
+            }
+            this.hash = hash;
+        }
+
+        @Override
+        public boolean equals(Object o){
+            return this == o || o instanceof Key key && hash == key.hash && same(mat, key.mat);
+        }
+
+        @Override
+        public int hashCode(){
+            return hash;
+        }
+    }
+}
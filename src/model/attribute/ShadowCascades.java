@@ -0,0 +1,225 @@
+package model.attribute;
+
+import arc.graphics.g3d.*;
+import arc.math.geom.*;
+
+/**
+ * The CPU-side half of cascaded shadow maps for a directional light. The camera's view range is split into
+ * {@link #count} cascades, each fitted with a bounding sphere of its slice of the view frustum, which keeps a cascade's
+ * size constant as the camera rotates, and snapped to whole texels in light space so that shadow edges don't shimmer as
+ * it moves.
+ * <p>
+ * After {@link #update(Camera3D, Vec3)}, shadow casters are culled per cascade with {@link #casts(int, float, float,
+ * float, float)}, which also extends the light's depth range towards accepted casters, and {@link #finish()} then
+ * computes the {@link #projections} that casters are rendered with.
+ */
+public class ShadowCascades{
+    /** The maximum amount of cascades. */
+    public static final int maxCascades = 4;
+
+    /** The amount of cascades. */
+    public final int count;
+    /** The size of every cascade's shadow map in texels. */
+    public final int resolution;
+    /** The blend between logarithmic and uniform splits; 1 is fully logarithmic, 0 fully uniform. */
+    public float lambda = 0.75f;
+    /** The maximum view distance that receives shadows, clamping the camera's far plane. */
+    public float distance = 100f;
+
+    /** The view distances of the cascades' boundaries, from the camera's near plane to the last cascade's far end. */
+    public final float[] splits;
+    /** The light space center X and Y, half extent, and far split of every cascade, 4 floats each. */
+    public final float[] cascades;
+    /** The light space depth range of every cascade, 2 floats each. */
+    public final float[] depths;
+
+    /** The light space basis; {@link #forward} is the direction the light travels. */
+    public final Vec3 right = new Vec3(), up = new Vec3(), forward = new Vec3();
+    /** The light space depth range shared by every cascade, available after {@link #finish()}. */
+    public float near, far;
+
+    /**
+     * Transforms world positions to light space X and Y, and the depth normalized to [0, 1] within {@link #near} and
+     * {@link #far}.
+     */
+    public final Mat3D view = new Mat3D();
+    /** The orthographic projections of every cascade, available after {@link #finish()}. */
+    public final Mat3D[] projections;
+
+    private final float[] corners = new float[8 * 3];
+
+    /**
+     * @param count      The amount of cascades, at most {@link #maxCascades}.
+     * @param resolution The size of every cascade's shadow map in texels.
+     */
+    public ShadowCascades(int count, int resolution){
+        if(count < 1 || count > maxCascades) throw new IllegalArgumentException("Between 1 and " + maxCascades + " cascades are supported.");
+
+        this.count = count;
+        this.resolution = resolution;
+        splits = new float[count + 1];
+        cascades = new float[count * 4];
+        depths = new float[count * 2];
+        projections = new Mat3D[count];
+        for(int i = 0; i < count; i++) projections[i] = new Mat3D();
+    }
+
+    /** Splits the view range between the given distances, blending logarithmic and uniform splits by {@link #lambda}. */
+    public void split(float near, float far){
+        near = Math.max(near, 0.0001f);
+        far = Math.max(far, near);
+
+        splits[0] = near;
+        for(int i = 1; i < count; i++){
+            float f = (float)i / count;
+            float log = near * (float)Math.pow(far / near, f);
+            float uniform = near + (far - near) * f;
+            splits[i] = lambda * log + (1f - lambda) * uniform;
+        }
+        splits[count] = far;
+    }
+
+    /**
+     * Splits the camera's view range and fits every cascade to its slice, in the light space of the given direction.
+     * The camera must be updated beforehand.
+     * @param dir The direction the light travels in.
+     */
+    public void update(Camera3D cam, Vec3 dir){
+        split(Math.abs(cam.near), Math.min(Math.abs(cam.far), distance));
+
+        forward.set(dir).nor();
+        var helper = Math.abs(forward.z) < 0.99f ? Vec3.Z : Vec3.Y;
+        right.set(forward).crs(helper).nor();
+        up.set(right).crs(forward).nor();
+
+        for(int i = 0; i < count; i++) fit(cam, i);
+    }
+
+    private void fit(Camera3D cam, int cascade){
+        float
+            dx = cam.direction.x, dy = cam.direction.y, dz = cam.direction.z,
+            dl = (float)Math.sqrt(dx * dx + dy * dy + dz * dz);
+        dx /= dl;
+        dy /= dl;
+        dz /= dl;
+
+        // The camera's right and up vectors, orthogonalized against its direction.
+        float
+            rx = dy * cam.up.z - dz * cam.up.y, ry = dz * cam.up.x - dx * cam.up.z, rz = dx * cam.up.y - dy * cam.up.x,
+            rl = (float)Math.sqrt(rx * rx + ry * ry + rz * rz);
+        rx /= rl;
+        ry /= rl;
+        rz /= rl;
+        float ux = ry * dz - rz * dy, uy = rz * dx - rx * dz, uz = rx * dy - ry * dx;
+
+        float
+            aspect = cam.height > 0f ? cam.width / cam.height : 1f,
+            tan = (float)Math.tan(Math.toRadians(cam.fov / 2f));
+
+        var pos = cam.position;
+        float cx = 0f, cy = 0f, cz = 0f;
+        for(int s = 0; s < 2; s++){
+            float dist = splits[cascade + s];
+            float
+                halfV = cam.perspective ? dist * tan : cam.height / 2f,
+                halfH = cam.perspective ? halfV * aspect : cam.width / 2f;
+
+            for(int k = 0; k < 4; k++){
+                float sv = (k & 1) == 0 ? -halfV : halfV, sh = (k & 2) == 0 ? -halfH : halfH;
+                int o = (s * 4 + k) * 3;
+
+                corners[o] = pos.x + dx * dist + ux * sv + rx * sh;
+                corners[o + 1] = pos.y + dy * dist + uy * sv + ry * sh;
+                corners[o + 2] = pos.z + dz * dist + uz * sv + rz * sh;
+                cx += corners[o] / 8f;
+                cy += corners[o + 1] / 8f;
+                cz += corners[o + 2] / 8f;
+            }
+        }
+
+        float radius = 0f;
+        for(int o = 0; o < corners.length; o += 3){
+            float x = corners[o] - cx, y = corners[o + 1] - cy, z = corners[o + 2] - cz;
+            radius = Math.max(radius, x * x + y * y + z * z);
+        }
+
+        // Rounding the radius up keeps it stable against float noise as the camera rotates, and the margin keeps the
+        // slice covered after snapping the center by up to a texel.
+        radius = (float)Math.ceil(Math.sqrt(radius) * 16f) / 16f;
+        float extent = radius * resolution / Math.max(resolution - 2f, 1f);
+
+        float
+            texel = extent * 2f / resolution,
+            lx = (float)Math.floor((cx * right.x + cy * right.y + cz * right.z) / texel) * texel,
+            ly = (float)Math.floor((cx * up.x + cy * up.y + cz * up.z) / texel) * texel,
+            lz = cx * forward.x + cy * forward.y + cz * forward.z;
+
+        int o = cascade * 4;
+        cascades[o] = lx;
+        cascades[o + 1] = ly;
+        cascades[o + 2] = extent;
+        cascades[o + 3] = splits[cascade + 1];
+
+        depths[cascade * 2] = lz - radius;
+        depths[cascade * 2 + 1] = lz + radius;
+    }
+
+    /**
+     * Tests whether a world bounding sphere may cast shadows into the cascade, that is, whether it overlaps the cascade
+     * sideways and isn't entirely past its receivers. Accepted casters extend the cascade's depth range towards the
+     * light.
+     */
+    public boolean casts(int cascade, float x, float y, float z, float radius){
+        int o = cascade * 4;
+        float
+            r = cascades[o + 2] + radius,
+            lx = x * right.x + y * right.y + z * right.z,
+            ly = x * up.x + y * up.y + z * up.z,
+            lz = x * forward.x + y * forward.y + z * forward.z;
+
+        if(Math.abs(lx - cascades[o]) > r || Math.abs(ly - cascades[o + 1]) > r || lz - radius > depths[cascade * 2 + 1]) return false;
+
+        depths[cascade * 2] = Math.min(depths[cascade * 2], lz - radius);
+        return true;
+    }
+
+    /** Computes the shared light space depth range, {@link #view}, and {@link #projections} once casters are culled. */
+    public void finish(){
+        near = Float.POSITIVE_INFINITY;
+        far = Float.NEGATIVE_INFINITY;
+        for(int i = 0; i < count; i++){
+            near = Math.min(near, depths[i * 2]);
+            far = Math.max(far, depths[i * 2 + 1]);
+        }
+
+        float range = Math.max(far - near, 0.0001f);
+        set(view, 1f, 0f, 0f, 1f / range, -near / range);
+
+        for(int i = 0; i < count; i++){
+            int o = i * 4;
+            float inv = 1f / cascades[o + 2];
+            set(projections[i], inv, -cascades[o] * inv, -cascades[o + 1] * inv, 2f / range, -2f * near / range - 1f);
+        }
+    }
+
+    /** Sets the matrix to scale the light space basis and offset it, as rows of (basis * scale, offset). */
+    private void set(Mat3D mat, float xyScale, float xOffset, float yOffset, float zScale, float zOffset){
+        var val = mat.val;
+        val[Mat3D.M00] = right.x * xyScale;
+        val[Mat3D.M01] = right.y * xyScale;
+        val[Mat3D.M02] = right.z * xyScale;
+        val[Mat3D.M03] = xOffset;
+        val[Mat3D.M10] = up.x * xyScale;
+        val[Mat3D.M11] = up.y * xyScale;
+        val[Mat3D.M12] = up.z * xyScale;
+        val[Mat3D.M13] = yOffset;
+        val[Mat3D.M20] = forward.x * zScale;
+        val[Mat3D.M21] = forward.y * zScale;
+        val[Mat3D.M22] = forward.z * zScale;
+        val[Mat3D.M23] = zOffset;
+        val[Mat3D.M30] = 0f;
+        val[Mat3D.M31] = 0f;
+        val[Mat3D.M32] = 0f;
+        val[Mat3D.M33] = 1f;
+    }
+}
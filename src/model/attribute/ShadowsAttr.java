@@ -0,0 +1,189 @@
+package model.attribute;
+
+import arc.graphics.*;
+import arc.graphics.g3d.*;
+import arc.graphics.gl.*;
+import arc.math.geom.*;
+import arc.struct.*;
+import arc.util.*;
+import model.*;
+import model.Model.*;
+import model.ModelShader.*;
+import model.attribute.LightsAttr.DirLightsAttr.*;
+import model.attribute.ShadowsAttr.*;
+
+/**
+ * An {@link Environment} attribute that renders cascaded shadow maps of the environment's first {@link DirLights}
+ * through {@link Pass#depth depth} shaders, and shadows that light's contribution in the model shader. The cascades are
+ * laid out side by side in a single color-encoded atlas, so that they take one texture unit and don't require depth
+ * textures.
+ */
+public class ShadowsAttr extends Attribute<ShadowsAttr, ShadowsAlias> implements Disposable{
+    /** The cascade splitting, fitting, and caster culling. */
+    public final ShadowCascades cascades;
+    /** The depth offset receivers are compared with, in normalized light space depth, to avoid self-shadowing. */
+    public float bias = 0.002f;
+
+    private final Camera3D cascadeCam = new Camera3D();
+    private final IntSeq[] casters;
+    private final float[] uniforms;
+    private final Vec3 camDir = new Vec3(), tmp = new Vec3();
+    private @Nullable FrameBuffer buffer;
+
+    public ShadowsAttr(){
+        this(new ShadowCascades(3, 1024));
+    }
+
+    public ShadowsAttr(ShadowCascades cascades){
+        super(ShadowsAlias.shadows);
+        this.cascades = cascades;
+
+        casters = new IntSeq[cascades.count];
+        for(int i = 0; i < casters.length; i++) casters[i] = new IntSeq();
+        uniforms = new float[cascades.count * 4];
+    }
+
+    /**
+     * Fits the cascades to the camera, culls the views casting shadows into each, and renders them to the shadow atlas.
+     * Should be called once per frame after the camera has been updated, with views gathered for that frame. The depth
+     * shaders it selects are pinned along with the views' own if the frame was begun with {@link ModelShader#beginFrame()}.
+     */
+    public void update(Camera3D cam, DirLights light, Seq<ModelView> views){
+        cascades.update(cam, light.dir);
+        camDir.set(cam.direction).nor();
+
+        for(var seq : casters) seq.clear();
+
+        var items = views.items;
+        for(int i = 0, size = views.size; i < size; i++){
+            float r = items[i].sphere(tmp);
+            for(int c = 0; c < cascades.count; c++){
+                if(cascades.casts(c, tmp.x, tmp.y, tmp.z, r)) casters[c].add(i);
+            }
+        }
+        cascades.finish();
+
+        for(int c = 0; c < cascades.count; c++){
+            int o = c * 4;
+            uniforms[o] = cascades.cascades[o];
+            uniforms[o + 1] = cascades.cascades[o + 1];
+            uniforms[o + 2] = 1f / cascades.cascades[o + 2];
+            uniforms[o + 3] = cascades.cascades[o + 3];
+        }
+
+        render(items);
+    }
+
+    private void render(ModelView[] items){
+        int res = cascades.resolution;
+        if(buffer == null){
+            buffer = new FrameBuffer(Pixmap.Format.rgba8888, res * cascades.count, res, true);
+            buffer.getTexture().setFilter(Texture.TextureFilter.nearest);
+        }
+
+        // White unpacks past the far plane, so uncovered texels never shadow.
+        buffer.begin(Color.white);
+        Gl.enable(Gl.depthTest);
+        Gl.depthMask(true);
+        Gl.depthFunc(Gl.lequal);
+
+        // Casters are rendered from the cascade cameras, not through the game's 2D projection.
+        var prevPass = ModelShader.pass;
+        var prevType = ModelShader.type;
+        ModelShader.pass = Pass.depth;
+        ModelShader.type = RenderType.def;
+
+        for(int c = 0; c < cascades.count; c++){
+            Gl.viewport(c * res, 0, res, res);
+            cascadeCam.combined.set(cascades.projections[c]);
+
+            var seq = casters[c];
+            ModelShader prev = null;
+            for(int i = 0; i < seq.size; i++){
+                var view = items[seq.items[i]];
+                var shader = ModelShader.get(view);
+                if(shader != prev){
+                    shader.bind();
+                    shader.cam = cascadeCam;
+                    shader.applyCamera(c * res, 0, res, res);
+                    prev = shader;
+                }
+
+                shader.model = view;
+                shader.applyModel();
+                view.mesh.render(shader, true);
+            }
+        }
+
+        ModelShader.pass = prevPass;
+        ModelShader.type = prevType;
+        Gl.disable(Gl.depthTest);
+        buffer.end();
+    }
+
+    @Override
+    public StringBuilder preprocess(StringBuilder builder){
+        return builder
+            .append("#define ").append(alias.flag()).append('\n')
+            .append("#define numCascades ").append(cascades.count).append('\n');
+    }
+
+    @Override
+    public boolean bindsTextures(){
+        return true;
+    }
+
+    /** @inheritDoc Binds the shadow atlas to {@link TexUnits#shadows}. */
+    @Override
+    public void apply(Shader shader){
+        if(buffer == null) return;
+
+        int unit = TexUnits.shadows;
+        buffer.getTexture().bind(unit);
+        Gl.activeTexture(Gl.texture0);
+
+        shader.setUniformi("u_shadowMap", unit);
+        shader.setUniformMatrix4("u_shadowView", cascades.view.val);
+        shader.setUniformf("u_shadowCamDir", camDir);
+        shader.setUniform4fv("u_cascades", uniforms, 0, uniforms.length);
+        shader.setUniformf("u_shadowBias", bias);
+        if(RenderStats.enabled){
+            RenderStats.frame.textureBinds++;
+            RenderStats.frame.uniformUploads += 5;
+        }
+    }
+
+    @Override
+    public ShadowsAttr copy(){
+        var cascades = new ShadowCascades(this.cascades.count, this.cascades.resolution);
+        cascades.lambda = this.cascades.lambda;
+        cascades.distance = this.cascades.distance;
+
+        var copy = new ShadowsAttr(cascades);
+        copy.bias = bias;
+        return copy;
+    }
+
+    @Override
+    public void dispose(){
+        if(buffer != null) buffer.dispose();
+        buffer = null;
+    }
+
+    /** Defines all supported attribute aliases for a {@link ShadowsAttr}. */
+    public enum ShadowsAlias implements AttrAlias<ShadowsAttr>{
+        shadows;
+
+        public final long id = register(name());
+
+        @Override
+        public long id(){
+            return id;
+        }
+
+        @Override
+        public String flag(){
+            return "shadowFlag";
+        }
+    }
+}
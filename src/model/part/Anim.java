@@ -5,13 +5,24 @@ import arc.math.geom.*;
 import arc.struct.*;
 import model.*;
 
+import java.util.concurrent.atomic.*;
+
 /** Defines an animation of a {@link Model}. */
 public class Anim{
+    private static final AtomicInteger lastUid = new AtomicInteger();
+
+    /**
+     * A process-wide unique identifier of this animation, letting caches key on it without holding a reference. Copies
+     * get their own; use the {@link #source}'s to identify their keyframes.
+     */
+    public final int uid = lastUid.getAndIncrement();
     /** The ID of this animation. */
     public String id = "";
 
     /** The total duration of this animation. */
     public float duration;
+    /** The animation this animation was copied from, or itself if it's an original. Copies share their keyframes. */
+    public Anim source = this;
     /** All the {@link NodeAnim}s that this animation contains. */
     public final Seq<NodeAnim> anims = new Seq<>(2);
 
@@ -25,6 +36,7 @@ public class Anim{
     public Anim(Func<Node, Node> nodes, Anim other){
         id = other.id;
         duration = other.duration;
+        source = other.source;
 
         anims.set(other.anims.map(a -> a.copy(nodes.get(a.node))));
     }
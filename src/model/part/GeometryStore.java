@@ -0,0 +1,136 @@
+package model.part;
+
+import arc.graphics.*;
+import arc.struct.*;
+import arc.util.*;
+
+import java.nio.*;
+
+/**
+ * Retains the full-float vertices and 32-bit indices of uploaded meshes in off-heap buffers, so that their geometry
+ * stays available on the CPU after loading, e.g. to recompute bounds, build {@link MeshBvh}s, re-batch, or generate
+ * levels of detail through {@link Entry#data()}, and so that meshes can be {@link #restore() re-uploaded} after the GL
+ * context was lost.
+ * <p>
+ * The buffers aren't garbage collected; they're freed by {@link #dispose()}, which the owning model calls when it's
+ * disposed.
+ */
+public class GeometryStore implements Disposable{
+    /** The retained meshes, in upload order. */
+    public final Seq<Entry> entries = new Seq<>(2);
+
+    /** Retains a copy of the mesh data that was just uploaded to the given mesh and index buffer. */
+    public Entry add(MeshData data, Mesh mesh, @Nullable VertexCodec codec, IndexBuffer indices){
+        var entry = new Entry(data, mesh, codec, indices);
+        entries.add(entry);
+        return entry;
+    }
+
+    /**
+     * @return The entry holding the given part's geometry, or null if it isn't retained or consists of
+     * {@link MeshPart#chunks}.
+     */
+    public @Nullable Entry get(MeshPart part){
+        for(var entry : entries){
+            if(entry.parts.contains(part, true)) return entry;
+        }
+        return null;
+    }
+
+    /**
+     * Uploads every retained mesh's vertices again, re-encoding them if they're compressed, and invalidates their index
+     * buffers so they're uploaded again on their next bind. Must be called on the GL thread.
+     */
+    public void restore(){
+        for(var entry : entries){
+            var vertices = new float[entry.numVertices * entry.stride];
+            // Read through a duplicate so that the retained buffer's position is never moved, even across threads.
+            entry.vertices.duplicate().get(vertices);
+
+            entry.mesh.setVertices(entry.codec == null ? vertices : VertexCodec.pack(entry.codec.encode(vertices)));
+            entry.indices.invalidate();
+        }
+    }
+
+    /** @return The size of the retained buffers in bytes. */
+    public long size(){
+        long size = 0;
+        for(var entry : entries) size += entry.size();
+        return size;
+    }
+
+    @Override
+    public void dispose(){
+        for(var entry : entries) entry.free();
+        entries.clear();
+    }
+
+    /** The retained geometry of a single uploaded mesh. */
+    public static class Entry{
+        /** The mesh the vertices were uploaded to. */
+        public final Mesh mesh;
+        /** The decode parameters of the {@link #mesh}'s compressed vertices, or null if they aren't compressed. */
+        public final @Nullable VertexCodec codec;
+        /** The index buffer the indices were uploaded to. */
+        public final IndexBuffer indices;
+        /** The full-float vertex attributes. */
+        public final VertexAttribute[] attributes;
+        /** The size of a vertex in floats. */
+        public final int stride, numVertices, numIndices;
+        /** The parts referring to ranges of the indices. */
+        public final Seq<MeshPart> parts;
+
+        /** The full-float vertices, {@link #stride} floats each. Read with absolute gets; don't modify. */
+        public final FloatBuffer vertices;
+        /** The indices of all parts. Read with absolute gets; don't modify. */
+        public final IntBuffer indexData;
+
+        private ByteBuffer vertexBytes, indexBytes;
+
+        Entry(MeshData data, Mesh mesh, @Nullable VertexCodec codec, IndexBuffer indices){
+            this.mesh = mesh;
+            this.codec = codec;
+            this.indices = indices;
+            attributes = data.attributes;
+            stride = data.stride;
+            numVertices = data.numVertices();
+            numIndices = data.indices.length;
+            parts = new Seq<>(data.parts);
+
+            vertexBytes = Buffers.newUnsafeByteBuffer(data.vertices.length * 4);
+            vertexBytes.order(ByteOrder.nativeOrder());
+            vertices = vertexBytes.asFloatBuffer();
+            vertices.put(data.vertices).flip();
+
+            indexBytes = Buffers.newUnsafeByteBuffer(numIndices * 4);
+            indexBytes.order(ByteOrder.nativeOrder());
+            indexData = indexBytes.asIntBuffer();
+            indexData.put(data.indices).flip();
+        }
+
+        /** @return A fresh CPU-side intermediate of this mesh with copies of its vertices and indices, sharing its parts. */
+        public MeshData data(){
+            var vertexArray = new float[numVertices * stride];
+            vertices.duplicate().get(vertexArray);
+            var indexArray = new int[numIndices];
+            indexData.duplicate().get(indexArray);
+
+            var data = new MeshData(attributes, vertexArray, indexArray);
+            data.parts.addAll(parts);
+            return data;
+        }
+
+        /** @return The size of this entry's buffers in bytes. */
+        public int size(){
+            return vertexBytes == null ? 0 : vertexBytes.capacity() + indexBytes.capacity();
+        }
+
+        void free(){
+            if(vertexBytes == null) return;
+
+            Buffers.disposeUnsafeByteBuffer(vertexBytes);
+            Buffers.disposeUnsafeByteBuffer(indexBytes);
+            vertexBytes = indexBytes = null;
+        }
+    }
+}
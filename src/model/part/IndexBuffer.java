@@ -0,0 +1,118 @@
+package model.part;
+
+import arc.*;
+import arc.graphics.*;
+import arc.util.*;
+
+import java.nio.*;
+
+/**
+ * An element array buffer storing indices in the narrowest of {@link Gl#unsignedByte}, {@link Gl#unsignedShort}, or
+ * {@link Gl#unsignedInt} that fits, since {@link Mesh} only supports 16-bit indices. The indices are encoded on
+ * construction and uploaded on the first {@link #bind()}, so buffers may be created off the GL thread.
+ */
+public class IndexBuffer implements Disposable{
+    private static int uintSupport = -1;
+
+    /** The index type, either {@link Gl#unsignedByte}, {@link Gl#unsignedShort}, or {@link Gl#unsignedInt}. */
+    public final int type;
+    /** The amount of indices in this buffer. */
+    public final int count;
+
+    private final ByteBuffer data;
+    private int handle;
+
+    /** Encodes the given indices with the narrowest type that fits, as returned by {@link #type(int, boolean)}. */
+    public IndexBuffer(int[] indices, int offset, int count, boolean uint){
+        this(indices, offset, count, type(max(indices, offset, count), uint));
+    }
+
+    /** Encodes the given indices with the specified type. */
+    public IndexBuffer(int[] indices, int offset, int count, int type){
+        this.type = type;
+        this.count = count;
+
+        data = Buffers.newByteBuffer(count * bytes(type));
+        data.order(ByteOrder.nativeOrder());
+        for(int i = offset, end = offset + count; i < end; i++){
+            switch(type){
+                case Gl.unsignedByte -> data.put((byte)indices[i]);
+                case Gl.unsignedShort -> data.putShort((short)indices[i]);
+                default -> data.putInt(indices[i]);
+            }
+        }
+        data.flip();
+    }
+
+    /** @return Whether 32-bit indices are supported, either by OpenGL ES 3 or {@code OES_element_index_uint}. */
+    public static boolean supportsUint(){
+        if(uintSupport == -1){
+            uintSupport = Core.graphics.isGL30Available() || Core.graphics.supportsExtension("GL_OES_element_index_uint") ? 1 : 0;
+        }
+        return uintSupport == 1;
+    }
+
+    /**
+     * @param uint Whether {@link Gl#unsignedInt} may be used.
+     * @return The narrowest index type able to refer to the given maximum index.
+     */
+    public static int type(int maxIndex, boolean uint){
+        if(maxIndex <= 0xff) return Gl.unsignedByte;
+        if(maxIndex <= 0xffff) return Gl.unsignedShort;
+        if(!uint) throw new IllegalArgumentException("Index " + maxIndex + " requires 32-bit indices, which are unavailable.");
+        return Gl.unsignedInt;
+    }
+
+    /** @return The size of the index type in bytes. */
+    public static int bytes(int type){
+        return switch(type){
+            case Gl.unsignedByte -> 1;
+            case Gl.unsignedShort -> 2;
+            case Gl.unsignedInt -> 4;
+            default -> throw new IllegalArgumentException("Invalid index type: " + type);
+        };
+    }
+
+    private static int max(int[] indices, int offset, int count){
+        int max = 0;
+        for(int i = offset, end = offset + count; i < end; i++) max = Math.max(max, indices[i]);
+        return max;
+    }
+
+    /** @return The size of this buffer in bytes. */
+    public int size(){
+        return data.limit();
+    }
+
+    /** Binds this buffer as the element array buffer, uploading it first if needed. */
+    public void bind(){
+        if(handle == 0){
+            handle = Gl.genBuffer();
+            Gl.bindBuffer(Gl.elementArrayBuffer, handle);
+            Gl.bufferData(Gl.elementArrayBuffer, data.limit(), data, Gl.staticDraw);
+        }else{
+            Gl.bindBuffer(Gl.elementArrayBuffer, handle);
+        }
+    }
+
+    /** Unbinds the element array buffer. */
+    public void unbind(){
+        Gl.bindBuffer(Gl.elementArrayBuffer, 0);
+    }
+
+    /** Draws the given range of indices, which must be bound. */
+    public void draw(int primitive, int offset, int count){
+        Gl.drawElements(primitive, count, type, offset * bytes(type));
+    }
+
+    /** Forgets the buffer handle, e.g. after the GL context was lost, so it's uploaded again on the next bind. */
+    public void invalidate(){
+        handle = 0;
+    }
+
+    @Override
+    public void dispose(){
+        if(handle != 0) Gl.deleteBuffer(handle);
+        handle = 0;
+    }
+}
@@ -0,0 +1,256 @@
+package model.part;
+
+/**
+ * A bounding volume hierarchy over the triangles of a {@link MeshPart}, for ray picking on the CPU. Since meshes only
+ * live on the GPU once uploaded, the hierarchy keeps its own compact copy of the triangles' positions, ordered by leaf
+ * so that traversal reads memory sequentially.
+ * <p>
+ * Nodes are split at the median centroid of their longest axis until they hold at most {@link #leafSize} triangles.
+ * Queries are in the part's local space and return the nearest triangle hit from either side.
+ */
+public class MeshBvh{
+    /** The maximum amount of triangles per leaf. */
+    public static final int leafSize = 4;
+
+    /** The amount of triangles. */
+    public final int numTriangles;
+    /** The positions of the triangles in leaf order, 9 floats each. */
+    final float[] triangles;
+    /** The index of every triangle in leaf order within its part. */
+    final int[] ids;
+
+    /** The bounds of every node, 6 floats each as minimum then maximum. */
+    float[] bounds;
+    /** For leaves, the first triangle; otherwise, the index of the right child, the left child being the next node. */
+    int[] first;
+    /** For leaves, the amount of triangles; otherwise 0. */
+    int[] counts;
+    /** The amount of nodes. */
+    int numNodes;
+
+    private final int[] stack = new int[64];
+
+    /**
+     * Builds a hierarchy over the triangle list within the given index range.
+     * @param vertices  The vertices, {@code stride} floats each.
+     * @param posOffset The offset of the vertex positions in floats.
+     */
+    public MeshBvh(float[] vertices, int stride, int posOffset, int[] indices, int offset, int count){
+        numTriangles = count / 3;
+
+        var source = new float[numTriangles * 9];
+        var centroids = new float[numTriangles * 3];
+        for(int t = 0; t < numTriangles; t++){
+            for(int k = 0; k < 3; k++){
+                int v = indices[offset + t * 3 + k] * stride + posOffset;
+                for(int c = 0; c < 3; c++){
+                    float value = vertices[v + c];
+                    source[t * 9 + k * 3 + c] = value;
+                    centroids[t * 3 + c] += value / 3f;
+                }
+            }
+        }
+
+        ids = new int[numTriangles];
+        for(int t = 0; t < numTriangles; t++) ids[t] = t;
+
+        int capacity = Math.max(2 * ((numTriangles + leafSize - 1) / leafSize), 1);
+        bounds = new float[capacity * 6];
+        first = new int[capacity];
+        counts = new int[capacity];
+        build(source, centroids, 0, numTriangles, 0);
+
+        triangles = new float[numTriangles * 9];
+        for(int t = 0; t < numTriangles; t++) System.arraycopy(source, ids[t] * 9, triangles, t * 9, 9);
+    }
+
+    private int build(float[] source, float[] centroids, int start, int end, int depth){
+        int node = numNodes++;
+        if(node >= first.length){
+            int cap = first.length * 2;
+            bounds = java.util.Arrays.copyOf(bounds, cap * 6);
+            first = java.util.Arrays.copyOf(first, cap);
+            counts = java.util.Arrays.copyOf(counts, cap);
+        }
+
+        float
+            minX = Float.POSITIVE_INFINITY, minY = Float.POSITIVE_INFINITY, minZ = Float.POSITIVE_INFINITY,
+            maxX = Float.NEGATIVE_INFINITY, maxY = Float.NEGATIVE_INFINITY, maxZ = Float.NEGATIVE_INFINITY,
+            cMinX = Float.POSITIVE_INFINITY, cMinY = Float.POSITIVE_INFINITY, cMinZ = Float.POSITIVE_INFINITY,
+            cMaxX = Float.NEGATIVE_INFINITY, cMaxY = Float.NEGATIVE_INFINITY, cMaxZ = Float.NEGATIVE_INFINITY;
+
+        for(int i = start; i < end; i++){
+            int t = ids[i];
+            for(int k = 0; k < 9; k += 3){
+                float x = source[t * 9 + k], y = source[t * 9 + k + 1], z = source[t * 9 + k + 2];
+                minX = Math.min(minX, x); minY = Math.min(minY, y); minZ = Math.min(minZ, z);
+                maxX = Math.max(maxX, x); maxY = Math.max(maxY, y); maxZ = Math.max(maxZ, z);
+            }
+
+            float cx = centroids[t * 3], cy = centroids[t * 3 + 1], cz = centroids[t * 3 + 2];
+            cMinX = Math.min(cMinX, cx); cMinY = Math.min(cMinY, cy); cMinZ = Math.min(cMinZ, cz);
+            cMaxX = Math.max(cMaxX, cx); cMaxY = Math.max(cMaxY, cy); cMaxZ = Math.max(cMaxZ, cz);
+        }
+
+        int b = node * 6;
+        bounds[b] = minX;
+        bounds[b + 1] = minY;
+        bounds[b + 2] = minZ;
+        bounds[b + 3] = maxX;
+        bounds[b + 4] = maxY;
+        bounds[b + 5] = maxZ;
+
+        float ex = cMaxX - cMinX, ey = cMaxY - cMinY, ez = cMaxZ - cMinZ;
+        int axis = ex >= ey && ex >= ez ? 0 : ey >= ez ? 1 : 2;
+
+        // Depth is bounded so that traversal fits its fixed stack, which only degenerate inputs could exceed.
+        if(end - start <= leafSize || Math.max(ex, Math.max(ey, ez)) <= 0f || depth >= stack.length - 2){
+            first[node] = start;
+            counts[node] = end - start;
+            return node;
+        }
+
+        int mid = (start + end) >>> 1;
+        select(centroids, axis, start, end - 1, mid);
+
+        build(source, centroids, start, mid, depth + 1);
+        first[node] = build(source, centroids, mid, end, depth + 1);
+        counts[node] = 0;
+        return node;
+    }
+
+    /** Partially sorts {@link #ids} within [lo, hi] so that the given index holds the median centroid along the axis. */
+    private void select(float[] centroids, int axis, int lo, int hi, int nth){
+        while(lo < hi){
+            float pivot = centroids[ids[(lo + hi) >>> 1] * 3 + axis];
+            int i = lo, j = hi;
+            while(i <= j){
+                while(centroids[ids[i] * 3 + axis] < pivot) i++;
+                while(centroids[ids[j] * 3 + axis] > pivot) j--;
+                if(i <= j){
+                    int tmp = ids[i];
+                    ids[i] = ids[j];
+                    ids[j] = tmp;
+                    i++;
+                    j--;
+                }
+            }
+
+            if(nth <= j){
+                hi = j;
+            }else if(nth >= i){
+                lo = i;
+            }else{
+                return;
+            }
+        }
+    }
+
+    /**
+     * Finds the nearest triangle hit by the ray, in the part's local space. The distance is in units of the direction's
+     * length, so a direction transformed from a unit world direction yields world distances.
+     * @param maxDist Hits at or past this distance are ignored.
+     * @param hit     Receives the hit if one closer than {@code maxDist} is found.
+     * @return Whether a hit was found.
+     */
+    public boolean intersect(float ox, float oy, float oz, float dx, float dy, float dz, float maxDist, Hit hit){
+        if(numNodes == 0 || numTriangles == 0) return false;
+
+        float
+            ix = 1f / dx, iy = 1f / dy, iz = 1f / dz,
+            nearest = maxDist;
+        int found = -1, size = 0;
+
+        stack[size++] = 0;
+        while(size > 0){
+            int node = stack[--size];
+            if(slab(node, ox, oy, oz, ix, iy, iz) >= nearest) continue;
+
+            int count = counts[node];
+            if(count > 0){
+                for(int i = first[node], end = i + count; i < end; i++){
+                    float t = triangle(i, ox, oy, oz, dx, dy, dz);
+                    if(t < nearest){
+                        nearest = t;
+                        found = i;
+                    }
+                }
+            }else{
+                int left = node + 1, right = first[node];
+                float dl = slab(left, ox, oy, oz, ix, iy, iz), dr = slab(right, ox, oy, oz, ix, iy, iz);
+
+                // Push the farther child first, so the nearer one is visited first and shrinks the search.
+                if(dl <= dr){
+                    if(dr < nearest) stack[size++] = right;
+                    if(dl < nearest) stack[size++] = left;
+                }else{
+                    if(dl < nearest) stack[size++] = left;
+                    if(dr < nearest) stack[size++] = right;
+                }
+            }
+        }
+
+        if(found == -1) return false;
+
+        hit.triangle = ids[found];
+        hit.distance = nearest;
+        return true;
+    }
+
+    /** @return The entry distance of the ray into the node's bounds, or positive infinity if it misses them. */
+    private float slab(int node, float ox, float oy, float oz, float ix, float iy, float iz){
+        int b = node * 6;
+        float
+            tx1 = (bounds[b] - ox) * ix, tx2 = (bounds[b + 3] - ox) * ix,
+            ty1 = (bounds[b + 1] - oy) * iy, ty2 = (bounds[b + 4] - oy) * iy,
+            tz1 = (bounds[b + 2] - oz) * iz, tz2 = (bounds[b + 5] - oz) * iz;
+
+        // NaNs from 0 * infinity on axis-parallel rays fall through the comparisons as misses of that slab's bound.
+        float
+            near = Math.max(Math.max(Math.min(tx1, tx2), Math.min(ty1, ty2)), Math.max(Math.min(tz1, tz2), 0f)),
+            far = Math.min(Math.min(Math.max(tx1, tx2), Math.max(ty1, ty2)), Math.max(tz1, tz2));
+
+        return near <= far ? near : Float.POSITIVE_INFINITY;
+    }
+
+    /** @return The distance of the ray's hit with the triangle at the given leaf position, or positive infinity. */
+    private float triangle(int index, float ox, float oy, float oz, float dx, float dy, float dz){
+        int o = index * 9;
+        var tri = triangles;
+        float
+            ax = tri[o], ay = tri[o + 1], az = tri[o + 2],
+            e1x = tri[o + 3] - ax, e1y = tri[o + 4] - ay, e1z = tri[o + 5] - az,
+            e2x = tri[o + 6] - ax, e2y = tri[o + 7] - ay, e2z = tri[o + 8] - az,
+            px = dy * e2z - dz * e2y, py = dz * e2x - dx * e2z, pz = dx * e2y - dy * e2x,
+            det = e1x * px + e1y * py + e1z * pz;
+
+        if(Math.abs(det) < 1e-12f) return Float.POSITIVE_INFINITY;
+
+        float
+            inv = 1f / det,
+            sx = ox - ax, sy = oy - ay, sz = oz - az,
+            u = (sx * px + sy * py + sz * pz) * inv;
+        if(u < 0f || u > 1f) return Float.POSITIVE_INFINITY;
+
+        float
+            qx = sy * e1z - sz * e1y, qy = sz * e1x - sx * e1z, qz = sx * e1y - sy * e1x,
+            v = (dx * qx + dy * qy + dz * qz) * inv;
+        if(v < 0f || u + v > 1f) return Float.POSITIVE_INFINITY;
+
+        float t = (e2x * qx + e2y * qy + e2z * qz) * inv;
+        return t >= 0f ? t : Float.POSITIVE_INFINITY;
+    }
+
+    /** @return The size of the triangle copy and hierarchy in bytes. */
+    public int size(){
+        return (triangles.length + ids.length + numNodes * 8) * 4;
+    }
+
+    /** The result of an intersection query. */
+    public static class Hit{
+        /** The index of the hit triangle within its part, i.e. its first index is at {@code offset + triangle * 3}. */
+        public int triangle = -1;
+        /** The distance along the ray to the hit. */
+        public float distance;
+    }
+}
@@ -0,0 +1,203 @@
+package model.part;
+
+import arc.graphics.*;
+import arc.graphics.gl.*;
+import arc.struct.*;
+
+/**
+ * The CPU-side intermediate of a mesh while it's being loaded: full-float vertices, 32-bit indices, and the
+ * {@link MeshPart}s referring to ranges of them. Load stages such as {@link MeshOptimizer} operate on this before
+ * it's uploaded.
+ */
+public class MeshData{
+    /** The vertex attributes. */
+    public VertexAttribute[] attributes;
+    /** The size of a vertex in floats. */
+    public int stride;
+    /** The vertices, {@link #stride} floats each. */
+    public float[] vertices;
+    /** The indices of all parts. */
+    public int[] indices;
+    /** The parts, with their {@link MeshPart#type}, {@link MeshPart#offset}, and {@link MeshPart#count} set. */
+    public final Seq<MeshPart> parts = new Seq<>(2);
+
+    /** Constructs an empty mesh data. */
+    public MeshData(){}
+
+    /** Constructs a mesh data with the given vertex attributes, vertices, and indices. */
+    public MeshData(VertexAttribute[] attributes, float[] vertices, int[] indices){
+        this.attributes = attributes;
+        this.vertices = vertices;
+        this.indices = indices;
+
+        for(var attr : attributes) stride += attr.components;
+    }
+
+    /** @return The amount of vertices. */
+    public int numVertices(){
+        return vertices.length / stride;
+    }
+
+    /** @return The offset of the vertex positions in floats. */
+    public int positionOffset(){
+        int offset = 0;
+        for(var attr : attributes){
+            if(attr.alias.equals(Shader.positionAttribute)) return offset;
+            offset += attr.components;
+        }
+
+        throw new IllegalArgumentException("Mesh has no position attribute.");
+    }
+
+    /** Computes the local bounding sphere of the given part, from the center of its bounding box. */
+    public void bounds(MeshPart part){
+        int pos = positionOffset();
+        float
+            minX = Float.POSITIVE_INFINITY, minY = Float.POSITIVE_INFINITY, minZ = Float.POSITIVE_INFINITY,
+            maxX = Float.NEGATIVE_INFINITY, maxY = Float.NEGATIVE_INFINITY, maxZ = Float.NEGATIVE_INFINITY;
+
+        for(int i = part.offset, end = part.offset + part.count; i < end; i++){
+            int o = indices[i] * stride + pos;
+            minX = Math.min(minX, vertices[o]); minY = Math.min(minY, vertices[o + 1]); minZ = Math.min(minZ, vertices[o + 2]);
+            maxX = Math.max(maxX, vertices[o]); maxY = Math.max(maxY, vertices[o + 1]); maxZ = Math.max(maxZ, vertices[o + 2]);
+        }
+
+        if(part.count == 0){
+            part.center.setZero();
+            part.radius = 0f;
+            return;
+        }
+
+        float cx = (minX + maxX) / 2f, cy = (minY + maxY) / 2f, cz = (minZ + maxZ) / 2f, radius2 = 0f;
+        for(int i = part.offset, end = part.offset + part.count; i < end; i++){
+            int o = indices[i] * stride + pos;
+            float dx = vertices[o] - cx, dy = vertices[o + 1] - cy, dz = vertices[o + 2] - cz;
+            radius2 = Math.max(radius2, dx * dx + dy * dy + dz * dz);
+        }
+
+        part.center.set(cx, cy, cz);
+        part.radius = (float)Math.sqrt(radius2);
+    }
+
+    /**
+     * Splits this mesh into chunks of at most the given amount of vertices each, duplicating vertices shared across
+     * chunks. Point, line, and triangle lists are split per primitive; other primitive types are kept whole and must
+     * fit a chunk on their own.
+     * <p>
+     * The pieces of every part, one per chunk it spans, are stored in the original part's {@link MeshPart#chunks} and
+     * share its {@link MeshPart#id}.
+     * @return The chunks, in order.
+     */
+    public Seq<MeshData> split(int maxVertices){
+        var chunks = new Seq<MeshData>();
+        var splitter = new Splitter(maxVertices);
+
+        for(var part : parts){
+            var pieces = new Seq<MeshPart>(MeshPart.class);
+            MeshPart piece = null;
+            MeshData pieceChunk = null;
+            int prim = switch(part.type){
+                case Gl.points -> 1;
+                case Gl.lines -> 2;
+                case Gl.triangles -> 3;
+                default -> part.count;
+            };
+
+            for(int i = part.offset, end = part.offset + part.count; i < end; i += prim){
+                int size = Math.min(prim, end - i);
+                if(!splitter.fits(indices, i, size)){
+                    if(splitter.numVertices > 0) chunks.add(splitter.finish());
+                    if(!splitter.fits(indices, i, size)) throw new IllegalArgumentException("Mesh part '" + part.id + "' doesn't fit in " + maxVertices + " vertices.");
+                }
+
+                var chunk = splitter.current();
+                if(piece == null || pieceChunk != chunk){
+                    piece = new MeshPart();
+                    piece.id = part.id;
+                    piece.type = part.type;
+                    piece.offset = splitter.indices.size;
+                    piece.center.set(part.center);
+                    piece.radius = part.radius;
+                    pieceChunk = chunk;
+
+                    pieces.add(piece);
+                    chunk.parts.add(piece);
+                }
+
+                splitter.add(this, i, size);
+                piece.count = splitter.indices.size - piece.offset;
+            }
+
+            part.chunks = pieces.toArray();
+        }
+
+        if(splitter.numVertices > 0) chunks.add(splitter.finish());
+
+        return chunks;
+    }
+
+    private class Splitter{
+        final int maxVertices;
+        final int[] local = new int[numVertices()];
+        final FloatSeq vertices = new FloatSeq();
+        final IntSeq indices = new IntSeq();
+
+        final int[] owner = new int[numVertices()], seen = new int[numVertices()];
+
+        MeshData chunk;
+        int numVertices, stamp = 1, seenStamp;
+
+        Splitter(int maxVertices){
+            this.maxVertices = maxVertices;
+        }
+
+        MeshData current(){
+            if(chunk == null){
+                chunk = new MeshData();
+                chunk.attributes = attributes;
+                chunk.stride = stride;
+            }
+            return chunk;
+        }
+
+        boolean fits(int[] src, int offset, int count){
+            int added = 0;
+            seenStamp++;
+            for(int i = offset; i < offset + count; i++){
+                int v = src[i];
+                if(owner[v] != stamp && seen[v] != seenStamp){
+                    seen[v] = seenStamp;
+                    added++;
+                }
+            }
+
+            return numVertices + added <= maxVertices;
+        }
+
+        void add(MeshData data, int offset, int count){
+            var src = data.indices;
+            for(int i = offset; i < offset + count; i++){
+                int v = src[i];
+                if(owner[v] != stamp){
+                    owner[v] = stamp;
+                    local[v] = numVertices++;
+                    vertices.addAll(data.vertices, v * stride, stride);
+                }
+                indices.add(local[v]);
+            }
+        }
+
+        MeshData finish(){
+            var out = current();
+            out.vertices = vertices.toArray();
+            out.indices = indices.toArray();
+
+            vertices.clear();
+            indices.clear();
+            numVertices = 0;
+            stamp++;
+            chunk = null;
+            return out;
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package model.part;
+
+import java.util.*;
+
+/**
+ * A CPU-side mesh optimization stage, run while loading a model. Triangle lists of every {@link MeshPart} are reordered
+ * for post-transform vertex cache locality using Tom Forsyth's linear-speed vertex cache optimization, after which the
+ * vertices of the whole mesh are reordered by first use for vertex fetch locality.
+ * <p>
+ * The stage is deterministic and reports the average cache miss ratio (ACMR, transformed vertices per triangle) of the
+ * processed parts before and after optimizing, simulated with a FIFO cache of {@link #fifoSize} entries. Instances
+ * reuse their working memory, and are not thread-safe.
+ */
+public class MeshOptimizer{
+    /** The size of the LRU cache modeled by the triangle scoring. */
+    public static final int cacheSize = 32;
+    /** The size of the FIFO cache used to simulate the ACMR. */
+    public static final int fifoSize = 16;
+
+    private static final float cacheDecayPower = 1.5f, lastTriScore = 0.75f, valenceBoostScale = 2f, valenceBoostPower = 0.5f;
+    private static final float[] cacheScores = new float[cacheSize];
+
+    static{
+        for(int i = 0; i < cacheSize; i++){
+            cacheScores[i] = i < 3 ? lastTriScore : (float)Math.pow(1f - (i - 3f) / (cacheSize - 3f), cacheDecayPower);
+        }
+    }
+
+    /** The amount of triangles processed so far. */
+    public long triangles;
+    /** The amount of simulated vertex cache misses of the processed triangles, before and after reordering. */
+    public long missesBefore, missesAfter;
+
+    private int[] valence = {}, adjOffset = {}, adj = {}, cachePos = {}, stamp = {}, remap = {};
+    private float[] vertScore = {}, triScore = {};
+    private boolean[] added = {};
+    private int[] out = {};
+    private final int[] cache = new int[cacheSize + 3], newCache = new int[cacheSize + 3];
+
+    /** @return The ACMR of all processed triangles before reordering, or 0 if none were processed. */
+    public float acmrBefore(){
+        return triangles == 0 ? 0f : (float)missesBefore / triangles;
+    }
+
+    /** @return The ACMR of all processed triangles after reordering, or 0 if none were processed. */
+    public float acmrAfter(){
+        return triangles == 0 ? 0f : (float)missesAfter / triangles;
+    }
+
+    /** Resets the reported statistics. */
+    public void reset(){
+        triangles = missesBefore = missesAfter = 0;
+    }
+
+    /**
+     * Reorders the triangle list in the given index range for vertex cache locality, keeping the winding of every
+     * triangle.
+     * @param numVertices The amount of vertices the indices may refer to.
+     */
+    public void optimize(int[] indices, int offset, int count, int numVertices){
+        int numTris = count / 3;
+        if(numTris == 0) return;
+
+        missesBefore += misses(indices, offset, numTris * 3, numVertices);
+        triangles += numTris;
+
+        ensure(numVertices, numTris);
+
+        // Build the vertex-triangle adjacency of this range.
+        for(int i = offset, end = offset + numTris * 3; i < end; i++) valence[indices[i]] = 0;
+        for(int i = offset, end = offset + numTris * 3; i < end; i++) valence[indices[i]]++;
+
+        int sum = 0;
+        for(int i = offset, end = offset + numTris * 3; i < end; i++){
+            int v = indices[i];
+            if(cachePos[v] != -2){
+                // Used as a visited marker here; reset to "not in cache" right after.
+                cachePos[v] = -2;
+                adjOffset[v] = sum;
+                sum += valence[v];
+            }
+        }
+
+        for(int i = offset, end = offset + numTris * 3; i < end; i++){
+            int v = indices[i];
+            cachePos[v] = -1;
+            // Valence is used as a fill counter and then restored.
+            valence[v] = 0;
+        }
+
+        for(int t = 0; t < numTris; t++){
+            for(int k = 0; k < 3; k++){
+                int v = indices[offset + t * 3 + k];
+                adj[adjOffset[v] + valence[v]++] = t;
+            }
+        }
+
+        for(int i = offset, end = offset + numTris * 3; i < end; i++){
+            int v = indices[i];
+            vertScore[v] = score(-1, valence[v]);
+        }
+
+        int best = -1;
+        float bestScore = -1f;
+        for(int t = 0; t < numTris; t++){
+            added[t] = false;
+            float s = 0f;
+            for(int k = 0; k < 3; k++) s += vertScore[indices[offset + t * 3 + k]];
+
+            triScore[t] = s;
+            if(s > bestScore){
+                bestScore = s;
+                best = t;
+            }
+        }
+
+        int cacheLen = 0, emitted = 0, scan = 0;
+        while(true){
+            if(best == -1){
+                // No cached vertex has any triangles left; continue with the next unprocessed triangle.
+                while(scan < numTris && added[scan]) scan++;
+                if(scan == numTris) break;
+                best = scan;
+            }
+
+            added[best] = true;
+            for(int k = 0; k < 3; k++){
+                int v = indices[offset + best * 3 + k];
+                out[emitted * 3 + k] = v;
+
+                // Remove the triangle from the vertex's active triangles.
+                int start = adjOffset[v], size = valence[v];
+                for(int i = start; i < start + size; i++){
+                    if(adj[i] == best){
+                        adj[i] = adj[start + size - 1];
+                        break;
+                    }
+                }
+                valence[v]--;
+            }
+            emitted++;
+
+            // Push the triangle's vertices to the front of the LRU cache.
+            int newLen = 0;
+            for(int k = 0; k < 3; k++) newCache[newLen++] = indices[offset + best * 3 + k];
+            for(int i = 0; i < cacheLen; i++){
+                int v = cache[i];
+                if(v != newCache[0] && v != newCache[1] && v != newCache[2]) newCache[newLen++] = v;
+            }
+
+            for(int i = 0; i < newLen; i++){
+                int v = newCache[i];
+                cache[i] = v;
+                cachePos[v] = i < cacheSize ? i : -1;
+                vertScore[v] = score(cachePos[v], valence[v]);
+            }
+            cacheLen = Math.min(newLen, cacheSize);
+
+            // Rescore the triangles touching the cache, which are the only ones whose score could have changed.
+            best = -1;
+            bestScore = -1f;
+            for(int i = 0; i < newLen; i++){
+                int v = cache[i];
+                for(int a = adjOffset[v], end = a + valence[v]; a < end; a++){
+                    int t = adj[a];
+                    float s = 0f;
+                    for(int k = 0; k < 3; k++) s += vertScore[indices[offset + t * 3 + k]];
+
+                    triScore[t] = s;
+                    if(s > bestScore || (s == bestScore && t < best)){
+                        bestScore = s;
+                        best = t;
+                    }
+                }
+            }
+        }
+
+        System.arraycopy(out, 0, indices, offset, numTris * 3);
+        missesAfter += misses(indices, offset, numTris * 3, numVertices);
+    }
+
+    private static float score(int pos, int numActive){
+        if(numActive == 0) return -1f;
+
+        float score = pos < 0 ? 0f : cacheScores[pos];
+        return score + valenceBoostScale * (float)Math.pow(numActive, -valenceBoostPower);
+    }
+
+    /**
+     * Reorders the vertices of a mesh in the order its indices first refer to them, for vertex fetch locality.
+     * Vertices never referred to are moved to the end.
+     * @param vertices The vertices, {@code stride} floats each.
+     * @param indices  All indices of the mesh, which are rewritten to refer to the reordered vertices.
+     */
+    public void reorderVertices(float[] vertices, int stride, int[] indices, int numIndices){
+        int numVertices = vertices.length / stride;
+        ensure(numVertices, 0);
+
+        Arrays.fill(remap, 0, numVertices, -1);
+
+        int next = 0;
+        for(int i = 0; i < numIndices; i++){
+            int v = indices[i];
+            if(remap[v] == -1) remap[v] = next++;
+            indices[i] = remap[v];
+        }
+
+        for(int v = 0; v < numVertices; v++){
+            if(remap[v] == -1) remap[v] = next++;
+        }
+
+        var copy = vertices.clone();
+        for(int v = 0; v < numVertices; v++){
+            System.arraycopy(copy, v * stride, vertices, remap[v] * stride, stride);
+        }
+    }
+
+    /** @return The ACMR of the given triangle list, simulated with a FIFO cache of {@link #fifoSize} entries. */
+    public float acmr(int[] indices, int offset, int count, int numVertices){
+        int numTris = count / 3;
+        return numTris == 0 ? 0f : (float)misses(indices, offset, numTris * 3, numVertices) / numTris;
+    }
+
+    private int misses(int[] indices, int offset, int count, int numVertices){
+        ensure(numVertices, 0);
+        for(int i = offset; i < offset + count; i++) stamp[indices[i]] = Integer.MIN_VALUE / 2;
+
+        // A vertex is in the FIFO cache if it entered it fewer than fifoSize misses ago.
+        int misses = 0;
+        for(int i = offset; i < offset + count; i++){
+            int v = indices[i];
+            if(misses - stamp[v] > fifoSize){
+                stamp[v] = misses;
+                misses++;
+            }
+        }
+
+        return misses;
+    }
+
+    private void ensure(int numVertices, int numTris){
+        if(valence.length < numVertices){
+            valence = new int[numVertices];
+            adjOffset = new int[numVertices];
+            cachePos = new int[numVertices];
+            stamp = new int[numVertices];
+            remap = new int[numVertices];
+            vertScore = new float[numVertices];
+        }
+
+        if(triScore.length < numTris){
+            triScore = new float[numTris];
+            added = new boolean[numTris];
+            adj = new int[numTris * 3];
+            out = new int[numTris * 3];
+        }
+    }
+}
@@ -2,16 +2,36 @@ package model.part;
 
 import arc.graphics.*;
 import arc.graphics.gl.*;
+import arc.math.geom.*;
+import arc.util.*;
+import model.*;
 
 /**
  * A {@link Mesh} that stores an ID, rendering primitive type, and indices offset along with length. This part can
  * render itself using a given {@link Shader} and its own indices {@link #offset} and {@link #count}.
+ * <p>
+ * Parts whose mesh had to be split to fit 16-bit indices instead consist of {@link #chunks}, each with its own mesh.
  */
 public class MeshPart{
     /** The mesh part ID. */
     public String id = "";
     /** The mesh that this part is bound to. Must not be null. */
     public Mesh mesh;
+    /** The decode parameters of the {@link #mesh}'s vertices if they're compressed, shared across its parts. May be null. */
+    public @Nullable VertexCodec codec;
+    /** The indices {@link #offset} and {@link #count} refer to. If null, the {@link #mesh}'s own indices are used instead. */
+    public @Nullable IndexBuffer indices;
+    /**
+     * If not null, this part is rendered as these parts instead, each bound to a different mesh. {@link #mesh} and
+     * {@link #codec} are then those of the first chunk.
+     */
+    public @Nullable MeshPart[] chunks;
+
+    /**
+     * The amount of {@link Skin#weightAttribute blend weight attributes} of the {@link #mesh}'s vertices, or 0 if it
+     * isn't skinned.
+     */
+    public int weights;
 
     /** The primitive type of this mesh part, such as {@link Gl#triangles} or {@link Gl#lines}. */
     public int type = Gl.triangles;
@@ -20,6 +40,26 @@ public class MeshPart{
     /** The indices array length of this part. */
     public int count;
 
+    /** The center of this part's local bounding sphere. */
+    public final Vec3 center = new Vec3();
+    /** The radius of this part's local bounding sphere. */
+    public float radius;
+    /**
+     * The levels of detail of this part from finest to coarsest, the first being this part itself, or null if it has
+     * none. Every level shares this part's mesh and refers to a different index range.
+     */
+    public @Nullable MeshPart[] lods;
+    /**
+     * The hierarchy over this part's triangles for {@link Picker picking}, or null if it wasn't built. Triangle indices
+     * refer to this part's original index range, before the mesh was split into {@link #chunks} if it had to be.
+     */
+    public @Nullable MeshBvh bvh;
+    /**
+     * The local positions of the triangles this part hides others with in an {@link OcclusionBuffer}, 9 floats each, or
+     * null if it isn't an occluder.
+     */
+    public @Nullable float[] occluder;
+
     /** Constructs an empty unusable mesh part. Properties must be set before this part can be used. */
     public MeshPart(){}
 
@@ -33,8 +73,30 @@ public class MeshPart{
         render(shader, true);
     }
 
-    /** Renders the {@link #mesh} using the given {@link Shader}. */
+    /** Renders the {@link #mesh} using the given {@link Shader}. {@link #chunks} are always bound automatically. */
     public void render(Shader shader, boolean autoBind){
-        mesh.render(shader, type, offset, count, autoBind);
+        if(chunks != null){
+            for(var chunk : chunks){
+                // Every chunk is compressed within its own bounds.
+                if(chunk.codec != null) chunk.codec.apply(shader);
+                chunk.render(shader, true);
+            }
+            return;
+        }
+
+        if(indices == null){
+            mesh.render(shader, type, offset, count, autoBind);
+        }else{
+            if(autoBind) mesh.bind(shader);
+            indices.bind();
+            indices.draw(type, offset, count);
+            indices.unbind();
+            if(autoBind) mesh.unbind(shader);
+        }
+
+        if(RenderStats.enabled){
+            RenderStats.frame.drawCalls++;
+            RenderStats.frame.indices += count;
+        }
     }
 }
@@ -0,0 +1,308 @@
+package model.part;
+
+import java.util.*;
+
+/**
+ * Simplifies triangle lists with quadric error metrics, collapsing edges onto their existing end vertices so that
+ * simplified index lists keep referring to the original vertex buffer. Simplified levels of detail can thus be stored as
+ * additional index ranges of the same mesh.
+ * <p>
+ * Collapses are done in passes: every pass picks the cheapest collapse of each vertex, then applies them in order of
+ * cost while skipping any that touch a vertex already changed in that pass. Vertices on open borders or attribute seams
+ * (vertices sharing a position with another vertex) are locked, so silhouettes and texture seams stay intact.
+ * Instances reuse their working memory, and are not thread-safe.
+ */
+public class MeshSimplifier{
+    /** The maximum quadric error of the collapses made by the last {@link #simplify} call. */
+    public double error;
+
+    private int numVertices;
+    private double[] quadrics = {};
+    private int[] canon = {}, remap = {}, marks = {}, adjOffset = {}, adjCount = {}, adj = {};
+    private boolean[] locked = {};
+    private int[] candidates = {};
+    private double[] costs = {};
+    private int[] targets = {};
+
+    /**
+     * Simplifies the triangle list in the given index range.
+     * @param vertices    The vertices, {@code stride} floats each.
+     * @param posOffset   The offset of the vertex positions in floats.
+     * @param targetCount The desired amount of indices; the result may be larger if the mesh can't be simplified enough.
+     * @return The simplified triangle list.
+     */
+    public int[] simplify(float[] vertices, int stride, int posOffset, int[] indices, int offset, int count, int targetCount){
+        error = 0;
+        numVertices = vertices.length / stride;
+        count -= count % 3;
+
+        var out = Arrays.copyOfRange(indices, offset, offset + count);
+        if(count <= targetCount) return out;
+
+        ensure(numVertices, count);
+        weld(vertices, stride, posOffset, out, count);
+        computeQuadrics(vertices, stride, posOffset, out, count);
+        lockBorders(out, count);
+
+        for(int v = 0; v < numVertices; v++) remap[v] = v;
+
+        int size = count;
+        while(size > targetCount){
+            int collapsed = pass(vertices, stride, posOffset, out, size, (size - targetCount) / 3);
+            if(collapsed == 0) break;
+
+            // Apply the collapses and drop triangles that became degenerate.
+            int newSize = 0;
+            for(int i = 0; i < size; i += 3){
+                int a = remap[out[i]], b = remap[out[i + 1]], c = remap[out[i + 2]];
+                if(a == b || b == c || a == c) continue;
+
+                out[newSize++] = a;
+                out[newSize++] = b;
+                out[newSize++] = c;
+            }
+            size = newSize;
+        }
+
+        return Arrays.copyOf(out, size);
+    }
+
+    /** Maps every vertex to the first vertex sharing its position, and locks vertices that share their position. */
+    private void weld(float[] vertices, int stride, int posOffset, int[] indices, int count){
+        var first = new HashMap<Long, Integer>();
+        Arrays.fill(locked, 0, numVertices, false);
+
+        for(int v = 0; v < numVertices; v++) canon[v] = -1;
+        for(int i = 0; i < count; i++){
+            int v = indices[i];
+            if(canon[v] != -1) continue;
+
+            int o = v * stride + posOffset;
+            long key = (long)Float.floatToIntBits(vertices[o]) * 73856093L ^ (long)Float.floatToIntBits(vertices[o + 1]) * 19349663L ^ (long)Float.floatToIntBits(vertices[o + 2]) * 83492791L;
+
+            int c = v;
+            var existing = first.get(key);
+            if(existing != null){
+                int e = existing * stride + posOffset;
+                if(vertices[e] == vertices[o] && vertices[e + 1] == vertices[o + 1] && vertices[e + 2] == vertices[o + 2]){
+                    c = existing;
+                    locked[v] = locked[c] = true;
+                }
+            }else{
+                first.put(key, v);
+            }
+
+            canon[v] = c;
+        }
+    }
+
+    private void computeQuadrics(float[] vertices, int stride, int posOffset, int[] indices, int count){
+        Arrays.fill(quadrics, 0, numVertices * 10, 0);
+
+        for(int i = 0; i < count; i += 3){
+            int a = indices[i] * stride + posOffset, b = indices[i + 1] * stride + posOffset, c = indices[i + 2] * stride + posOffset;
+
+            double
+                ux = vertices[b] - vertices[a], uy = vertices[b + 1] - vertices[a + 1], uz = vertices[b + 2] - vertices[a + 2],
+                vx = vertices[c] - vertices[a], vy = vertices[c + 1] - vertices[a + 1], vz = vertices[c + 2] - vertices[a + 2],
+                nx = uy * vz - uz * vy, ny = uz * vx - ux * vz, nz = ux * vy - uy * vx;
+
+            double len = Math.sqrt(nx * nx + ny * ny + nz * nz);
+            if(len == 0) continue;
+
+            // Weighted by area, so that large triangles dominate small ones.
+            double area = len / 2;
+            nx /= len;
+            ny /= len;
+            nz /= len;
+            double d = -(nx * vertices[a] + ny * vertices[a + 1] + nz * vertices[a + 2]);
+
+            for(int k = 0; k < 3; k++){
+                int q = canon[indices[i + k]] * 10;
+                quadrics[q] += area * nx * nx;
+                quadrics[q + 1] += area * nx * ny;
+                quadrics[q + 2] += area * nx * nz;
+                quadrics[q + 3] += area * nx * d;
+                quadrics[q + 4] += area * ny * ny;
+                quadrics[q + 5] += area * ny * nz;
+                quadrics[q + 6] += area * ny * d;
+                quadrics[q + 7] += area * nz * nz;
+                quadrics[q + 8] += area * nz * d;
+                quadrics[q + 9] += area * d * d;
+            }
+        }
+    }
+
+    /** Locks the vertices of edges that only belong to a single triangle. */
+    private void lockBorders(int[] indices, int count){
+        var edges = new HashMap<Long, Integer>();
+        for(int i = 0; i < count; i += 3){
+            for(int k = 0; k < 3; k++){
+                int a = canon[indices[i + k]], b = canon[indices[i + (k + 1) % 3]];
+                long key = a < b ? ((long)a << 32) | b : ((long)b << 32) | a;
+                edges.merge(key, 1, Integer::sum);
+            }
+        }
+
+        for(var entry : edges.entrySet()){
+            if(entry.getValue() != 1) continue;
+
+            int a = (int)(entry.getKey() >>> 32), b = (int)(long)entry.getKey();
+            locked[a] = locked[b] = true;
+        }
+
+        // Propagate to every vertex sharing a locked position.
+        for(int i = 0; i < count; i++){
+            int v = indices[i];
+            if(locked[canon[v]]) locked[v] = true;
+        }
+    }
+
+    private int pass(float[] vertices, int stride, int posOffset, int[] indices, int size, int maxCollapses){
+        // Vertex-triangle adjacency of the current triangles.
+        Arrays.fill(adjCount, 0, numVertices, 0);
+        for(int i = 0; i < size; i++) adjCount[indices[i]]++;
+
+        int sum = 0;
+        for(int v = 0; v < numVertices; v++){
+            adjOffset[v] = sum;
+            sum += adjCount[v];
+            adjCount[v] = 0;
+        }
+
+        for(int i = 0; i < size; i++){
+            int v = indices[i];
+            adj[adjOffset[v] + adjCount[v]++] = i / 3;
+        }
+
+        // Find the cheapest valid collapse of every unlocked vertex.
+        int numCandidates = 0;
+        for(int u = 0; u < numVertices; u++){
+            if(locked[u] || adjCount[u] == 0) continue;
+
+            int best = -1;
+            double bestCost = Double.POSITIVE_INFINITY;
+            for(int a = adjOffset[u], end = a + adjCount[u]; a < end; a++){
+                int t = adj[a] * 3;
+                for(int k = 0; k < 3; k++){
+                    int v = indices[t + k];
+                    if(v == u || v == best) continue;
+
+                    double cost = cost(canon[u], canon[v], vertices, v * stride + posOffset);
+                    if(cost < bestCost && !flips(vertices, stride, posOffset, indices, u, v)){
+                        best = v;
+                        bestCost = cost;
+                    }
+                }
+            }
+
+            if(best != -1){
+                candidates[numCandidates] = u;
+                targets[u] = best;
+                costs[u] = bestCost;
+                numCandidates++;
+            }
+        }
+
+        if(numCandidates == 0) return 0;
+
+        // Sort by cost, breaking ties by vertex index so that simplification is deterministic.
+        var order = new Integer[numCandidates];
+        for(int i = 0; i < numCandidates; i++) order[i] = candidates[i];
+        Arrays.sort(order, (x, y) -> {
+            int c = Double.compare(costs[x], costs[y]);
+            return c != 0 ? c : Integer.compare(x, y);
+        });
+
+        Arrays.fill(marks, 0, numVertices, 0);
+        int collapsed = 0, removed = 0;
+        for(int u : order){
+            if(removed >= maxCollapses) break;
+
+            int v = targets[u];
+            if(marks[u] != 0 || marks[v] != 0) continue;
+
+            remap[u] = v;
+            error = Math.max(error, costs[u]);
+            collapsed++;
+
+            int cu = canon[u] * 10, cv = canon[v] * 10;
+            for(int i = 0; i < 10; i++) quadrics[cv + i] += quadrics[cu + i];
+
+            // Lock the neighborhood for the rest of this pass, since its costs are now stale.
+            for(int a = adjOffset[u], end = a + adjCount[u]; a < end; a++){
+                int t = adj[a] * 3;
+                boolean shared = false;
+                for(int k = 0; k < 3; k++){
+                    int n = indices[t + k];
+                    marks[n] = 1;
+                    if(n == v) shared = true;
+                }
+                if(shared) removed++;
+            }
+        }
+
+        return collapsed;
+    }
+
+    private double cost(int cu, int cv, float[] vertices, int p){
+        double x = vertices[p], y = vertices[p + 1], z = vertices[p + 2];
+        double[] q = quadrics;
+        int a = cu * 10, b = cv * 10;
+
+        return
+            (q[a] + q[b]) * x * x + 2 * (q[a + 1] + q[b + 1]) * x * y + 2 * (q[a + 2] + q[b + 2]) * x * z + 2 * (q[a + 3] + q[b + 3]) * x +
+            (q[a + 4] + q[b + 4]) * y * y + 2 * (q[a + 5] + q[b + 5]) * y * z + 2 * (q[a + 6] + q[b + 6]) * y +
+            (q[a + 7] + q[b + 7]) * z * z + 2 * (q[a + 8] + q[b + 8]) * z +
+            (q[a + 9] + q[b + 9]);
+    }
+
+    /** @return Whether moving {@code u} onto {@code v} would flip or collapse any triangle not containing both. */
+    private boolean flips(float[] vertices, int stride, int posOffset, int[] indices, int u, int v){
+        int pv = v * stride + posOffset;
+        for(int a = adjOffset[u], end = a + adjCount[u]; a < end; a++){
+            int t = adj[a] * 3;
+            int i0 = indices[t], i1 = indices[t + 1], i2 = indices[t + 2];
+            if(i0 == v || i1 == v || i2 == v) continue;
+
+            // Rotate so that u comes first, keeping the winding.
+            int b = i0 == u ? i1 : i1 == u ? i2 : i0, c = i0 == u ? i2 : i1 == u ? i0 : i1;
+            int pu = u * stride + posOffset, pb = b * stride + posOffset, pc = c * stride + posOffset;
+
+            double
+                bx = vertices[pb], by = vertices[pb + 1], bz = vertices[pb + 2],
+                cx = vertices[pc], cy = vertices[pc + 1], cz = vertices[pc + 2];
+
+            double
+                ox = (by - vertices[pu + 1]) * (cz - vertices[pu + 2]) - (bz - vertices[pu + 2]) * (cy - vertices[pu + 1]),
+                oy = (bz - vertices[pu + 2]) * (cx - vertices[pu]) - (bx - vertices[pu]) * (cz - vertices[pu + 2]),
+                oz = (bx - vertices[pu]) * (cy - vertices[pu + 1]) - (by - vertices[pu + 1]) * (cx - vertices[pu]),
+                nx = (by - vertices[pv + 1]) * (cz - vertices[pv + 2]) - (bz - vertices[pv + 2]) * (cy - vertices[pv + 1]),
+                ny = (bz - vertices[pv + 2]) * (cx - vertices[pv]) - (bx - vertices[pv]) * (cz - vertices[pv + 2]),
+                nz = (bx - vertices[pv]) * (cy - vertices[pv + 1]) - (by - vertices[pv + 1]) * (cx - vertices[pv]);
+
+            double dot = ox * nx + oy * ny + oz * nz;
+            double lens = Math.sqrt((ox * ox + oy * oy + oz * oz) * (nx * nx + ny * ny + nz * nz));
+            if(lens == 0 || dot < 0.2 * lens) return true;
+        }
+
+        return false;
+    }
+
+    private void ensure(int numVertices, int count){
+        if(canon.length < numVertices){
+            quadrics = new double[numVertices * 10];
+            canon = new int[numVertices];
+            remap = new int[numVertices];
+            marks = new int[numVertices];
+            adjOffset = new int[numVertices];
+            adjCount = new int[numVertices];
+            locked = new boolean[numVertices];
+            candidates = new int[numVertices];
+            costs = new double[numVertices];
+            targets = new int[numVertices];
+        }
+
+        if(adj.length < count) adj = new int[count];
+    }
+}
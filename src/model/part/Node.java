@@ -1,8 +1,10 @@
 package model.part;
 
 import arc.func.*;
+import arc.graphics.g3d.*;
 import arc.math.geom.*;
 import arc.struct.*;
+import arc.util.*;
 import arc.util.pooling.*;
 import model.*;
 import model.Model.*;
@@ -27,9 +29,15 @@ public class Node{
 
     /** The local transformation of this node. */
     public final Mat3D localTrns = new Mat3D();
-    /** The transformation of this node relative to its parent. */
+    /**
+     * The transformation of this node relative to its parent. Modifying it directly must be followed by
+     * {@link #trnsChanged()}, as {@link #calcTrns(Mat3D, boolean)} does.
+     */
     public final Mat3D worldTrns = new Mat3D();
 
+    private final Mat3D normalTrns = new Mat3D();
+    private boolean normalDirty = true;
+
     /** This node's parent, may be null if has none. */
     public Node parent;
     /** This node's children nodes. */
@@ -49,7 +57,11 @@ public class Node{
         rotation.set(from.rotation);
         scaling.set(from.scaling);
         parts.set(from.parts.map(n -> n.copy(this)));
-        for(var child : from.children.entries()) children.put(child.key, child.value.copy());
+        for(var child : from.children.entries()){
+            var copy = child.value.copy();
+            copy.parent = this;
+            children.put(child.key, copy);
+        }
 
         calcTrns();
     }
@@ -82,14 +94,68 @@ public class Node{
         }else{
             worldTrns.set(localTrns);
         }
+        normalDirty = true;
 
         if(recurse) for(var child : children.values()) child.calcTrns(worldTrns);
     }
 
-    /** Gathers all {@link ModelView}s necessary of this node. */
-    public void views(Pool<ModelView> pool, Seq<ModelView> array){
-        for(var part : parts) array.add(part.view(pool));
-        for(var child : children.values()) child.views(pool, array);
+    /** Marks {@link #worldTrns} as modified, so that {@link #normalTrns()} recomputes the normal matrix. */
+    public void trnsChanged(){
+        normalDirty = true;
+    }
+
+    /**
+     * @return The normal matrix of {@link #worldTrns}, only recomputed when the world transform has changed since the
+     * last call.
+     */
+    public Mat3D normalTrns(){
+        if(normalDirty){
+            normalTrns.set(worldTrns).toNormalMatrix();
+            normalDirty = false;
+        }
+
+        return normalTrns;
+    }
+
+    /**
+     * Gathers all {@link ModelView}s necessary of this node.
+     * @param buffer The buffer that this node's transforms are written to, once for all of its parts.
+     */
+    public void views(Pool<ModelView> pool, TrnsBuffer buffer, Seq<ModelView> array){
+        views(pool, buffer, array, null);
+    }
+
+    /**
+     * Gathers all {@link ModelView}s necessary of this node, selecting the levels of detail of its parts.
+     * @param buffer The buffer that this node's transforms are written to, once for all of its parts.
+     * @param cam    The camera the levels of detail are selected against. If null, the current levels are kept.
+     */
+    public void views(Pool<ModelView> pool, TrnsBuffer buffer, Seq<ModelView> array, @Nullable Camera3D cam){
+        views(pool, buffer, array, cam, null);
+    }
+
+    /**
+     * Gathers all {@link ModelView}s necessary of this node, selecting the levels of detail of its parts and skipping
+     * those hidden by occluders.
+     * @param buffer    The buffer that this node's transforms are written to, once for all of its visible parts.
+     * @param cam       The camera the levels of detail are selected against. If null, the current levels are kept.
+     * @param occlusion The rasterized occluders that parts are tested against. If null, no part is skipped.
+     */
+    public void views(Pool<ModelView> pool, TrnsBuffer buffer, Seq<ModelView> array, @Nullable Camera3D cam, @Nullable OcclusionBuffer occlusion){
+        int trns = -1;
+        for(var part : parts){
+            // Skinned parts may be deformed past their bounds, so they're never occluded.
+            if(occlusion != null && part.skin == null && !occlusion.visible(part.mesh, worldTrns)){
+                if(RenderStats.enabled) RenderStats.frame.occluded++;
+                continue;
+            }
+
+            if(cam != null && part.mesh.lods != null) part.selectLod(cam);
+            if(trns == -1) trns = buffer.add(this);
+            array.add(part.view(pool, buffer, trns));
+        }
+
+        for(var child : children.values()) child.views(pool, buffer, array, cam, occlusion);
     }
 
     /** Recursively accepts a consumer to this node and its children. */
@@ -122,13 +188,32 @@ public class Node{
      * {@link MeshPart}, a {@link Material}, and specific UV mappings, and participates in rendering of a {@link ModelView}.
      */
     public static class NodePart{
+        /**
+         * The fraction of the screen height that a part's bounding sphere must cover for it to be drawn with all of its
+         * triangles. Below it, the desired triangle count falls with the covered screen area.
+         */
+        public static float lodSize = 0.5f;
+        /** The relative margin of screen size a part must move past before switching its level of detail, to avoid popping. */
+        public static float lodHysteresis = 0.15f;
+
         /** The node that this part is bound to. */
         public final Node node;
 
         /** The {@link MeshPart} that is bound to this node part. */
         public MeshPart mesh;
-        /** The {@link Material} that is bound to this node part. */
+        /** The {@link Material} that is bound to this node part. Typically shared; don't modify unless intended. */
         public Material material;
+        /**
+         * The ID {@link #material} is bound with in its model, which may differ from {@link Material#id} since interned
+         * materials are shared across IDs. May be null for parts not loaded from a model file.
+         */
+        public @Nullable String materialId;
+        /** Per-instance attribute overrides layered over {@link #material}, or null if there are none. */
+        public @Nullable Material overrides;
+        /** The bones deforming this part's {@link #mesh}, or null if it isn't skinned. */
+        public @Nullable Skin skin;
+        /** The current index into the {@link #mesh}'s {@link MeshPart#lods levels of detail}. */
+        public int lod;
 
         /** Constructs an empty node part. */
         public NodePart(Node node){
@@ -140,6 +225,10 @@ public class Node{
             this.node = node;
             mesh = from.mesh;
             material = from.material;
+            materialId = from.materialId;
+            overrides = from.overrides;
+            skin = from.skin;
+            lod = from.lod;
         }
 
         /** @return An exact copy of this node part. */
@@ -147,10 +236,45 @@ public class Node{
             return new NodePart(node, this);
         }
 
-        /** @return A {@link ModelView} that matches this node part's properties. */
-        public ModelView view(Pool<ModelView> pool){
+        /** @return The {@link MeshPart} of the current level of detail. */
+        public MeshPart lodMesh(){
+            var lods = mesh.lods;
+            return lods == null ? mesh : lods[Math.min(lod, lods.length - 1)];
+        }
+
+        /**
+         * Selects the level of detail from the screen size of the part's bounding sphere, such that the triangle count
+         * scales with the screen area it covers. {@link Node#worldTrns} must be up-to-date.
+         * @return The selected level of detail.
+         */
+        public int selectLod(Camera3D cam){
+            var lods = mesh.lods;
+            if(lods == null) return lod = 0;
+
+            float size = Model.screenSize(cam, node.worldTrns, mesh.center, mesh.radius);
+
+            // Pessimistic and optimistic desired triangle counts, so that sizes near a boundary keep the current level.
+            float
+                full = mesh.count,
+                finer = full * sq(Math.min(size * (1f - lodHysteresis) / lodSize, 1f)),
+                coarser = full * sq(Math.min(size * (1f + lodHysteresis) / lodSize, 1f));
+
+            int level = Math.min(lod, lods.length - 1);
+            while(level > 0 && lods[level].count < finer) level--;
+            while(level < lods.length - 1 && lods[level + 1].count >= coarser) level++;
+            return lod = level;
+        }
+
+        private static float sq(float value){
+            return value * value;
+        }
+
+        /** @return A {@link ModelView} that matches this node part's properties, referring to the given transform index. */
+        public ModelView view(Pool<ModelView> pool, TrnsBuffer buffer, int trns){
+            if(RenderStats.enabled) RenderStats.frame.views++;
+
             var view = pool.obtain();
-            return view.set(this);
+            return view.set(this, buffer, trns);
         }
     }
 }
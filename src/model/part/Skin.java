@@ -0,0 +1,107 @@
+package model.part;
+
+import arc.func.*;
+import arc.math.geom.*;
+import arc.util.*;
+import model.*;
+import model.AnimTexture.*;
+import model.part.Node.*;
+
+/**
+ * The bones deforming a skinned {@link NodePart}, along with their inverse bind poses. Skinned vertices carry up to
+ * {@link #maxWeights} {@link #weightAttribute blend weight attributes}, each pairing a bone index with its weight.
+ * <p>
+ * Every frame, the bones are packed into a palette of affine matrices relative to the part's own {@link Node}, so that
+ * the model shader deforms vertices in the node's local space and transforms them with the node's world transform
+ * afterwards as usual.
+ */
+public class Skin{
+    /** The vertex attribute alias prefix of blend weights, each holding a bone index and its weight. */
+    public static final String weightAttribute = "a_boneWeight";
+    /** The maximum amount of blend weights per vertex. */
+    public static final int maxWeights = 4;
+    /** The amount of floats per bone in a palette; the first three rows of an affine matrix. */
+    public static final int boneSize = 12;
+    /**
+     * The maximum amount of bones of a skinned part, limited by the vertex shader's uniform vectors. Compiled into every
+     * {@link ModelShader}, so it's fixed rather than part of the shader key.
+     */
+    public static final int maxBones = 24;
+
+    /** The bones deforming the part, indexed by the vertices' blend weights. */
+    public final Node[] bones;
+    /** The inverse of every bone's world transform in the bind pose. Shared across copies; don't modify. */
+    public final Mat3D[] invBindTrns;
+
+    /** If not null, the pose is read from this baked texture instead of being packed from the bones every frame. */
+    public @Nullable AnimTexture texture;
+    /** The clip of {@link #texture} being played. */
+    public @Nullable Clip clip;
+    /** The time of the played {@link #clip}. */
+    public float time;
+    /** Whether the played {@link #clip} loops instead of holding its last pose. */
+    public boolean loop = true;
+
+    private final Mat3D invTrns = new Mat3D(), tmp = new Mat3D();
+
+    /** Constructs a skin with the given bones and their inverse bind poses. */
+    public Skin(Node[] bones, Mat3D[] invBindTrns){
+        if(bones.length != invBindTrns.length) throw new IllegalArgumentException("Every bone must have an inverse bind pose.");
+        if(bones.length > maxBones) throw new IllegalArgumentException("Skins may have at most " + maxBones + " bones, got " + bones.length + ".");
+
+        this.bones = bones;
+        this.invBindTrns = invBindTrns;
+    }
+
+    /**
+     * Constructs a skin based on another skin.
+     * @param nodes {@link Node} mapper, to get the bones that this skin will use.
+     */
+    public Skin(Func<Node, Node> nodes, Skin other){
+        bones = new Node[other.bones.length];
+        for(int i = 0; i < bones.length; i++) bones[i] = nodes.get(other.bones[i]);
+        invBindTrns = other.invBindTrns;
+        texture = other.texture;
+        clip = other.clip;
+        time = other.time;
+        loop = other.loop;
+    }
+
+    /**
+     * @param nodes {@link Node} mapper, to get the bones that the copy will use.
+     * @return An exact copy of this skin.
+     */
+    public Skin copy(Func<Node, Node> nodes){
+        return new Skin(nodes, this);
+    }
+
+    /**
+     * Writes this skin's palette relative to the given node transform. The bones' world transforms must be up-to-date.
+     * @param trns The world transform of the skinned part's node.
+     * @param out  The array that {@link #boneSize} floats per bone are written to.
+     */
+    public void palette(Mat3D trns, float[] out, int offset){
+        palette(invTrns.set(trns).inv(), bones, invBindTrns, tmp, out, offset);
+    }
+
+    /**
+     * Packs the bones into a palette of {@link #boneSize} floats each, being the rows of
+     * {@code invTrns * bone.worldTrns * invBindTrns} without the constant last row.
+     * @param invTrns The inverse world transform of the skinned part's node.
+     * @param tmp     A temporary matrix.
+     */
+    public static void palette(Mat3D invTrns, Node[] bones, Mat3D[] invBindTrns, Mat3D tmp, float[] out, int offset){
+        for(int i = 0; i < bones.length; i++, offset += boneSize){
+            var val = tmp.set(invTrns).mul(bones[i].worldTrns).mul(invBindTrns[i]).val;
+
+            // Matrices are column-major; write them row by row so that the shader transforms with 3 dot products.
+            for(int row = 0; row < 3; row++){
+                int o = offset + row * 4;
+                out[o] = val[row];
+                out[o + 1] = val[4 + row];
+                out[o + 2] = val[8 + row];
+                out[o + 3] = val[12 + row];
+            }
+        }
+    }
+}
@@ -0,0 +1,263 @@
+package model.part;
+
+import arc.graphics.*;
+import arc.graphics.gl.*;
+import arc.math.*;
+import arc.math.geom.*;
+import arc.struct.*;
+
+import java.nio.*;
+
+/**
+ * Encodes full-float vertices of a mesh into a compressed layout, and holds the per-mesh parameters the model shader
+ * needs to decode them:
+ * <ul>
+ *     <li>Positions are quantized to signed normalized 16-bit integers within the mesh's bounds.</li>
+ *     <li>Normals are octahedrally packed into two signed normalized 16-bit integers.</li>
+ *     <li>Texture coordinates are quantized to unsigned normalized 16-bit integers within their bounds.</li>
+ *     <li>Blend weights keep their bone index as an unsigned 16-bit integer and quantize their weight to 16 bits, which
+ *     the shader divides back into [0, 1].</li>
+ * </ul>
+ * A typical position, normal, and texture coordinate vertex shrinks from 32 bytes to 16 bytes.
+ */
+public class VertexCodec{
+    /** The center of the mesh's bounds, added to decoded positions. */
+    public final Vec3 posOffset = new Vec3();
+    /** The half-extents of the mesh's bounds, multiplied with quantized positions. */
+    public final Vec3 posScale = new Vec3(1f, 1f, 1f);
+    /** The minimum texture coordinates, added to decoded texture coordinates. */
+    public final Vec2 uvOffset = new Vec2();
+    /** The extents of the texture coordinates, multiplied with quantized texture coordinates. */
+    public final Vec2 uvScale = new Vec2(1f, 1f);
+
+    /** The compressed vertex attributes, in the same order as the source attributes. */
+    public VertexAttribute[] attributes;
+    /** The size of a compressed vertex in 16-bit integers. */
+    public int stride;
+
+    private int srcStride, posIndex = -1, normalIndex = -1;
+    private int[] uvIndices = {}, weightIndices = {};
+
+    /**
+     * Computes the bounds of the given full-float vertices and sets up the compressed layout.
+     * @param source The vertex attributes of the full-float vertices; only positions, normals, texture coordinates, and
+     *               blend weights are supported.
+     * @return This instance, for convenience.
+     */
+    public VertexCodec set(float[] vertices, VertexAttribute... source){
+        attributes = new VertexAttribute[source.length];
+        srcStride = 0;
+        stride = 0;
+        posIndex = normalIndex = -1;
+
+        var uvs = new IntSeq();
+        var weights = new IntSeq();
+        for(int i = 0; i < source.length; i++){
+            var attr = source[i];
+            if(attr.alias.equals(Shader.positionAttribute)){
+                posIndex = srcStride;
+                attributes[i] = new VertexAttribute(4, Gl.shortV, true, attr.alias);
+                stride += 4;
+            }else if(attr.alias.equals(Shader.normalAttribute)){
+                normalIndex = srcStride;
+                attributes[i] = new VertexAttribute(2, Gl.shortV, true, attr.alias);
+                stride += 2;
+            }else if(attr.alias.startsWith(Shader.texcoordAttribute)){
+                uvs.add(srcStride);
+                attributes[i] = new VertexAttribute(2, Gl.unsignedShort, true, attr.alias);
+                stride += 2;
+            }else if(attr.alias.startsWith(Skin.weightAttribute)){
+                weights.add(srcStride);
+                attributes[i] = new VertexAttribute(2, Gl.unsignedShort, false, attr.alias);
+                stride += 2;
+            }else{
+                throw new IllegalArgumentException("Unsupported vertex attribute: '" + attr.alias + "'");
+            }
+
+            srcStride += attr.components;
+        }
+
+        uvIndices = uvs.toArray();
+        weightIndices = weights.toArray();
+        if(posIndex == -1) throw new IllegalArgumentException("Compressed vertices require a position attribute.");
+
+        float
+            minX = Float.POSITIVE_INFINITY, minY = Float.POSITIVE_INFINITY, minZ = Float.POSITIVE_INFINITY,
+            maxX = Float.NEGATIVE_INFINITY, maxY = Float.NEGATIVE_INFINITY, maxZ = Float.NEGATIVE_INFINITY,
+            minU = Float.POSITIVE_INFINITY, minV = Float.POSITIVE_INFINITY,
+            maxU = Float.NEGATIVE_INFINITY, maxV = Float.NEGATIVE_INFINITY;
+
+        for(int v = 0; v + srcStride <= vertices.length; v += srcStride){
+            float x = vertices[v + posIndex], y = vertices[v + posIndex + 1], z = vertices[v + posIndex + 2];
+            minX = Math.min(minX, x); minY = Math.min(minY, y); minZ = Math.min(minZ, z);
+            maxX = Math.max(maxX, x); maxY = Math.max(maxY, y); maxZ = Math.max(maxZ, z);
+
+            for(int uv : uvIndices){
+                float u = vertices[v + uv], t = vertices[v + uv + 1];
+                minU = Math.min(minU, u); minV = Math.min(minV, t);
+                maxU = Math.max(maxU, u); maxV = Math.max(maxV, t);
+            }
+        }
+
+        if(minX > maxX){
+            posOffset.setZero();
+            posScale.set(1f, 1f, 1f);
+        }else{
+            posOffset.set((minX + maxX) / 2f, (minY + maxY) / 2f, (minZ + maxZ) / 2f);
+            posScale.set(extent((maxX - minX) / 2f), extent((maxY - minY) / 2f), extent((maxZ - minZ) / 2f));
+        }
+
+        if(minU > maxU){
+            uvOffset.setZero();
+            uvScale.set(1f, 1f);
+        }else{
+            uvOffset.set(minU, minV);
+            uvScale.set(extent(maxU - minU), extent(maxV - minV));
+        }
+
+        return this;
+    }
+
+    private static float extent(float value){
+        return value > 0f ? value : 1f;
+    }
+
+    /**
+     * @return The full-float vertices encoded into the compressed layout set up by
+     * {@link #set(float[], VertexAttribute...)}.
+     */
+    public short[] encode(float[] vertices){
+        if(attributes == null) throw new IllegalStateException("Call set() first.");
+
+        int count = vertices.length / srcStride;
+        var out = new short[count * stride];
+        var oct = new float[2];
+
+        for(int i = 0, src = 0, dst = 0; i < count; i++, src += srcStride){
+            // Written in source attribute order, which is also the compressed attributes' order.
+            for(int a = 0, offset = 0, weight = 0; a < attributes.length; a++){
+                var alias = attributes[a].alias;
+                if(alias.equals(Shader.positionAttribute)){
+                    out[dst++] = snorm((vertices[src + posIndex] - posOffset.x) / posScale.x);
+                    out[dst++] = snorm((vertices[src + posIndex + 1] - posOffset.y) / posScale.y);
+                    out[dst++] = snorm((vertices[src + posIndex + 2] - posOffset.z) / posScale.z);
+                    out[dst++] = 0;
+                }else if(alias.equals(Shader.normalAttribute)){
+                    octEncode(vertices[src + normalIndex], vertices[src + normalIndex + 1], vertices[src + normalIndex + 2], oct);
+                    out[dst++] = snorm(oct[0]);
+                    out[dst++] = snorm(oct[1]);
+                }else if(alias.startsWith(Skin.weightAttribute)){
+                    int w = weightIndices[weight++];
+                    out[dst++] = (short)Math.round(vertices[src + w]);
+                    out[dst++] = unorm(vertices[src + w + 1]);
+                }else{
+                    int uv = uvIndices[offset++];
+                    out[dst++] = unorm((vertices[src + uv] - uvOffset.x) / uvScale.x);
+                    out[dst++] = unorm((vertices[src + uv + 1] - uvOffset.y) / uvScale.y);
+                }
+            }
+        }
+
+        return out;
+    }
+
+    /**
+     * Reinterprets compressed vertex data as floats to be passed to {@link Mesh#setVertices(float[])}. The bits are
+     * copied through a byte buffer, so no float conversion may canonicalize them.
+     */
+    public static float[] pack(short[] data){
+        var bytes = ByteBuffer.allocate(((data.length + 1) / 2) * 4).order(ByteOrder.nativeOrder());
+        bytes.asShortBuffer().put(data);
+
+        var out = new float[bytes.capacity() / 4];
+        bytes.asFloatBuffer().get(out);
+        return out;
+    }
+
+    /** Decodes the position of a vertex in the given compressed data, the same way the shader does. */
+    public Vec3 decodePosition(short[] data, int vertex, Vec3 out){
+        int i = vertex * stride + offset(Shader.positionAttribute);
+        return out.set(
+            posOffset.x + unsnorm(data[i]) * posScale.x,
+            posOffset.y + unsnorm(data[i + 1]) * posScale.y,
+            posOffset.z + unsnorm(data[i + 2]) * posScale.z
+        );
+    }
+
+    /** Decodes the normal of a vertex in the given compressed data, the same way the shader does. */
+    public Vec3 decodeNormal(short[] data, int vertex, Vec3 out){
+        int i = vertex * stride + offset(Shader.normalAttribute);
+        return octDecode(unsnorm(data[i]), unsnorm(data[i + 1]), out);
+    }
+
+    /** Decodes the texture coordinates of the given set of a vertex in the given compressed data. */
+    public Vec2 decodeUV(short[] data, int vertex, int set, Vec2 out){
+        int i = vertex * stride + offset(Shader.texcoordAttribute + set);
+        return out.set(
+            uvOffset.x + (data[i] & 0xffff) / 65535f * uvScale.x,
+            uvOffset.y + (data[i + 1] & 0xffff) / 65535f * uvScale.y
+        );
+    }
+
+    private int offset(String alias){
+        int offset = 0;
+        for(var attr : attributes){
+            if(attr.alias.equals(alias)) return offset;
+            offset += attr.components;
+        }
+
+        throw new IllegalArgumentException("No such attribute: '" + alias + "'");
+    }
+
+    /** Uploads the decode parameters of this codec. */
+    public void apply(Shader shader){
+        shader.setUniformf("u_posOffset", posOffset);
+        shader.setUniformf("u_posScale", posScale);
+        shader.setUniformf("u_uvDecode", uvOffset.x, uvOffset.y, uvScale.x, uvScale.y);
+    }
+
+    /** Packs a unit vector into octahedral coordinates in [-1, 1]. */
+    public static float[] octEncode(float x, float y, float z, float[] out){
+        float len = Math.abs(x) + Math.abs(y) + Math.abs(z);
+        if(len == 0f){
+            out[0] = out[1] = 0f;
+            return out;
+        }
+
+        x /= len;
+        y /= len;
+        if(z < 0f){
+            float ox = x;
+            x = (1f - Math.abs(y)) * Math.signum(ox == 0f ? 1f : ox);
+            y = (1f - Math.abs(ox)) * Math.signum(y == 0f ? 1f : y);
+        }
+
+        out[0] = x;
+        out[1] = y;
+        return out;
+    }
+
+    /** Unpacks octahedral coordinates in [-1, 1] into a unit vector. */
+    public static Vec3 octDecode(float x, float y, Vec3 out){
+        float z = 1f - Math.abs(x) - Math.abs(y);
+        float t = Math.max(-z, 0f);
+        x += x >= 0f ? -t : t;
+        y += y >= 0f ? -t : t;
+        return out.set(x, y, z).nor();
+    }
+
+    /** Quantizes a value in [-1, 1] to a signed normalized 16-bit integer. */
+    public static short snorm(float value){
+        return (short)Math.round(Mathf.clamp(value, -1f, 1f) * 32767f);
+    }
+
+    /** Quantizes a value in [0, 1] to an unsigned normalized 16-bit integer. */
+    public static short unorm(float value){
+        return (short)Math.round(Mathf.clamp(value, 0f, 1f) * 65535f);
+    }
+
+    /** @return The value of a signed normalized 16-bit integer, as OpenGL ES 3 and desktop OpenGL 4.2 convert it. */
+    public static float unsnorm(short value){
+        return Math.max(value / 32767f, -1f);
+    }
+}
@@ -0,0 +1,161 @@
+import arc.math.geom.*;
+import arc.struct.*;
+import model.*;
+import model.AnimController.*;
+import model.part.*;
+import model.part.Anim.*;
+import org.junit.jupiter.api.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AnimControllerTest{
+    ModelInstance instance;
+    AnimController control;
+
+    /** @return An animation moving the node along X from {@code from} to {@code to} over one unit of time. */
+    static Anim move(String id, Node node, float from, float to){
+        var anim = new Anim();
+        anim.id = id;
+        anim.duration = 1f;
+
+        var nodeAnim = new NodeAnim(node);
+        nodeAnim.trns.add(new Keyframe<>(0f, new Vec3(from, 0f, 0f)));
+        nodeAnim.trns.add(new Keyframe<>(1f, new Vec3(to, 0f, 0f)));
+        anim.anims.add(nodeAnim);
+        return anim;
+    }
+
+    @BeforeEach
+    public void model(){
+        var model = new Model();
+
+        var node = new Node();
+        node.id = "node";
+        node.translation.set(0f, 5f, 0f);
+        model.node(node);
+
+        model.anim(move("walk", node, 0f, 2f));
+        model.anim(move("left", node, -4f, -4f));
+        model.anim(move("right", node, 4f, 4f));
+
+        instance = new ModelInstance(model);
+        control = new AnimController(instance);
+    }
+
+    float x(){
+        return instance.node("node").localTrns.getTranslation(new Vec3()).x;
+    }
+
+    @Test
+    public void interpolate(){
+        var walk = control.state("walk");
+        assertSame(walk, control.state("walk"), "States must be resolved once.");
+
+        control.layer(0).play(walk);
+        control.update(0.25f);
+        assertEquals(0.5f, x(), 0.0001f, "Keyframes must be interpolated.");
+
+        var trns = new float[3];
+        AnimController.sampleVec(walk.anim.anims.first().trns, 5f, trns, 0);
+        assertEquals(2f, trns[0], 0f, "Sampling past the last keyframe must hold it.");
+
+        // Looping wraps around, pingPong plays backwards every other cycle, and once holds the end.
+        control.update(1f);
+        assertEquals(0.5f, x(), 0.0001f);
+
+        walk.mode = LoopMode.pingPong;
+        assertEquals(0.75f, walk.time(1.25f), 0.0001f);
+        control.apply();
+        assertEquals(1.5f, x(), 0.0001f);
+
+        walk.mode = LoopMode.once;
+        control.apply();
+        assertEquals(2f, x(), 0.0001f);
+
+        control.reset();
+        assertEquals(5f, instance.node("node").localTrns.getTranslation(new Vec3()).y, 0.0001f, "Resetting must restore the default transforms.");
+    }
+
+    @Test
+    public void crossfade(){
+        var left = control.state("left");
+        var right = control.state("right");
+        var layer = control.layer(0);
+
+        layer.play(left);
+        control.update(0f);
+        assertEquals(-4f, x(), 0.0001f);
+
+        layer.play(right, 1f);
+        control.update(0.5f);
+        assertSame(left, layer.previous);
+        assertEquals(0f, x(), 0.0001f, "Crossfades must blend linearly over their duration.");
+
+        control.update(0.6f);
+        assertNull(layer.previous);
+        assertEquals(4f, x(), 0.0001f);
+
+        // Transitions override the target state's own fade duration.
+        right.transition(left, 0.25f);
+        left.fade = 4f;
+        layer.play(left);
+        control.update(0.125f);
+        assertEquals(0f, x(), 0.0001f);
+
+        // Upper layers are blended by their weight over the pose below them.
+        var upper = control.layer();
+        upper.weight = 0.25f;
+        upper.play(right);
+        control.update(1f);
+        assertEquals(-2f, x(), 0.0001f);
+    }
+
+    @Test
+    public void events(){
+        var walk = control.state("walk");
+        int[] start = {0}, middle = {0};
+        walk.event(0.5f, () -> middle[0]++).event(0f, () -> start[0]++);
+
+        var layer = control.layer(0);
+        layer.play(walk);
+        control.update(0.3f);
+        assertEquals(1, start[0], "Events at the start must fire as playback begins.");
+        assertEquals(0, middle[0]);
+
+        control.update(0.3f);
+        assertEquals(1, middle[0]);
+
+        control.update(0.4f);
+        assertEquals(2, start[0], "Wrapping into the next cycle must fire its start events once.");
+
+        control.update(0f);
+        assertEquals(2, start[0]);
+
+        control.update(2.6f);
+        assertEquals(3, middle[0], "Updates spanning several cycles must fire the crossed events of their last cycles.");
+
+        // Finished once states switch to their next state.
+        var left = control.state("left");
+        walk.mode = LoopMode.once;
+        walk.next = left;
+        layer.play(walk, 0f);
+        control.update(1.5f);
+        assertSame(left, layer.current);
+        assertEquals(4, middle[0], "Once states must fire their events a single time.");
+    }
+
+    @Test
+    public void reverseEvents(){
+        var walk = control.state("walk");
+        var order = new IntSeq();
+        walk.event(0.25f, () -> order.add(1)).event(0.75f, () -> order.add(2));
+        walk.speed = -1f;
+
+        control.layer(0).play(walk);
+        control.update(0.5f);
+        assertArrayEquals(new int[]{2}, order.toArray(), "Reverse playback must wrap to the end and fire crossed events.");
+
+        control.update(1f);
+        assertArrayEquals(new int[]{2, 1, 2}, order.toArray(), "Reverse playback must fire events in descending time.");
+    }
+}
@@ -0,0 +1,140 @@
+import arc.math.geom.*;
+import model.*;
+import model.AnimController.*;
+import model.part.*;
+import model.part.Anim.*;
+import model.part.Node.*;
+import org.junit.jupiter.api.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AnimTextureTest{
+    Model model;
+
+    /** A model with a skinned part over a chain of two bones, where "bend" rotates the second bone over 2 seconds. */
+    @BeforeEach
+    public void model(){
+        model = new Model();
+
+        var root = new Node();
+        root.id = "root";
+
+        var bone0 = new Node();
+        bone0.id = "bone0";
+        bone0.parent = root;
+        root.children.put(bone0.id, bone0);
+
+        var bone1 = new Node();
+        bone1.id = "bone1";
+        bone1.translation.set(0f, 1f, 0f);
+        bone1.parent = bone0;
+        bone0.children.put(bone1.id, bone1);
+
+        root.calcTrns();
+
+        var part = new NodePart(root);
+        part.skin = new Skin(new Node[]{bone0, bone1}, new Mat3D[]{new Mat3D(bone0.worldTrns).inv(), new Mat3D(bone1.worldTrns).inv()});
+        root.parts.add(part);
+        model.node(root);
+
+        var bend = new Anim();
+        bend.id = "bend";
+        bend.duration = 2f;
+
+        var anim = new NodeAnim(bone1);
+        for(int i = 0; i <= 4; i++){
+            anim.rot.add(new Keyframe<>(i * 0.5f, new Quat().set(new Vec3(0f, 0f, 1f), i * 22.5f)));
+        }
+        bend.anims.add(anim);
+        model.anim(bend);
+
+        var idle = new Anim();
+        idle.id = "idle";
+        idle.duration = 0f;
+        idle.anims.add(new NodeAnim(bone0));
+        model.anim(idle);
+    }
+
+    @Test
+    public void bake(){
+        var texture = new AnimTexture(model, "root", 0, 2f);
+
+        assertEquals(2, texture.numBones);
+        assertEquals(6, texture.width, "Every bone must take 3 texels.");
+        assertEquals(2, texture.clips.size);
+
+        var bend = texture.clip("bend");
+        var idle = texture.clip("idle");
+        assertEquals(5, bend.frames, "Clips must be sampled at the given rate, including their end.");
+        assertEquals(1, idle.frames);
+        assertEquals(bend.frames + idle.frames, texture.height);
+        assertTrue(bend.start + bend.frames <= idle.start || idle.start + idle.frames <= bend.start, "Clips must not overlap.");
+
+        // Every baked pose must match the palette of the same pose packed on the CPU.
+        var instance = new ModelInstance(model);
+        var control = new AnimController(instance);
+        var state = control.state("bend");
+        state.mode = LoopMode.once;
+        control.layer(0).play(state);
+
+        var skin = texture.skin(instance);
+        var palette = new float[texture.width * 4];
+        for(int f = 0; f < bend.frames; f++){
+            control.layer(0).time = f * 0.5f;
+            control.apply();
+            skin.palette(instance.node("root").worldTrns, palette, 0);
+
+            int row = (bend.start + f) * texture.width * 4;
+            for(int k = 0; k < palette.length; k++) assertEquals(palette[k], texture.data[row + k], 0.0001f);
+        }
+
+        // The first bone never moves, so its texels must hold the identity in every pose.
+        for(int row = 0; row < texture.height; row++){
+            int o = row * texture.width * 4;
+            assertEquals(1f, texture.data[o], 0.0001f);
+            assertEquals(1f, texture.data[o + 5], 0.0001f);
+            assertEquals(1f, texture.data[o + 10], 0.0001f);
+        }
+
+        assertThrows(IllegalArgumentException.class, () -> new AnimTexture(model, "bone0", 0, 30f), "Only skinned parts may be baked.");
+    }
+
+    @Test
+    public void frame(){
+        var clip = new AnimTexture.Clip("clip", 10, 5, 2f);
+        var out = new Vec3();
+
+        AnimTexture.frame(clip, 0f, true, out);
+        assertEquals(10f, out.x, 0f);
+        assertEquals(11f, out.y, 0f);
+        assertEquals(0f, out.z, 0.0001f);
+
+        AnimTexture.frame(clip, 0.75f, true, out);
+        assertEquals(11f, out.x, 0f);
+        assertEquals(12f, out.y, 0f);
+        assertEquals(0.5f, out.z, 0.0001f);
+
+        // Looping wraps in both directions, while clamping holds the last pose.
+        AnimTexture.frame(clip, 2.75f, true, out);
+        assertEquals(11f, out.x, 0f);
+        assertEquals(0.5f, out.z, 0.0001f);
+
+        AnimTexture.frame(clip, -0.25f, true, out);
+        assertEquals(13f, out.x, 0f);
+        assertEquals(0.5f, out.z, 0.0001f);
+
+        AnimTexture.frame(clip, 5f, false, out);
+        assertEquals(13f, out.x, 0f);
+        assertEquals(14f, out.y, 0f);
+        assertEquals(1f, out.z, 0.0001f);
+
+        for(float t = -3f; t < 6f; t += 0.07f){
+            AnimTexture.frame(clip, t, true, out);
+            assertTrue(out.x >= clip.start && out.y < clip.start + clip.frames && out.z >= 0f && out.z <= 1f, "Poses must stay within the clip.");
+        }
+
+        AnimTexture.frame(new AnimTexture.Clip("still", 3, 1, 0f), 1f, true, out);
+        assertEquals(3f, out.x, 0f);
+        assertEquals(3f, out.y, 0f);
+    }
+}
@@ -0,0 +1,41 @@
+import arc.graphics.*;
+import arc.graphics.gl.*;
+import model.part.*;
+import org.junit.jupiter.api.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GeometryStoreTest{
+    @Test
+    public void retain(){
+        var vertices = new float[]{0f, 0f, 0f, 1f, 0f, 0f, 1f, 1f, 0f, 0f, 1f, 0f};
+        var indices = new int[]{0, 1, 2, 0, 2, 3};
+        var data = new MeshData(new VertexAttribute[]{new VertexAttribute(3, Shader.positionAttribute)}, vertices, indices);
+
+        var part = new MeshPart();
+        part.count = indices.length;
+        data.parts.add(part);
+
+        // Retaining doesn't touch the mesh, so none is needed for the CPU side.
+        var store = new GeometryStore();
+        var entry = store.add(data, null, null, new IndexBuffer(indices, 0, indices.length, false));
+
+        vertices[0] = 5f;
+        indices[0] = 3;
+        assertEquals(0f, entry.vertices.get(0), 0f, "Retained geometry must be a copy.");
+        assertEquals((12 + 6) * 4, store.size());
+        assertSame(entry, store.get(part));
+        assertNull(store.get(new MeshPart()));
+
+        var copy = entry.data();
+        assertEquals(4, copy.numVertices());
+        assertEquals(3, copy.stride);
+        assertArrayEquals(new int[]{0, 1, 2, 0, 2, 3}, copy.indices);
+        assertEquals(1f, copy.vertices[6], 0f);
+        assertSame(part, copy.parts.first(), "Copies must refer to the same parts.");
+
+        store.dispose();
+        assertEquals(0, store.size());
+        assertEquals(0, entry.size(), "Disposing must free the buffers.");
+    }
+}
@@ -0,0 +1,107 @@
+import arc.graphics.g3d.*;
+import arc.math.geom.*;
+import arc.struct.*;
+import model.*;
+import model.Impostors.*;
+import org.junit.jupiter.api.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ImpostorsTest{
+    @Test
+    public void layout(){
+        var layout = new Layout(96, 1024);
+        assertEquals(10, layout.perRow);
+        assertEquals(100, layout.perPage);
+        assertEquals(0, layout.pages(0));
+        assertEquals(1, layout.pages(100));
+        assertEquals(2, layout.pages(101));
+
+        int cells = 250;
+        var taken = new ObjectSet<String>();
+        for(int cell = 0; cell < cells; cell++){
+            int page = layout.page(cell), x = layout.x(cell), y = layout.y(cell);
+            assertTrue(page < layout.pages(cells));
+            assertTrue(x >= 0 && x + layout.cellSize <= layout.pageSize, "Cell " + cell + " exceeds its page horizontally.");
+            assertTrue(y >= 0 && y + layout.cellSize <= layout.pageSize, "Cell " + cell + " exceeds its page vertically.");
+            assertTrue(x % layout.cellSize == 0 && y % layout.cellSize == 0);
+            assertTrue(taken.add(page + ":" + x + ":" + y), "Cell " + cell + " overlaps another cell.");
+        }
+    }
+
+    @Test
+    public void uv(){
+        // Three rows of cells per page, so that a mirrored V range would read another row.
+        var layout = new Layout(64, 192);
+        var uv = new float[4];
+        for(int cell = 0; cell < layout.perPage; cell++){
+            layout.uv(cell, uv);
+
+            // The frame is rendered with the viewport at (x, y), and frame buffer V follows window Y.
+            assertEquals(layout.x(cell), uv[0] * layout.pageSize, 0.001f);
+            assertEquals(layout.x(cell) + layout.cellSize, uv[2] * layout.pageSize, 0.001f);
+            assertEquals(layout.y(cell), uv[3] * layout.pageSize, 0.001f, "Cell " + cell + " must read its own row.");
+            assertEquals(layout.y(cell) + layout.cellSize, uv[1] * layout.pageSize, 0.001f, "Cell " + cell + " must be flipped upright.");
+        }
+
+        assertEquals(0f, layout.uv(0, uv)[3], 0f, "The first row must read the bottom of the page.");
+        assertEquals(2f / 3f, layout.uv(layout.perRow * 2, uv)[3], 0.001f);
+    }
+
+    @Test
+    public void frames(){
+        int yaws = 8;
+        float step = 360f / yaws;
+
+        // An unrotated instance seen top-down has +Y as its screen up vector, matching the frame rendered at 270 degrees.
+        assertEquals(6, Impostors.frame(0f, yaws));
+        assertEquals(0f, Impostors.residual(0f, 6, yaws), 0.001f);
+
+        for(float rotation = -720f; rotation <= 720f; rotation += 7.3f){
+            int frame = Impostors.frame(rotation, yaws);
+            float residual = Impostors.residual(rotation, frame, yaws);
+
+            assertTrue(frame >= 0 && frame < yaws);
+            assertTrue(Math.abs(residual) <= step / 2f + 0.001f, "The closest frame must be selected for " + rotation + " degrees.");
+
+            float covered = ((Impostors.frameAngle(rotation) + residual - frame * step) % 360f + 360f) % 360f;
+            assertTrue(covered < 0.01f || covered > 359.99f, "The residual must make up for the frame's angle at " + rotation + " degrees.");
+        }
+
+        var trns = new Mat3D().setToRotation(new Vec3(0f, 0f, 1f), 30f);
+        assertEquals(30f, Impostors.rotation(trns), 0.01f);
+    }
+
+    @Test
+    public void select(){
+        var impostors = new Impostors(8, 64, 512);
+        var model = new Model();
+        impostors.add(model, new Vec3(), 1f);
+
+        var other = new Model();
+        var cam = new Camera3D();
+        cam.position.set(0f, 0f, 0f);
+
+        var instances = new Seq<ModelInstance>();
+        for(int i = 0; i < 10; i++){
+            var instance = new ModelInstance(i % 5 == 4 ? other : model);
+            instance.trns.setToTranslation(new Vec3(0f, 0f, -(i + 1) * 10f));
+            instances.add(instance);
+        }
+
+        var far = new Seq<ModelInstance>();
+        var near = new Seq<ModelInstance>();
+        impostors.select(instances, cam, far, near);
+
+        assertEquals(instances.size, far.size + near.size);
+        for(var instance : far){
+            assertSame(model, instance.model, "Unregistered models must never be drawn as impostors.");
+            assertTrue(Model.screenSize(cam, instance.trns, new Vec3(), 1f) < impostors.screenSize);
+        }
+        for(var instance : near){
+            assertTrue(instance.model == other || Model.screenSize(cam, instance.trns, new Vec3(), 1f) >= impostors.screenSize);
+        }
+
+        assertTrue(far.any() && near.contains(instances.first(), true), "Close instances must be rendered normally.");
+    }
+}
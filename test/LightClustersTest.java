@@ -0,0 +1,100 @@
+import arc.graphics.*;
+import arc.graphics.g3d.*;
+import arc.math.*;
+import arc.math.geom.*;
+import arc.struct.*;
+import arc.util.*;
+import model.attribute.*;
+import model.attribute.LightsAttr.PointLightsAttr.*;
+import model.attribute.LightsAttr.SpotLightsAttr.*;
+import org.junit.jupiter.api.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LightClustersTest{
+    Camera3D camera(){
+        var cam = new Camera3D();
+        cam.position.set(0f, 0f, 10f);
+        cam.near = 0.5f;
+        cam.far = 100f;
+        cam.resize(1280f, 720f);
+        cam.update();
+        return cam;
+    }
+
+    boolean contains(LightClusters clusters, int cluster, int light){
+        int offset = clusters.grid[cluster * 2], count = clusters.grid[cluster * 2 + 1];
+        for(int i = 0; i < count; i++){
+            if(clusters.indices[offset + i] == light) return true;
+        }
+        return false;
+    }
+
+    @Test
+    public void assignment(){
+        var cam = camera();
+        var clusters = new LightClusters();
+
+        var points = Seq.with(
+            // In front of the camera, at the center of the screen.
+            new PointLights(Color.white, new Vec3(0f, 0f, 0f), 0.5f),
+            // Behind the camera.
+            new PointLights(Color.white, new Vec3(0f, 0f, 20f), 1f)
+        );
+        clusters.assign(cam.view, cam.projection, cam.near, cam.far, points, new Seq<>());
+
+        int slice = clusters.slice(10f);
+        assertTrue(contains(clusters, clusters.cluster(clusters.xSlices / 2, clusters.ySlices / 2, slice), 0));
+
+        int assigned = 0;
+        for(int c = 0; c < clusters.numClusters(); c++){
+            if(contains(clusters, c, 1)) fail("Light behind the camera must not be assigned.");
+            if(contains(clusters, c, 0)) assigned++;
+        }
+
+        assertTrue(assigned > 0 && assigned < clusters.numClusters() / 8, "A small light must only touch a few clusters.");
+        assertEquals(assigned, clusters.numIndices);
+    }
+
+    @Test
+    public void capacity(){
+        var cam = camera();
+        var clusters = new LightClusters(4, 4, 4, 8);
+
+        var points = new Seq<PointLights>();
+        for(int i = 0; i < 32; i++) points.add(new PointLights(Color.white, new Vec3(0f, 0f, 0f), 200f));
+        clusters.assign(cam.view, cam.projection, cam.near, cam.far, points, new Seq<>());
+
+        for(int c = 0; c < clusters.numClusters(); c++){
+            assertTrue(clusters.grid[c * 2 + 1] <= clusters.maxLightsPerCluster);
+        }
+    }
+
+    @Test
+    @Tag("benchmark")
+    public void benchmark(){
+        var cam = camera();
+        var clusters = new LightClusters();
+        var rand = new Rand(42);
+
+        var points = new Seq<PointLights>();
+        var spots = new Seq<SpotLights>();
+        for(int i = 0; i < 1024; i++){
+            var pos = new Vec3(rand.range(30f), rand.range(20f), -rand.random(80f));
+            if(i % 4 == 0){
+                spots.add(new SpotLights(Color.white, pos, new Vec3(0f, 0f, -1f), rand.random(1f, 6f), 15f, 30f));
+            }else{
+                points.add(new PointLights(Color.white, pos, rand.random(1f, 6f)));
+            }
+        }
+
+        for(int i = 0; i < 50; i++) clusters.assign(cam.view, cam.projection, cam.near, cam.far, points, spots);
+
+        int iterations = 200;
+        long start = Time.nanos();
+        for(int i = 0; i < iterations; i++) clusters.assign(cam.view, cam.projection, cam.near, cam.far, points, spots);
+        float ms = Time.timeSinceNanos(start) / 1000000f / iterations;
+
+        Log.info("[LightClusters] @ lights, @ cluster indices, @ms per assignment.", points.size + spots.size, clusters.numIndices, ms);
+    }
+}
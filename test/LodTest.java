@@ -0,0 +1,122 @@
+import arc.graphics.g3d.*;
+import arc.struct.*;
+import model.part.*;
+import model.part.Node.*;
+import org.junit.jupiter.api.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LodTest{
+    static final int rings = 48, segments = 96, stride = 5;
+
+    /** A UV sphere of radius 1 with positions and texture coordinates, and a texture seam at its first segment. */
+    float[] vertices = new float[(rings + 1) * (segments + 1) * stride];
+    int[] indices = new int[rings * segments * 6];
+
+    @BeforeEach
+    public void sphere(){
+        int row = segments + 1;
+        for(int r = 0; r <= rings; r++){
+            for(int s = 0; s <= segments; s++){
+                double theta = Math.PI * r / rings, phi = 2 * Math.PI * (s % segments) / segments;
+                int o = (r * row + s) * stride;
+                vertices[o] = (float)(Math.sin(theta) * Math.cos(phi));
+                vertices[o + 1] = (float)Math.cos(theta);
+                vertices[o + 2] = (float)(Math.sin(theta) * Math.sin(phi));
+                vertices[o + 3] = (float)s / segments;
+                vertices[o + 4] = (float)r / rings;
+            }
+        }
+
+        int i = 0;
+        for(int r = 0; r < rings; r++){
+            for(int s = 0; s < segments; s++){
+                int v = r * row + s;
+                indices[i++] = v;
+                indices[i++] = v + row;
+                indices[i++] = v + 1;
+                indices[i++] = v + 1;
+                indices[i++] = v + row;
+                indices[i++] = v + row + 1;
+            }
+        }
+    }
+
+    @Test
+    public void simplify(){
+        var simplifier = new MeshSimplifier();
+
+        int target = indices.length / 4 / 3 * 3;
+        var lod = simplifier.simplify(vertices, stride, 0, indices, 0, indices.length, target);
+
+        assertEquals(0, lod.length % 3);
+        assertTrue(lod.length <= target, "Expected at most " + target + " indices, got " + lod.length);
+
+        var used = new IntSet();
+        for(int index : lod){
+            assertTrue(index >= 0 && index < vertices.length / stride, "Simplified indices must refer to the original vertices.");
+            used.add(index);
+        }
+
+        // The seam vertices at the first and last segment share positions, and must be kept to not tear the texture.
+        int row = segments + 1;
+        for(int r = 1; r < rings; r++){
+            assertTrue(used.contains(r * row) && used.contains(r * row + segments), "Seam vertices must be locked.");
+        }
+
+        // Every triangle is made of vertices on the sphere, so its centroid must stay close to its surface.
+        for(int i = 0; i < lod.length; i += 3){
+            float x = 0f, y = 0f, z = 0f;
+            for(int k = 0; k < 3; k++){
+                int o = lod[i + k] * stride;
+                x += vertices[o] / 3f;
+                y += vertices[o + 1] / 3f;
+                z += vertices[o + 2] / 3f;
+            }
+
+            float dst = (float)Math.sqrt(x * x + y * y + z * z);
+            assertTrue(dst > 0.95f, "Simplification must preserve the shape, got a triangle at " + dst);
+        }
+
+        // Simplifying is deterministic.
+        assertArrayEquals(lod, simplifier.simplify(vertices, stride, 0, indices, 0, indices.length, target));
+    }
+
+    @Test
+    public void select(){
+        var mesh = new MeshPart();
+        mesh.radius = 1f;
+        mesh.count = 3000;
+        mesh.lods = new MeshPart[]{mesh, new MeshPart(), new MeshPart()};
+        mesh.lods[1].count = 1500;
+        mesh.lods[2].count = 750;
+
+        var node = new Node();
+        var part = new NodePart(node);
+        part.mesh = mesh;
+
+        var cam = new Camera3D();
+        cam.position.set(0f, 0f, 2f);
+        assertEquals(0, part.selectLod(cam), "Parts covering the screen must be drawn in full detail.");
+
+        cam.position.set(0f, 0f, 1000f);
+        assertEquals(2, part.selectLod(cam), "Distant parts must be drawn with the coarsest level.");
+
+        // Approaching and receding must switch levels at different distances.
+        float in = -1f, out = -1f;
+        var levels = new IntSeq();
+        for(float d = 1000f; d > 1f; d *= 0.99f){
+            cam.position.set(0f, 0f, d);
+            levels.add(part.selectLod(cam));
+            if(part.lod == 1 && in < 0f) in = d;
+        }
+        for(float d = 1f; d < 1000f; d *= 1.01f){
+            cam.position.set(0f, 0f, d);
+            if(part.selectLod(cam) == 2 && out < 0f) out = d;
+        }
+
+        assertTrue(in > 0f && out > 0f);
+        assertTrue(out > in * 1.1f, "Hysteresis must switch to a coarser level farther than to a finer one; " + in + " vs " + out);
+        for(int i = 1; i < levels.size; i++) assertTrue(levels.get(i) <= levels.get(i - 1), "Approaching must never coarsen.");
+    }
+}
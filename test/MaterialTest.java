@@ -0,0 +1,197 @@
+import arc.graphics.*;
+import arc.struct.*;
+import arc.util.serialization.*;
+import model.*;
+import model.part.*;
+import model.part.Node.*;
+import model.attribute.*;
+import model.attribute.Attribute.*;
+import model.attribute.Attribute.ColAttr.*;
+import model.attribute.Attribute.FAttr.*;
+import model.attribute.Attribute.TexAttr.*;
+import org.junit.jupiter.api.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MaterialTest{
+    @Test
+    public void uniqueAliases(){
+        var ids = new Seq<AttrAlias<?>>();
+        ids.addAll(FAlias.all);
+        ids.addAll(ColAlias.all);
+        ids.addAll(TexAlias.all);
+
+        long mask = 0;
+        for(var alias : ids){
+            assertEquals(1, Long.bitCount(alias.id()), alias.name());
+            assertEquals(0, mask & alias.id(), alias.name() + " shares its ID with another alias.");
+            mask |= alias.id();
+        }
+    }
+
+    @Test
+    public void storage(){
+        var mat = new Material();
+        var shininess = mat.set(new FAttr(FAlias.shininess, 2f));
+        assertNull(shininess);
+
+        mat.set(new ColAttr(ColAlias.diffuse, Color.white));
+        mat.set(new TexAttr(TexAlias.diffuse, "diffuse"));
+
+        assertTrue(mat.has(FAlias.shininess));
+        assertTrue(mat.has(ColAlias.diffuse));
+        assertTrue(mat.has(TexAlias.diffuse));
+        assertFalse(mat.has(FAlias.alphaTest));
+        assertEquals("diffuse", mat.get(TexAlias.diffuse).name);
+
+        var order = new Seq<Attribute<?, ?>>();
+        mat.each(order::add);
+        assertEquals(3, order.size);
+        for(int i = 1; i < order.size; i++){
+            assertTrue(order.get(i - 1).alias.index() < order.get(i).alias.index(), "Attributes must be visited in alias order.");
+        }
+
+        var copy = mat.copy();
+        assertEquals(mat.mask(), copy.mask());
+        assertNotSame(mat.get(TexAlias.diffuse), copy.get(TexAlias.diffuse));
+
+        assertNotNull(mat.remove(ColAlias.diffuse));
+        assertFalse(mat.has(ColAlias.diffuse));
+        assertNull(mat.get(ColAlias.diffuse));
+
+        mat.remove(FAlias.shininess, TexAlias.diffuse);
+        assertEquals(0, mat.mask());
+
+        var bulk = new Material(new FAttr(FAlias.shininess, 1f), new ColAttr(ColAlias.diffuse, Color.white));
+        assertTrue(bulk.has(FAlias.shininess) && bulk.has(ColAlias.diffuse));
+        bulk.remove(Seq.with(FAlias.shininess), Seq.with(ColAlias.diffuse));
+        assertEquals(0, bulk.mask());
+    }
+
+    @Test
+    public void interning(){
+        Materials.clear();
+
+        var a = new Material(new ColAttr(ColAlias.diffuse, Color.white), new TexAttr(TexAlias.diffuse, "tex.png"));
+        var b = new Material(new ColAttr(ColAlias.diffuse, Color.white), new TexAttr(TexAlias.diffuse, "tex"));
+        var c = new Material(new ColAttr(ColAlias.diffuse, Color.white), new FAttr(FAlias.shininess, 1f));
+
+        var ia = Materials.intern(a);
+        assertSame(a, ia);
+        assertSame(ia, Materials.intern(b));
+        assertNotSame(ia, Materials.intern(c));
+        assertSame(ia, Materials.get(ia.uid));
+
+        assertEquals(2, Materials.size());
+        assertEquals(1, Materials.deduplicated());
+
+        // Modifying an interned material must not corrupt the lookup of its original contents.
+        ia.get(TexAlias.diffuse).u = 0.5f;
+        assertSame(ia, Materials.intern(new Material(new ColAttr(ColAlias.diffuse, Color.white), new TexAttr(TexAlias.diffuse, "tex"))));
+
+        Materials.clear();
+    }
+
+    @Test
+    public void release(){
+        Materials.clear();
+
+        var a = Materials.intern(new Material(new TexAttr(TexAlias.diffuse, "tex")));
+        assertSame(a, Materials.intern(new Material(new TexAttr(TexAlias.diffuse, "tex"))));
+        assertEquals(2, Materials.refs(a));
+
+        Materials.release(a);
+        assertEquals(1, Materials.size(), "The material must be kept while referenced.");
+        assertSame(a, Materials.get(a.uid));
+
+        int uid = a.uid;
+        Materials.release(a);
+        assertEquals(0, Materials.size());
+        assertEquals(-1, a.uid);
+        assertNull(Materials.get(uid));
+
+        var b = Materials.intern(new Material(new TexAttr(TexAlias.diffuse, "tex")));
+        assertNotSame(a, b, "Released materials must no longer be shared.");
+        assertEquals(uid, b.uid, "Released IDs must be reused.");
+
+        Materials.release(a);
+        assertEquals(1, Materials.refs(b));
+
+        // Disposing a model releases the materials it interned.
+        var model = new Model();
+        model.load(new JsonReader().parse(
+            "{id: m, meshes: [], nodes: [], animations: [], materials: [{id: mat, textures: [{type: DIFFUSE, filename: tex.png}]}]}"
+        ));
+        assertSame(b, model.material("mat"));
+        assertEquals(2, Materials.refs(b));
+        model.dispose();
+        assertEquals(1, Materials.refs(b));
+
+        Materials.clear();
+    }
+
+    @Test
+    public void directories(){
+        Materials.clear();
+
+        var json = new JsonReader().parse(
+            "{id: m, meshes: [], nodes: [], animations: [], materials: [" +
+            "{id: a, textures: [{type: DIFFUSE, filename: tex.png}]}, {id: b, textures: [{type: DIFFUSE, filename: tex.png}]}" +
+            "]}"
+        );
+
+        var first = new Model();
+        first.directory = "first/";
+        first.load(json);
+
+        var second = new Model();
+        second.directory = "second/";
+        second.load(json);
+
+        // Equally named textures of different directories are different files.
+        assertNotSame(first.material("a"), second.material("a"));
+        assertEquals("second/tex.png", second.material("a").get(TexAlias.diffuse).path);
+
+        // Identical materials within a model are shared, but each ID keeps its own overrides.
+        var shared = first.material("a");
+        assertSame(shared, first.material("b"));
+        assertEquals("a", shared.id);
+
+        var node = new Node();
+        node.id = "node";
+        for(var id : new String[]{"a", "b"}){
+            var part = new NodePart(node);
+            part.material = first.material(id);
+            part.materialId = id;
+            node.parts.add(part);
+        }
+        first.node(node);
+
+        var instance = new ModelInstance(first);
+        var block = instance.override("b");
+        assertEquals("b", block.id);
+
+        var parts = instance.node("node").parts;
+        assertNull(parts.get(0).overrides, "Overriding one ID must not affect other IDs sharing its material.");
+        assertSame(block, parts.get(1).overrides);
+
+        first.dispose();
+        second.dispose();
+        assertEquals(0, Materials.size());
+    }
+
+    @Test
+    public void overrides(){
+        var base = new Material(new ColAttr(ColAlias.diffuse, Color.white), new FAttr(FAlias.shininess, 1f));
+        var block = new Material(new ColAttr(ColAlias.diffuse, Color.black), new FAttr(FAlias.alphaTest, 0.5f));
+
+        var merged = new Seq<Attribute<?, ?>>();
+        base.each(block, merged::add);
+
+        assertEquals(3, merged.size);
+        assertTrue(merged.contains(block.get(ColAlias.diffuse), true));
+        assertFalse(merged.contains(base.get(ColAlias.diffuse), true));
+        assertTrue(merged.contains(base.get(FAlias.shininess), true));
+        assertTrue(merged.contains(block.get(FAlias.alphaTest), true));
+    }
+}
@@ -0,0 +1,122 @@
+import arc.graphics.*;
+import arc.graphics.gl.*;
+import arc.struct.*;
+import model.*;
+import model.part.*;
+import org.junit.jupiter.api.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MeshDataTest{
+    /** @return A grid of {@code size * size} quads, split in two triangle-list parts. */
+    MeshData grid(int size){
+        int row = size + 1;
+        var vertices = new float[row * row * 3];
+        for(int y = 0; y < row; y++){
+            for(int x = 0; x < row; x++){
+                int o = (y * row + x) * 3;
+                vertices[o] = x;
+                vertices[o + 1] = y;
+                vertices[o + 2] = x * y;
+            }
+        }
+
+        var indices = new int[size * size * 6];
+        int i = 0;
+        for(int y = 0; y < size; y++){
+            for(int x = 0; x < size; x++){
+                int v = y * row + x;
+                indices[i++] = v;
+                indices[i++] = v + 1;
+                indices[i++] = v + row;
+                indices[i++] = v + 1;
+                indices[i++] = v + row + 1;
+                indices[i++] = v + row;
+            }
+        }
+
+        var mesh = new MeshData(new VertexAttribute[]{new VertexAttribute(3, Shader.positionAttribute)}, vertices, indices);
+        int half = indices.length / 6 * 3;
+        for(int p = 0; p < 2; p++){
+            var part = new MeshPart();
+            part.id = "part" + p;
+            part.offset = p * half;
+            part.count = p == 0 ? half : indices.length - half;
+            mesh.parts.add(part);
+        }
+
+        return mesh;
+    }
+
+    /** @return The positions of every triangle of the part, as strings. */
+    static Seq<String> triangles(MeshData mesh, MeshPart part){
+        var out = new Seq<String>();
+        for(int i = part.offset; i < part.offset + part.count; i += 3){
+            var builder = new StringBuilder();
+            for(int k = 0; k < 3; k++){
+                int o = mesh.indices[i + k] * mesh.stride;
+                builder.append(mesh.vertices[o]).append(',').append(mesh.vertices[o + 1]).append(',').append(mesh.vertices[o + 2]).append(';');
+            }
+            out.add(builder.toString());
+        }
+        return out;
+    }
+
+    @Test
+    public void indexType(){
+        assertEquals(Gl.unsignedByte, IndexBuffer.type(255, false));
+        assertEquals(Gl.unsignedShort, IndexBuffer.type(256, false));
+        assertEquals(Gl.unsignedShort, IndexBuffer.type(Model.maxShortVertices - 1, false));
+        assertEquals(Gl.unsignedInt, IndexBuffer.type(Model.maxShortVertices, true));
+        assertThrows(IllegalArgumentException.class, () -> IndexBuffer.type(Model.maxShortVertices, false));
+
+        var small = grid(4);
+        var buffer = new IndexBuffer(small.indices, 0, small.indices.length, false);
+        assertEquals(Gl.unsignedByte, buffer.type);
+        assertEquals(small.indices.length, buffer.size());
+
+        var large = grid(300);
+        buffer = new IndexBuffer(large.indices, 0, large.indices.length, true);
+        assertEquals(Gl.unsignedInt, buffer.type);
+        assertEquals(large.indices.length * 4, buffer.size());
+    }
+
+    @Test
+    public void split(){
+        var mesh = grid(300);
+        assertTrue(mesh.numVertices() > Model.maxShortVertices);
+
+        var expected = new Seq<Seq<String>>();
+        for(var part : mesh.parts) expected.add(triangles(mesh, part));
+
+        var chunks = mesh.split(Model.maxShortVertices);
+        assertTrue(chunks.size > 1);
+        for(var chunk : chunks){
+            assertTrue(chunk.numVertices() <= Model.maxShortVertices, "Chunks must be addressable by 16-bit indices.");
+            for(int index : chunk.indices) assertTrue(index < chunk.numVertices());
+        }
+
+        for(int p = 0; p < mesh.parts.size; p++){
+            var part = mesh.parts.get(p);
+            assertNotNull(part.chunks);
+
+            var actual = new Seq<String>();
+            for(var piece : part.chunks){
+                assertEquals(part.id, piece.id);
+
+                var chunk = chunks.find(c -> c.parts.contains(piece, true));
+                assertNotNull(chunk, "Every piece must belong to a chunk.");
+                actual.addAll(triangles(chunk, piece));
+            }
+
+            assertEquals(expected.get(p), actual, "Splitting must preserve the triangles of " + part.id + " and their order.");
+        }
+    }
+
+    @Test
+    public void splitWhole(){
+        var mesh = grid(2);
+        mesh.parts.first().type = Gl.triangleFan;
+        assertThrows(IllegalArgumentException.class, () -> mesh.split(4), "Parts that can't be split must fit a chunk.");
+    }
+}
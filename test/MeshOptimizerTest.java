@@ -0,0 +1,130 @@
+import arc.math.*;
+import arc.struct.*;
+import arc.util.*;
+import model.part.*;
+import org.junit.jupiter.api.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MeshOptimizerTest{
+    static final int size = 64, numVertices = (size + 1) * (size + 1);
+
+    /** @return A grid of {@code size * size} quads with its triangles shuffled. */
+    int[] shuffledGrid(long seed){
+        var indices = new int[size * size * 6];
+        int i = 0;
+        for(int y = 0; y < size; y++){
+            for(int x = 0; x < size; x++){
+                int v = y * (size + 1) + x;
+                indices[i++] = v;
+                indices[i++] = v + 1;
+                indices[i++] = v + size + 1;
+                indices[i++] = v + 1;
+                indices[i++] = v + size + 2;
+                indices[i++] = v + size + 1;
+            }
+        }
+
+        var rand = new Rand(seed);
+        for(int t = indices.length / 3 - 1; t > 0; t--){
+            int o = rand.random(t);
+            for(int k = 0; k < 3; k++){
+                int tmp = indices[t * 3 + k];
+                indices[t * 3 + k] = indices[o * 3 + k];
+                indices[o * 3 + k] = tmp;
+            }
+        }
+
+        return indices;
+    }
+
+    /** @return The triangle as a key independent of which vertex it starts with, but dependent on its winding. */
+    static String key(int[] indices, int t){
+        int a = indices[t], b = indices[t + 1], c = indices[t + 2];
+        if(b < a && b < c) return b + "," + c + "," + a;
+        if(c < a && c < b) return c + "," + a + "," + b;
+        return a + "," + b + "," + c;
+    }
+
+    @Test
+    public void vertexCache(){
+        var indices = shuffledGrid(1);
+        var triangles = new ObjectSet<String>();
+        for(int t = 0; t < indices.length; t += 3) triangles.add(key(indices, t));
+
+        var optimizer = new MeshOptimizer();
+        optimizer.optimize(indices, 0, indices.length, numVertices);
+
+        for(int t = 0; t < indices.length; t += 3){
+            assertTrue(triangles.remove(key(indices, t)), "Triangles and their winding must be preserved.");
+        }
+        assertEquals(0, triangles.size);
+
+        assertEquals(indices.length / 3, optimizer.triangles);
+        assertTrue(optimizer.acmrBefore() > 2f, "A shuffled grid should thrash the cache, got " + optimizer.acmrBefore());
+        assertTrue(optimizer.acmrAfter() < 0.8f, "Expected an ACMR close to the optimum, got " + optimizer.acmrAfter());
+        assertEquals(optimizer.acmrAfter(), optimizer.acmr(indices, 0, indices.length, numVertices), 0.0001f);
+
+        // Optimizing is deterministic.
+        var again = shuffledGrid(1);
+        new MeshOptimizer().optimize(again, 0, again.length, numVertices);
+        assertArrayEquals(indices, again);
+    }
+
+    @Test
+    public void partRange(){
+        var indices = shuffledGrid(2);
+        var original = indices.clone();
+
+        int offset = 600, count = 900;
+        new MeshOptimizer().optimize(indices, offset, count, numVertices);
+
+        for(int i = 0; i < indices.length; i++){
+            if(i < offset || i >= offset + count) assertEquals(original[i], indices[i], "Indices outside the part must be left untouched.");
+        }
+    }
+
+    @Test
+    public void vertexFetch(){
+        var indices = shuffledGrid(3);
+        var vertices = new float[numVertices * 2];
+        for(int v = 0; v < numVertices; v++){
+            vertices[v * 2] = v;
+            vertices[v * 2 + 1] = -v;
+        }
+
+        var original = indices.clone();
+        new MeshOptimizer().reorderVertices(vertices, 2, indices, indices.length);
+
+        int next = 0;
+        var seen = new IntSet();
+        for(int i = 0; i < indices.length; i++){
+            int v = indices[i];
+            assertEquals(original[i], (int)vertices[v * 2], "Indices must refer to the same vertex data after reordering.");
+            assertEquals(-original[i], (int)vertices[v * 2 + 1]);
+            if(seen.add(v)) assertEquals(next++, v, "Vertices must be ordered by first use.");
+        }
+    }
+
+    @Test
+    @Tag("benchmark")
+    public void benchmark(){
+        var optimizer = new MeshOptimizer();
+        for(int i = 0; i < 10; i++){
+            var indices = shuffledGrid(i);
+            optimizer.optimize(indices, 0, indices.length, numVertices);
+        }
+
+        optimizer.reset();
+        int iterations = 20;
+        long time = 0;
+        for(int i = 0; i < iterations; i++){
+            var indices = shuffledGrid(i);
+            long start = Time.nanos();
+            optimizer.optimize(indices, 0, indices.length, numVertices);
+            time += Time.timeSinceNanos(start);
+        }
+
+        Log.info("[MeshOptimizer] @ triangles, ACMR @ -> @, @ms per mesh.", size * size * 2, optimizer.acmrBefore(), optimizer.acmrAfter(), time / 1000000f / iterations);
+    }
+}
@@ -0,0 +1,44 @@
+import arc.assets.*;
+import arc.files.*;
+import arc.graphics.*;
+import arc.struct.*;
+import arc.util.serialization.*;
+import model.*;
+import org.junit.jupiter.api.*;
+
+import java.io.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SuppressWarnings("rawtypes")
+public class ModelLoaderTest{
+    @Test
+    public void texturePaths() throws IOException{
+        var file = new Fi(File.createTempFile("model", ".g3dj"));
+        file.writeString(
+            "{id: m, meshes: [], nodes: [], animations: [], materials: [" +
+            "{id: a, textures: [{type: DIFFUSE, filename: tex.png}]}," +
+            "{id: b, textures: [{type: EMISSIVE, filename: own-tex.png}]}" +
+            "]}"
+        );
+
+        try{
+            var loader = new ModelLoader(Fi::new, new JsonReader());
+            assertEquals(Seq.with("first/tex.png", "first/own-tex.png"), paths(loader.getDependencies("first/model.g3dj", file, null)));
+
+            // Equally named textures of another directory are different files.
+            assertEquals(Seq.with("second/tex.png", "second/own-tex.png"), paths(loader.getDependencies("second/model.g3dj", file, null)));
+        }finally{
+            file.delete();
+        }
+    }
+
+    static Seq<String> paths(Seq<AssetDescriptor> deps){
+        var out = new Seq<String>();
+        for(var dep : deps){
+            assertEquals(Texture.class, dep.type);
+            out.add(dep.fileName);
+        }
+        return out;
+    }
+}
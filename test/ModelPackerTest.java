@@ -0,0 +1,69 @@
+import arc.*;
+import arc.backend.sdl.*;
+import arc.graphics.*;
+import model.*;
+import model.attribute.*;
+import model.attribute.Attribute.*;
+import model.attribute.Attribute.TexAttr.*;
+import org.junit.jupiter.api.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** Packs real textures, so it needs a window and only runs with the {@code windowTest} task. */
+@Tag("window")
+public class ModelPackerTest{
+    void app(ApplicationListener listener){
+        new SdlApplication(listener, new SdlConfig(){{
+            title = "Model Packer Test";
+        }});
+    }
+
+    @Test
+    public void packTwice(){
+        app(new ApplicationListener(){
+            @Override
+            public void init(){
+                var diffuse = new TexAttr(TexAlias.diffuse, "diffuse", 0f, 0f, 0.5f, 0.5f);
+                var emissive = new TexAttr(TexAlias.emissive, "emissive");
+
+                var model = new Model();
+                model.material(new Material(diffuse, emissive){{ id = "mat"; }});
+
+                var packer = new ModelPacker();
+                packer.pixmaps = name -> new Pixmap(64, 64);
+                packer.add(model);
+
+                try{
+                    var atlas = packer.pack();
+                    assertSame(atlas.find("diffuse.png").texture, diffuse.value);
+
+                    var first = diffuse.copy();
+                    assertNotEquals(0.5f, first.u2, "The UV mapping must be remapped into the atlas region.");
+                    assertEquals(2, packer.report.textures);
+
+                    atlas = packer.pack();
+                    assertSame(atlas.find("diffuse.png").texture, diffuse.value);
+                    assertEquals(first.u, diffuse.u, 1e-6f, "Packing again must remap from the original UV mapping.");
+                    assertEquals(first.v, diffuse.v, 1e-6f);
+                    assertEquals(first.u2, diffuse.u2, 1e-6f);
+                    assertEquals(first.v2, diffuse.v2, 1e-6f);
+                    assertEquals(2, packer.report.textures);
+
+                    // Equally named textures from different directories are packed separately.
+                    var other = new TexAttr(TexAlias.diffuse, "diffuse");
+                    other.path = "other/diffuse.png";
+
+                    var otherModel = new Model();
+                    otherModel.material(new Material(other){{ id = "mat"; }});
+
+                    atlas = packer.add(otherModel).pack();
+                    assertEquals(3, packer.report.textures);
+                    assertSame(atlas.find("other/diffuse.png").texture, other.value);
+                }finally{
+                    packer.dispose();
+                    Core.app.exit();
+                }
+            }
+        });
+    }
+}
@@ -13,6 +13,7 @@ import arc.util.*;
 import arc.util.pooling.*;
 import arc.util.serialization.*;
 import model.*;
+import model.AnimController.*;
 import model.Model.*;
 import model.attribute.*;
 import model.attribute.LightsAttr.AmbLightsAttr.*;
@@ -32,7 +33,8 @@ public class ModelTest{
     public void generalTest(){
         app(new ApplicationListener(){
             ModelInstance model;
-            Anims control;
+            AnimController control;
+            State outer, inner;
 
             Environment env;
             Camera3D cam;
@@ -41,6 +43,7 @@ public class ModelTest{
             float innerPhase;
             final Pool<ModelView> pool = Pools.get(ModelView.class, ModelView::new);
             final Seq<ModelView> views = Seq.of(false, 100, ModelView.class);
+            final TrnsBuffer buffer = new TrnsBuffer();
 
             @Override
             public void init(){
@@ -54,7 +57,19 @@ public class ModelTest{
                     e.init();
 
                     model = new ModelInstance(e);
-                    control = new Anims(model);
+                    control = new AnimController(model);
+                    // The folds spend most of their time clamped at either end, which the cache serves without sampling.
+                    control.cache = new PoseCache(60f, 256);
+
+                    // Both folds are driven by their phase instead of time, on separate layers as they animate
+                    // different nodes.
+                    outer = control.state("node-outer|outer-fold");
+                    inner = control.state("node-inner|inner-fold");
+                    outer.mode = inner.mode = LoopMode.once;
+                    outer.speed = inner.speed = 0f;
+
+                    control.layer(0).play(outer);
+                    control.layer().play(inner);
                 };
 
                 var packer = new PixmapPacker(4096, 4096, 4, true);
@@ -75,6 +90,7 @@ public class ModelTest{
             @Override
             public void update(){
                 Time.update();
+                RenderStats.begin();
 
                 cam.position.set(0f, 0f, 8f);
                 cam.resize(Core.graphics.getWidth(), Core.graphics.getHeight());
@@ -91,10 +107,9 @@ public class ModelTest{
                 var pos = cam.unproject(Tmp.v31.set(Core.input.mouse(), 0f));
                 model.trns.setToRotation(Vec3.Z, Mathf.angle(pos.x, pos.y) - 90f);
 
-                control.begin();
-                control.animateFrac("node-outer|outer-fold", outerPhase);
-                control.animateFrac("node-inner|inner-fold", innerPhase);
-                control.end();
+                control.layer(0).time = outerPhase * outer.duration();
+                control.layer(1).time = innerPhase * inner.duration();
+                control.apply();
 
                 Core.graphics.clear(0f, 0f, 0f, 0f);
                 Gl.depthMask(true);
@@ -102,7 +117,7 @@ public class ModelTest{
                 Gl.enable(Gl.depthTest);
                 Gl.depthFunc(Gl.lequal);
 
-                model.views(pool, views);
+                model.views(pool, buffer, views, cam);
 
                 ModelShader prev = null;
                 var items = views.items;
@@ -127,8 +142,10 @@ public class ModelTest{
 
                 pool.freeAll(views);
                 views.size = 0;
+                buffer.clear();
 
                 Gl.disable(Gl.depthTest);
+                RenderStats.end();
             }
         });
     }
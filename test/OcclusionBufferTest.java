@@ -0,0 +1,203 @@
+import arc.graphics.*;
+import arc.graphics.g3d.*;
+import arc.math.*;
+import arc.math.geom.*;
+import arc.struct.*;
+import arc.util.pooling.*;
+import model.*;
+import model.Model.*;
+import model.part.*;
+import model.part.Node.*;
+import org.junit.jupiter.api.*;
+
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OcclusionBufferTest{
+    static final float[] wall = {
+        -5f, -5f, 0f, 5f, -5f, 0f, 5f, 5f, 0f,
+        -5f, -5f, 0f, 5f, 5f, 0f, -5f, 5f, 0f
+    };
+
+    Camera3D camera(){
+        var cam = new Camera3D();
+        cam.position.set(0f, 0f, 10f);
+        cam.direction.set(0f, 0f, -1f);
+        cam.up.set(0f, 1f, 0f);
+        cam.fov = 60f;
+        cam.near = 1f;
+        cam.far = 100f;
+        cam.resize(128f, 64f);
+        cam.update();
+        return cam;
+    }
+
+    @Test
+    public void reference(){
+        var cam = camera();
+        var buffer = new OcclusionBuffer(128, 64);
+
+        // A slanted triangle, to check interpolated depths as well as coverage.
+        float[] tri = {-4f, -3f, -2f, 5f, -4f, 1f, 0f, 5f, -6f};
+        buffer.begin(cam);
+        buffer.occluder(tri, new Mat3D());
+        buffer.rasterize();
+        assertEquals(1, buffer.numTriangles);
+
+        // The reference image is computed independently, by casting a view space ray through every pixel center.
+        float
+            tan = (float)Math.tan(Math.toRadians(cam.fov / 2f)), aspect = 2f, n = cam.near, f = cam.far,
+            ax = tri[0], ay = tri[1], az = tri[2] - 10f,
+            e1x = tri[3] - ax, e1y = tri[4] - ay, e1z = tri[5] - 10f - az,
+            e2x = tri[6] - ax, e2y = tri[7] - ay, e2z = tri[8] - 10f - az;
+
+        int covered = 0;
+        for(int y = 0; y < buffer.height; y++){
+            for(int x = 0; x < buffer.width; x++){
+                float
+                    dx = ((x + 0.5f) / buffer.width * 2f - 1f) * tan * aspect,
+                    dy = ((y + 0.5f) / buffer.height * 2f - 1f) * tan,
+                    dz = -1f;
+
+                // Moller-Trumbore from the camera at the view space origin.
+                float
+                    px = dy * e2z - dz * e2y, py = dz * e2x - dx * e2z, pz = dx * e2y - dy * e2x,
+                    det = e1x * px + e1y * py + e1z * pz,
+                    tx = -ax, ty = -ay, tz = -az,
+                    u = (tx * px + ty * py + tz * pz) / det,
+                    qx = ty * e1z - tz * e1y, qy = tz * e1x - tx * e1z, qz = tx * e1y - ty * e1x,
+                    v = (dx * qx + dy * qy + dz * qz) / det,
+                    t = (e2x * qx + e2y * qy + e2z * qz) / det;
+
+                // Pixels whose centers lie right on an edge may go either way.
+                if(Math.min(u, Math.min(v, 1f - u - v)) > -1e-3f && Math.min(u, Math.min(v, 1f - u - v)) < 1e-3f) continue;
+
+                float actual = buffer.depths[y * buffer.width + x];
+                if(u >= 0f && v >= 0f && u + v <= 1f){
+                    float expected = ((f + n) * t - 2f * f * n) / ((f - n) * t);
+                    assertEquals(expected, actual, 1e-4f, "Depth mismatch at " + x + ", " + y);
+                    covered++;
+                }else{
+                    assertEquals(Float.POSITIVE_INFINITY, actual, 0f, "Uncovered pixel at " + x + ", " + y);
+                }
+            }
+        }
+
+        assertTrue(covered > 100);
+    }
+
+    @Test
+    public void culling(){
+        var cam = camera();
+        var buffer = new OcclusionBuffer(128, 64);
+        buffer.begin(cam);
+        buffer.occluder(wall, new Mat3D());
+        buffer.rasterize();
+
+        assertFalse(buffer.visible(0f, 0f, -10f, 1f), "A sphere behind the wall must be occluded.");
+        assertFalse(buffer.visible(2f, -2f, -30f, 3f));
+        assertTrue(buffer.visible(0f, 0f, 5f, 1f), "A sphere in front of the wall must be visible.");
+        assertTrue(buffer.visible(20f, 0f, -10f, 1f), "A sphere beside the wall must be visible.");
+        assertTrue(buffer.visible(0f, 0f, -10f, 12f), "A sphere reaching past the wall must be visible.");
+        assertTrue(buffer.visible(0f, 0f, 9.5f, 1f), "A sphere crossing the near plane must be visible.");
+        assertTrue(buffer.visible(0f, 0f, 20f, 1f), "A sphere behind the camera must be left to frustum culling.");
+
+        // Walls crossing the near plane are clipped rather than dropped.
+        var slanted = new float[]{
+            -50f, -50f, 20f, 50f, -50f, 20f, 50f, 50f, -5f,
+            -50f, -50f, 20f, 50f, 50f, -5f, -50f, 50f, -5f
+        };
+        buffer.begin(cam);
+        buffer.occluder(slanted, new Mat3D());
+        buffer.rasterize();
+        assertTrue(buffer.numTriangles >= 2, "Clipped triangles must be kept.");
+        assertFalse(buffer.visible(0f, 0f, -10f, 1f));
+    }
+
+    @Test
+    public void threaded() throws Exception{
+        var cam = camera();
+        cam.resize(200f, 150f);
+        cam.update();
+
+        var rand = new Rand(7);
+        var triangles = new float[9 * 300];
+        for(int i = 0; i < triangles.length; i += 3){
+            triangles[i] = rand.range(12f);
+            triangles[i + 1] = rand.range(12f);
+            triangles[i + 2] = rand.range(8f);
+        }
+
+        var serial = new OcclusionBuffer(200, 150);
+        serial.begin(cam);
+        serial.occluder(triangles, new Mat3D());
+        serial.rasterize();
+
+        var executor = Executors.newFixedThreadPool(4);
+        try{
+            var parallel = new OcclusionBuffer(200, 150);
+            parallel.executor = executor;
+            for(int i = 0; i < 3; i++){
+                parallel.begin(cam);
+                parallel.occluder(triangles, new Mat3D());
+                parallel.rasterize();
+                assertArrayEquals(serial.depths, parallel.depths, 0f);
+            }
+        }finally{
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void views(){
+        var model = new Model();
+        model.node(node("wall", new Vec3(0f, 0f, 0f), 7.1f, wall));
+        model.node(node("hidden", new Vec3(0f, 0f, -10f), 1f, null));
+        model.node(node("beside", new Vec3(20f, 0f, -10f), 1f, null));
+
+        var instance = new ModelInstance(model);
+        instance.calcTrns();
+
+        var cam = camera();
+        var occlusion = new OcclusionBuffer(128, 64);
+        occlusion.begin(cam);
+        occlusion.occluders(instance);
+        occlusion.rasterize();
+        assertEquals(2, occlusion.numTriangles);
+
+        var pool = new Pool<ModelView>(){
+            @Override
+            protected ModelView newObject(){
+                return new ModelView();
+            }
+        };
+        var views = new Seq<ModelView>();
+        var trns = new TrnsBuffer();
+
+        instance.views(pool, trns, views, null);
+        assertEquals(3, views.size);
+
+        views.clear();
+        trns.clear();
+        instance.views(pool, trns, views, null, occlusion);
+        assertEquals(2, views.size);
+        assertEquals(2, trns.size, "Transforms of occluded nodes must not be written.");
+        for(var view : views) assertNotEquals("hidden", view.mesh.id);
+    }
+
+    Node node(String id, Vec3 center, float radius, float[] occluder){
+        var node = new Node();
+        node.id = id;
+
+        var part = new NodePart(node);
+        part.mesh = new MeshPart();
+        part.mesh.id = id;
+        part.mesh.type = Gl.triangles;
+        part.mesh.center.set(center);
+        part.mesh.radius = radius;
+        part.mesh.occluder = occluder;
+        node.parts.add(part);
+        return node;
+    }
+}
@@ -0,0 +1,210 @@
+import arc.math.*;
+import arc.math.geom.*;
+import arc.struct.*;
+import arc.util.*;
+import model.*;
+import model.part.*;
+import model.part.Node.*;
+import org.junit.jupiter.api.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PickerTest{
+    /** A unit sphere of {@code 2 * rings * rings} triangles, as interleaved positions and normals. */
+    static float[] sphere(int rings, int[] indicesOut){
+        int size = rings + 1;
+        var vertices = new float[size * size * 6];
+        for(int y = 0; y < size; y++){
+            for(int x = 0; x < size; x++){
+                float
+                    lat = (float)Math.PI * y / rings,
+                    lon = 2f * (float)Math.PI * x / rings,
+                    px = (float)(Math.sin(lat) * Math.cos(lon)),
+                    py = (float)Math.cos(lat),
+                    pz = (float)(Math.sin(lat) * Math.sin(lon));
+
+                int o = (y * size + x) * 6;
+                vertices[o] = vertices[o + 3] = px;
+                vertices[o + 1] = vertices[o + 4] = py;
+                vertices[o + 2] = vertices[o + 5] = pz;
+            }
+        }
+
+        int i = 0;
+        for(int y = 0; y < rings; y++){
+            for(int x = 0; x < rings; x++){
+                int v = y * size + x;
+                indicesOut[i++] = v;
+                indicesOut[i++] = v + 1;
+                indicesOut[i++] = v + size + 1;
+                indicesOut[i++] = v;
+                indicesOut[i++] = v + size + 1;
+                indicesOut[i++] = v + size;
+            }
+        }
+
+        return vertices;
+    }
+
+    /** @return The nearest distance of a triangle hit by the ray by testing every triangle, or positive infinity. */
+    static float brute(float[] vertices, int stride, int[] indices, float[] ray, int[] triangle){
+        float nearest = Float.POSITIVE_INFINITY;
+        for(int t = 0; t < indices.length / 3; t++){
+            var bvh = new MeshBvh(vertices, stride, 0, indices, t * 3, 3);
+            var hit = new MeshBvh.Hit();
+            if(bvh.intersect(ray[0], ray[1], ray[2], ray[3], ray[4], ray[5], nearest, hit)){
+                nearest = hit.distance;
+                triangle[0] = t;
+            }
+        }
+        return nearest;
+    }
+
+    @Test
+    public void bruteForce(){
+        var rand = new Rand(3);
+
+        // A soup of random, overlapping triangles, which are the hardest to split.
+        int numTriangles = 500;
+        var vertices = new float[numTriangles * 3 * 3];
+        var indices = new int[numTriangles * 3];
+        for(int i = 0; i < vertices.length; i += 9){
+            float cx = rand.range(10f), cy = rand.range(10f), cz = rand.range(10f);
+            for(int k = 0; k < 9; k += 3){
+                vertices[i + k] = cx + rand.range(1.5f);
+                vertices[i + k + 1] = cy + rand.range(1.5f);
+                vertices[i + k + 2] = cz + rand.range(1.5f);
+            }
+        }
+        for(int i = 0; i < indices.length; i++) indices[i] = i;
+
+        var bvh = new MeshBvh(vertices, 3, 0, indices, 0, indices.length);
+        assertEquals(numTriangles, bvh.numTriangles);
+
+        var hit = new MeshBvh.Hit();
+        var ray = new float[6];
+        int[] triangle = {-1};
+        int hits = 0;
+        for(int i = 0; i < 300; i++){
+            var dir = new Vec3(rand.range(1f), rand.range(1f), rand.range(1f)).nor();
+            ray[0] = rand.range(15f);
+            ray[1] = rand.range(15f);
+            ray[2] = rand.range(15f);
+            ray[3] = dir.x;
+            ray[4] = dir.y;
+            ray[5] = dir.z;
+
+            // Axis-parallel rays divide by zero in slab tests.
+            if(i % 10 == 0){
+                ray[3] = ray[4] = 0f;
+                ray[5] = 1f;
+            }
+
+            float expected = brute(vertices, 3, indices, ray, triangle);
+            boolean found = bvh.intersect(ray[0], ray[1], ray[2], ray[3], ray[4], ray[5], Float.POSITIVE_INFINITY, hit);
+
+            assertEquals(expected != Float.POSITIVE_INFINITY, found, "The hierarchy must hit exactly what brute force hits.");
+            if(found){
+                hits++;
+                assertEquals(expected, hit.distance, 0.0001f);
+                assertEquals(triangle[0], hit.triangle, "Hits must report the triangle's index within its part.");
+            }
+        }
+
+        assertTrue(hits > 30, "The rays must exercise hits.");
+        assertFalse(bvh.intersect(0f, 0f, 0f, 0f, 0f, 1f, 0f, hit), "Nothing may be hit within zero distance.");
+    }
+
+    @Test
+    public void pick(){
+        var instances = instances(4, 24);
+
+        var picker = new Picker();
+        var hit = new Picker.Hit();
+        var ray = new Ray();
+
+        // Instances are 10 units apart along X and Z, with the sphere of the instance at (20, 0, 10) scaled up 2 times.
+        // Rays are kept off the poles and seams, where triangles meet.
+        ray.origin.set(20.3f, 50f, 10.2f);
+        ray.direction.set(0f, -1f, 0f);
+        assertTrue(picker.pick(instances, ray, hit));
+        assertSame(instances.get(2 * 4 + 1), hit.instance);
+        assertEquals("sphere", hit.node.id);
+        assertEquals(48f, hit.distance, 0.1f, "Distances must be in world units regardless of the node's scale.");
+        assertEquals(50f - hit.distance, hit.point(ray, new Vec3()).y, 0.0001f);
+
+        // Picks only accept hits nearer than the current one.
+        ray.origin.set(0.2f, 50f, 0.1f);
+        assertFalse(picker.pick(instances, ray, hit));
+        assertTrue(picker.pick(instances, ray, hit.reset()));
+        assertSame(instances.first(), hit.instance);
+        assertEquals(49f, hit.distance, 0.1f);
+
+        // The nearest of several instances along the ray wins.
+        ray.origin.set(-50f, 0.25f, 30.1f);
+        ray.direction.set(1f, 0f, 0f);
+        assertTrue(picker.pick(instances, ray, hit.reset()));
+        assertSame(instances.get(3 * 4), hit.instance);
+        assertEquals(49f, hit.distance, 0.1f);
+
+        ray.origin.set(5f, 50f, 5f);
+        ray.direction.set(0f, -1f, 0f);
+        assertFalse(picker.pick(instances, ray, hit.reset()), "Rays between instances must hit nothing.");
+        assertNull(hit.instance);
+    }
+
+    /** @return A grid of sphere instances, with every instance's transform applied. */
+    static Seq<ModelInstance> instances(int size, int rings){
+        var indices = new int[rings * rings * 6];
+        var vertices = sphere(rings, indices);
+
+        var mesh = new MeshPart();
+        mesh.id = "sphere";
+        mesh.count = indices.length;
+        mesh.radius = 1f;
+        mesh.bvh = new MeshBvh(vertices, 6, 0, indices, 0, indices.length);
+
+        var node = new Node();
+        node.id = "sphere";
+        var part = new NodePart(node);
+        part.mesh = mesh;
+        node.parts.add(part);
+
+        var model = new Model();
+        model.node(node);
+
+        var instances = new Seq<ModelInstance>();
+        for(int z = 0; z < size; z++){
+            for(int x = 0; x < size; x++){
+                var instance = new ModelInstance(model);
+                instance.trns.setToTranslation(new Vec3(x * 10f, 0f, z * 10f));
+                if(x == 2 && z == 1) instance.trns.scale(2f, 2f, 2f);
+                instance.calcTrns();
+                instances.add(instance);
+            }
+        }
+
+        return instances;
+    }
+
+    @Test
+    @Tag("benchmark")
+    public void benchmark(){
+        var instances = instances(16, 64);
+        var picker = new Picker();
+        var hit = new Picker.Hit();
+        var ray = new Ray();
+        var rand = new Rand(1);
+
+        int iterations = 2000, hits = 0;
+        long start = Time.nanos();
+        for(int i = 0; i < iterations; i++){
+            ray.origin.set(rand.random(-5f, 155f), 50f, rand.random(-5f, 155f));
+            ray.direction.set(rand.range(0.2f), -1f, rand.range(0.2f)).nor();
+            if(picker.pick(instances, ray, hit.reset())) hits++;
+        }
+        float us = Time.timeSinceNanos(start) / 1000f / iterations;
+
+        Log.info("[Picker] @ instances of @ triangles, @us per pick, @ hits.", instances.size, 64 * 64 * 2, us, hits);
+    }
+}
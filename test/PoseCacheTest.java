@@ -0,0 +1,115 @@
+import arc.math.geom.*;
+import model.*;
+import model.AnimController.*;
+import model.part.*;
+import model.part.Anim.*;
+import org.junit.jupiter.api.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PoseCacheTest{
+    Model model;
+
+    /** A model whose "fold" rotates and moves its node over one unit of time, without scaling it. */
+    @BeforeEach
+    public void model(){
+        model = new Model();
+
+        var node = new Node();
+        node.id = "node";
+        model.node(node);
+
+        var fold = new Anim();
+        fold.id = "fold";
+        fold.duration = 1f;
+
+        var anim = new NodeAnim(node);
+        anim.trns.add(new Keyframe<>(0f, new Vec3(0f, 0f, 0f)));
+        anim.trns.add(new Keyframe<>(1f, new Vec3(3f, 0f, 0f)));
+        anim.rot.add(new Keyframe<>(0f, new Quat()));
+        anim.rot.add(new Keyframe<>(1f, new Quat().set(new Vec3(0f, 1f, 0f), 90f)));
+        fold.anims.add(anim);
+        model.anim(fold);
+    }
+
+    @Test
+    public void shared(){
+        var cache = new PoseCache(10f, 16);
+        var a = new ModelInstance(model).anim("fold");
+        var b = new ModelInstance(model).anim("fold");
+        assertNotSame(a, b);
+        assertSame(a.source, b.source, "Copies must share their original animation.");
+
+        var cached = new float[AnimController.stride];
+        var direct = new float[AnimController.stride];
+
+        cache.sample(a, 0.52f, null, cached);
+        assertEquals(1, cache.misses());
+
+        // Times within the same step share a pose, which is sampled at the quantized time.
+        cache.sample(b, 0.48f, null, cached);
+        assertEquals(1, cache.hits(), "Instances of the same model must share poses.");
+        assertEquals(0.5f, cache.hitRate(), 0.0001f);
+
+        AnimController.sample(b, 0.5f, null, direct);
+        assertArrayEquals(direct, cached, 0f);
+
+        // Channels without keyframes are left untouched, as when sampling directly.
+        var out = new float[AnimController.stride * 2];
+        out[17] = out[18] = out[19] = 7f;
+        cache.sample(a, 0.5f, new int[]{1}, out);
+        for(int k = 0; k < 7; k++) assertEquals(direct[k], out[10 + k], 0f);
+        assertEquals(7f, out[17], 0f);
+        assertEquals(0f, out[0], 0f);
+    }
+
+    @Test
+    public void evict(){
+        var cache = new PoseCache(10f, 2);
+        var anim = model.anim("fold");
+        var out = new float[AnimController.stride];
+
+        cache.sample(anim, 0f, null, out);
+        cache.sample(anim, 0.1f, null, out);
+        cache.sample(anim, 0f, null, out);
+        assertEquals(1, cache.hits());
+
+        // The pose at 0.1 is the least recently used, so it's the one evicted.
+        cache.sample(anim, 0.2f, null, out);
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.evictions());
+
+        cache.sample(anim, 0f, null, out);
+        assertEquals(2, cache.hits());
+        cache.sample(anim, 0.1f, null, out);
+        assertEquals(4, cache.misses());
+        assertEquals(2, cache.size(), "The cache must never exceed its capacity.");
+
+        assertEquals(0.3f, out[0], 0.0001f);
+        cache.clear();
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void controller(){
+        var cache = new PoseCache(60f, 64);
+        var instances = new ModelInstance[8];
+        for(int i = 0; i < instances.length; i++){
+            instances[i] = new ModelInstance(model);
+
+            var control = new AnimController(instances[i]);
+            control.cache = cache;
+            var fold = control.state("fold");
+            fold.mode = LoopMode.once;
+            control.layer(0).play(fold);
+            control.layer(0).time = 1f;
+            control.apply();
+        }
+
+        assertEquals(1, cache.misses(), "Instances sitting at the same pose must only sample it once.");
+        assertEquals(instances.length - 1, cache.hits());
+
+        var trns = instances[instances.length - 1].node("node").localTrns.getTranslation(new Vec3());
+        assertEquals(3f, trns.x, 0.0001f);
+    }
+}
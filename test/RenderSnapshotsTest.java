@@ -0,0 +1,161 @@
+import arc.graphics.*;
+import arc.math.geom.*;
+import model.*;
+import model.RenderSnapshots.*;
+import model.attribute.*;
+import model.attribute.LightsAttr.AmbLightsAttr.*;
+import model.attribute.LightsAttr.DirLightsAttr.*;
+import model.part.*;
+import model.part.Node.*;
+import org.junit.jupiter.api.*;
+
+import java.util.concurrent.atomic.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RenderSnapshotsTest{
+    @Test
+    public void ring(){
+        var ring = new RenderSnapshots(2);
+        assertNull(ring.acquire(), "Nothing may be rendered before a snapshot is published.");
+
+        var a = ring.begin();
+        assertThrows(IllegalStateException.class, ring::begin);
+        ring.publish(a);
+        assertSame(a, ring.acquire());
+
+        // Double buffering writes to the only snapshot that isn't being rendered.
+        var b = ring.begin();
+        assertNotSame(a, b);
+        ring.publish(b);
+        assertEquals(1, b.frame);
+
+        var c = ring.begin();
+        assertSame(b, c, "The waiting snapshot must be overwritten rather than the rendered one.");
+        assertEquals(1, ring.dropped());
+        assertSame(a, ring.acquire(), "Nothing new was published, so the rendered snapshot must be kept.");
+        ring.publish(c);
+
+        assertSame(c, ring.acquire());
+        ring.release(c);
+        ring.publish(ring.begin());
+        assertEquals(1, ring.dropped());
+
+        // Triple buffering never drops a snapshot the renderer is keeping up with.
+        var triple = new RenderSnapshots(3);
+        triple.publish(triple.begin());
+        var rendered = triple.acquire();
+        triple.publish(triple.begin());
+        var next = triple.begin();
+        assertNotSame(rendered, next);
+        assertNotSame(triple.acquire(), next);
+        assertEquals(0, triple.dropped());
+    }
+
+    @Test
+    public void isolate(){
+        var model = new Model();
+        var node = new Node();
+        node.id = "node";
+        var part = new NodePart(node);
+        part.mesh = new MeshPart();
+        part.mesh.type = Gl.triangles;
+        node.parts.add(part);
+        model.node(node);
+
+        var instance = new ModelInstance(model);
+        instance.trns.setToTranslation(new Vec3(1f, 2f, 3f));
+        instance.calcTrns();
+
+        var ring = new RenderSnapshots(3);
+        var snapshot = ring.begin();
+        snapshot.add(instance, null, null);
+        ring.publish(snapshot);
+
+        // Updating the instance for the next frame must not affect the published one.
+        instance.trns.setToTranslation(new Vec3(7f, 8f, 9f));
+        instance.calcTrns();
+
+        var rendered = ring.acquire();
+        assertEquals(1, rendered.views.size);
+        var view = rendered.views.first();
+        assertSame(rendered.buffer, view.buffer);
+        assertEquals(1f, rendered.buffer.trns[view.trns * 16 + 12], 0f);
+        assertEquals(3f, rendered.buffer.trns[view.trns * 16 + 14], 0f);
+
+        // Lights modified for the next frame must not affect the published one either.
+        var env = new Environment();
+        var light = new DirLights(Color.white, new Vec3(0f, -1f, 0f));
+        var ambient = new AmbLights(Color.white);
+        env.add(light);
+        env.add(ambient);
+
+        snapshot = ring.begin();
+        snapshot.add(instance, null, env);
+        ring.publish(snapshot);
+
+        light.dir.set(1f, 0f, 0f);
+        ambient.color.set(Color.black);
+        env.changed();
+
+        rendered = ring.acquire();
+        var copy = rendered.views.first().env;
+        assertNotSame(env, copy);
+        assertSame(copy, rendered.environments.first());
+        assertEquals(-1f, copy.get(DirLightsAlias.dirLights).values.first().dir.y, 0f);
+        assertEquals(Color.white, copy.get(AmbLightsAlias.ambLights).values.first().color);
+
+        // The next snapshot copies the changed lights.
+        snapshot = ring.begin();
+        snapshot.add(instance, null, env);
+        snapshot.add(instance, null, env);
+        assertEquals(1, snapshot.environments.size, "An environment must only be copied once per frame.");
+        assertEquals(1f, snapshot.environments.first().get(DirLightsAlias.dirLights).values.first().dir.x, 0f);
+    }
+
+    @Test
+    public void concurrent() throws Exception{
+        var ring = new RenderSnapshots(3);
+        int frames = 20000;
+        var done = new AtomicBoolean();
+        var failure = new AtomicReference<Throwable>();
+
+        // Every snapshot holds its frame number in all of its transforms, so torn snapshots are detected.
+        var update = new Thread(() -> {
+            var trns = new float[16];
+            try{
+                for(int f = 0; f < frames; f++){
+                    var snapshot = ring.begin();
+                    java.util.Arrays.fill(trns, f);
+                    for(int i = 0; i < 8; i++) snapshot.buffer.add(trns, trns);
+                    ring.publish(snapshot);
+                }
+            }catch(Throwable t){
+                failure.set(t);
+            }finally{
+                done.set(true);
+            }
+        });
+        update.start();
+
+        long last = -1;
+        int rendered = 0;
+        while(!done.get() || rendered == 0){
+            var snapshot = ring.acquire();
+            if(snapshot == null) continue;
+
+            assertTrue(snapshot.frame >= last, "Frames must never go backwards.");
+            last = snapshot.frame;
+
+            float value = snapshot.buffer.trns[0];
+            for(int i = 0; i < snapshot.buffer.size * 16; i++) assertEquals(value, snapshot.buffer.trns[i], 0f);
+            assertEquals(snapshot.frame, (long)value);
+
+            ring.release(snapshot);
+            rendered++;
+        }
+
+        update.join();
+        if(failure.get() != null) throw new AssertionError(failure.get());
+    }
+}
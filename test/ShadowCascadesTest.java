@@ -0,0 +1,167 @@
+import arc.graphics.*;
+import arc.graphics.g3d.*;
+import arc.math.geom.*;
+import arc.struct.*;
+import model.*;
+import model.Model.*;
+import model.ModelShader.*;
+import model.attribute.*;
+import model.attribute.Attribute.*;
+import model.attribute.Attribute.ColAttr.*;
+import model.attribute.Attribute.FAttr.*;
+import model.attribute.Attribute.TexAttr.*;
+import model.part.*;
+import org.junit.jupiter.api.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ShadowCascadesTest{
+    Camera3D camera(){
+        var cam = new Camera3D();
+        cam.position.set(0f, 2f, 10f);
+        cam.direction.set(0.3f, -0.2f, -1f).nor();
+        cam.near = 0.5f;
+        cam.far = 200f;
+        cam.resize(1280f, 720f);
+        cam.update();
+        return cam;
+    }
+
+    @Test
+    public void splits(){
+        var cascades = new ShadowCascades(4, 1024);
+        cascades.split(1f, 100f);
+
+        assertEquals(1f, cascades.splits[0], 0f);
+        assertEquals(100f, cascades.splits[4], 0f);
+        for(int i = 1; i < cascades.splits.length; i++){
+            assertTrue(cascades.splits[i] > cascades.splits[i - 1], "Splits must be increasing.");
+        }
+
+        // Logarithmic splits give the nearest cascades more resolution.
+        assertTrue(cascades.splits[1] < 25f);
+
+        cascades.lambda = 0f;
+        cascades.split(0f, 100f);
+        assertEquals(50f, cascades.splits[2], 0.01f);
+
+        assertThrows(IllegalArgumentException.class, () -> new ShadowCascades(ShadowCascades.maxCascades + 1, 1024));
+    }
+
+    @Test
+    public void coverage(){
+        var cam = camera();
+        var cascades = new ShadowCascades(3, 512);
+        cascades.update(cam, new Vec3(-1f, -2f, -0.5f));
+        cascades.finish();
+
+        assertEquals(cascades.distance, cascades.splits[3], 0f, "The far plane must be clamped to the shadow distance.");
+
+        var dir = new Vec3(cam.direction).nor();
+        var right = new Vec3(dir).crs(cam.up).nor();
+        var up = new Vec3(right).crs(dir).nor();
+        float tan = (float)Math.tan(Math.toRadians(cam.fov / 2f)), aspect = cam.width / cam.height;
+
+        var corner = new Vec3();
+        for(int c = 0; c < cascades.count; c++){
+            int o = c * 4;
+            for(int s = 0; s < 2; s++){
+                float dist = cascades.splits[c + s], halfV = dist * tan, halfH = halfV * aspect;
+                for(int k = 0; k < 4; k++){
+                    corner.set(cam.position).mulAdd(dir, dist)
+                        .mulAdd(up, (k & 1) == 0 ? -halfV : halfV)
+                        .mulAdd(right, (k & 2) == 0 ? -halfH : halfH);
+
+                    float
+                        lx = corner.dot(cascades.right) - cascades.cascades[o],
+                        ly = corner.dot(cascades.up) - cascades.cascades[o + 1],
+                        lz = corner.dot(cascades.forward);
+
+                    float extent = cascades.cascades[o + 2];
+                    assertTrue(Math.abs(lx) <= extent && Math.abs(ly) <= extent, "Cascade " + c + " must cover its frustum slice.");
+                    assertTrue(lz >= cascades.near && lz <= cascades.far, "Cascade " + c + " must cover its frustum slice's depth.");
+                }
+            }
+
+            // Centers are snapped to whole texels.
+            float texel = cascades.cascades[o + 2] * 2f / cascades.resolution;
+            assertEquals(0f, Math.abs(cascades.cascades[o] / texel - Math.round(cascades.cascades[o] / texel)), 0.01f);
+        }
+    }
+
+    @Test
+    public void casters(){
+        var cam = camera();
+        var cascades = new ShadowCascades(2, 512);
+        var light = new Vec3(0f, -1f, 0f);
+        cascades.update(cam, light);
+
+        float near = cascades.depths[0];
+        int o = 0;
+        var center = new Vec3(cascades.right).scl(cascades.cascades[o]).mulAdd(cascades.up, cascades.cascades[o + 1]);
+
+        // Far above the receivers, towards the light, still casts onto them.
+        var above = new Vec3(center).mulAdd(cascades.forward, near - 200f);
+        assertTrue(cascades.casts(0, above.x, above.y, above.z, 1f));
+        assertEquals(near - 201f, cascades.depths[0], 0.01f, "Accepted casters must extend the depth range towards the light.");
+
+        // Beside the cascade, or past all of its receivers.
+        var beside = new Vec3(center).mulAdd(cascades.right, cascades.cascades[o + 2] + 5f);
+        assertFalse(cascades.casts(0, beside.x, beside.y, beside.z, 1f));
+
+        var below = new Vec3(center).mulAdd(cascades.forward, cascades.depths[1] + 5f);
+        assertFalse(cascades.casts(0, below.x, below.y, below.z, 1f));
+
+        cascades.finish();
+        assertEquals(near - 201f, cascades.near, 0.01f);
+    }
+
+    @Test
+    public void depthPermutations(){
+        var mesh = new MeshPart();
+        mesh.type = Gl.triangles;
+
+        var red = view(mesh, new Material(new ColAttr(ColAlias.diffuse, Color.black)));
+        var textured = view(mesh, new Material(new ColAttr(ColAlias.diffuse, Color.white), new TexAttr(TexAlias.diffuse, "tex")));
+        var shiny = view(mesh, new Material(new FAttr(FAlias.shininess, 4f)));
+
+        var a = new ShaderKey().set(red, RenderType.def, Pass.depth);
+        var b = new ShaderKey().set(textured, RenderType.def, Pass.depth);
+        var c = new ShaderKey().set(shiny, RenderType.def, Pass.depth);
+        assertEquals(a, b, "Opaque materials must share a depth shader.");
+        assertEquals(a, c);
+        assertEquals(0L, a.mask);
+        assertNotEquals(a, new ShaderKey().set(red, RenderType.def), "Depth shaders must not be shared with color ones.");
+
+        // Alpha tested materials keep what their coverage depends on.
+        var cutout = view(mesh, new Material(new ColAttr(ColAlias.diffuse, Color.black), new TexAttr(TexAlias.diffuse, "tex"), new FAttr(FAlias.alphaTest, 0.5f), new FAttr(FAlias.shininess, 4f)));
+        var d = new ShaderKey().set(cutout, RenderType.def, Pass.depth);
+        assertNotEquals(a, d);
+        assertEquals(FAlias.alphaTest.id | TexAlias.diffuse.id | ColAlias.diffuse.id, d.mask);
+    }
+
+    @Test
+    public void textureUnits(){
+        var units = new IntSet();
+        var all = new IntSeq();
+        all.add(TexUnits.shadows);
+        for(var alias : TexAlias.all) all.add(TexUnits.texture(alias));
+        for(int i = 0; i < ClustersAttr.numTextures; i++) all.add(TexUnits.clusters + i);
+        all.add(TexUnits.vat);
+
+        for(int i = 0; i < all.size; i++){
+            int unit = all.get(i);
+            assertTrue(units.add(unit), "Texture unit " + unit + " is shared by two samplers.");
+            assertTrue(unit >= 0 && unit < 8, "GLES2 only guarantees 8 texture units.");
+        }
+        assertEquals(TexUnits.count, units.size);
+        assertEquals(TexUnits.vat, AnimTexture.unit);
+    }
+
+    ModelView view(MeshPart mesh, Material material){
+        var view = new ModelView();
+        view.mesh = mesh;
+        view.material = material;
+        return view;
+    }
+}
@@ -0,0 +1,133 @@
+import arc.math.geom.*;
+import arc.util.*;
+import model.part.*;
+import model.part.Node.*;
+import org.junit.jupiter.api.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SkinTest{
+    static final float[] identity = {
+        1f, 0f, 0f, 0f,
+        0f, 1f, 0f, 0f,
+        0f, 0f, 1f, 0f
+    };
+
+    Node root, mesh;
+    Node[] bones;
+    Skin skin;
+
+    /** A chain of bones along the Y axis, one unit apart, next to a mesh node sharing the same root. */
+    @BeforeEach
+    public void skeleton(){
+        root = new Node();
+        root.id = "root";
+
+        mesh = new Node();
+        mesh.id = "mesh";
+        mesh.translation.set(0f, 0f, 3f);
+        mesh.parent = root;
+        root.children.put(mesh.id, mesh);
+
+        bones = new Node[Skin.maxBones];
+        var parent = root;
+        for(int i = 0; i < bones.length; i++){
+            var bone = bones[i] = new Node();
+            bone.id = "bone" + i;
+            bone.translation.set(0f, i == 0 ? 0f : 1f, 0f);
+            bone.parent = parent;
+            parent.children.put(bone.id, bone);
+            parent = bone;
+        }
+
+        root.calcTrns();
+
+        // Bind poses are relative to the model, and the mesh's node is skipped by skinned vertices.
+        var invBindTrns = new Mat3D[bones.length];
+        for(int i = 0; i < bones.length; i++) invBindTrns[i] = new Mat3D(bones[i].worldTrns).inv();
+        skin = new Skin(bones, invBindTrns);
+
+        var part = new NodePart(mesh);
+        part.skin = skin;
+        mesh.parts.add(part);
+    }
+
+    /** @return The bind-pose vertex transformed by the given bone of the palette, then by the mesh node. */
+    Vec3 skinned(float[] palette, int bone, Vec3 vertex){
+        int o = bone * Skin.boneSize;
+        float
+            x = palette[o] * vertex.x + palette[o + 1] * vertex.y + palette[o + 2] * vertex.z + palette[o + 3],
+            y = palette[o + 4] * vertex.x + palette[o + 5] * vertex.y + palette[o + 6] * vertex.z + palette[o + 7],
+            z = palette[o + 8] * vertex.x + palette[o + 9] * vertex.y + palette[o + 10] * vertex.z + palette[o + 11];
+        return new Vec3(x, y, z).mul(mesh.worldTrns);
+    }
+
+    @Test
+    public void bindPose(){
+        var palette = new float[bones.length * Skin.boneSize];
+        skin.palette(mesh.worldTrns, palette, 0);
+        for(int i = 0; i < bones.length; i++){
+            for(int k = 0; k < Skin.boneSize; k++){
+                assertEquals(identity[k], palette[i * Skin.boneSize + k], 0.0001f, "The bind pose must not deform the mesh.");
+            }
+        }
+
+        // Moving the whole instance must not deform the mesh either, since palettes are relative to its node.
+        root.calcTrns(new Mat3D().setToRotation(new Vec3(0f, 0f, 1f), 37f).translate(5f, -2f, 8f));
+        skin.palette(mesh.worldTrns, palette, 0);
+        for(int k = 0; k < palette.length; k++) assertEquals(identity[k % Skin.boneSize], palette[k], 0.0001f);
+    }
+
+    @Test
+    public void deform(){
+        // Bend the chain by 90 degrees around Z at its second bone.
+        bones[1].rotation.set(new Vec3(0f, 0f, 1f), 90f);
+        root.calcTrns();
+
+        var palette = new float[bones.length * Skin.boneSize];
+        skin.palette(mesh.worldTrns, palette, 0);
+
+        // Vertices bound to the first bone stay in place.
+        var out = skinned(palette, 0, new Vec3(0.5f, 0.5f, 0f));
+        assertEquals(0.5f, out.x, 0.0001f);
+        assertEquals(0.5f, out.y, 0.0001f);
+
+        // A vertex at the third bone's bind position rotates around the second bone at (0, 1, 0).
+        out = skinned(palette, 2, new Vec3(0f, 2f, 0f));
+        assertEquals(-1f, out.x, 0.0001f);
+        assertEquals(1f, out.y, 0.0001f);
+        assertEquals(0f, out.z, 0.0001f);
+
+        // Palettes may be packed at any offset, matching a palette packed at the start.
+        var packed = new float[palette.length + 7];
+        skin.palette(mesh.worldTrns, packed, 7);
+        for(int k = 0; k < palette.length; k++) assertEquals(palette[k], packed[k + 7], 0f);
+    }
+
+    @Test
+    public void copy(){
+        var copy = root.copy();
+        var copySkin = copy.children.get("mesh").parts.first().skin.copy(node -> Node.get(copy.children, null, node.id));
+
+        for(int i = 0; i < bones.length; i++){
+            assertNotSame(bones[i], copySkin.bones[i]);
+            assertEquals(bones[i].id, copySkin.bones[i].id);
+        }
+        assertSame(skin.invBindTrns, copySkin.invBindTrns, "Inverse bind poses must be shared.");
+        assertThrows(IllegalArgumentException.class, () -> new Skin(new Node[Skin.maxBones + 1], new Mat3D[Skin.maxBones + 1]));
+    }
+
+    @Test
+    @Tag("benchmark")
+    public void benchmark(){
+        var palette = new float[bones.length * Skin.boneSize];
+        for(int i = 0; i < 1000; i++) skin.palette(mesh.worldTrns, palette, 0);
+
+        int iterations = 10000;
+        long start = Time.nanos();
+        for(int i = 0; i < iterations; i++) skin.palette(mesh.worldTrns, palette, 0);
+        float us = Time.timeSinceNanos(start) / 1000f / iterations;
+
+        Log.info("[Skin] @ bones, @us per palette.", bones.length, us);
+    }
+}
@@ -0,0 +1,105 @@
+import arc.graphics.*;
+import arc.graphics.gl.*;
+import arc.math.*;
+import arc.math.geom.*;
+import model.part.*;
+import org.junit.jupiter.api.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class VertexCodecTest{
+    static final VertexAttribute[] attributes = {
+        new VertexAttribute(3, Shader.positionAttribute),
+        new VertexAttribute(3, Shader.normalAttribute),
+        new VertexAttribute(2, Shader.texcoordAttribute + 0)
+    };
+
+    static final Vec3[] axes = {
+        new Vec3(1f, 0f, 0f), new Vec3(-1f, 0f, 0f),
+        new Vec3(0f, 1f, 0f), new Vec3(0f, -1f, 0f),
+        new Vec3(0f, 0f, 1f), new Vec3(0f, 0f, -1f)
+    };
+
+    float[] vertices(int count){
+        var rand = new Rand(7);
+        var normal = new Vec3();
+
+        var vertices = new float[count * 8];
+        for(int i = 0; i < count; i++){
+            int o = i * 8;
+            vertices[o] = rand.range(250f);
+            vertices[o + 1] = rand.random(-2f, 40f);
+            vertices[o + 2] = rand.range(0.01f);
+
+            // Include the axes, which lie on the octahedron's edges and vertices.
+            if(i < axes.length){
+                normal.set(axes[i]);
+            }else{
+                normal.set(rand.range(1f), rand.range(1f), rand.range(1f)).nor();
+            }
+
+            vertices[o + 3] = normal.x;
+            vertices[o + 4] = normal.y;
+            vertices[o + 5] = normal.z;
+            vertices[o + 6] = rand.range(3f);
+            vertices[o + 7] = rand.random(1f);
+        }
+
+        return vertices;
+    }
+
+    @Test
+    public void layout(){
+        var codec = new VertexCodec().set(vertices(16), attributes);
+        assertEquals(8, codec.stride, "Position, normal, and texture coordinates must take 16 bytes.");
+        assertEquals(16 * 16 / 4, VertexCodec.pack(codec.encode(vertices(16))).length);
+    }
+
+    @Test
+    public void errorBounds(){
+        int count = 4096;
+        var vertices = vertices(count);
+        var codec = new VertexCodec().set(vertices, attributes);
+        var data = codec.encode(vertices);
+
+        var pos = new Vec3();
+        var normal = new Vec3();
+        var uv = new Vec2();
+
+        // Half a quantization step, with some leeway for float rounding.
+        float
+            ex = codec.posScale.x / 32767f, ey = codec.posScale.y / 32767f, ez = codec.posScale.z / 32767f,
+            eu = codec.uvScale.x / 65535f, ev = codec.uvScale.y / 65535f,
+            minDot = Mathf.cos(0.002f);
+
+        for(int i = 0; i < count; i++){
+            int o = i * 8;
+
+            codec.decodePosition(data, i, pos);
+            assertEquals(vertices[o], pos.x, ex, "Position x of vertex " + i);
+            assertEquals(vertices[o + 1], pos.y, ey, "Position y of vertex " + i);
+            assertEquals(vertices[o + 2], pos.z, ez, "Position z of vertex " + i);
+
+            codec.decodeNormal(data, i, normal);
+            float dot = normal.dot(vertices[o + 3], vertices[o + 4], vertices[o + 5]);
+            assertTrue(dot >= minDot, "Normal of vertex " + i + " deviates by " + Math.acos(Math.min(dot, 1f)) + " radians.");
+
+            codec.decodeUV(data, i, 0, uv);
+            assertEquals(vertices[o + 6], uv.x, eu, "U of vertex " + i);
+            assertEquals(vertices[o + 7], uv.y, ev, "V of vertex " + i);
+        }
+    }
+
+    @Test
+    public void flat(){
+        // Degenerate extents must not divide by zero.
+        var vertices = new float[]{1f, 2f, 3f, 0f, 0f, 1f, 0.5f, 0.5f, 1f, 2f, 3f, 0f, 0f, 1f, 0.5f, 0.5f};
+        var codec = new VertexCodec().set(vertices, attributes);
+        var data = codec.encode(vertices);
+
+        var pos = codec.decodePosition(data, 1, new Vec3());
+        assertEquals(1f, pos.x, 0.0001f);
+        assertEquals(2f, pos.y, 0.0001f);
+        assertEquals(3f, pos.z, 0.0001f);
+    }
+}